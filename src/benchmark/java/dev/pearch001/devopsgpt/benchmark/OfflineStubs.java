@@ -0,0 +1,275 @@
+package dev.pearch001.devopsgpt.benchmark;
+
+import dev.pearch001.devopsgpt.loadtest.LatencyModel;
+import dev.pearch001.devopsgpt.loadtest.StubEmbeddingModel;
+import dev.pearch001.devopsgpt.persistence.ScriptArchive;
+import dev.pearch001.devopsgpt.service.AwsReadCache;
+import dev.pearch001.devopsgpt.service.AwsToolExecutor;
+import dev.pearch001.devopsgpt.service.CloudWatchMetricsQuery;
+import dev.pearch001.devopsgpt.service.CommandCache;
+import dev.pearch001.devopsgpt.service.CommandService;
+import dev.pearch001.devopsgpt.service.LlmDispatcher;
+import dev.pearch001.devopsgpt.service.PipelineMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.reader.markdown.MarkdownDocumentReader;
+import org.springframework.ai.reader.markdown.config.MarkdownDocumentReaderConfig;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataResponse;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataResult;
+import software.amazon.awssdk.services.ec2.Ec2AsyncClient;
+import software.amazon.awssdk.services.ec2.model.InstanceState;
+import software.amazon.awssdk.services.ec2.model.InstanceStateChange;
+import software.amazon.awssdk.services.ec2.model.InstanceStateName;
+import software.amazon.awssdk.services.ec2.model.StartInstancesRequest;
+import software.amazon.awssdk.services.ec2.model.StartInstancesResponse;
+import software.amazon.awssdk.services.ec2.model.StopInstancesRequest;
+import software.amazon.awssdk.services.ec2.model.StopInstancesResponse;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.Bucket;
+import software.amazon.awssdk.services.s3.model.ListBucketsRequest;
+import software.amazon.awssdk.services.s3.model.ListBucketsResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-memory replacements for the LLM, the embedding provider, Chroma and AWS, so the benchmarks run
+ * offline and measure only this application's code. Replies and embeddings are deterministic.
+ */
+public final class OfflineStubs {
+
+    public static final String CANNED_REPLY = "To list the pods in the current namespace run `kubectl get pods`. "
+            + "Add `-o wide` to include node and IP details, or `-A` to list pods across all namespaces.";
+
+    private OfflineStubs() {
+    }
+
+    public static SimpleMeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    /**
+     * A chat model that answers every prompt with {@link #CANNED_REPLY}, streamed word by word.
+     */
+    public static ChatModel chatModel() {
+        return new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                return new ChatResponse(List.of(new Generation(new AssistantMessage(CANNED_REPLY))));
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                return Flux.fromArray(CANNED_REPLY.split("(?<= )"))
+                        .map(token -> new ChatResponse(List.of(new Generation(new AssistantMessage(token)))));
+            }
+        };
+    }
+
+    /**
+     * The load test's embedding stand-in without added latency: words are hashed into a normalized
+     * bag-of-words vector, so texts sharing words are similar.
+     */
+    public static EmbeddingModel embeddingModel(int dimension) {
+        return new StubEmbeddingModel(dimension, LatencyModel.none());
+    }
+
+    /**
+     * An in-memory vector store (standing in for Chroma) preloaded with the given documents.
+     */
+    public static VectorStore vectorStore(EmbeddingModel embeddingModel, List<Document> documents) {
+        SimpleVectorStore store = SimpleVectorStore.builder(embeddingModel).build();
+        store.add(documents);
+        return store;
+    }
+
+    /**
+     * The bundled knowledge base documents, read and split with the same settings as
+     * {@code VectorStoreIngestor}, keyed by file name.
+     */
+    public static Map<String, List<Document>> bundledChunks() {
+        Map<String, List<Document>> chunks = new LinkedHashMap<>();
+        TokenTextSplitter splitter = splitter();
+        for (Resource resource : bundledDocuments()) {
+            List<Document> documents = new ArrayList<>();
+            for (Document chunk : splitter.apply(new MarkdownDocumentReader(resource, markdownConfig()).get())) {
+                Map<String, Object> metadata = new LinkedHashMap<>(chunk.getMetadata());
+                metadata.put("file", resource.getFilename());
+                documents.add(Document.builder().text(chunk.getText()).metadata(metadata).build());
+            }
+            chunks.put(resource.getFilename(), documents);
+        }
+        return chunks;
+    }
+
+    public static List<Resource> bundledDocuments() {
+        try {
+            return Arrays.asList(new PathMatchingResourcePatternResolver().getResources("classpath:/documents/*.md"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static MarkdownDocumentReaderConfig markdownConfig() {
+        return MarkdownDocumentReaderConfig.builder()
+                .withHorizontalRuleCreateDocument(true)
+                .withIncludeCodeBlock(false)
+                .withIncludeBlockquote(true)
+                .withAdditionalMetadata("source", "devops-doc")
+                .withAdditionalMetadata("category", "infrastructure")
+                .build();
+    }
+
+    public static TokenTextSplitter splitter() {
+        return new TokenTextSplitter(1000, 300, 10, 5000, true);
+    }
+
+    public static Ec2AsyncClient ec2Client() {
+        return new Ec2AsyncClient() {
+            @Override
+            public CompletableFuture<StartInstancesResponse> startInstances(StartInstancesRequest request) {
+                return CompletableFuture.completedFuture(StartInstancesResponse.builder()
+                        .startingInstances(stateChanges(request.instanceIds(), InstanceStateName.STOPPED, InstanceStateName.PENDING))
+                        .build());
+            }
+
+            @Override
+            public CompletableFuture<StopInstancesResponse> stopInstances(StopInstancesRequest request) {
+                return CompletableFuture.completedFuture(StopInstancesResponse.builder()
+                        .stoppingInstances(stateChanges(request.instanceIds(), InstanceStateName.RUNNING, InstanceStateName.STOPPING))
+                        .build());
+            }
+
+            @Override
+            public String serviceName() {
+                return SERVICE_NAME;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    public static List<InstanceStateChange> stateChanges(List<String> instanceIds, InstanceStateName from, InstanceStateName to) {
+        return instanceIds.stream()
+                .map(id -> InstanceStateChange.builder()
+                        .instanceId(id)
+                        .previousState(InstanceState.builder().name(from).build())
+                        .currentState(InstanceState.builder().name(to).build())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * An AWS read cache with the default TTLs from {@code application.yml}.
+     */
+    public static AwsReadCache awsReadCache(MeterRegistry meterRegistry) {
+        return new AwsReadCache(meterRegistry, true, Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofMinutes(5), 10_000);
+    }
+
+    /**
+     * A command cache with the default limits and no disk tier.
+     */
+    public static CommandCache commandCache(MeterRegistry meterRegistry) {
+        CommandCache commandCache = new CommandCache(meterRegistry, true, 1000, "", 10_000, Duration.ofDays(7));
+        commandCache.open();
+        return commandCache;
+    }
+
+    /**
+     * An LLM dispatcher with both limits off, so it only adds its bookkeeping.
+     */
+    public static LlmDispatcher llmDispatcher(MeterRegistry meterRegistry) {
+        return new LlmDispatcher(meterRegistry, 0, 0, 400, Duration.ofSeconds(10), 200, Duration.ofSeconds(5));
+    }
+
+    /**
+     * A command service over the given chat client and cache, with a disabled script archive and
+     * an unlimited dispatcher.
+     */
+    public static CommandService commandService(ChatClient chatClient, CommandCache commandCache, MeterRegistry meterRegistry) {
+        return new CommandService(chatClient, commandCache, scriptArchive(meterRegistry), llmDispatcher(meterRegistry), new JTokkitTokenCountEstimator());
+    }
+
+    /**
+     * A disabled script archive: scripts get IDs but are never written.
+     */
+    public static ScriptArchive scriptArchive(MeterRegistry meterRegistry) {
+        return new ScriptArchive(meterRegistry, false, "scripts", DataSize.ofMegabytes(16), false, 1, 1, 1);
+    }
+
+    /**
+     * An AWS tool executor over the given clients with the default batch and metrics settings.
+     */
+    public static AwsToolExecutor awsToolExecutor(Ec2AsyncClient ec2Client, S3AsyncClient s3Client, CloudWatchAsyncClient cloudWatchClient,
+                                                  PipelineMetrics pipelineMetrics, AwsReadCache readCache) {
+        CloudWatchMetricsQuery metricsQuery = new CloudWatchMetricsQuery(cloudWatchClient, pipelineMetrics, readCache, 60, 500);
+        return new AwsToolExecutor(ec2Client, s3Client, cloudWatchClient, pipelineMetrics, readCache, metricsQuery, 50);
+    }
+
+    public static S3AsyncClient s3Client() {
+        return new S3AsyncClient() {
+            @Override
+            public CompletableFuture<ListBucketsResponse> listBuckets(ListBucketsRequest request) {
+                return CompletableFuture.completedFuture(ListBucketsResponse.builder()
+                        .buckets(Bucket.builder().name("app-artifacts").build(), Bucket.builder().name("terraform-state").build())
+                        .build());
+            }
+
+            @Override
+            public String serviceName() {
+                return SERVICE_NAME;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    public static CloudWatchAsyncClient cloudWatchClient() {
+        return new CloudWatchAsyncClient() {
+            @Override
+            public CompletableFuture<GetMetricDataResponse> getMetricData(GetMetricDataRequest request) {
+                return CompletableFuture.completedFuture(GetMetricDataResponse.builder()
+                        .metricDataResults(MetricDataResult.builder().id("m1").values(12.5).build())
+                        .build());
+            }
+
+            @Override
+            public String serviceName() {
+                return SERVICE_NAME;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,206 @@
+package dev.pearch001.devopsgpt.config;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListBucketsResponse;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@code ListBuckets} under {@link #CONCURRENCY} concurrent tool requests against a
+ * local stand-in S3 endpoint that answers after {@link #ENDPOINT_LATENCY}. Compares the previous
+ * setup (blocking client with default HTTP settings, one thread per request), the async client
+ * with default Netty settings, and the async client on the pool built by {@link AwsConfig}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AwsClientBenchmark {
+
+    private static final int CONCURRENCY = 500;
+    private static final Duration ENDPOINT_LATENCY = Duration.ofMillis(100);
+    private static final byte[] LIST_BUCKETS_XML = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <ListAllMyBucketsResult xmlns="http://s3.amazonaws.com/doc/2006-03-01/">
+              <Owner><ID>benchmark</ID></Owner>
+              <Buckets>
+                <Bucket><Name>app-artifacts</Name><CreationDate>2024-01-01T00:00:00.000Z</CreationDate></Bucket>
+                <Bucket><Name>terraform-state</Name><CreationDate>2024-01-01T00:00:00.000Z</CreationDate></Bucket>
+              </Buckets>
+            </ListAllMyBucketsResult>
+            """.getBytes(StandardCharsets.UTF_8);
+
+    @Param({"200"})
+    public int maxConcurrency;
+
+    private EventLoopGroup endpointLoop;
+    private Channel endpoint;
+    private ExecutorService requestThreads;
+    private S3Client blockingClient;
+    private S3AsyncClient defaultAsyncClient;
+    private SdkAsyncHttpClient tunedHttpClient;
+    private S3AsyncClient tunedAsyncClient;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        endpointLoop = new NioEventLoopGroup(2);
+        endpoint = new ServerBootstrap()
+                .group(endpointLoop)
+                .channel(NioServerSocketChannel.class)
+                .option(ChannelOption.SO_BACKLOG, 4096)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(1 << 20), new StandInS3());
+                    }
+                })
+                .bind("127.0.0.1", 0).syncUninterruptibly().channel();
+        URI uri = URI.create("http://127.0.0.1:" + ((InetSocketAddress) endpoint.localAddress()).getPort());
+
+        AwsConfig config = new AwsConfig();
+        ClientOverrideConfiguration overrides = config.awsClientOverrides(
+                Duration.ofSeconds(30), Duration.ofSeconds(10), 3, Duration.ofMillis(100), Duration.ofMillis(500), Duration.ofSeconds(20));
+        tunedHttpClient = config.awsHttpClient(
+                maxConcurrency, 10_000, Duration.ofSeconds(2), Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofSeconds(60));
+
+        requestThreads = Executors.newFixedThreadPool(CONCURRENCY);
+        blockingClient = S3Client.builder()
+                .endpointOverride(uri).forcePathStyle(true).region(Region.US_EAST_1).credentialsProvider(credentials())
+                .build();
+        defaultAsyncClient = S3AsyncClient.builder()
+                .endpointOverride(uri).forcePathStyle(true).region(Region.US_EAST_1).credentialsProvider(credentials())
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder())
+                .build();
+        tunedAsyncClient = S3AsyncClient.builder()
+                .endpointOverride(uri).forcePathStyle(true).region(Region.US_EAST_1).credentialsProvider(credentials())
+                .httpClient(tunedHttpClient)
+                .overrideConfiguration(overrides)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        blockingClient.close();
+        defaultAsyncClient.close();
+        tunedAsyncClient.close();
+        tunedHttpClient.close();
+        requestThreads.shutdownNow();
+        endpoint.close().syncUninterruptibly();
+        endpointLoop.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENCY)
+    public int blockingDefaultPool() throws Exception {
+        List<Future<ListBucketsResponse>> calls = new ArrayList<>(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            calls.add(requestThreads.submit(() -> blockingClient.listBuckets()));
+        }
+        int buckets = 0;
+        for (Future<ListBucketsResponse> call : calls) {
+            buckets += call.get().buckets().size();
+        }
+        return buckets;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENCY)
+    public int asyncDefaultPool() {
+        return await(defaultAsyncClient);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENCY)
+    public int asyncTunedPool() {
+        return await(tunedAsyncClient);
+    }
+
+    private static int await(S3AsyncClient client) {
+        List<CompletableFuture<ListBucketsResponse>> calls = new ArrayList<>(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            calls.add(client.listBuckets());
+        }
+        int buckets = 0;
+        for (CompletableFuture<ListBucketsResponse> call : calls) {
+            buckets += call.join().buckets().size();
+        }
+        return buckets;
+    }
+
+    /**
+     * Answers every request with a fixed ListBuckets document after {@link #ENDPOINT_LATENCY},
+     * without holding a thread while it waits.
+     */
+    private static final class StandInS3 extends SimpleChannelInboundHandler<FullHttpRequest> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+            boolean keepAlive = HttpUtil.isKeepAlive(request);
+            ctx.executor().schedule(() -> {
+                FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                        Unpooled.wrappedBuffer(LIST_BUCKETS_XML));
+                response.headers()
+                        .set(HttpHeaderNames.CONTENT_TYPE, "application/xml")
+                        .setInt(HttpHeaderNames.CONTENT_LENGTH, LIST_BUCKETS_XML.length);
+                HttpUtil.setKeepAlive(response, keepAlive);
+                ctx.writeAndFlush(response);
+            }, ENDPOINT_LATENCY.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static StaticCredentialsProvider credentials() {
+        return StaticCredentialsProvider.create(AwsBasicCredentials.create("benchmark", "benchmark"));
+    }
+}
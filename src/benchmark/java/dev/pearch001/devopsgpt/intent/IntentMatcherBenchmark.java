@@ -0,0 +1,126 @@
+package dev.pearch001.devopsgpt.intent;
+
+import dev.pearch001.devopsgpt.model.DialogueState;
+import dev.pearch001.devopsgpt.service.DialogueStateTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Intent classification cost of the compiled automaton against the if/else chain it replaced, as
+ * the rule table grows. The chain is the old {@code DialogueStateTracker} logic generalized to a
+ * table: lowercase the input, then {@code contains}/{@code startsWith} per rule in order, and a
+ * regex for the instance ID. The table is the real rules padded with verb/resource rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntentMatcherBenchmark {
+
+    private static final Pattern INSTANCE_ID_PATTERN = Pattern.compile("(i-[a-f0-9]{17}|i-[a-f0-9]{8})");
+
+    private static final String[] VERBS = {"describe", "delete", "create", "scale", "restart", "rollback", "tail", "inspect"};
+    private static final String[] RESOURCES = {
+            "rds cluster", "eks nodegroup", "lambda alias", "ecs service", "sqs queue", "sns topic", "iam role",
+            "route53 record", "cloudfront distribution", "dynamodb table", "elb listener", "vpc peering",
+            "nat gateway", "security group", "autoscaling group", "kms key", "secrets manager secret",
+            "ecr repository", "helm release", "argo rollout", "terraform workspace", "jenkins job",
+            "github workflow", "prometheus rule", "grafana dashboard"};
+
+    private static final String[] INPUTS = {
+            "Please start the EC2 instance i-0123456789abcdef0 for me",
+            "what is the difference between a deployment and a statefulset in kubernetes?",
+            "How do I rotate the access keys for my CI user?",
+            "show me the cpu utilization of instance i-0abcdef1234567890 over the last hour",
+            "can you list all my s3 buckets",
+            "our pods keep restarting with CrashLoopBackOff after the last release, any idea why this happens?",
+            "rollback the argo rollout for checkout-service to the previous revision",
+            "explain blue/green deployments"};
+
+    @Param({"10", "50", "200"})
+    public int intents;
+
+    private List<IntentRule> rules;
+    private IntentMatcher matcher;
+    private DialogueState state;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rules = new ArrayList<>(DialogueStateTracker.RULES);
+        for (int i = 0; rules.size() < intents; i++) {
+            String verb = VERBS[i % VERBS.length];
+            String resource = RESOURCES[(i / VERBS.length) % RESOURCES.length];
+            rules.add(IntentRule.when(DialogueState.Intent.GENERATE_COMMAND).contains(verb).contains(resource));
+        }
+        matcher = new IntentMatcher(rules, DialogueState.Intent.GENERAL_QUERY);
+        state = new DialogueState();
+    }
+
+    @Benchmark
+    public DialogueState.Intent automaton() {
+        return matcher.apply(nextInput(), state);
+    }
+
+    @Benchmark
+    public DialogueState.Intent chain() {
+        String input = nextInput();
+        String lowerInput = input.toLowerCase();
+        for (IntentRule rule : rules) {
+            if (matches(rule, lowerInput)) {
+                state.setCurrentIntent(rule.intent());
+                if (rule.extractInstanceId()) {
+                    Matcher m = INSTANCE_ID_PATTERN.matcher(input);
+                    if (m.find()) {
+                        state.addSlot("instanceId", m.group(0));
+                    }
+                }
+                if (rule.captureTask()) {
+                    state.addSlot("task", input);
+                }
+                return rule.intent();
+            }
+        }
+        state.setCurrentIntent(DialogueState.Intent.GENERAL_QUERY);
+        return DialogueState.Intent.GENERAL_QUERY;
+    }
+
+    private static boolean matches(IntentRule rule, String lowerInput) {
+        for (List<IntentRule.Keyword> group : rule.groups()) {
+            boolean any = false;
+            for (IntentRule.Keyword keyword : group) {
+                if (keyword.anchored() ? lowerInput.startsWith(keyword.text()) : lowerInput.contains(keyword.text())) {
+                    any = true;
+                    break;
+                }
+            }
+            if (!any) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String nextInput() {
+        next = (next + 1) % INPUTS.length;
+        return INPUTS[next];
+    }
+}
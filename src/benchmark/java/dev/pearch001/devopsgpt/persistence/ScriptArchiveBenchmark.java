@@ -0,0 +1,76 @@
+package dev.pearch001.devopsgpt.persistence;
+
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time a simulation request spends saving its script, with four request threads: one file per
+ * script written on the request thread, as before, against queueing it for the {@link ScriptArchive}
+ * writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ScriptArchiveBenchmark {
+
+    private static final String SCRIPT = """
+            #!/usr/bin/env bash
+            set -euo pipefail
+            kubectl -n prod rollout restart deployment/api
+            kubectl -n prod rollout status deployment/api --timeout=120s
+            """;
+
+    private final AtomicLong fileCounter = new AtomicLong();
+    private Path fileDirectory;
+    private Path archiveDirectory;
+    private ScriptArchive archive;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fileDirectory = Files.createTempDirectory("scripts-files");
+        archiveDirectory = Files.createTempDirectory("scripts-archive");
+        archive = new ScriptArchive(OfflineStubs.meterRegistry(), true, archiveDirectory.toString(), DataSize.ofMegabytes(16), false, 65_536, 256, 64);
+        archive.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        archive.close();
+        FileSystemUtils.deleteRecursively(fileDirectory);
+        FileSystemUtils.deleteRecursively(archiveDirectory);
+    }
+
+    @Benchmark
+    public Path filePerScript() throws IOException {
+        return Files.writeString(fileDirectory.resolve("script-" + fileCounter.incrementAndGet() + ".sh"), SCRIPT);
+    }
+
+    @Benchmark
+    public String archived() {
+        return archive.archive(SCRIPT);
+    }
+}
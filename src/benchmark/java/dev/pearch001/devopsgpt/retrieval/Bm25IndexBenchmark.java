@@ -0,0 +1,123 @@
+package dev.pearch001.devopsgpt.retrieval;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.markdown.MarkdownDocumentReader;
+import org.springframework.ai.reader.markdown.config.MarkdownDocumentReaderConfig;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of the BM25 index over the bundled documents, and recall@3 for a set of labeled
+ * DevOps queries (printed during setup). Larger corpora are simulated by indexing the bundled
+ * chunks many times under different file names, each copy padded with random filler terms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Bm25IndexBenchmark {
+
+    private static final int K = 3;
+
+    private static final Map<String, Set<String>> LABELED_QUERIES = Map.of(
+            "kubectl get pods", Set.of("kubernetes-pods.md"),
+            "aws s3 ls", Set.of("aws-s3-basics.md", "aws_cli_getting_started.md"),
+            "docker build -t my-app:1.0", Set.of("docker-essentials.md"),
+            "S3 Glacier storage class", Set.of("aws-s3-basics.md"),
+            "aws configure default region", Set.of("aws_cli_getting_started.md"),
+            "pods share network namespace", Set.of("kubernetes-pods.md"),
+            "Dockerfile image", Set.of("docker-essentials.md"),
+            "--region flag IAM permissions", Set.of("aws_cli_getting_started.md"),
+            "ephemeral pod replica", Set.of("kubernetes-pods.md"),
+            "bucket name globally unique", Set.of("aws-s3-basics.md"));
+
+    @Param({"1", "1000"})
+    public int copies;
+
+    private Bm25Index index;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Same reader and splitter settings as VectorStoreIngestor.
+        MarkdownDocumentReaderConfig config = MarkdownDocumentReaderConfig.builder()
+                .withHorizontalRuleCreateDocument(true)
+                .withIncludeCodeBlock(false)
+                .withIncludeBlockquote(true)
+                .build();
+        TokenTextSplitter splitter = new TokenTextSplitter(1000, 300, 10, 5000, true);
+
+        Map<String, List<Document>> corpus = new HashMap<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources("classpath:/documents/*.md")) {
+            corpus.put(resource.getFilename(), splitter.apply(new MarkdownDocumentReader(resource, config).get()));
+        }
+
+        Random random = new Random(7);
+        index = new Bm25Index();
+        int chunks = 0;
+        for (int copy = 0; copy < copies; copy++) {
+            for (Map.Entry<String, List<Document>> file : corpus.entrySet()) {
+                String name = copy == 0 ? file.getKey() : "copy-" + copy + "/" + file.getKey();
+                List<Document> documents = new ArrayList<>();
+                for (Document chunk : file.getValue()) {
+                    String text = copy == 0 ? chunk.getText() : chunk.getText() + filler(random);
+                    documents.add(Document.builder().text(text).metadata("file", name).build());
+                }
+                index.replaceFile(name, documents);
+                chunks += documents.size();
+            }
+        }
+
+        int hits = 0;
+        for (Map.Entry<String, Set<String>> query : LABELED_QUERIES.entrySet()) {
+            for (Document result : index.search(query.getKey(), K)) {
+                String file = (String) result.getMetadata().get("file");
+                if (query.getValue().contains(file.substring(file.lastIndexOf('/') + 1))) {
+                    hits++;
+                    break;
+                }
+            }
+        }
+        System.out.printf("%nrecall@%d (copies=%d, chunks=%d): %.2f%n", K, copies, chunks, (double) hits / LABELED_QUERIES.size());
+        queries = LABELED_QUERIES.keySet().toArray(String[]::new);
+    }
+
+    @Benchmark
+    public List<Document> search() {
+        next = (next + 1) % queries.length;
+        return index.search(queries[next], K);
+    }
+
+    private static String filler(Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            text.append(" term").append(random.nextInt(5000));
+        }
+        return text.toString();
+    }
+}
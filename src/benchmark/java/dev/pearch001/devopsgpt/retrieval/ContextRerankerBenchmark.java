@@ -0,0 +1,127 @@
+package dev.pearch001.devopsgpt.retrieval;
+
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of hybrid retrieval over the bundled documents with and without the MMR re-ranking
+ * stage, plus the re-ranking step alone on a fixed candidate list. What it buys is printed during
+ * setup: chunks and document tokens per prompt after {@link ContextBudgeter}, and how often a chunk
+ * from the expected file is still among them, for a set of labeled DevOps questions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextRerankerBenchmark {
+
+    private static final int TOP_K = 3;
+    private static final String SYSTEM_PROMPT = "You are DevOpsGPT, a helpful AI assistant.";
+
+    private static final Map<String, Set<String>> LABELED_QUERIES = Map.of(
+            "How do I list the pods running in my cluster?", Set.of("kubernetes-pods.md"),
+            "How do I copy files to an S3 bucket?", Set.of("aws-s3-basics.md", "aws_cli_getting_started.md"),
+            "How do I build a Docker image from a Dockerfile?", Set.of("docker-essentials.md"),
+            "What storage classes does S3 offer?", Set.of("aws-s3-basics.md"),
+            "How do I configure the default region for the AWS CLI?", Set.of("aws_cli_getting_started.md"),
+            "Do containers in a pod share a network namespace?", Set.of("kubernetes-pods.md"),
+            "What is the difference between an image and a container?", Set.of("docker-essentials.md"),
+            "What IAM permissions does the AWS CLI need?", Set.of("aws_cli_getting_started.md"),
+            "Why are pods considered ephemeral?", Set.of("kubernetes-pods.md"),
+            "Why must bucket names be globally unique?", Set.of("aws-s3-basics.md"));
+
+    private HybridRetriever plain;
+    private HybridRetriever reranked;
+    private ContextReranker reranker;
+    private String[] queries;
+    private List<List<Document>> candidates;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MeterRegistry meterRegistry = OfflineStubs.meterRegistry();
+        Map<String, List<Document>> chunks = OfflineStubs.bundledChunks();
+        EmbeddingModel embeddingModel = OfflineStubs.embeddingModel(256);
+        VectorStore vectorStore = OfflineStubs.vectorStore(embeddingModel, chunks.values().stream().flatMap(List::stream).toList());
+        Bm25Index lexicalIndex = new Bm25Index();
+        chunks.forEach(lexicalIndex::replaceFile);
+
+        reranker = new ContextReranker(meterRegistry, true, 0.7, 0.3, 0.6, 0.5);
+        plain = new HybridRetriever(vectorStore, lexicalIndex, new ContextReranker(meterRegistry, false, 0.7, 0.3, 0.6, 0.5), true, 20, 60);
+        reranked = new HybridRetriever(vectorStore, lexicalIndex, reranker, true, 20, 60);
+
+        TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+        ContextBudgeter budgeter = new ContextBudgeter(tokenCountEstimator, meterRegistry, 3000, 0.6, 0.8, 0.3);
+        Map<String, HybridRetriever> modes = new LinkedHashMap<>();
+        modes.put("top-3", plain);
+        modes.put("re-ranked", reranked);
+        modes.forEach((mode, retriever) -> {
+            int documents = 0;
+            int tokens = 0;
+            int hits = 0;
+            for (Map.Entry<String, Set<String>> query : LABELED_QUERIES.entrySet()) {
+                List<Document> selected = budgeter.fit(SYSTEM_PROMPT, query.getKey(), retriever.retrieve(query.getKey(), TOP_K), List.of()).documents();
+                documents += selected.size();
+                for (Document document : selected) {
+                    tokens += tokenCountEstimator.estimate(document.getText());
+                }
+                if (selected.stream().anyMatch(d -> query.getValue().contains((String) d.getMetadata().get("file")))) {
+                    hits++;
+                }
+            }
+            int n = LABELED_QUERIES.size();
+            System.out.printf("%n%-9s: %.1f chunks, %.0f document tokens per prompt, expected file kept for %d/%d queries",
+                    mode, (double) documents / n, (double) tokens / n, hits, n);
+        });
+        System.out.println();
+
+        queries = LABELED_QUERIES.keySet().toArray(String[]::new);
+        candidates = new ArrayList<>();
+        for (String query : queries) {
+            candidates.add(plain.retrieve(query, 40));
+        }
+    }
+
+    @Benchmark
+    public List<Document> retrieveTop3() {
+        next = (next + 1) % queries.length;
+        return plain.retrieve(queries[next], TOP_K);
+    }
+
+    @Benchmark
+    public List<Document> retrieveReranked() {
+        next = (next + 1) % queries.length;
+        return reranked.retrieve(queries[next], TOP_K);
+    }
+
+    @Benchmark
+    public List<Document> rerankOnly() {
+        next = (next + 1) % queries.length;
+        return reranker.rerank(queries[next], candidates.get(next), TOP_K);
+    }
+}
@@ -0,0 +1,97 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.ListBucketsRequest;
+import software.amazon.awssdk.services.s3.model.ListBucketsResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code listS3Buckets} against an S3 stub that takes {@link #API_LATENCY} per call, with the read
+ * cache disabled, warm, and always expired (every call is served stale while a refresh runs).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AwsReadCacheBenchmark {
+
+    private static final Duration API_LATENCY = Duration.ofMillis(20);
+
+    private AwsToolExecutor uncached;
+    private AwsToolExecutor cached;
+    private AwsToolExecutor stale;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimpleMeterRegistry registry = OfflineStubs.meterRegistry();
+        PipelineMetrics pipelineMetrics = new PipelineMetrics(registry, new JTokkitTokenCountEstimator());
+        S3AsyncClient s3Client = slowS3Client();
+
+        uncached = OfflineStubs.awsToolExecutor(OfflineStubs.ec2Client(), s3Client, OfflineStubs.cloudWatchClient(), pipelineMetrics,
+                new AwsReadCache(registry, false, Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofMinutes(5), 10_000));
+        cached = OfflineStubs.awsToolExecutor(OfflineStubs.ec2Client(), s3Client, OfflineStubs.cloudWatchClient(), pipelineMetrics,
+                OfflineStubs.awsReadCache(registry));
+        stale = OfflineStubs.awsToolExecutor(OfflineStubs.ec2Client(), s3Client, OfflineStubs.cloudWatchClient(), pipelineMetrics,
+                new AwsReadCache(registry, true, Duration.ZERO, Duration.ZERO, Duration.ZERO, Duration.ofDays(1), 10_000));
+        cached.listS3Buckets();
+        stale.listS3Buckets();
+    }
+
+    @Benchmark
+    public String uncached() {
+        return uncached.listS3Buckets();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String cachedHit() {
+        return cached.listS3Buckets();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String staleWhileRevalidate() {
+        return stale.listS3Buckets();
+    }
+
+    private static S3AsyncClient slowS3Client() {
+        S3AsyncClient delegate = OfflineStubs.s3Client();
+        Executor delayed = CompletableFuture.delayedExecutor(API_LATENCY.toNanos(), TimeUnit.NANOSECONDS);
+        return new S3AsyncClient() {
+            @Override
+            public CompletableFuture<ListBucketsResponse> listBuckets(ListBucketsRequest request) {
+                return CompletableFuture.supplyAsync(() -> delegate.listBuckets(request).join(), delayed);
+            }
+
+            @Override
+            public String serviceName() {
+                return delegate.serviceName();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataResponse;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataQuery;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataResult;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * All six EC2 metrics of {@link #instances} instances over the last hour against a CloudWatch stub
+ * that takes {@link #API_LATENCY} per call and returns at most {@link #PAGE_DATAPOINTS} datapoints
+ * per page: one GetMetricData per instance and metric, as when every series was its own question,
+ * against one batched, paginated query, and the same query again while it is still cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CloudWatchMetricsBenchmark {
+
+    private static final Duration API_LATENCY = Duration.ofMillis(20);
+    private static final int PAGE_DATAPOINTS = 5_000;
+    private static final Duration WINDOW = Duration.ofHours(1);
+    private static final Set<CloudWatchMetricsQuery.Ec2Metric> ALL_METRICS = EnumSet.allOf(CloudWatchMetricsQuery.Ec2Metric.class);
+
+    @Param({"40"})
+    public int instances;
+
+    private CloudWatchMetricsQuery uncached;
+    private CloudWatchMetricsQuery cached;
+    private List<String> instanceIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        instanceIds = new ArrayList<>();
+        for (int i = 0; i < instances; i++) {
+            instanceIds.add(String.format("i-%017x", i));
+        }
+        SimpleMeterRegistry registry = OfflineStubs.meterRegistry();
+        PipelineMetrics pipelineMetrics = new PipelineMetrics(registry, new JTokkitTokenCountEstimator());
+        CloudWatchAsyncClient cloudWatch = cloudWatch();
+        AwsReadCache noCache = new AwsReadCache(registry, false, Duration.ZERO, Duration.ZERO, Duration.ZERO, Duration.ZERO, 0);
+        uncached = new CloudWatchMetricsQuery(cloudWatch, pipelineMetrics, noCache, 60, 500);
+        cached = new CloudWatchMetricsQuery(cloudWatch, pipelineMetrics, OfflineStubs.awsReadCache(registry), 60, 500);
+    }
+
+    @Benchmark
+    public int onePerSeries() {
+        int points = 0;
+        for (String id : instanceIds) {
+            for (CloudWatchMetricsQuery.Ec2Metric metric : ALL_METRICS) {
+                points += uncached.query(List.of(id), Set.of(metric), WINDOW).join().series().getFirst().values().length;
+            }
+        }
+        return points;
+    }
+
+    @Benchmark
+    public int batched() {
+        return uncached.query(instanceIds, ALL_METRICS, WINDOW).join().series().size();
+    }
+
+    @Benchmark
+    public int batchedCached() {
+        return cached.query(instanceIds, ALL_METRICS, WINDOW).join().series().size();
+    }
+
+    /**
+     * Answers every query with one datapoint per period, spreading the datapoints over pages of at
+     * most {@link #PAGE_DATAPOINTS} the way CloudWatch does.
+     */
+    private static CloudWatchAsyncClient cloudWatch() {
+        Executor delayed = CompletableFuture.delayedExecutor(API_LATENCY.toNanos(), TimeUnit.NANOSECONDS);
+        return new CloudWatchAsyncClient() {
+            @Override
+            public CompletableFuture<GetMetricDataResponse> getMetricData(GetMetricDataRequest request) {
+                long from = request.nextToken() == null ? 0 : Long.parseLong(request.nextToken());
+                long offset = 0;
+                List<MetricDataResult> results = new ArrayList<>();
+                for (MetricDataQuery query : request.metricDataQueries()) {
+                    int period = query.metricStat().period();
+                    List<Instant> timestamps = new ArrayList<>();
+                    List<Double> values = new ArrayList<>();
+                    for (Instant t = request.startTime(); t.isBefore(request.endTime()); t = t.plusSeconds(period), offset++) {
+                        if (offset >= from && offset < from + PAGE_DATAPOINTS) {
+                            timestamps.add(t);
+                            values.add((double) (offset % 100));
+                        }
+                    }
+                    if (!timestamps.isEmpty()) {
+                        results.add(MetricDataResult.builder().id(query.id()).timestamps(timestamps).values(values).build());
+                    }
+                }
+                String next = offset > from + PAGE_DATAPOINTS ? Long.toString(from + PAGE_DATAPOINTS) : null;
+                return CompletableFuture.supplyAsync(() -> GetMetricDataResponse.builder()
+                        .metricDataResults(results)
+                        .nextToken(next)
+                        .build(), delayed);
+            }
+
+            @Override
+            public String serviceName() {
+                return "monitoring";
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import dev.pearch001.devopsgpt.model.CommandResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code generateCommand} for a repeated task with a chat model that answers instantly, so only
+ * this application's work is measured: uncached (prompt rendering and JSON conversion), a memory
+ * hit, and a disk hit as after a restart. {@link #schemaPerCall} is the JSON schema generation
+ * every call used to pay before the converter was shared.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandCacheBenchmark {
+
+    private static final String TASK = "Please restart the deployment api in namespace prod.";
+    private static final String REPLY = """
+            {"command": "kubectl rollout restart deployment/api -n prod",
+             "explanation": "Triggers a rolling restart of every pod in the api deployment."}""";
+
+    private Path directory;
+    private CommandService uncached;
+    private CommandService memoryTier;
+    private CommandService diskTier;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("command-cache");
+        SimpleMeterRegistry registry = OfflineStubs.meterRegistry();
+        ChatClient chatClient = ChatClient.create(chatModel());
+        uncached = OfflineStubs.commandService(chatClient, new CommandCache(registry, false, 0, "", 0, Duration.ofDays(7)), registry);
+        memoryTier = OfflineStubs.commandService(chatClient, OfflineStubs.commandCache(registry), registry);
+        // No memory tier, so every lookup reads the file written by the first call.
+        CommandCache diskCache = new CommandCache(registry, true, 0, directory.toString(), 10_000, Duration.ofDays(7));
+        diskCache.open();
+        diskTier = OfflineStubs.commandService(chatClient, diskCache, registry);
+        memoryTier.generateCommand(TASK);
+        diskTier.generateCommand(TASK);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public CommandResponse uncached() {
+        return uncached.generateCommand(TASK);
+    }
+
+    @Benchmark
+    public CommandResponse memoryHit() {
+        return memoryTier.generateCommand(TASK);
+    }
+
+    @Benchmark
+    public CommandResponse diskHit() {
+        return diskTier.generateCommand(TASK);
+    }
+
+    @Benchmark
+    public String schemaPerCall() {
+        return new BeanOutputConverter<>(CommandResponse.class).getFormat();
+    }
+
+    private static ChatModel chatModel() {
+        return new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                return new ChatResponse(List.of(new Generation(new AssistantMessage(REPLY))));
+            }
+        };
+    }
+}
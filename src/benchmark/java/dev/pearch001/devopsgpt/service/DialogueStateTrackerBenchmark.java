@@ -0,0 +1,63 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import dev.pearch001.devopsgpt.model.DialogueState;
+import dev.pearch001.devopsgpt.persistence.SessionLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DialogueStateTracker#trackState} over a rotating set of sessions and a mix of tool-style
+ * and general messages, with the session log disabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DialogueStateTrackerBenchmark {
+
+    private static final int SESSIONS = 1024;
+
+    private static final String[] INPUTS = {
+            "Please start the EC2 instance i-0123456789abcdef0",
+            "what is a kubernetes pod?",
+            "How do I tail the logs of a crashing container?",
+            "show me the cpu utilization of instance i-0abcdef1234567890",
+            "can you list all my s3 buckets",
+            "our deployment keeps failing readiness probes after the last release, what should I check?"};
+
+    private DialogueStateTracker tracker;
+    private String[] sessionIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SessionLog sessionLog = new SessionLog(OfflineStubs.meterRegistry(), false, "target/benchmark-session-log",
+                DataSize.ofMegabytes(64), false, 1024, 64, 4, 200);
+        tracker = new DialogueStateTracker(sessionLog);
+        sessionIds = new String[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            sessionIds[i] = "session-" + i;
+        }
+    }
+
+    @Benchmark
+    public DialogueState trackState() {
+        next++;
+        return tracker.trackState(sessionIds[next % SESSIONS], INPUTS[next % INPUTS.length]);
+    }
+}
@@ -0,0 +1,63 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.markdown.MarkdownDocumentReader;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.core.io.Resource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chunking of the bundled documents with the ingestion splitter settings: splitting already-read
+ * documents, and reading plus splitting as a reader thread in {@code VectorStoreIngestor} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentChunkingBenchmark {
+
+    private TokenTextSplitter splitter;
+    private List<Resource> resources;
+    private List<Document> documents;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        splitter = OfflineStubs.splitter();
+        resources = OfflineStubs.bundledDocuments();
+        documents = new ArrayList<>();
+        for (Resource resource : resources) {
+            documents.addAll(new MarkdownDocumentReader(resource, OfflineStubs.markdownConfig()).get());
+        }
+    }
+
+    @Benchmark
+    public List<Document> split() {
+        return splitter.apply(documents);
+    }
+
+    @Benchmark
+    public List<Document> readAndSplit() {
+        List<Document> chunks = new ArrayList<>();
+        for (Resource resource : resources) {
+            chunks.addAll(splitter.apply(new MarkdownDocumentReader(resource, OfflineStubs.markdownConfig()).get()));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,127 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import software.amazon.awssdk.services.ec2.Ec2AsyncClient;
+import software.amazon.awssdk.services.ec2.model.DescribeInstancesRequest;
+import software.amazon.awssdk.services.ec2.model.DescribeInstancesResponse;
+import software.amazon.awssdk.services.ec2.model.Filter;
+import software.amazon.awssdk.services.ec2.model.Instance;
+import software.amazon.awssdk.services.ec2.model.InstanceStateName;
+import software.amazon.awssdk.services.ec2.model.Reservation;
+import software.amazon.awssdk.services.ec2.model.StopInstancesRequest;
+import software.amazon.awssdk.services.ec2.model.StopInstancesResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stopping a fleet of {@link #instances} instances against an EC2 stub that takes
+ * {@link #API_LATENCY} per call: one StopInstances per instance, as when every instance was its own
+ * chat message, against one batched fleet action with explicit IDs or with a tag selector.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Ec2FleetBenchmark {
+
+    private static final Duration API_LATENCY = Duration.ofMillis(20);
+    private static final int DESCRIBE_PAGE_SIZE = 100;
+
+    @Param({"40", "400"})
+    public int instances;
+
+    private AwsToolExecutor executor;
+    private List<String> instanceIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        instanceIds = new ArrayList<>();
+        for (int i = 0; i < instances; i++) {
+            instanceIds.add(String.format("i-%017x", i));
+        }
+        SimpleMeterRegistry registry = OfflineStubs.meterRegistry();
+        executor = OfflineStubs.awsToolExecutor(fleet(instanceIds), OfflineStubs.s3Client(), OfflineStubs.cloudWatchClient(),
+                new PipelineMetrics(registry, new JTokkitTokenCountEstimator()), OfflineStubs.awsReadCache(registry));
+    }
+
+    @Benchmark
+    public int onePerInstance() {
+        int replies = 0;
+        for (String id : instanceIds) {
+            replies += executor.stopEc2InstanceAsync(id).join().length();
+        }
+        return replies;
+    }
+
+    @Benchmark
+    public String batchedIds() {
+        return executor.stopEc2InstancesAsync(instanceIds, null).join();
+    }
+
+    @Benchmark
+    public String batchedTagSelector() {
+        return executor.stopEc2InstancesAsync(List.of(), "env=staging").join();
+    }
+
+    /**
+     * Every instance is running and tagged {@code env=staging}; DescribeInstances pages through
+     * them {@link #DESCRIBE_PAGE_SIZE} at a time regardless of the requested page size.
+     */
+    private static Ec2AsyncClient fleet(List<String> instanceIds) {
+        Executor delayed = CompletableFuture.delayedExecutor(API_LATENCY.toNanos(), TimeUnit.NANOSECONDS);
+        return new Ec2AsyncClient() {
+            @Override
+            public CompletableFuture<StopInstancesResponse> stopInstances(StopInstancesRequest request) {
+                return CompletableFuture.supplyAsync(() -> StopInstancesResponse.builder()
+                        .stoppingInstances(OfflineStubs.stateChanges(request.instanceIds(), InstanceStateName.RUNNING, InstanceStateName.STOPPING))
+                        .build(), delayed);
+            }
+
+            @Override
+            public CompletableFuture<DescribeInstancesResponse> describeInstances(DescribeInstancesRequest request) {
+                boolean staging = request.filters().stream().map(Filter::name).anyMatch("tag:env"::equals)
+                        && request.filters().stream().anyMatch(f -> f.values().contains("staging"));
+                List<String> matching = staging ? instanceIds : List.of();
+                int from = request.nextToken() == null ? 0 : Integer.parseInt(request.nextToken());
+                int to = Math.min(matching.size(), from + DESCRIBE_PAGE_SIZE);
+                List<Instance> page = matching.subList(from, to).stream()
+                        .map(id -> Instance.builder().instanceId(id).build())
+                        .toList();
+                return CompletableFuture.supplyAsync(() -> DescribeInstancesResponse.builder()
+                        .reservations(Reservation.builder().instances(page).build())
+                        .nextToken(to < matching.size() ? Integer.toString(to) : null)
+                        .build(), delayed);
+            }
+
+            @Override
+            public String serviceName() {
+                return "ec2";
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,54 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What admission control adds to every LLM call when the limits are not reached, from four request
+ * threads sharing one dispatcher.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LlmDispatcherBenchmark {
+
+    private LlmDispatcher dispatcher;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dispatcher = OfflineStubs.llmDispatcher(OfflineStubs.meterRegistry());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Benchmark
+    public String direct() {
+        return OfflineStubs.CANNED_REPLY;
+    }
+
+    @Benchmark
+    public String dispatched() {
+        return dispatcher.call(LlmDispatcher.Priority.INTERACTIVE, 1_000, () -> OfflineStubs.CANNED_REPLY, reply -> 1_200);
+    }
+}
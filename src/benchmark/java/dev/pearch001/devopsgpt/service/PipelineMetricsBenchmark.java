@@ -0,0 +1,51 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.model.DialogueState;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording one pipeline stage into a Prometheus registry (with percentile histograms),
+ * which is paid several times per chat request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineMetricsBenchmark {
+
+    private PipelineMetrics metrics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        metrics = new PipelineMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT), new JTokkitTokenCountEstimator());
+    }
+
+    @Benchmark
+    public void recordStage() {
+        metrics.recordStage(PipelineMetrics.Stage.RETRIEVAL, DialogueState.Intent.GENERAL_QUERY, System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordStageContended() {
+        metrics.recordStage(PipelineMetrics.Stage.RETRIEVAL, DialogueState.Intent.GENERAL_QUERY, System.nanoTime());
+    }
+}
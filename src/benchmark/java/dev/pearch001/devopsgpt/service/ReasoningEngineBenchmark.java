@@ -0,0 +1,92 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import dev.pearch001.devopsgpt.model.DialogueState;
+import dev.pearch001.devopsgpt.model.EnhancedChatResponse;
+import dev.pearch001.devopsgpt.retrieval.ContextBudgeter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The RAG branch of {@link ReasoningEngine#reason}: budgeting, document joining, prompt assembly
+ * and source extraction, with a canned chat model so only local work is measured. The joining and
+ * source extraction steps are also measured on their own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReasoningEngineBenchmark {
+
+    private static final String QUESTION = "How can I see which pods are running and on which nodes?";
+
+    private ReasoningEngine engine;
+    private DialogueState state;
+    private List<Document> context;
+    private List<Message> history;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ChatModel chatModel = OfflineStubs.chatModel();
+        JTokkitTokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+        PipelineMetrics pipelineMetrics = new PipelineMetrics(OfflineStubs.meterRegistry(), tokenCountEstimator);
+        AwsToolExecutor awsToolExecutor = OfflineStubs.awsToolExecutor(OfflineStubs.ec2Client(), OfflineStubs.s3Client(), OfflineStubs.cloudWatchClient(), pipelineMetrics,
+                OfflineStubs.awsReadCache(OfflineStubs.meterRegistry()));
+        ContextBudgeter budgeter = new ContextBudgeter(tokenCountEstimator, OfflineStubs.meterRegistry(), 3000, 0.6, 0.8, 0.3);
+        ChatClient chatClient = ChatClient.create(chatModel);
+        SimpleMeterRegistry registry = OfflineStubs.meterRegistry();
+        engine = new ReasoningEngine(OfflineStubs.commandService(chatClient, OfflineStubs.commandCache(registry), registry), chatClient,
+                awsToolExecutor, budgeter, pipelineMetrics, OfflineStubs.llmDispatcher(registry));
+
+        state = new DialogueState();
+        state.setCurrentIntent(DialogueState.Intent.GENERAL_QUERY);
+
+        context = new ArrayList<>();
+        for (List<Document> chunks : OfflineStubs.bundledChunks().values()) {
+            context.add(chunks.getFirst());
+            if (context.size() == 3) {
+                break;
+            }
+        }
+        history = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            history.add(new UserMessage("What does the kubectl describe command show for pod " + i + "?"));
+            history.add(new AssistantMessage(OfflineStubs.CANNED_REPLY));
+        }
+    }
+
+    @Benchmark
+    public EnhancedChatResponse ragQuery() {
+        return engine.reason(state, QUESTION, context, history);
+    }
+
+    @Benchmark
+    public void joinDocumentsAndExtractSources(Blackhole blackhole) {
+        blackhole.consume(ReasoningEngine.joinDocuments(context));
+        blackhole.consume(ReasoningEngine.extractSources(context));
+    }
+}
@@ -0,0 +1,84 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import dev.pearch001.devopsgpt.persistence.SessionLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SessionManager} under contention: two writer threads append messages while six reader
+ * threads load prompt history. With one session every thread contends on the same lock; with many,
+ * contention is spread out and the cost is dominated by token counting and window maintenance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionManagerBenchmark {
+
+    private static final UserMessage MESSAGE = new UserMessage(
+            "The deployment rolled out but two of the pods are stuck in CrashLoopBackOff; how do I find out why?");
+
+    @Param({"1", "1000"})
+    public int sessions;
+
+    private SessionManager sessionManager;
+    private String[] sessionIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SessionLog sessionLog = new SessionLog(OfflineStubs.meterRegistry(), false, "target/benchmark-session-log",
+                DataSize.ofMegabytes(64), false, 1024, 64, 4, 200);
+        sessionManager = new SessionManager(new JTokkitTokenCountEstimator(), sessionLog,
+                new DialogueStateTracker(sessionLog), OfflineStubs.meterRegistry(),
+                2000, 400, 10_000, 20_000_000, Duration.ofMinutes(30), 1024, DataSize.ofKilobytes(4));
+        sessionIds = new String[sessions];
+        for (int i = 0; i < sessions; i++) {
+            sessionIds[i] = "session-" + i;
+            for (int j = 0; j < 20; j++) {
+                sessionManager.addMessage(sessionIds[i], MESSAGE);
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void addMessage() {
+        sessionManager.addMessage(randomSession(), MESSAGE);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public List<Message> getHistory() {
+        return sessionManager.getHistory(randomSession());
+    }
+
+    private String randomSession() {
+        return sessionIds[ThreadLocalRandom.current().nextInt(sessions)];
+    }
+}
@@ -0,0 +1,210 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import dev.pearch001.devopsgpt.persistence.SessionLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap held per session turn by {@link SessionManager}'s compact encoding vs. the previous layout,
+ * one Spring AI message per turn, and what decoding costs when a prompt is built. Setup replays the
+ * same 10,000 five-exchange conversations into both and prints retained heap per turn next to the
+ * average UTF-8 text size. A third of the conversations open with a common question answered from
+ * the semantic cache, and half of the answers contain an em dash or curly quotes, as LLM output
+ * often does, which makes the JDK store the whole string at two bytes per character.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SessionMemoryBenchmark {
+
+    private static final int SESSIONS = 10_000;
+    private static final int EXCHANGES = 5;
+
+    private static final String[] WORDS = ("deployment rollout replica pod node cluster namespace service ingress "
+            + "container image registry volume secret config rollback pipeline stage artifact terraform plan apply "
+            + "state backend bucket instance metric alarm threshold latency timeout retry health probe restart log "
+            + "the a to of and when then check verify run restart drain cordon scale upgrade failover escalate").split(" ");
+
+    private static final List<String> COMMON_QUESTIONS = List.of(
+            "What is the difference between a Deployment and a StatefulSet?",
+            "How do I roll back a deployment in Kubernetes?",
+            "Explain blue-green deployments",
+            "What is a Kubernetes readiness probe?",
+            "How does Terraform state locking work?",
+            "Explain Docker layer caching",
+            "What is a good branching strategy for CI/CD pipelines?",
+            "How do I copy files to an S3 bucket?",
+            "What storage classes does S3 offer?",
+            "How do I list the pods running in my cluster?");
+
+    /**
+     * The previous layout: the message itself plus its token count.
+     */
+    private record MessageTurn(Message message, int tokens) {
+    }
+
+    private final Map<String, Deque<MessageTurn>> messageLayout = new ConcurrentHashMap<>();
+    private SessionManager sessionManager;
+    private String[] sessionIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+        sessionIds = new String[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            sessionIds[i] = "session-" + i;
+        }
+        SessionLog sessionLog = new SessionLog(OfflineStubs.meterRegistry(), false, "target/benchmark-session-log",
+                DataSize.ofMegabytes(64), false, 1024, 64, 4, 200);
+        // A window large enough that no turn is summarized, so both layouts hold every turn.
+        sessionManager = new SessionManager(tokenCountEstimator, sessionLog, new DialogueStateTracker(sessionLog),
+                OfflineStubs.meterRegistry(),
+                1_000_000, 400, SESSIONS, Long.MAX_VALUE, Duration.ofHours(1), 1024, DataSize.ofKilobytes(4));
+
+        // Each layout gets its own copy of the conversations, generated from the same seed and
+        // dropped once stored, so all it retains is counted.
+        long before = usedHeap();
+        List<List<Message>> conversations = conversations();
+        for (int i = 0; i < SESSIONS; i++) {
+            Deque<MessageTurn> window = messageLayout.computeIfAbsent(sessionIds[i], k -> new ArrayDeque<>());
+            for (Message message : conversations.get(i)) {
+                window.addLast(new MessageTurn(message, tokenCountEstimator.estimate(message.getText())));
+            }
+        }
+        long turns = 0;
+        long textBytes = 0;
+        for (List<Message> conversation : conversations) {
+            for (Message message : conversation) {
+                turns++;
+                textBytes += message.getText().getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        conversations = null;
+        long messageBytes = usedHeap() - before;
+
+        before = usedHeap();
+        conversations = conversations();
+        for (int i = 0; i < SESSIONS; i++) {
+            for (Message message : conversations.get(i)) {
+                sessionManager.addMessage(sessionIds[i], message);
+            }
+        }
+        conversations = null;
+        long compactBytes = usedHeap() - before;
+
+        System.out.printf("%n%d turns, %.0f bytes of UTF-8 text per turn%n", turns, (double) textBytes / turns);
+        System.out.printf("messages: %.0f bytes per turn%n", (double) messageBytes / turns);
+        System.out.printf("compact : %.0f bytes per turn%n", (double) compactBytes / turns);
+    }
+
+    @Benchmark
+    public List<Message> historyFromMessages() {
+        next = (next + 1) % SESSIONS;
+        Deque<MessageTurn> window = messageLayout.get(sessionIds[next]);
+        List<Message> history = new ArrayList<>(window.size());
+        for (MessageTurn turn : window) {
+            history.add(turn.message());
+        }
+        return history;
+    }
+
+    @Benchmark
+    public List<Message> historyFromCompact() {
+        next = (next + 1) % SESSIONS;
+        return sessionManager.getHistory(sessionIds[next]);
+    }
+
+    /**
+     * The same conversations on every call. Cached answers are the same string instance, as the
+     * semantic cache hands them out.
+     */
+    private static List<List<Message>> conversations() {
+        Random random = new Random(7);
+        List<String> cachedAnswers = new ArrayList<>();
+        for (int i = 0; i < COMMON_QUESTIONS.size(); i++) {
+            cachedAnswers.add(answer(random));
+        }
+        List<List<Message>> conversations = new ArrayList<>(SESSIONS);
+        for (int s = 0; s < SESSIONS; s++) {
+            List<Message> conversation = new ArrayList<>(2 * EXCHANGES);
+            for (int e = 0; e < EXCHANGES; e++) {
+                if (e == 0 && s % 3 == 0) {
+                    int common = random.nextInt(COMMON_QUESTIONS.size());
+                    conversation.add(new UserMessage(COMMON_QUESTIONS.get(common)));
+                    conversation.add(new AssistantMessage(cachedAnswers.get(common)));
+                } else {
+                    conversation.add(new UserMessage("How do I " + words(random, 6 + random.nextInt(14))
+                            + " for app-" + random.nextInt(500) + " in production?"));
+                    conversation.add(new AssistantMessage(answer(random)));
+                }
+            }
+            conversations.add(conversation);
+        }
+        return conversations;
+    }
+
+    private static String answer(Random random) {
+        StringBuilder answer = new StringBuilder();
+        boolean typographic = random.nextBoolean();
+        int sentences = 8 + random.nextInt(16);
+        for (int i = 0; i < sentences; i++) {
+            String sentence = words(random, 8 + random.nextInt(10));
+            answer.append(Character.toUpperCase(sentence.charAt(0))).append(sentence, 1, sentence.length());
+            if (typographic && i % 5 == 2) {
+                answer.append(" — run “kubectl rollout status” first");
+            }
+            answer.append(". ");
+        }
+        return answer.toString().strip();
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                words.append(' ');
+            }
+            words.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return words.toString();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
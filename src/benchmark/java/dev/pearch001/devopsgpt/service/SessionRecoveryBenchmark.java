@@ -0,0 +1,101 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import dev.pearch001.devopsgpt.persistence.SessionLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup recovery of {@code sessions} sessions of four messages each from the session log, with a
+ * session cap that either holds them all or forces most to be evicted. Each run rebuilds a fresh
+ * {@link SessionManager} from the same log, so it measures replay plus the trim to the cap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SessionRecoveryBenchmark {
+
+    private static final int MESSAGES_PER_SESSION = 4;
+
+    @Param({"100000"})
+    public int sessions;
+
+    @Param({"10000", "100000"})
+    public int maxSessions;
+
+    private Path directory;
+    private SessionLog sessionLog;
+    private SessionLogRecovery recovery;
+
+    @Setup(Level.Trial)
+    public void writeLog() throws Exception {
+        directory = Files.createTempDirectory("session-recovery");
+        SessionLog writer = newLog();
+        writer.open();
+        for (int i = 0; i < sessions; i++) {
+            String id = "session-" + i;
+            for (int j = 0; j < MESSAGES_PER_SESSION / 2; j++) {
+                writer.appendMessage(id, new UserMessage("Why is pod api-" + i + " in CrashLoopBackOff after the deploy?"));
+                writer.appendMessage(id, new AssistantMessage("Check kubectl logs api-" + i + " --previous; the last run exited with code 137."));
+            }
+        }
+        writer.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        sessionLog = newLog();
+        sessionLog.open();
+        DialogueStateTracker tracker = new DialogueStateTracker(sessionLog);
+        SessionManager sessionManager = new SessionManager(new JTokkitTokenCountEstimator(), sessionLog, tracker,
+                OfflineStubs.meterRegistry(), 2000, 400, maxSessions, Long.MAX_VALUE, Duration.ofMinutes(30), 1024,
+                DataSize.ofKilobytes(4));
+        recovery = new SessionLogRecovery(sessionLog, sessionManager, tracker);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws InterruptedException {
+        sessionLog.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLog() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void recover() throws IOException {
+        recovery.recover();
+    }
+
+    private SessionLog newLog() {
+        // Queue large enough that writing the log never drops an event
+        return new SessionLog(OfflineStubs.meterRegistry(), true, directory.toString(), DataSize.ofMegabytes(64), false,
+                sessions * MESSAGES_PER_SESSION, 1024, Integer.MAX_VALUE, 200);
+    }
+}
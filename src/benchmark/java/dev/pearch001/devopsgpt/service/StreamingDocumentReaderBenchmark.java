@@ -0,0 +1,205 @@
+package dev.pearch001.devopsgpt.service;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import dev.pearch001.devopsgpt.benchmark.OfflineStubs;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Chunking one large document the old way, {@code TikaDocumentReader} followed by the splitter, vs.
+ * with {@link StreamingDocumentReader}, for a generated 300-page PDF and a generated HTML export of
+ * about 10 MB (times {@code scale}). Setup prints each file's size, chunk count, bytes allocated and peak live heap for
+ * both readers, where the peak is the highest heap use left after any garbage collection during
+ * the read; the small young generation set below makes collections frequent enough to see it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g", "-Xmn16m"})
+public class StreamingDocumentReaderBenchmark {
+
+    private static final String[] WORDS = ("deployment rollout replica pod node cluster namespace service ingress "
+            + "container image registry volume secret config rollback pipeline stage artifact terraform plan apply "
+            + "state backend bucket instance metric alarm threshold latency timeout retry health probe restart log "
+            + "the a to of and when then check verify run restart drain cordon scale upgrade failover escalate").split(" ");
+
+    @Param({"pdf", "html"})
+    private String format;
+
+    // Multiplies the document size, e.g. -p scale=4 to check that streaming stays flat
+    @Param({"1"})
+    private int scale;
+
+    private Path directory;
+    private Resource resource;
+    private TokenTextSplitter splitter;
+    private StreamingDocumentReader reader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("streaming-ingestion");
+        Path file = format.equals("pdf")
+                ? writePdf(directory.resolve("runbook.pdf"), 300 * scale)
+                : writeHtml(directory.resolve("runbook.html"), 10_000_000L * scale);
+        resource = new FileSystemResource(file);
+        splitter = OfflineStubs.splitter();
+        reader = new StreamingDocumentReader(splitter, 32_000, 64L << 20, Map.of("source", "devops-doc"));
+
+        System.out.printf("%n%s: %.1f MB%n", file.getFileName(), Files.size(file) / 1e6);
+        report("whole document", this::wholeDocument);
+        report("streaming", this::streaming);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public int wholeDocument() {
+        List<Document> chunks = splitter.apply(new TikaDocumentReader(resource).get());
+        return chunks.size();
+    }
+
+    @Benchmark
+    public int streaming() throws Exception {
+        int[] chunks = new int[1];
+        reader.read(resource, chunk -> chunks[0]++);
+        return chunks[0];
+    }
+
+    private static void report(String name, Callable<Integer> read) throws Exception {
+        read.call();
+        System.gc();
+        long baseline = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        AtomicLong peak = new AtomicLong(baseline);
+        NotificationListener listener = (notification, handback) -> {
+            if (notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                long used = info.getGcInfo().getMemoryUsageAfterGc().values().stream().mapToLong(MemoryUsage::getUsed).sum();
+                peak.accumulateAndGet(used, Math::max);
+            }
+        };
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        collectors.forEach(gc -> ((NotificationEmitter) gc).addNotificationListener(listener, null, null));
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        int chunks = read.call();
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        for (GarbageCollectorMXBean gc : collectors) {
+            ((NotificationEmitter) gc).removeNotificationListener(listener);
+        }
+        System.out.printf("%-15s: %d chunks in %d ms, %.0f MB allocated, peak live heap +%.1f MB%n",
+                name, chunks, elapsed / 1_000_000, allocated / 1e6, (peak.get() - baseline) / 1e6);
+    }
+
+    private static Path writePdf(Path file, int pages) throws IOException {
+        Random random = new Random(42);
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 9);
+                    content.setLeading(12);
+                    content.newLineAtOffset(50, 740);
+                    for (int line = 0; line < 58; line++) {
+                        content.showText(sentence(random, 14));
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+        return file;
+    }
+
+    private static Path writeHtml(Path file, long size) throws IOException {
+        Random random = new Random(42);
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("<!DOCTYPE html><html><head><title>Runbooks</title><style>p { margin: 0 }</style></head><body>\n");
+            for (int section = 1; Files.size(file) < size; section++) {
+                out.write("<section><h2>Runbook " + section + ": " + sentence(random, 4) + "</h2>\n");
+                for (int p = 0; p < 3; p++) {
+                    out.write("<p>" + sentence(random, 40) + " " + sentence(random, 30) + "</p>\n");
+                }
+                out.write("<ul>");
+                for (int li = 0; li < 4; li++) {
+                    out.write("<li>" + sentence(random, 10) + "</li>");
+                }
+                out.write("</ul>\n<pre>kubectl rollout undo deployment/app-" + section + " -n production</pre>\n");
+                out.write("<table><tr><th>Metric</th><th>Threshold</th></tr><tr><td>" + WORDS[random.nextInt(WORDS.length)]
+                        + "</td><td>" + random.nextInt(1000) + " ms</td></tr></table></section>\n");
+                if (section % 100 == 0) {
+                    out.flush();
+                }
+            }
+            out.write("</body></html>\n");
+        }
+        return file;
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.append('.').toString();
+    }
+}
@@ -0,0 +1,106 @@
+package dev.pearch001.devopsgpt.vectorstore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search latency of the HNSW index against an exhaustive scan over the same vectors, plus recall@10
+ * of the index (printed during setup). Vectors are drawn around a set of cluster centres to resemble
+ * the topical clustering of real document embeddings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HnswIndexBenchmark {
+
+    private static final int DIMENSION = 384;
+    private static final int CLUSTERS = 64;
+    private static final int QUERIES = 200;
+    private static final int K = 10;
+
+    @Param({"10000", "50000"})
+    public int size;
+
+    @Param({"64"})
+    public int efSearch;
+
+    private HnswIndex index;
+    private float[][] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(7);
+        float[][] centres = new float[CLUSTERS][];
+        for (int i = 0; i < CLUSTERS; i++) {
+            centres[i] = gaussian(random, null, 1);
+        }
+
+        index = new HnswIndex(new VectorStorage(DIMENSION, null), 16, 200);
+        for (int i = 0; i < size; i++) {
+            index.insert(EmbeddedVectorStore.normalize(gaussian(random, centres[random.nextInt(CLUSTERS)], 0.5f)));
+        }
+        queries = new float[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = EmbeddedVectorStore.normalize(gaussian(random, centres[random.nextInt(CLUSTERS)], 0.5f));
+        }
+
+        double recall = 0;
+        for (float[] query : queries) {
+            Set<Integer> expected = new HashSet<>();
+            index.bruteForce(query, K).forEach(c -> expected.add(c.node()));
+            long found = index.search(query, K, efSearch).stream().filter(c -> expected.contains(c.node())).count();
+            recall += (double) found / K;
+        }
+        System.out.printf("%nrecall@%d (size=%d, efSearch=%d): %.3f%n", K, size, efSearch, recall / QUERIES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Benchmark
+    public List<HnswIndex.Candidate> hnsw() {
+        return index.search(nextQuery(), K, efSearch);
+    }
+
+    @Benchmark
+    public List<HnswIndex.Candidate> bruteForce() {
+        return index.bruteForce(nextQuery(), K);
+    }
+
+    private float[] nextQuery() {
+        next = (next + 1) % QUERIES;
+        return queries[next];
+    }
+
+    private static float[] gaussian(Random random, float[] centre, float spread) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (centre == null ? 0 : centre[i]) + (float) random.nextGaussian() * spread;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,50 @@
+package dev.pearch001.devopsgpt.config;
+
+import dev.pearch001.devopsgpt.retrieval.ReusingEmbeddingModel;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class AiConfig {
+
+    /**
+     * Shared token counter. The JTokkit encoding tables are expensive to load, so build them once.
+     */
+    @Bean
+    public TokenCountEstimator tokenCountEstimator() {
+        return new JTokkitTokenCountEstimator();
+    }
+
+    /**
+     * One chat client for all services; calls go through {@link dev.pearch001.devopsgpt.service.LlmDispatcher}.
+     */
+    @Bean
+    public ChatClient chatClient(ChatClient.Builder chatClientBuilder) {
+        return chatClientBuilder.build();
+    }
+
+    /**
+     * Wraps the embedding model, whichever one is configured, so a question embedded for the
+     * semantic answer cache is not embedded again by the vector store search.
+     */
+    @Bean
+    public static BeanPostProcessor reusingEmbeddingModel(@Value("${devopsgpt.cache.query-embeddings.max-entries:256}") int maxEntries,
+                                                          @Value("${devopsgpt.cache.query-embeddings.ttl:30s}") Duration ttl) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof EmbeddingModel model && !(bean instanceof ReusingEmbeddingModel)
+                        ? new ReusingEmbeddingModel(model, maxEntries, ttl)
+                        : bean;
+            }
+        };
+    }
+}
@@ -3,35 +3,98 @@ package dev.pearch001.devopsgpt.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.core.retry.backoff.FullJitterBackoffStrategy;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
-import software.amazon.awssdk.services.ec2.Ec2Client;
-import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.ec2.Ec2AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 
+import java.time.Duration;
+
+/**
+ * Non-blocking AWS clients. All three share one Netty connection pool and one set of timeouts and
+ * retry settings, so a burst of tool requests is bounded by {@code max-concurrency} open
+ * connections in total rather than per client, and no request thread waits on a round trip.
+ */
 @Configuration
 public class AwsConfig {
 
     @Value("${aws.region}")
     private String region;
 
+    @Bean(destroyMethod = "close")
+    public SdkAsyncHttpClient awsHttpClient(
+            @Value("${devopsgpt.aws.http.max-concurrency:200}") int maxConcurrency,
+            @Value("${devopsgpt.aws.http.max-pending-acquires:10000}") int maxPendingAcquires,
+            @Value("${devopsgpt.aws.http.connection-timeout:2s}") Duration connectionTimeout,
+            @Value("${devopsgpt.aws.http.acquisition-timeout:10s}") Duration acquisitionTimeout,
+            @Value("${devopsgpt.aws.http.read-timeout:30s}") Duration readTimeout,
+            @Value("${devopsgpt.aws.http.connection-max-idle-time:60s}") Duration connectionMaxIdleTime) {
+        return NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(maxConcurrency)
+                .maxPendingConnectionAcquires(maxPendingAcquires)
+                .connectionTimeout(connectionTimeout)
+                .connectionAcquisitionTimeout(acquisitionTimeout)
+                .readTimeout(readTimeout)
+                .writeTimeout(readTimeout)
+                .connectionMaxIdleTime(connectionMaxIdleTime)
+                .tcpKeepAlive(true)
+                .build();
+    }
+
+    @Bean
+    public ClientOverrideConfiguration awsClientOverrides(
+            @Value("${devopsgpt.aws.api-call-timeout:30s}") Duration apiCallTimeout,
+            @Value("${devopsgpt.aws.api-call-attempt-timeout:10s}") Duration apiCallAttemptTimeout,
+            @Value("${devopsgpt.aws.retry.max-retries:3}") int maxRetries,
+            @Value("${devopsgpt.aws.retry.base-delay:100ms}") Duration baseDelay,
+            @Value("${devopsgpt.aws.retry.throttling-base-delay:500ms}") Duration throttlingBaseDelay,
+            @Value("${devopsgpt.aws.retry.max-backoff:20s}") Duration maxBackoff) {
+        return ClientOverrideConfiguration.builder()
+                .apiCallTimeout(apiCallTimeout)
+                .apiCallAttemptTimeout(apiCallAttemptTimeout)
+                .retryPolicy(RetryPolicy.builder()
+                        .numRetries(maxRetries)
+                        .backoffStrategy(FullJitterBackoffStrategy.builder()
+                                .baseDelay(baseDelay)
+                                .maxBackoffTime(maxBackoff)
+                                .build())
+                        .throttlingBackoffStrategy(FullJitterBackoffStrategy.builder()
+                                .baseDelay(throttlingBaseDelay)
+                                .maxBackoffTime(maxBackoff)
+                                .build())
+                        .build())
+                .build();
+    }
+
     @Bean
-    public S3Client s3Client() {
-        return S3Client.builder()
+    public S3AsyncClient s3Client(SdkAsyncHttpClient awsHttpClient, ClientOverrideConfiguration awsClientOverrides) {
+        return S3AsyncClient.builder()
                 .region(Region.of(region))
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(awsClientOverrides)
                 .build();
     }
 
     @Bean
-    public Ec2Client ec2Client() {
-        return Ec2Client.builder()
+    public Ec2AsyncClient ec2Client(SdkAsyncHttpClient awsHttpClient, ClientOverrideConfiguration awsClientOverrides) {
+        return Ec2AsyncClient.builder()
                 .region(Region.of(region))
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(awsClientOverrides)
                 .build();
     }
 
     @Bean
-    public CloudWatchClient cloudWatchClient() {
-        return CloudWatchClient.builder()
+    public CloudWatchAsyncClient cloudWatchClient(SdkAsyncHttpClient awsHttpClient, ClientOverrideConfiguration awsClientOverrides) {
+        return CloudWatchAsyncClient.builder()
                 .region(Region.of(region))
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(awsClientOverrides)
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package dev.pearch001.devopsgpt.config;
+
+import dev.pearch001.devopsgpt.vectorstore.EmbeddedVectorStore;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Replaces the remote Chroma store with the in-process one when
+ * {@code devopsgpt.vectorstore.type=embedded}. The Chroma auto-configuration only backs off for
+ * another ChromaVectorStore, so it has to be excluded as well, as {@code application-loadtest.yml} does.
+ */
+@Configuration
+@ConditionalOnProperty(name = "devopsgpt.vectorstore.type", havingValue = "embedded")
+public class VectorStoreConfig {
+
+    @Bean
+    public EmbeddedVectorStore vectorStore(EmbeddingModel embeddingModel,
+                                           @Value("${devopsgpt.vectorstore.embedded.directory:data/vector-index}") String directory,
+                                           @Value("${devopsgpt.vectorstore.embedded.m:16}") int m,
+                                           @Value("${devopsgpt.vectorstore.embedded.ef-construction:200}") int efConstruction,
+                                           @Value("${devopsgpt.vectorstore.embedded.ef-search:64}") int efSearch) throws IOException {
+        return new EmbeddedVectorStore(embeddingModel, directory.isBlank() ? null : Paths.get(directory), m, efConstruction, efSearch);
+    }
+}
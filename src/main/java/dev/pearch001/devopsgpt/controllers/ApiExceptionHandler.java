@@ -0,0 +1,28 @@
+package dev.pearch001.devopsgpt.controllers;
+
+import dev.pearch001.devopsgpt.service.LlmOverloadedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+/**
+ * Maps service-level errors that clients can act on to HTTP responses.
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    /**
+     * The LLM is saturated: answer 429 with the time after which a retry is likely to be admitted.
+     */
+    @ExceptionHandler(LlmOverloadedException.class)
+    public ResponseEntity<Map<String, String>> llmOverloaded(LlmOverloadedException e) {
+        long retryAfterSeconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .body(Map.of("error", e.getMessage()));
+    }
+}
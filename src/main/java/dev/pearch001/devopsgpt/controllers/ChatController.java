@@ -6,8 +6,11 @@ import dev.pearch001.devopsgpt.model.ChatRequest;
 import dev.pearch001.devopsgpt.model.ChatResponse;
 import dev.pearch001.devopsgpt.model.EnhancedChatResponse;
 import dev.pearch001.devopsgpt.service.ChatService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import javax.validation.Valid;
 
@@ -58,4 +61,16 @@ public class ChatController {
         );
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Streaming variant of the advanced chat endpoint. Emits a "sources" event, then one "token"
+     * event per chunk of the reply, then a final "done" event.
+     */
+    @PostMapping(value = "/chat/advanced/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> advancedChatStream(@Valid @RequestBody ChatRequest chatRequest) {
+        return chatService.streamAdvancedReply(
+                chatRequest.sessionId(),
+                chatRequest.message()
+        );
+    }
 }
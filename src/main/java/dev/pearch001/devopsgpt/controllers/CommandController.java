@@ -2,6 +2,7 @@ package dev.pearch001.devopsgpt.controllers;
 
 import dev.pearch001.devopsgpt.model.CommandRequest;
 import dev.pearch001.devopsgpt.model.CommandResponse;
+import dev.pearch001.devopsgpt.persistence.ArchivedScript;
 import dev.pearch001.devopsgpt.service.CommandService;
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
@@ -46,4 +47,17 @@ public class CommandController {
         String simulationResult = commandService.simulateExecution(command);
         return ResponseEntity.ok(simulationResult);
     }
+
+    /**
+     * Endpoint to look up a script archived by a simulation.
+     *
+     * @param scriptId The script ID reported in the simulation output.
+     * @return The archived script, or 404 if it is unknown or has expired.
+     */
+    @GetMapping("/scripts/{scriptId}")
+    public ResponseEntity<ArchivedScript> getScript(@PathVariable String scriptId) {
+        return commandService.findScript(scriptId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
 }
@@ -0,0 +1,28 @@
+package dev.pearch001.devopsgpt.controllers;
+
+import dev.pearch001.devopsgpt.model.IngestionStatus;
+import dev.pearch001.devopsgpt.service.VectorStoreIngestor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/ingestion")
+public class IngestionController {
+
+    private final VectorStoreIngestor vectorStoreIngestor;
+
+    public IngestionController(VectorStoreIngestor vectorStoreIngestor) {
+        this.vectorStoreIngestor = vectorStoreIngestor;
+    }
+
+    /**
+     * Reports the progress of the background document ingestion.
+     * The application serves traffic while this is still running; answers may lack recent documents until it completes.
+     */
+    @GetMapping("/status")
+    public ResponseEntity<IngestionStatus> status() {
+        return ResponseEntity.ok(vectorStoreIngestor.getStatus());
+    }
+}
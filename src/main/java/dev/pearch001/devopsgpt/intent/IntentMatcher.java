@@ -0,0 +1,362 @@
+package dev.pearch001.devopsgpt.intent;
+
+import dev.pearch001.devopsgpt.model.DialogueState;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * An intent rule table compiled into an Aho-Corasick automaton, so classifying a message is a
+ * single pass over its characters no matter how many rules there are.
+ * <p>
+ * All rule keywords share one automaton with a complete transition table (failure links are folded
+ * in at build time), so each character costs one array lookup. Lowercasing happens per character
+ * and rule bookkeeping uses epoch-stamped per-thread arrays, so a call allocates nothing beyond the
+ * slot values it captures. EC2 instance IDs are recognized in the same pass with a small state
+ * machine equivalent to repeated {@code find()} of {@code i-[a-f0-9]{17}|i-[a-f0-9]{8}}; tag
+ * selectors ({@code env=staging}, {@code tag:team=web}) are only scanned for once a rule that
+ * captures them has matched.
+ * <p>
+ * Instances are immutable and safe to share between threads.
+ */
+public final class IntentMatcher {
+
+    private static final int LONG_INSTANCE_ID = 17;
+    private static final int SHORT_INSTANCE_ID = 8;
+
+    private final List<IntentRule> rules;
+    private final DialogueState.Intent fallback;
+
+    // Alphabet: class 0 is "no keyword contains this character" and always leads back to the root.
+    private final int[] asciiClasses = new int[128];
+    private final char[] otherChars;
+    private final int[] otherClasses;
+    private final int stride;
+    private final int[] transitions;
+    private final int[][] outputs;
+
+    private final int[] keywordLengths;
+    private final boolean[] keywordAnchored;
+    private final int[][] keywordGroups;
+    private final int[] groupRule;
+    private final int[] ruleGroupCounts;
+    private final ThreadLocal<Scratch> scratch;
+
+    public IntentMatcher(List<IntentRule> rules, DialogueState.Intent fallback) {
+        this.rules = List.copyOf(rules);
+        this.fallback = fallback;
+
+        Map<IntentRule.Keyword, Integer> keywordIds = new LinkedHashMap<>();
+        Map<Integer, List<Integer>> groupsByKeyword = new HashMap<>();
+        List<Integer> groupOwners = new ArrayList<>();
+        ruleGroupCounts = new int[this.rules.size()];
+        for (int r = 0; r < this.rules.size(); r++) {
+            IntentRule rule = this.rules.get(r);
+            ruleGroupCounts[r] = rule.groups().size();
+            for (List<IntentRule.Keyword> group : rule.groups()) {
+                int groupId = groupOwners.size();
+                groupOwners.add(r);
+                for (IntentRule.Keyword keyword : group) {
+                    int keywordId = keywordIds.computeIfAbsent(keyword, k -> keywordIds.size());
+                    groupsByKeyword.computeIfAbsent(keywordId, k -> new ArrayList<>()).add(groupId);
+                }
+            }
+        }
+        groupRule = groupOwners.stream().mapToInt(Integer::intValue).toArray();
+
+        List<IntentRule.Keyword> keywords = List.copyOf(keywordIds.keySet());
+        keywordLengths = new int[keywords.size()];
+        keywordAnchored = new boolean[keywords.size()];
+        keywordGroups = new int[keywords.size()][];
+        TreeSet<Character> alphabet = new TreeSet<>();
+        for (int k = 0; k < keywords.size(); k++) {
+            keywordLengths[k] = keywords.get(k).text().length();
+            keywordAnchored[k] = keywords.get(k).anchored();
+            keywordGroups[k] = groupsByKeyword.get(k).stream().mapToInt(Integer::intValue).toArray();
+            for (char c : keywords.get(k).text().toCharArray()) {
+                alphabet.add(c);
+            }
+        }
+
+        List<Character> others = new ArrayList<>();
+        int nextClass = 1;
+        for (char c : alphabet) {
+            if (c < 128) {
+                asciiClasses[c] = nextClass++;
+            } else {
+                others.add(c);
+            }
+        }
+        otherChars = new char[others.size()];
+        otherClasses = new int[others.size()];
+        for (int i = 0; i < others.size(); i++) {
+            otherChars[i] = others.get(i);
+            otherClasses[i] = nextClass++;
+        }
+        stride = nextClass;
+
+        // Build the trie, then complete it breadth first using the failure links.
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> own = new ArrayList<>();
+        trie.add(new int[stride]);
+        own.add(new ArrayList<>());
+        for (int k = 0; k < keywords.size(); k++) {
+            int state = 0;
+            for (char c : keywords.get(k).text().toCharArray()) {
+                int cls = classOf(c);
+                if (trie.get(state)[cls] == 0) {
+                    trie.get(state)[cls] = trie.size();
+                    trie.add(new int[stride]);
+                    own.add(new ArrayList<>());
+                }
+                state = trie.get(state)[cls];
+            }
+            own.get(state).add(k);
+        }
+
+        int states = trie.size();
+        transitions = new int[states * stride];
+        outputs = new int[states][];
+        int[] failure = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        outputs[0] = own.get(0).stream().mapToInt(Integer::intValue).toArray();
+        for (int cls = 1; cls < stride; cls++) {
+            int child = trie.get(0)[cls];
+            transitions[cls] = child;
+            if (child != 0) {
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] merged = own.get(state).stream().mapToInt(Integer::intValue).toArray();
+            int[] inherited = outputs[failure[state]];
+            if (inherited.length > 0) {
+                merged = Arrays.copyOf(merged, merged.length + inherited.length);
+                System.arraycopy(inherited, 0, merged, merged.length - inherited.length, inherited.length);
+            }
+            outputs[state] = merged;
+            for (int cls = 1; cls < stride; cls++) {
+                int child = trie.get(state)[cls];
+                if (child != 0) {
+                    failure[child] = transitions[failure[state] * stride + cls];
+                    transitions[state * stride + cls] = child;
+                    queue.add(child);
+                } else {
+                    transitions[state * stride + cls] = transitions[failure[state] * stride + cls];
+                }
+            }
+        }
+
+        int keywordCount = keywords.size();
+        int groupCount = groupRule.length;
+        int ruleCount = this.rules.size();
+        scratch = ThreadLocal.withInitial(() -> new Scratch(keywordCount, groupCount, ruleCount));
+    }
+
+    /**
+     * Classifies the input, setting the intent and any captured slots on the state. Target slots
+     * ({@code instanceId}, {@code instanceIds}, {@code tagSelector}) not captured by this input
+     * carry over only to a follow-up with the same intent, and never to a rule with
+     * {@link IntentRule#explicitTargets()}; other slots are left as they are.
+     *
+     * @return the intent that was set
+     */
+    public DialogueState.Intent apply(String input, DialogueState state) {
+        DialogueState.Intent previous = state.getCurrentIntent();
+        Scratch s = scratch.get();
+        int epoch = s.nextEpoch();
+        int best = Integer.MAX_VALUE;
+        int length = input.length();
+        int current = 0;
+
+        int idStart = -1;
+        int idHex = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            current = transitions[current * stride + classOfInput(c)];
+            for (int keyword : outputs[current]) {
+                if (s.keywordEpoch[keyword] == epoch || (keywordAnchored[keyword] && i + 1 != keywordLengths[keyword])) {
+                    continue;
+                }
+                s.keywordEpoch[keyword] = epoch;
+                for (int group : keywordGroups[keyword]) {
+                    if (s.groupEpoch[group] == epoch) {
+                        continue;
+                    }
+                    s.groupEpoch[group] = epoch;
+                    int rule = groupRule[group];
+                    if (s.ruleEpoch[rule] != epoch) {
+                        s.ruleEpoch[rule] = epoch;
+                        s.ruleHits[rule] = 0;
+                    }
+                    if (++s.ruleHits[rule] == ruleGroupCounts[rule] && rule < best) {
+                        best = rule;
+                    }
+                }
+            }
+
+            if (c == '-' && i > 0 && input.charAt(i - 1) == 'i') {
+                idStart = i - 1;
+                idHex = 0;
+            } else if (idStart >= 0 && isLowerHex(c)) {
+                if (++idHex == LONG_INSTANCE_ID) {
+                    s.addId(idStart);
+                    idStart = -1;
+                }
+            } else if (idStart >= 0) {
+                if (idHex >= SHORT_INSTANCE_ID) {
+                    s.addId(idStart);
+                    s.idLengths[s.idCount - 1] = 2 + SHORT_INSTANCE_ID;
+                }
+                idStart = -1;
+            }
+        }
+        if (idStart >= 0 && idHex >= SHORT_INSTANCE_ID) {
+            s.addId(idStart);
+            s.idLengths[s.idCount - 1] = 2 + SHORT_INSTANCE_ID;
+        }
+
+        if (best == Integer.MAX_VALUE) {
+            if (previous != fallback) {
+                clearTargets(state);
+            }
+            state.setCurrentIntent(fallback);
+            return fallback;
+        }
+        IntentRule rule = rules.get(best);
+        state.setCurrentIntent(rule.intent());
+        String tags = rule.captureTags() ? tagSelector(input) : null;
+        boolean hasIds = rule.extractInstanceId() && s.idCount > 0;
+        if (hasIds || tags != null || rule.intent() != previous || rule.explicitTargets()) {
+            // A new selector replaces the previous one entirely, so a follow-up never acts on a
+            // leftover mix of old and new targets, and a target given for one intent (say, a
+            // metrics question about env=prod) is never picked up by another.
+            clearTargets(state);
+        }
+        if (hasIds) {
+            LinkedHashSet<String> ids = new LinkedHashSet<>();
+            for (int i = 0; i < s.idCount; i++) {
+                ids.add(input.substring(s.idStarts[i], s.idStarts[i] + s.idLengths[i]));
+            }
+            state.addSlot("instanceId", ids.getFirst());
+            state.addSlot("instanceIds", String.join(",", ids));
+        }
+        if (tags != null) {
+            state.addSlot("tagSelector", tags);
+        }
+        if (rule.captureTask()) {
+            state.addSlot("task", input);
+        }
+        return rule.intent();
+    }
+
+    private static void clearTargets(DialogueState state) {
+        state.getSlots().remove("instanceId");
+        state.getSlots().remove("instanceIds");
+        state.getSlots().remove("tagSelector");
+    }
+
+    /**
+     * Collects {@code key=value} tokens (an optional {@code tag:} prefix on the key is dropped) as
+     * {@code key=value[,key=value...]}, or returns {@code null} if there are none.
+     */
+    static String tagSelector(String input) {
+        StringBuilder selector = null;
+        int from = 0;
+        int eq;
+        while ((eq = input.indexOf('=', from)) >= 0) {
+            int keyStart = eq;
+            while (keyStart > 0 && isTagChar(input.charAt(keyStart - 1))) {
+                keyStart--;
+            }
+            int valueEnd = eq + 1;
+            while (valueEnd < input.length() && isTagChar(input.charAt(valueEnd))) {
+                valueEnd++;
+            }
+            if (input.regionMatches(true, keyStart, "tag:", 0, 4) && keyStart + 4 < eq) {
+                keyStart += 4;
+            }
+            if (keyStart < eq && valueEnd > eq + 1) {
+                selector = selector == null ? new StringBuilder() : selector.append(',');
+                selector.append(input, keyStart, valueEnd);
+            }
+            from = valueEnd;
+        }
+        return selector == null ? null : selector.toString();
+    }
+
+    private static boolean isTagChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '_' || c == '.' || c == ':' || c == '/' || c == '+' || c == '@';
+    }
+
+    private int classOfInput(char c) {
+        if (c < 128) {
+            return asciiClasses[c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c];
+        }
+        return classOf(Character.toLowerCase(c));
+    }
+
+    private int classOf(char c) {
+        if (c < 128) {
+            return asciiClasses[c];
+        }
+        int i = Arrays.binarySearch(otherChars, c);
+        return i >= 0 ? otherClasses[i] : 0;
+    }
+
+    private static boolean isLowerHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+    }
+
+    /**
+     * Per-thread match bookkeeping. An entry counts for the current call only if its stamp equals
+     * the current epoch, so nothing has to be cleared between calls.
+     */
+    private static final class Scratch {
+        final int[] keywordEpoch;
+        final int[] groupEpoch;
+        final int[] ruleEpoch;
+        final int[] ruleHits;
+        int[] idStarts = new int[4];
+        int[] idLengths = new int[4];
+        int idCount;
+        int epoch;
+
+        Scratch(int keywords, int groups, int rules) {
+            keywordEpoch = new int[keywords];
+            groupEpoch = new int[groups];
+            ruleEpoch = new int[rules];
+            ruleHits = new int[rules];
+        }
+
+        void addId(int start) {
+            if (idCount == idStarts.length) {
+                idStarts = Arrays.copyOf(idStarts, idCount * 2);
+                idLengths = Arrays.copyOf(idLengths, idCount * 2);
+            }
+            idStarts[idCount] = start;
+            idLengths[idCount++] = 2 + LONG_INSTANCE_ID;
+        }
+
+        int nextEpoch() {
+            idCount = 0;
+            if (++epoch == 0) {
+                Arrays.fill(keywordEpoch, 0);
+                Arrays.fill(groupEpoch, 0);
+                Arrays.fill(ruleEpoch, 0);
+                epoch = 1;
+            }
+            return epoch;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package dev.pearch001.devopsgpt.intent;
+
+import dev.pearch001.devopsgpt.model.DialogueState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One row of the intent rule table: the intent matches when every keyword group has at least one
+ * of its keywords in the (case-insensitive) input. Rules are tried in table order and the first
+ * one that matches wins.
+ *
+ * @param intent            the intent to assign
+ * @param groups            keyword groups that must all match; keywords within a group are alternatives
+ * @param extractInstanceId whether to capture EC2 instance IDs into the {@code instanceId} (first)
+ *                          and {@code instanceIds} (all, comma-separated) slots
+ * @param captureTask       whether to capture the whole input into the {@code task} slot
+ * @param captureTags       whether to capture {@code key=value} tag selectors into the {@code tagSelector} slot
+ * @param explicitTargets   whether instance IDs and tag selectors must come from the input itself, rather than
+ *                          carry over from an earlier message of the same intent
+ */
+public record IntentRule(DialogueState.Intent intent, List<List<Keyword>> groups, boolean extractInstanceId, boolean captureTask,
+                         boolean captureTags, boolean explicitTargets) {
+
+    public IntentRule {
+        groups = List.copyOf(groups);
+    }
+
+    public static IntentRule when(DialogueState.Intent intent) {
+        return new IntentRule(intent, List.of(), false, false, false, false);
+    }
+
+    /**
+     * Adds a group that matches when the input contains any of the keywords.
+     */
+    public IntentRule contains(String... anyOf) {
+        return withGroup(anyOf, false);
+    }
+
+    /**
+     * Adds a group that matches when the input starts with any of the keywords.
+     */
+    public IntentRule startsWith(String... anyOf) {
+        return withGroup(anyOf, true);
+    }
+
+    public IntentRule withInstanceId() {
+        return new IntentRule(intent, groups, true, captureTask, captureTags, explicitTargets);
+    }
+
+    public IntentRule withTask() {
+        return new IntentRule(intent, groups, extractInstanceId, true, captureTags, explicitTargets);
+    }
+
+    public IntentRule withTags() {
+        return new IntentRule(intent, groups, extractInstanceId, captureTask, true, explicitTargets);
+    }
+
+    /**
+     * Only acts on targets named in the input itself, for intents that change something.
+     */
+    public IntentRule withExplicitTargets() {
+        return new IntentRule(intent, groups, extractInstanceId, captureTask, captureTags, true);
+    }
+
+    private IntentRule withGroup(String[] anyOf, boolean anchored) {
+        List<Keyword> group = new ArrayList<>(anyOf.length);
+        for (String text : anyOf) {
+            group.add(new Keyword(text.toLowerCase(), anchored));
+        }
+        List<List<Keyword>> extended = new ArrayList<>(groups);
+        extended.add(List.copyOf(group));
+        return new IntentRule(intent, extended, extractInstanceId, captureTask, captureTags, explicitTargets);
+    }
+
+    /**
+     * A lowercase keyword, optionally anchored to the start of the input.
+     */
+    public record Keyword(String text, boolean anchored) {
+    }
+}
@@ -0,0 +1,67 @@
+package dev.pearch001.devopsgpt.loadtest;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * A log-normal latency distribution given by its median and 99th percentile, which is close to
+ * how remote API latencies are shaped: most calls near the median, with a long right tail.
+ * Samples come from a seeded generator, so a run with the same seed and request order is repeatable.
+ */
+public final class LatencyModel {
+
+    // 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.3263;
+
+    private final double mu;
+    private final double sigma;
+    private final Random random;
+
+    private LatencyModel(double mu, double sigma, long seed) {
+        this.mu = mu;
+        this.sigma = sigma;
+        this.random = new Random(seed);
+    }
+
+    public static LatencyModel of(Duration median, Duration p99, long seed) {
+        if (median.isZero()) {
+            return none();
+        }
+        if (p99.compareTo(median) < 0) {
+            throw new IllegalArgumentException("p99 latency " + p99 + " is below the median " + median);
+        }
+        double mu = Math.log(median.toNanos());
+        double sigma = (Math.log(p99.toNanos()) - mu) / Z_99;
+        return new LatencyModel(mu, sigma, seed);
+    }
+
+    /**
+     * No added latency.
+     */
+    public static LatencyModel none() {
+        return new LatencyModel(Double.NEGATIVE_INFINITY, 0, 0);
+    }
+
+    public Duration next() {
+        if (mu == Double.NEGATIVE_INFINITY) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos((long) Math.exp(mu + sigma * random.nextGaussian()));
+    }
+
+    /**
+     * Sleeps for one sample, standing in for the round trip of a blocking call.
+     */
+    public void pause() {
+        Duration latency = next();
+        if (latency.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during simulated latency", e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package dev.pearch001.devopsgpt.loadtest;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.ec2.Ec2AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+
+import java.time.Duration;
+
+/**
+ * Local stand-ins for everything the app calls out to, active with the {@code loadtest} profile
+ * (see {@code application-loadtest.yml}). The OpenAI chat and embedding auto-configuration is
+ * switched off there and replaced with {@link StubChatModel} and {@link StubEmbeddingModel}, the
+ * vector store is the embedded one kept in memory only, and the AWS clients are built exactly as
+ * in {@link dev.pearch001.devopsgpt.config.AwsConfig} but pointed at a {@link StandInAwsEndpoint}.
+ * Each stand-in has its own latency model seeded from {@code devopsgpt.loadtest.seed}.
+ */
+@Configuration
+@Profile("loadtest")
+public class LoadTestConfig {
+
+    @Value("${devopsgpt.loadtest.seed:42}")
+    private long seed;
+
+    @Bean
+    public ChatModel chatModel(@Value("${devopsgpt.loadtest.llm.median:800ms}") Duration median,
+                               @Value("${devopsgpt.loadtest.llm.p99:3s}") Duration p99) {
+        return new StubChatModel(LatencyModel.of(median, p99, seed));
+    }
+
+    @Bean
+    public EmbeddingModel embeddingModel(@Value("${devopsgpt.loadtest.embedding.dimension:1536}") int dimension,
+                                         @Value("${devopsgpt.loadtest.embedding.median:60ms}") Duration median,
+                                         @Value("${devopsgpt.loadtest.embedding.p99:300ms}") Duration p99) {
+        return new StubEmbeddingModel(dimension, LatencyModel.of(median, p99, seed + 1));
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public StandInAwsEndpoint standInAwsEndpoint(@Value("${devopsgpt.loadtest.aws.port:0}") int port,
+                                                 @Value("${devopsgpt.loadtest.aws.threads:2}") int threads,
+                                                 @Value("${devopsgpt.loadtest.aws.median:80ms}") Duration median,
+                                                 @Value("${devopsgpt.loadtest.aws.p99:400ms}") Duration p99) {
+        return new StandInAwsEndpoint("127.0.0.1", port, threads, LatencyModel.of(median, p99, seed + 2));
+    }
+
+    @Bean
+    @Primary
+    public S3AsyncClient standInS3Client(StandInAwsEndpoint endpoint, SdkAsyncHttpClient awsHttpClient, ClientOverrideConfiguration awsClientOverrides) {
+        return S3AsyncClient.builder()
+                .endpointOverride(endpoint.uri())
+                .forcePathStyle(true)
+                .region(Region.US_EAST_1)
+                .credentialsProvider(credentials())
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(awsClientOverrides)
+                .build();
+    }
+
+    @Bean
+    @Primary
+    public Ec2AsyncClient standInEc2Client(StandInAwsEndpoint endpoint, SdkAsyncHttpClient awsHttpClient, ClientOverrideConfiguration awsClientOverrides) {
+        return Ec2AsyncClient.builder()
+                .endpointOverride(endpoint.uri())
+                .region(Region.US_EAST_1)
+                .credentialsProvider(credentials())
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(awsClientOverrides)
+                .build();
+    }
+
+    @Bean
+    @Primary
+    public CloudWatchAsyncClient standInCloudWatchClient(StandInAwsEndpoint endpoint, SdkAsyncHttpClient awsHttpClient, ClientOverrideConfiguration awsClientOverrides) {
+        return CloudWatchAsyncClient.builder()
+                .endpointOverride(endpoint.uri())
+                .region(Region.US_EAST_1)
+                .credentialsProvider(credentials())
+                .httpClient(awsHttpClient)
+                .overrideConfiguration(awsClientOverrides)
+                .build();
+    }
+
+    private static StaticCredentialsProvider credentials() {
+        return StaticCredentialsProvider.create(AwsBasicCredentials.create("loadtest", "loadtest"));
+    }
+}
@@ -0,0 +1,265 @@
+package dev.pearch001.devopsgpt.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.pearch001.devopsgpt.model.IngestionStatus;
+import dev.pearch001.devopsgpt.service.VectorStoreIngestor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load driver for the {@code loadtest} profile. Once ingestion has finished it drives
+ * {@code /api/chat}, {@code /api/chat/advanced} and {@code /api/command/generate} in turn, each at
+ * every configured concurrency: that many virtual users send their next request as soon as the
+ * previous one returns. After a warmup period, latencies are recorded for {@code duration} and
+ * reported as throughput, p50, p99 and max per endpoint and concurrency, both in the log and as
+ * CSV. Requests rotate through a fixed set of messages that covers the RAG, command and AWS tool
+ * paths, and each virtual user keeps its own session.
+ */
+@Component
+@Profile("loadtest")
+@ConditionalOnProperty(name = "devopsgpt.loadtest.driver.enabled", havingValue = "true", matchIfMissing = true)
+public class LoadTestDriver {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestDriver.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final List<String> CHAT_MESSAGES = List.of(
+            "What is the difference between a Kubernetes Deployment and a StatefulSet?",
+            "Explain how Terraform state locking works",
+            "What is a good branching strategy for CI/CD pipelines?",
+            "Explain Docker layer caching");
+
+    private static final List<String> ADVANCED_MESSAGES = List.of(
+            "What is a Kubernetes readiness probe?",
+            "Explain blue-green deployments",
+            "How do I roll back a deployment in Kubernetes?",
+            "List my s3 buckets",
+            "Show cpu utilization for instance i-0a1b2c3d4e5f60001",
+            "Show network and disk metrics for instance i-0a1b2c3d4e5f60002 over the last 3 hours",
+            "Stop ec2 instance i-0a1b2c3d4e5f60003");
+
+    private static final List<String> COMMAND_TASKS = List.of(
+            "roll back the myapp deployment in the production namespace",
+            "list all pods that are not running across all namespaces",
+            "remove all dangling docker images",
+            "show the terraform plan for the staging workspace");
+
+    /**
+     * One endpoint under test. Chat endpoints take a message and session, the command endpoint a task.
+     */
+    private record Target(String path, String field, List<String> messages) {
+
+        Map<String, String> body(int userId, long n) {
+            String text = messages.get((int) (n % messages.size()));
+            return field.equals("task") ? Map.of("task", text) : Map.of("message", text, "sessionId", "loadtest-" + userId);
+        }
+    }
+
+    private record Result(String path, int concurrency, long requests, long errors, double throughput,
+                          double p50Millis, double p99Millis, double maxMillis) {
+    }
+
+    private final VectorStoreIngestor ingestor;
+    private final List<Integer> concurrencyLevels;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Duration requestTimeout;
+    private final String reportPath;
+    private final boolean exitWhenDone;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    public LoadTestDriver(VectorStoreIngestor ingestor,
+                          @Value("${devopsgpt.loadtest.driver.concurrency:1,4,16,64}") List<Integer> concurrencyLevels,
+                          @Value("${devopsgpt.loadtest.driver.warmup:5s}") Duration warmup,
+                          @Value("${devopsgpt.loadtest.driver.duration:20s}") Duration duration,
+                          @Value("${devopsgpt.loadtest.driver.request-timeout:60s}") Duration requestTimeout,
+                          @Value("${devopsgpt.loadtest.driver.report:target/loadtest-report.csv}") String reportPath,
+                          @Value("${devopsgpt.loadtest.driver.exit-when-done:true}") boolean exitWhenDone) {
+        this.ingestor = ingestor;
+        this.concurrencyLevels = concurrencyLevels;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.requestTimeout = requestTimeout;
+        this.reportPath = reportPath;
+        this.exitWhenDone = exitWhenDone;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start(ApplicationReadyEvent event) {
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        String port = context.getEnvironment().getProperty("local.server.port", "8080");
+        URI base = URI.create("http://127.0.0.1:" + port);
+        Thread.ofPlatform().name("loadtest-driver").start(() -> {
+            try {
+                report(run(base));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("Load test failed", e);
+            }
+            if (exitWhenDone) {
+                System.exit(SpringApplication.exit(context, () -> 0));
+            }
+        });
+    }
+
+    private List<Result> run(URI base) throws Exception {
+        awaitIngestion();
+        List<Target> targets = List.of(
+                new Target("/api/chat", "message", CHAT_MESSAGES),
+                new Target("/api/chat/advanced", "message", ADVANCED_MESSAGES),
+                new Target("/api/command/generate", "task", COMMAND_TASKS));
+        List<Result> results = new ArrayList<>();
+        for (Target target : targets) {
+            for (int concurrency : concurrencyLevels) {
+                logger.info("Driving {} with {} concurrent users for {} (+{} warmup)", target.path(), concurrency, duration, warmup);
+                results.add(runLevel(base, target, concurrency));
+            }
+        }
+        return results;
+    }
+
+    private void awaitIngestion() throws InterruptedException {
+        IngestionStatus status = ingestor.getStatus();
+        while (status.state() == IngestionStatus.State.PENDING || status.state() == IngestionStatus.State.RUNNING) {
+            TimeUnit.MILLISECONDS.sleep(200);
+            status = ingestor.getStatus();
+        }
+        logger.info("Ingestion {} with {} chunks; starting load test", status.state(), status.chunksEmbedded());
+    }
+
+    private Result runLevel(URI base, Target target, int concurrency) throws Exception {
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<Future<long[]>> users = new ArrayList<>(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int user = 0; user < concurrency; user++) {
+                int userId = user;
+                users.add(executor.submit(() -> drive(base, target, userId, measureFrom, measureUntil, errors)));
+            }
+            long[] latencies = new long[0];
+            for (Future<long[]> user : users) {
+                long[] userLatencies = user.get();
+                int offset = latencies.length;
+                latencies = Arrays.copyOf(latencies, offset + userLatencies.length);
+                System.arraycopy(userLatencies, 0, latencies, offset, userLatencies.length);
+            }
+            Arrays.sort(latencies);
+            return new Result(target.path(), concurrency, latencies.length, errors.get(),
+                    latencies.length / (duration.toNanos() / 1e9),
+                    percentileMillis(latencies, 0.50), percentileMillis(latencies, 0.99), percentileMillis(latencies, 1.0));
+        }
+    }
+
+    /**
+     * One virtual user: sends requests back to back until the measurement window ends and returns
+     * the latencies of those that started inside it.
+     */
+    private long[] drive(URI base, Target target, int userId, long measureFrom, long measureUntil, AtomicLong errors) {
+        long[] latencies = new long[1024];
+        int count = 0;
+        for (long n = userId; ; n++) {
+            long sent = System.nanoTime();
+            if (sent >= measureUntil) {
+                break;
+            }
+            boolean ok = send(base.resolve(target.path()), target.body(userId, n));
+            long latency = System.nanoTime() - sent;
+            if (sent < measureFrom) {
+                continue;
+            }
+            if (!ok) {
+                errors.incrementAndGet();
+                continue;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private boolean send(URI uri, Map<String, String> body) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() / 100 == 2;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void report(List<Result> results) throws IOException {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%n%-24s %11s %9s %7s %9s %9s %9s %9s%n",
+                "endpoint", "concurrency", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms"));
+        StringBuilder csv = new StringBuilder("endpoint,concurrency,requests,errors,throughput,p50_ms,p99_ms,max_ms\n");
+        for (Result r : results) {
+            table.append(String.format(Locale.ROOT, "%-24s %11d %9d %7d %9.1f %9.1f %9.1f %9.1f%n",
+                    r.path(), r.concurrency(), r.requests(), r.errors(), r.throughput(), r.p50Millis(), r.p99Millis(), r.maxMillis()));
+            csv.append(String.format(Locale.ROOT, "%s,%d,%d,%d,%.2f,%.2f,%.2f,%.2f%n",
+                    r.path(), r.concurrency(), r.requests(), r.errors(), r.throughput(), r.p50Millis(), r.p99Millis(), r.maxMillis()));
+        }
+        logger.info("Load test results:{}", table);
+        if (!reportPath.isBlank()) {
+            Path path = Paths.get(reportPath);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.writeString(path, csv);
+            logger.info("Load test report written to {}", path.toAbsolutePath());
+        }
+    }
+
+    private static double percentileMillis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
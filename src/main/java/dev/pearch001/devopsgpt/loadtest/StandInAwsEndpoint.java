@@ -0,0 +1,202 @@
+package dev.pearch001.devopsgpt.loadtest;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local HTTP endpoint that answers the S3, EC2 and CloudWatch calls the AWS tools make, so the
+ * real SDK clients, signing, connection pool and response parsing are all exercised without an AWS
+ * account. S3 {@code ListBuckets} is recognized as a plain GET; EC2 and CloudWatch use the query
+ * protocol and are told apart by their {@code Action}. Supported actions are StartInstances,
+ * StopInstances, DescribeInstances (a fixed fleet, filters ignored) and GetMetricData (a
+ * deterministic value per query ID). Each reply is delayed by one latency sample without holding
+ * an event loop thread.
+ */
+public class StandInAwsEndpoint implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(StandInAwsEndpoint.class);
+
+    private static final String EC2_NAMESPACE = "http://ec2.amazonaws.com/doc/2016-11-15/";
+    private static final String CLOUDWATCH_NAMESPACE = "http://monitoring.amazonaws.com/doc/2010-08-01/";
+    private static final List<String> FLEET = List.of("i-0a1b2c3d4e5f60001", "i-0a1b2c3d4e5f60002", "i-0a1b2c3d4e5f60003");
+    private static final int POINTS_PER_SERIES = 12;
+
+    private final String host;
+    private final int port;
+    private final int threads;
+    private final LatencyModel latency;
+    private EventLoopGroup eventLoop;
+    private Channel channel;
+
+    public StandInAwsEndpoint(String host, int port, int threads, LatencyModel latency) {
+        this.host = host;
+        this.port = port;
+        this.threads = threads;
+        this.latency = latency;
+    }
+
+    /**
+     * Binds the listener; {@link #uri()} is only known after this.
+     */
+    public void start() {
+        eventLoop = new NioEventLoopGroup(threads);
+        channel = new ServerBootstrap()
+                .group(eventLoop)
+                .channel(NioServerSocketChannel.class)
+                .option(ChannelOption.SO_BACKLOG, 4096)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel channel) {
+                        channel.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(1 << 20), new Handler());
+                    }
+                })
+                .bind(host, port).syncUninterruptibly().channel();
+        logger.info("Stand-in AWS endpoint listening on {}", uri());
+    }
+
+    public URI uri() {
+        InetSocketAddress address = (InetSocketAddress) channel.localAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort());
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            channel.close().syncUninterruptibly();
+        }
+        if (eventLoop != null) {
+            eventLoop.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+
+    private final class Handler extends SimpleChannelInboundHandler<FullHttpRequest> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+            boolean keepAlive = HttpUtil.isKeepAlive(request);
+            FullHttpResponse response = respond(request);
+            HttpUtil.setKeepAlive(response, keepAlive);
+            ctx.executor().schedule(() -> ctx.writeAndFlush(response), latency.next().toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static FullHttpResponse respond(FullHttpRequest request) {
+        if (HttpMethod.GET.equals(request.method())) {
+            return xml(HttpResponseStatus.OK, listBuckets());
+        }
+        Map<String, String> params = new TreeMap<>();
+        new QueryStringDecoder(request.content().toString(StandardCharsets.UTF_8), false).parameters()
+                .forEach((name, values) -> params.put(name, values.getFirst()));
+        String action = params.getOrDefault("Action", "");
+        return switch (action) {
+            case "StartInstances" -> xml(HttpResponseStatus.OK, stateChanges("StartInstances", "startingInstances", params, 80, "stopped", 0, "pending"));
+            case "StopInstances" -> xml(HttpResponseStatus.OK, stateChanges("StopInstances", "stoppingInstances", params, 16, "running", 64, "stopping"));
+            case "DescribeInstances" -> xml(HttpResponseStatus.OK, describeInstances());
+            case "GetMetricData" -> xml(HttpResponseStatus.OK, metricData(params));
+            default -> xml(HttpResponseStatus.BAD_REQUEST, """
+                    <ErrorResponse><Error><Type>Sender</Type><Code>InvalidAction</Code>\
+                    <Message>The stand-in endpoint does not support '%s'</Message></Error>\
+                    <RequestId>loadtest</RequestId></ErrorResponse>""".formatted(action));
+        };
+    }
+
+    private static String listBuckets() {
+        return """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <ListAllMyBucketsResult xmlns="http://s3.amazonaws.com/doc/2006-03-01/">
+                  <Owner><ID>loadtest</ID></Owner>
+                  <Buckets>
+                    <Bucket><Name>app-artifacts</Name><CreationDate>2024-01-01T00:00:00.000Z</CreationDate></Bucket>
+                    <Bucket><Name>terraform-state</Name><CreationDate>2024-01-01T00:00:00.000Z</CreationDate></Bucket>
+                  </Buckets>
+                </ListAllMyBucketsResult>
+                """;
+    }
+
+    private static String stateChanges(String action, String element, Map<String, String> params,
+                                       int fromCode, String from, int toCode, String to) {
+        StringBuilder xml = new StringBuilder("<" + action + "Response xmlns=\"" + EC2_NAMESPACE + "\">")
+                .append("<requestId>loadtest</requestId><instancesSet>");
+        for (int i = 1; params.containsKey("InstanceId." + i); i++) {
+            xml.append("<item><instanceId>").append(params.get("InstanceId." + i)).append("</instanceId>")
+                    .append("<currentState><code>").append(toCode).append("</code><name>").append(to).append("</name></currentState>")
+                    .append("<previousState><code>").append(fromCode).append("</code><name>").append(from).append("</name></previousState>")
+                    .append("</item>");
+        }
+        return xml.append("</instancesSet></").append(action).append("Response>").toString();
+    }
+
+    private static String describeInstances() {
+        StringBuilder xml = new StringBuilder("<DescribeInstancesResponse xmlns=\"" + EC2_NAMESPACE + "\">")
+                .append("<requestId>loadtest</requestId><reservationSet><item><reservationId>r-0loadtest</reservationId><instancesSet>");
+        for (String instanceId : FLEET) {
+            xml.append("<item><instanceId>").append(instanceId).append("</instanceId>")
+                    .append("<instanceState><code>16</code><name>running</name></instanceState>")
+                    .append("<tagSet><item><key>env</key><value>loadtest</value></item></tagSet></item>");
+        }
+        return xml.append("</instancesSet></item></reservationSet></DescribeInstancesResponse>").toString();
+    }
+
+    private static String metricData(Map<String, String> params) {
+        Instant end = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+        StringBuilder xml = new StringBuilder("<GetMetricDataResponse xmlns=\"" + CLOUDWATCH_NAMESPACE + "\">")
+                .append("<GetMetricDataResult><MetricDataResults>");
+        for (int i = 1; params.containsKey("MetricDataQueries.member." + i + ".Id"); i++) {
+            String id = params.get("MetricDataQueries.member." + i + ".Id");
+            double base = Math.floorMod(id.hashCode(), 80) + 5;
+            StringBuilder timestamps = new StringBuilder();
+            StringBuilder values = new StringBuilder();
+            for (int point = 0; point < POINTS_PER_SERIES; point++) {
+                timestamps.append("<member>").append(end.minus(point * 5L, ChronoUnit.MINUTES)).append("</member>");
+                values.append("<member>").append(base + point % 3).append("</member>");
+            }
+            xml.append("<member><Id>").append(id).append("</Id><Label>").append(id).append("</Label>")
+                    .append("<Timestamps>").append(timestamps).append("</Timestamps>")
+                    .append("<Values>").append(values).append("</Values>")
+                    .append("<StatusCode>Complete</StatusCode></member>");
+        }
+        return xml.append("</MetricDataResults><Messages/></GetMetricDataResult>")
+                .append("<ResponseMetadata><RequestId>loadtest</RequestId></ResponseMetadata></GetMetricDataResponse>")
+                .toString();
+    }
+
+    private static FullHttpResponse xml(HttpResponseStatus status, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, Unpooled.wrappedBuffer(bytes));
+        response.headers()
+                .set(HttpHeaderNames.CONTENT_TYPE, "text/xml")
+                .setInt(HttpHeaderNames.CONTENT_LENGTH, bytes.length);
+        return response;
+    }
+}
@@ -0,0 +1,84 @@
+package dev.pearch001.devopsgpt.loadtest;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Stands in for the OpenAI chat model. The reply depends only on the prompt, so it is the same on
+ * every run: command prompts (those carrying the JSON output schema) get a JSON command, anything
+ * else one of a few canned answers. Each call takes one sample of the latency model; streamed
+ * replies spread it evenly over their tokens. Usage is reported at roughly four characters per
+ * prompt token and one token per reply word.
+ */
+public class StubChatModel implements ChatModel {
+
+    static final String COMMAND_REPLY = """
+            {"command": "kubectl rollout undo deployment/myapp -n production", \
+            "explanation": "Rolls the deployment back to its previous revision."}""";
+
+    private static final List<String> REPLIES = List.of(
+            "A Kubernetes Deployment keeps the requested number of pod replicas running and rolls out "
+                    + "changes to them gradually. Use `kubectl rollout status` to follow a rollout and "
+                    + "`kubectl rollout undo` to go back to the previous revision.",
+            "Terraform compares the desired state in your configuration with the recorded state and plans "
+                    + "the changes needed to reconcile them. Keep the state in a remote backend with locking "
+                    + "so that two applies never run at the same time.",
+            "A CI pipeline should fail fast: run linting and unit tests first, cache dependencies between "
+                    + "runs, and only build and push images once the cheaper checks have passed.",
+            "Docker images are built in layers, and each instruction in the Dockerfile adds one. Order the "
+                    + "instructions from least to most frequently changed so that rebuilds reuse cached layers.");
+
+    private final LatencyModel latency;
+
+    public StubChatModel(LatencyModel latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        latency.pause();
+        String reply = replyFor(prompt);
+        return response(reply, usage(prompt, reply));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        String reply = replyFor(prompt);
+        String[] tokens = reply.split("(?<= )");
+        Duration perToken = latency.next().dividedBy(tokens.length);
+        DefaultUsage usage = usage(prompt, reply);
+        return Flux.fromArray(tokens)
+                .delayElements(perToken)
+                .map(token -> response(token, null))
+                .concatWith(Flux.just(response("", usage)));
+    }
+
+    private static String replyFor(Prompt prompt) {
+        String contents = prompt.getContents();
+        if (contents.contains("\"$schema\"")) {
+            return COMMAND_REPLY;
+        }
+        return REPLIES.get(Math.floorMod(contents.hashCode(), REPLIES.size()));
+    }
+
+    private static DefaultUsage usage(Prompt prompt, String reply) {
+        return new DefaultUsage(prompt.getContents().length() / 4, reply.split(" ").length);
+    }
+
+    private static ChatResponse response(String text, DefaultUsage usage) {
+        ChatResponseMetadata.Builder metadata = ChatResponseMetadata.builder().model("loadtest-stub");
+        if (usage != null) {
+            metadata.usage(usage);
+        }
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))), metadata.build());
+    }
+}
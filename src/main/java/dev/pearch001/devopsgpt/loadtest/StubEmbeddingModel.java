@@ -0,0 +1,72 @@
+package dev.pearch001.devopsgpt.loadtest;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stands in for the OpenAI embedding model. Words are hashed into a normalized bag-of-words vector,
+ * so texts sharing words are similar and retrieval still returns sensible documents. Each request
+ * (single text or batch) takes one sample of the latency model.
+ */
+public class StubEmbeddingModel implements EmbeddingModel {
+
+    private final int dimension;
+    private final LatencyModel latency;
+
+    public StubEmbeddingModel(int dimension, LatencyModel latency) {
+        this.dimension = dimension;
+        this.latency = latency;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        latency.pause();
+        List<Embedding> embeddings = new ArrayList<>();
+        for (String text : request.getInstructions()) {
+            embeddings.add(new Embedding(vector(text), embeddings.size()));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public float[] embed(String text) {
+        latency.pause();
+        return vector(text);
+    }
+
+    @Override
+    public int dimensions() {
+        return dimension;
+    }
+
+    private float[] vector(String text) {
+        float[] vector = new float[dimension];
+        for (String word : text.toLowerCase().split("\\W+")) {
+            if (!word.isEmpty()) {
+                vector[Math.floorMod(word.hashCode(), dimension)] += 1;
+            }
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dimension; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+}
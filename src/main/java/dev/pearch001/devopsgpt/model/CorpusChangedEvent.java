@@ -0,0 +1,7 @@
+package dev.pearch001.devopsgpt.model;
+
+/**
+ * Published when ingestion adds or removes chunks in the vector store.
+ */
+public record CorpusChangedEvent(int chunksAdded, int chunksRemoved) {
+}
@@ -0,0 +1,26 @@
+package dev.pearch001.devopsgpt.model;
+
+public record IngestionStatus(
+    State state,
+    int filesTotal,
+    int filesProcessed,
+    long bytesRead,
+    long chunksQueued,
+    long chunksEmbedded,
+    long chunksFailed,
+    long elapsedMillis,
+    double chunksPerSecond,
+    double bytesPerSecond
+) {
+
+    public enum State {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    public boolean ready() {
+        return state == State.COMPLETED;
+    }
+}
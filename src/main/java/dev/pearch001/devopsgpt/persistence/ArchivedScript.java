@@ -0,0 +1,9 @@
+package dev.pearch001.devopsgpt.persistence;
+
+import java.time.Instant;
+
+/**
+ * A script kept by the {@link ScriptArchive}.
+ */
+public record ArchivedScript(String id, Instant createdAt, String script) {
+}
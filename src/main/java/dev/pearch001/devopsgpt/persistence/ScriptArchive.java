@@ -0,0 +1,436 @@
+package dev.pearch001.devopsgpt.persistence;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only, compressed, size-rotated archive of the scripts passed to command simulation.
+ * <p>
+ * {@link #archive} hands out a unique ID and only enqueues the script; a single writer thread
+ * drains the queue and writes each batch as one deflate-compressed block, so request latency never
+ * depends on the disk. Scripts stay visible to {@link #find} while they wait in the queue. When the
+ * queue is full, scripts are dropped and counted rather than blocking the caller.
+ * <p>
+ * Every segment has a sidecar index of {@code id offset} lines pointing at the block holding each
+ * script, and all indexes are loaded at startup. Blocks a crash left out of an index are re-indexed
+ * from the segment. Only the newest {@code max-segments} segments are kept.
+ * <p>
+ * Layout: each segment starts with a header (magic, version, sequence), followed by blocks of
+ * {@code [int compressed length][int raw length][int crc32][deflated records]}; a record is
+ * {@code [id][long created-at millis][script]} with length-prefixed UTF-8 strings. A torn or
+ * corrupt block ends the segment.
+ */
+@Component
+public class ScriptArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScriptArchive.class);
+
+    private static final int MAGIC = 0x44475341;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int BLOCK_HEADER_BYTES = 12;
+
+    private static final String SEGMENT_PREFIX = "archive-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final HexFormat HEX = HexFormat.of();
+
+    // Poison pill for the writer thread, compared by identity.
+    private static final ArchivedScript SHUTDOWN = new ArchivedScript("", Instant.EPOCH, "");
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final int batchSize;
+    private final int maxSegments;
+
+    private final BlockingQueue<ArchivedScript> queue;
+    private final ConcurrentMap<String, ArchivedScript> pending = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Location> index = new ConcurrentHashMap<>();
+    private final AtomicLong idSequence = new AtomicLong();
+    private final Counter droppedScripts;
+    private final Counter rawBytes;
+    private final Counter compressedBytes;
+    private final DistributionSummary batchSizes;
+
+    private Thread writerThread;
+    private FileChannel activeChannel;
+    private BufferedWriter activeIndex;
+    private long activeBytes;
+    private volatile long activeSequence;
+
+    public ScriptArchive(MeterRegistry meterRegistry,
+                         @Value("${devopsgpt.scripts.archive.enabled:true}") boolean enabled,
+                         @Value("${devopsgpt.scripts.archive.directory:scripts}") String directory,
+                         @Value("${devopsgpt.scripts.archive.segment-size:16MB}") DataSize segmentSize,
+                         @Value("${devopsgpt.scripts.archive.fsync:false}") boolean fsync,
+                         @Value("${devopsgpt.scripts.archive.queue-capacity:10000}") int queueCapacity,
+                         @Value("${devopsgpt.scripts.archive.batch-size:256}") int batchSize,
+                         @Value("${devopsgpt.scripts.archive.max-segments:64}") int maxSegments) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentSize.toBytes();
+        this.fsync = fsync;
+        this.batchSize = batchSize;
+        this.maxSegments = maxSegments;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.droppedScripts = meterRegistry.counter("devopsgpt.scripts.archive.dropped");
+        this.rawBytes = meterRegistry.counter("devopsgpt.scripts.archive.bytes", "encoding", "raw");
+        this.compressedBytes = meterRegistry.counter("devopsgpt.scripts.archive.bytes", "encoding", "compressed");
+        this.batchSizes = meterRegistry.summary("devopsgpt.scripts.archive.batch.size");
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Long> sequences = listSequences();
+        for (long sequence : sequences) {
+            loadIndex(sequence);
+        }
+        // Always start a fresh segment so appends never follow a half-written tail.
+        activeSequence = sequences.stream().mapToLong(Long::longValue).max().orElse(0) + 1;
+        openSegment(activeSequence);
+        writerThread = Thread.ofPlatform().name("script-archive-writer").daemon().start(this::runWriter);
+        logger.info("Script archive open at {} ({} scripts indexed, segment {})", directory.toAbsolutePath(), index.size(), activeSequence);
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+        queue.put(SHUTDOWN);
+        writerThread.join(10_000);
+    }
+
+    /**
+     * Queues a script for archiving and returns its ID; returns before anything touches the disk.
+     * IDs are unique and ordered by creation time.
+     */
+    public String archive(String script) {
+        Instant now = Instant.now();
+        String id = HEX.toHexDigits(now.toEpochMilli()).substring(4) + HEX.toHexDigits((int) idSequence.getAndIncrement()).substring(2);
+        if (!enabled) {
+            return id;
+        }
+        ArchivedScript archived = new ArchivedScript(id, now, script);
+        pending.put(id, archived);
+        if (!queue.offer(archived)) {
+            pending.remove(id);
+            droppedScripts.increment();
+            logger.warn("Script archive queue is full; script {} was not archived", id);
+        }
+        return id;
+    }
+
+    public Optional<ArchivedScript> find(String id) {
+        ArchivedScript queued = pending.get(id);
+        if (queued != null) {
+            return Optional.of(queued);
+        }
+        Location location = index.get(id);
+        if (location == null) {
+            return Optional.empty();
+        }
+        try {
+            return readBlock(segmentPath(location.sequence()), location.offset()).stream()
+                    .filter(script -> script.id().equals(id))
+                    .findFirst();
+        } catch (IOException e) {
+            logger.warn("Failed to read archived script {}", id, e);
+            return Optional.empty();
+        }
+    }
+
+    private void runWriter() {
+        List<ArchivedScript> batch = new ArrayList<>(batchSize);
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                raw.reset();
+                DataOutputStream records = new DataOutputStream(raw);
+                List<String> ids = new ArrayList<>(batch.size());
+                for (ArchivedScript script : batch) {
+                    if (script == SHUTDOWN) {
+                        running = false;
+                    } else {
+                        writeString(records, script.id());
+                        records.writeLong(script.createdAt().toEpochMilli());
+                        writeString(records, script.script());
+                        ids.add(script.id());
+                    }
+                }
+                if (!ids.isEmpty()) {
+                    writeBlock(ids, raw.toByteArray(), deflater);
+                    batchSizes.record(ids.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (IOException e) {
+                logger.error("Failed to archive {} scripts", batch.size(), e);
+                batch.forEach(script -> pending.remove(script.id()));
+            }
+            batch.clear();
+        }
+        deflater.end();
+        try {
+            activeChannel.close();
+            activeIndex.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close script archive segment", e);
+        }
+    }
+
+    private void writeBlock(List<String> ids, byte[] records, Deflater deflater) throws IOException {
+        byte[] compressed = deflate(records, deflater);
+        CRC32 crc = new CRC32();
+        crc.update(compressed);
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER_BYTES + compressed.length)
+                .putInt(compressed.length).putInt(records.length).putInt((int) crc.getValue()).put(compressed).flip();
+
+        if (activeBytes + block.remaining() > segmentBytes && activeBytes > HEADER_BYTES) {
+            rotate();
+        }
+        long offset = activeBytes;
+        activeBytes += writeFully(activeChannel, block);
+        if (fsync) {
+            activeChannel.force(false);
+        }
+        for (String id : ids) {
+            activeIndex.write(id + ' ' + offset + '\n');
+        }
+        activeIndex.flush();
+
+        Location location = new Location(activeSequence, offset);
+        for (String id : ids) {
+            index.put(id, location);
+            pending.remove(id);
+        }
+        rawBytes.increment(records.length);
+        compressedBytes.increment(compressed.length);
+    }
+
+    private void rotate() throws IOException {
+        activeChannel.force(true);
+        activeChannel.close();
+        activeIndex.close();
+        openSegment(activeSequence + 1);
+        activeSequence++;
+
+        List<Long> sequences = listSequences().stream().sorted().toList();
+        for (int i = 0; i < sequences.size() - maxSegments; i++) {
+            long expired = sequences.get(i);
+            index.values().removeIf(location -> location.sequence() == expired);
+            Files.deleteIfExists(segmentPath(expired));
+            Files.deleteIfExists(indexPath(expired));
+            logger.info("Deleted expired script archive segment {}", expired);
+        }
+    }
+
+    private void openSegment(long sequence) throws IOException {
+        activeChannel = FileChannel.open(segmentPath(sequence), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeIndex = Files.newBufferedWriter(indexPath(sequence), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        activeBytes = writeFully(activeChannel, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(sequence).flip());
+    }
+
+    /**
+     * Loads a sealed segment's index, then walks its block headers and re-indexes any block the
+     * index does not cover, e.g. because the process died between writing a block and its index lines.
+     */
+    private void loadIndex(long sequence) throws IOException {
+        Set<Long> indexedOffsets = new HashSet<>();
+        Path indexFile = indexPath(sequence);
+        if (Files.exists(indexFile)) {
+            try (Stream<String> lines = Files.lines(indexFile, StandardCharsets.UTF_8)) {
+                lines.forEach(line -> {
+                    int space = line.indexOf(' ');
+                    if (space > 0) {
+                        long offset = Long.parseLong(line.substring(space + 1));
+                        index.put(line.substring(0, space), new Location(sequence, offset));
+                        indexedOffsets.add(offset);
+                    }
+                });
+            }
+        }
+
+        Path segment = segmentPath(sequence);
+        List<String> repaired = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                logger.warn("Skipping unreadable script archive segment {}", segment);
+                return;
+            }
+            long size = channel.size();
+            long offset = HEADER_BYTES;
+            ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+            while (offset + BLOCK_HEADER_BYTES <= size) {
+                blockHeader.clear();
+                channel.read(blockHeader, offset);
+                int length = blockHeader.flip().getInt();
+                if (length <= 0 || offset + BLOCK_HEADER_BYTES + length > size) {
+                    logger.warn("Truncated block in script archive segment {}; ignoring the rest", segment);
+                    break;
+                }
+                if (!indexedOffsets.contains(offset)) {
+                    for (ArchivedScript script : readBlock(segment, offset)) {
+                        index.put(script.id(), new Location(sequence, offset));
+                        repaired.add(script.id() + ' ' + offset + '\n');
+                    }
+                }
+                offset += BLOCK_HEADER_BYTES + length;
+            }
+        } catch (IOException e) {
+            logger.warn("Stopped indexing script archive segment {}", segment, e);
+        }
+        if (!repaired.isEmpty()) {
+            Files.write(indexFile, repaired, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            logger.info("Re-indexed {} scripts in archive segment {}", repaired.size(), sequence);
+        }
+    }
+
+    private static List<ArchivedScript> readBlock(Path segment, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+            channel.read(header, offset);
+            header.flip();
+            int compressedLength = header.getInt();
+            int rawLength = header.getInt();
+            int checksum = header.getInt();
+            ByteBuffer compressed = ByteBuffer.allocate(compressedLength);
+            while (compressed.hasRemaining()) {
+                if (channel.read(compressed, offset + BLOCK_HEADER_BYTES + compressed.position()) < 0) {
+                    break;
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(compressed.array(), 0, compressed.position());
+            if (compressed.hasRemaining() || (int) crc.getValue() != checksum) {
+                throw new IOException("Corrupt block at " + offset + " in " + segment);
+            }
+
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed.array());
+                byte[] raw = new byte[rawLength];
+                int inflated = 0;
+                while (inflated < rawLength && !inflater.finished()) {
+                    inflated += inflater.inflate(raw, inflated, rawLength - inflated);
+                }
+                ByteBuffer records = ByteBuffer.wrap(raw, 0, inflated);
+                List<ArchivedScript> scripts = new ArrayList<>();
+                while (records.hasRemaining()) {
+                    String id = readString(records);
+                    Instant createdAt = Instant.ofEpochMilli(records.getLong());
+                    scripts.add(new ArchivedScript(id, createdAt, readString(records)));
+                }
+                return scripts;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block at " + offset + " in " + segment, e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    private static byte[] deflate(byte[] input, Deflater deflater) {
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return out.toByteArray();
+    }
+
+    private List<Long> listSequences() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private Path indexPath(long sequence) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, sequence, INDEX_SUFFIX));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return written;
+    }
+
+    private record Location(long sequence, long offset) {
+    }
+}
@@ -0,0 +1,31 @@
+package dev.pearch001.devopsgpt.persistence;
+
+import org.springframework.ai.chat.messages.MessageType;
+
+import java.util.Map;
+
+/**
+ * An entry in the session log. Replaying the events in order rebuilds the in-memory session state.
+ */
+public sealed interface SessionEvent {
+
+    String sessionId();
+
+    /**
+     * A message was added to a session's conversation history.
+     */
+    record MessageAppended(String sessionId, MessageType messageType, String text) implements SessionEvent {
+    }
+
+    /**
+     * The dialogue state of a session changed.
+     */
+    record StateUpdated(String sessionId, String intent, Map<String, String> slots) implements SessionEvent {
+    }
+
+    /**
+     * A session was evicted; everything logged for it before this point is dead.
+     */
+    record SessionEvicted(String sessionId) implements SessionEvent {
+    }
+}
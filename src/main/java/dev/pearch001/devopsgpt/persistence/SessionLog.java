@@ -0,0 +1,464 @@
+package dev.pearch001.devopsgpt.persistence;
+
+import dev.pearch001.devopsgpt.model.DialogueState;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, segment-rotated log of session events for restoring sessions after a restart.
+ * <p>
+ * Callers only enqueue events; a single writer thread drains the queue and group-commits each
+ * batch with one write and one fsync, so request latency never depends on the disk. When the
+ * queue is full, events are dropped and counted rather than blocking the caller.
+ * <p>
+ * Segments are replayed through read-only memory maps at startup. Sealed segments are
+ * periodically compacted into one that only holds live sessions. A compacted segment records
+ * the first sequence it covers, so a crash between writing it and deleting its inputs never
+ * replays the same events twice.
+ * <p>
+ * Layout: each segment starts with a header (magic, version, first covered sequence), followed
+ * by records of {@code [int length][int crc32][payload]}. A torn or corrupt record ends replay
+ * of that segment.
+ */
+@Component
+public class SessionLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionLog.class);
+
+    private static final int MAGIC = 0x44475354;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int FLUSH_THRESHOLD_BYTES = 1 << 20;
+
+    private static final byte TYPE_MESSAGE = 1;
+    private static final byte TYPE_STATE = 2;
+    private static final byte TYPE_EVICT = 3;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // Poison pill for the writer thread, compared by identity.
+    private static final SessionEvent SHUTDOWN = new SessionEvent.SessionEvicted("");
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final int batchSize;
+    private final int compactionMinSegments;
+    private final int retainMessagesPerSession;
+
+    private final BlockingQueue<SessionEvent> queue;
+    private final Counter droppedEvents;
+    private final DistributionSummary batchSizes;
+
+    private Thread writerThread;
+    private FileChannel activeChannel;
+    private long activeBytes;
+    private volatile long activeSequence;
+    private volatile boolean recovered;
+
+    public SessionLog(MeterRegistry meterRegistry,
+                      @Value("${devopsgpt.persistence.enabled:false}") boolean enabled,
+                      @Value("${devopsgpt.persistence.directory:data/session-log}") String directory,
+                      @Value("${devopsgpt.persistence.segment-size:64MB}") DataSize segmentSize,
+                      @Value("${devopsgpt.persistence.fsync:true}") boolean fsync,
+                      @Value("${devopsgpt.persistence.queue-capacity:65536}") int queueCapacity,
+                      @Value("${devopsgpt.persistence.batch-size:1024}") int batchSize,
+                      @Value("${devopsgpt.persistence.compaction-min-segments:4}") int compactionMinSegments,
+                      @Value("${devopsgpt.persistence.retain-messages-per-session:200}") int retainMessagesPerSession) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentSize.toBytes();
+        this.fsync = fsync;
+        this.batchSize = batchSize;
+        this.compactionMinSegments = compactionMinSegments;
+        this.retainMessagesPerSession = retainMessagesPerSession;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.droppedEvents = meterRegistry.counter("devopsgpt.session.log.dropped");
+        this.batchSizes = meterRegistry.summary("devopsgpt.session.log.batch.size");
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        // Always start a fresh segment so replay never has to deal with a half-written tail we append to.
+        activeSequence = listSequences().stream().mapToLong(Long::longValue).max().orElse(0) + 1;
+        openSegment(activeSequence);
+        writerThread = Thread.ofPlatform().name("session-log-writer").daemon().start(this::runWriter);
+        logger.info("Session log open at {} (segment {})", directory.toAbsolutePath(), activeSequence);
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+        queue.put(SHUTDOWN);
+        writerThread.join(10_000);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void appendMessage(String sessionId, Message message) {
+        append(new SessionEvent.MessageAppended(sessionId, message.getMessageType(), message.getText()));
+    }
+
+    public void appendState(String sessionId, DialogueState state) {
+        Map<String, String> slots = new LinkedHashMap<>();
+        state.getSlots().forEach((key, value) -> slots.put(key, String.valueOf(value)));
+        append(new SessionEvent.StateUpdated(sessionId, state.getCurrentIntent().name(), slots));
+    }
+
+    public void appendEviction(String sessionId) {
+        append(new SessionEvent.SessionEvicted(sessionId));
+    }
+
+    private void append(SessionEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (!queue.offer(event)) {
+            droppedEvents.increment();
+        }
+    }
+
+    /**
+     * Replays every sealed segment, oldest first. Must be called once, before traffic is served.
+     */
+    public void replay(Consumer<SessionEvent> consumer) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        for (long sequence : liveSealedSequences()) {
+            readSegment(segmentPath(sequence), consumer);
+        }
+        recovered = true;
+    }
+
+    /**
+     * Folds the sealed segments into a single segment holding only live sessions: evicted sessions
+     * are dropped, only the latest dialogue state is kept, and each session keeps its most recent
+     * messages.
+     */
+    @Scheduled(fixedDelayString = "${devopsgpt.persistence.compaction-interval:300000}")
+    public void compact() {
+        if (!enabled || !recovered) {
+            return;
+        }
+        try {
+            List<Long> sealed = liveSealedSequences();
+            if (sealed.size() < compactionMinSegments) {
+                return;
+            }
+            long first = readCoversFrom(segmentPath(sealed.getFirst()));
+            long last = sealed.getLast();
+
+            Map<String, Deque<SessionEvent>> messages = new LinkedHashMap<>();
+            Map<String, SessionEvent> states = new LinkedHashMap<>();
+            for (long sequence : sealed) {
+                readSegment(segmentPath(sequence), event -> {
+                    switch (event) {
+                        case SessionEvent.MessageAppended m -> {
+                            Deque<SessionEvent> kept = messages.computeIfAbsent(m.sessionId(), k -> new ArrayDeque<>());
+                            kept.addLast(m);
+                            if (kept.size() > retainMessagesPerSession) {
+                                kept.removeFirst();
+                            }
+                        }
+                        case SessionEvent.StateUpdated s -> states.put(s.sessionId(), s);
+                        case SessionEvent.SessionEvicted e -> {
+                            messages.remove(e.sessionId());
+                            states.remove(e.sessionId());
+                        }
+                    }
+                });
+            }
+
+            Path tmp = directory.resolve(SEGMENT_PREFIX + last + SEGMENT_SUFFIX + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeFully(channel, header(first));
+                ByteArrayOutputStream out = new ByteArrayOutputStream(FLUSH_THRESHOLD_BYTES);
+                ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+                for (SessionEvent state : states.values()) {
+                    encode(state, out, scratch);
+                    flushIfFull(channel, out);
+                }
+                for (Deque<SessionEvent> kept : messages.values()) {
+                    for (SessionEvent message : kept) {
+                        encode(message, out, scratch);
+                        flushIfFull(channel, out);
+                    }
+                }
+                writeFully(channel, ByteBuffer.wrap(out.toByteArray()));
+                channel.force(true);
+            }
+            Files.move(tmp, segmentPath(last), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (long sequence : sealed) {
+                if (sequence != last) {
+                    Files.deleteIfExists(segmentPath(sequence));
+                }
+            }
+            logger.info("Compacted session log segments {}..{} ({} sessions live)", first, last, messages.size());
+        } catch (IOException e) {
+            logger.error("Session log compaction failed", e);
+        }
+    }
+
+    private void runWriter() {
+        List<SessionEvent> batch = new ArrayList<>(batchSize);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(FLUSH_THRESHOLD_BYTES);
+        ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                out.reset();
+                for (SessionEvent event : batch) {
+                    if (event == SHUTDOWN) {
+                        running = false;
+                    } else {
+                        encode(event, out, scratch);
+                    }
+                }
+                if (out.size() > 0) {
+                    if (activeBytes + out.size() > segmentBytes && activeBytes > HEADER_BYTES) {
+                        rotate();
+                    }
+                    activeBytes += writeFully(activeChannel, ByteBuffer.wrap(out.toByteArray()));
+                    if (fsync) {
+                        activeChannel.force(false);
+                    }
+                    batchSizes.record(batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (IOException e) {
+                logger.error("Failed to write {} session events", batch.size(), e);
+            }
+            batch.clear();
+        }
+        try {
+            activeChannel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close session log segment", e);
+        }
+    }
+
+    private void rotate() throws IOException {
+        activeChannel.force(true);
+        activeChannel.close();
+        openSegment(activeSequence + 1);
+        activeSequence++;
+    }
+
+    private void openSegment(long sequence) throws IOException {
+        activeChannel = FileChannel.open(segmentPath(sequence), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeBytes = writeFully(activeChannel, header(sequence));
+    }
+
+    /**
+     * Sealed segments in replay order, skipping any whose events were folded into a later compacted segment.
+     */
+    private List<Long> liveSealedSequences() throws IOException {
+        List<Long> sealed = listSequences().stream().filter(s -> s < activeSequence).sorted().toList();
+        Set<Long> superseded = new HashSet<>();
+        for (long sequence : sealed) {
+            long coversFrom = readCoversFrom(segmentPath(sequence));
+            for (long s : sealed) {
+                if (s >= coversFrom && s < sequence) {
+                    superseded.add(s);
+                }
+            }
+        }
+        return sealed.stream().filter(s -> !superseded.contains(s)).toList();
+    }
+
+    private List<Long> listSequences() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private long readCoversFrom(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("Not a session log segment: " + segment);
+            }
+            header.getInt();
+            return header.getLong();
+        }
+    }
+
+    private static ByteBuffer header(long coversFrom) {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(coversFrom).flip();
+    }
+
+    private void readSegment(Path segment, Consumer<SessionEvent> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                logger.warn("Skipping unreadable session log segment {}", segment);
+                return;
+            }
+            buffer.getLong();
+
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    logger.warn("Truncated record in session log segment {}; ignoring the rest", segment);
+                    return;
+                }
+                ByteBuffer payload = buffer.slice(buffer.position(), length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    logger.warn("Corrupt record in session log segment {}; ignoring the rest", segment);
+                    return;
+                }
+                buffer.position(buffer.position() + length);
+                consumer.accept(decode(payload));
+            }
+        }
+    }
+
+    private static void encode(SessionEvent event, ByteArrayOutputStream out, ByteArrayOutputStream scratch) throws IOException {
+        scratch.reset();
+        DataOutputStream payload = new DataOutputStream(scratch);
+        switch (event) {
+            case SessionEvent.MessageAppended m -> {
+                payload.writeByte(TYPE_MESSAGE);
+                writeString(payload, m.sessionId());
+                payload.writeByte(m.messageType().ordinal());
+                writeString(payload, m.text() == null ? "" : m.text());
+            }
+            case SessionEvent.StateUpdated s -> {
+                payload.writeByte(TYPE_STATE);
+                writeString(payload, s.sessionId());
+                writeString(payload, s.intent());
+                payload.writeInt(s.slots().size());
+                for (Map.Entry<String, String> slot : s.slots().entrySet()) {
+                    writeString(payload, slot.getKey());
+                    writeString(payload, slot.getValue());
+                }
+            }
+            case SessionEvent.SessionEvicted e -> {
+                payload.writeByte(TYPE_EVICT);
+                writeString(payload, e.sessionId());
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(scratch.toByteArray());
+        DataOutputStream record = new DataOutputStream(out);
+        record.writeInt(scratch.size());
+        record.writeInt((int) crc.getValue());
+        scratch.writeTo(out);
+    }
+
+    private static SessionEvent decode(ByteBuffer payload) throws IOException {
+        byte type = payload.get();
+        String sessionId = readString(payload);
+        return switch (type) {
+            case TYPE_MESSAGE -> {
+                MessageType messageType = MessageType.values()[payload.get()];
+                yield new SessionEvent.MessageAppended(sessionId, messageType, readString(payload));
+            }
+            case TYPE_STATE -> {
+                String intent = readString(payload);
+                int slotCount = payload.getInt();
+                Map<String, String> slots = new LinkedHashMap<>();
+                for (int i = 0; i < slotCount; i++) {
+                    slots.put(readString(payload), readString(payload));
+                }
+                yield new SessionEvent.StateUpdated(sessionId, intent, slots);
+            }
+            case TYPE_EVICT -> new SessionEvent.SessionEvicted(sessionId);
+            default -> throw new IOException("Unknown session log record type " + type);
+        };
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void flushIfFull(FileChannel channel, ByteArrayOutputStream out) throws IOException {
+        if (out.size() >= FLUSH_THRESHOLD_BYTES) {
+            writeFully(channel, ByteBuffer.wrap(out.toByteArray()));
+            out.reset();
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return written;
+    }
+}
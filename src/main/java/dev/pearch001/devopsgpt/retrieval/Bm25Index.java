@@ -0,0 +1,294 @@
+package dev.pearch001.devopsgpt.retrieval;
+
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory BM25 inverted index over the knowledge base chunks, kept next to the vector store so
+ * exact DevOps tokens ({@code kubectl}, {@code --instance-ids}, {@code i-0abc...}, error strings)
+ * can be matched literally.
+ * <p>
+ * Postings are parallel {@code int[]} arrays of document numbers and term frequencies, grown by
+ * doubling. Replacing or removing a file only tombstones its documents; the index is rebuilt from
+ * the live documents once tombstones outnumber them.
+ */
+@Component
+public class Bm25Index {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "can", "do", "does", "for", "from", "how",
+            "i", "in", "is", "it", "me", "my", "of", "on", "or", "the", "this", "to", "use", "what",
+            "when", "which", "with", "you", "your");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<Postings> postings = new ArrayList<>();
+    private final List<Document> documents = new ArrayList<>();
+    private final Map<String, List<Integer>> documentsByFile = new HashMap<>();
+    private int[] documentLengths = new int[256];
+    private int[][] documentTerms = new int[256][];
+    private int[] liveDocumentFrequency = new int[256];
+    private long liveLength;
+    private int liveDocuments;
+
+    /**
+     * Indexes the chunks of a file, replacing whatever was indexed for it before.
+     */
+    public void replaceFile(String file, List<Document> chunks) {
+        lock.writeLock().lock();
+        try {
+            tombstone(file);
+            List<Integer> added = new ArrayList<>(chunks.size());
+            for (Document chunk : chunks) {
+                added.add(add(chunk));
+            }
+            documentsByFile.put(file, added);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFile(String file) {
+        lock.writeLock().lock();
+        try {
+            tombstone(file);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocuments;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code topK} documents ranked by BM25 score, highest first, with the score set on each.
+     */
+    public List<Document> search(String query, int topK) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        lock.readLock().lock();
+        try {
+            if (liveDocuments == 0 || queryTerms.isEmpty()) {
+                return List.of();
+            }
+            float averageLength = (float) liveLength / liveDocuments;
+            float[] scores = new float[documents.size()];
+            boolean matched = false;
+            for (String term : queryTerms) {
+                Integer termId = termIds.get(term);
+                if (termId == null || liveDocumentFrequency[termId] == 0) {
+                    continue;
+                }
+                matched = true;
+                int df = liveDocumentFrequency[termId];
+                float idf = (float) Math.log(1 + (liveDocuments - df + 0.5) / (df + 0.5));
+                Postings list = postings.get(termId);
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.docs[i];
+                    if (documents.get(doc) == null) {
+                        continue;
+                    }
+                    float tf = list.freqs[i];
+                    float norm = K1 * (1 - B + B * documentLengths[doc] / averageLength);
+                    scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+            if (!matched) {
+                return List.of();
+            }
+
+            PriorityQueue<Integer> top = new PriorityQueue<>(topK + 1, (a, b) -> Float.compare(scores[a], scores[b]));
+            for (int doc = 0; doc < scores.length; doc++) {
+                if (scores[doc] > 0 && (top.size() < topK || scores[doc] > scores[top.peek()])) {
+                    top.offer(doc);
+                    if (top.size() > topK) {
+                        top.poll();
+                    }
+                }
+            }
+            Document[] ranked = new Document[top.size()];
+            for (int i = ranked.length - 1; i >= 0; i--) {
+                int doc = top.poll();
+                ranked[i] = documents.get(doc).mutate().score((double) scores[doc]).build();
+            }
+            return List.of(ranked);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits text into lowercase terms. Characters that commonly appear inside DevOps identifiers
+     * ({@code - _ . / :}) do not break a token, so {@code start-instances} and {@code my-app:1.0}
+     * match as a whole; their parts are emitted as well so {@code instances} still matches.
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? Character.toLowerCase(text.charAt(i)) : ' ';
+            boolean tokenChar = Character.isLetterOrDigit(c) || isJoiner(c);
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                addToken(text.substring(start, i).toLowerCase(), terms);
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static void addToken(String token, List<String> terms) {
+        int from = 0;
+        int to = token.length();
+        while (from < to && isJoiner(token.charAt(from))) {
+            from++;
+        }
+        while (to > from && isJoiner(token.charAt(to - 1))) {
+            to--;
+        }
+        if (to - from < 2) {
+            return;
+        }
+        String term = token.substring(from, to);
+        if (!STOP_WORDS.contains(term)) {
+            terms.add(term);
+        }
+        boolean compound = false;
+        int partStart = 0;
+        for (int i = 0; i <= term.length(); i++) {
+            if (i == term.length() || isJoiner(term.charAt(i))) {
+                if (i < term.length()) {
+                    compound = true;
+                }
+                if (compound && i - partStart >= 2) {
+                    String part = term.substring(partStart, i);
+                    if (!STOP_WORDS.contains(part)) {
+                        terms.add(part);
+                    }
+                }
+                partStart = i + 1;
+            }
+        }
+    }
+
+    private static boolean isJoiner(char c) {
+        return c == '-' || c == '_' || c == '.' || c == '/' || c == ':';
+    }
+
+    private int add(Document document) {
+        int doc = documents.size();
+        documents.add(document);
+        if (doc == documentLengths.length) {
+            documentLengths = Arrays.copyOf(documentLengths, doc * 2);
+            documentTerms = Arrays.copyOf(documentTerms, doc * 2);
+        }
+
+        List<String> terms = tokenize(document.getText());
+        Map<Integer, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            Integer termId = termIds.get(term);
+            if (termId == null) {
+                termId = postings.size();
+                termIds.put(term, termId);
+                postings.add(new Postings());
+                if (termId == liveDocumentFrequency.length) {
+                    liveDocumentFrequency = Arrays.copyOf(liveDocumentFrequency, termId * 2);
+                }
+            }
+            frequencies.merge(termId, 1, Integer::sum);
+        }
+
+        int[] distinct = new int[frequencies.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : frequencies.entrySet()) {
+            int termId = entry.getKey();
+            postings.get(termId).add(doc, entry.getValue());
+            liveDocumentFrequency[termId]++;
+            distinct[i++] = termId;
+        }
+        documentTerms[doc] = distinct;
+        documentLengths[doc] = terms.size();
+        liveLength += terms.size();
+        liveDocuments++;
+        return doc;
+    }
+
+    private void tombstone(String file) {
+        List<Integer> previous = documentsByFile.remove(file);
+        if (previous == null) {
+            return;
+        }
+        for (int doc : previous) {
+            documents.set(doc, null);
+            for (int termId : documentTerms[doc]) {
+                liveDocumentFrequency[termId]--;
+            }
+            documentTerms[doc] = null;
+            liveLength -= documentLengths[doc];
+            liveDocuments--;
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (documents.size() - liveDocuments <= Math.max(liveDocuments, 64)) {
+            return;
+        }
+        Map<String, List<Document>> live = new HashMap<>();
+        documentsByFile.forEach((file, docs) -> live.put(file, docs.stream().map(documents::get).toList()));
+
+        termIds.clear();
+        postings.clear();
+        documents.clear();
+        documentsByFile.clear();
+        Arrays.fill(liveDocumentFrequency, 0);
+        liveLength = 0;
+        liveDocuments = 0;
+        live.forEach((file, docs) -> {
+            List<Integer> added = new ArrayList<>(docs.size());
+            for (Document document : docs) {
+                added.add(add(document));
+            }
+            documentsByFile.put(file, added);
+        });
+    }
+
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int[] freqs = new int[4];
+        private int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+    }
+}
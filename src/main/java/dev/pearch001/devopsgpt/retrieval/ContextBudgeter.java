@@ -0,0 +1,214 @@
+package dev.pearch001.devopsgpt.retrieval;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fits retrieved documents and conversation history into a per-request input token budget before
+ * the prompt is assembled.
+ * <p>
+ * The system prompt and the user's question are always kept. Documents are considered best score
+ * first: exact and near duplicates of an already selected chunk (word-shingle Jaccard similarity
+ * above the threshold) are dropped, as are chunks scoring far below the best one, and the rest are
+ * taken while they fit in the document share of the budget. History gets what is left, newest turns
+ * first, with the rolling summary kept ahead of them when it fits.
+ */
+@Component
+public class ContextBudgeter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextBudgeter.class);
+
+    private static final int SHINGLE_SIZE = 3;
+
+    private final TokenCountEstimator tokenCountEstimator;
+    private final int maxInputTokens;
+    private final double documentShare;
+    private final double duplicateThreshold;
+    private final double minRelativeScore;
+
+    private final DistributionSummary promptTokens;
+    private final Counter duplicatesDropped;
+    private final Counter lowScoreDropped;
+    private final Counter overBudgetDropped;
+    private final Counter historyDropped;
+
+    public ContextBudgeter(TokenCountEstimator tokenCountEstimator,
+                           MeterRegistry meterRegistry,
+                           @Value("${devopsgpt.prompt.max-input-tokens:3000}") int maxInputTokens,
+                           @Value("${devopsgpt.prompt.document-share:0.6}") double documentShare,
+                           @Value("${devopsgpt.prompt.duplicate-threshold:0.8}") double duplicateThreshold,
+                           @Value("${devopsgpt.prompt.min-relative-score:0.3}") double minRelativeScore) {
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.maxInputTokens = maxInputTokens;
+        this.documentShare = documentShare;
+        this.duplicateThreshold = duplicateThreshold;
+        this.minRelativeScore = minRelativeScore;
+        this.promptTokens = DistributionSummary.builder("devopsgpt.prompt.input.tokens").register(meterRegistry);
+        this.duplicatesDropped = meterRegistry.counter("devopsgpt.prompt.documents.dropped", "reason", "duplicate");
+        this.lowScoreDropped = meterRegistry.counter("devopsgpt.prompt.documents.dropped", "reason", "low-score");
+        this.overBudgetDropped = meterRegistry.counter("devopsgpt.prompt.documents.dropped", "reason", "budget");
+        this.historyDropped = meterRegistry.counter("devopsgpt.prompt.history.dropped");
+    }
+
+    /**
+     * Selects the documents and history messages to send with this request.
+     *
+     * @param systemPrompt the system prompt text without the documents
+     * @param userInput    the user's message
+     */
+    public Budget fit(String systemPrompt, String userInput, List<Document> documents, List<Message> history) {
+        int fixedTokens = tokenCountEstimator.estimate(systemPrompt) + tokenCountEstimator.estimate(userInput);
+        int available = Math.max(0, maxInputTokens - fixedTokens);
+
+        int historyTokens = 0;
+        for (Message message : history) {
+            historyTokens += tokenCountEstimator.estimate(message.getText());
+        }
+        // Documents get their share of the budget, or more when the history is shorter than the rest.
+        int documentBudget = Math.max((int) (available * documentShare), available - historyTokens);
+
+        List<Document> selected = selectDocuments(documents, documentBudget);
+        int documentTokens = 0;
+        for (Document document : selected) {
+            documentTokens += tokenCountEstimator.estimate(document.getText());
+        }
+
+        List<Message> keptHistory = selectHistory(history, available - documentTokens);
+        int keptHistoryTokens = 0;
+        for (Message message : keptHistory) {
+            keptHistoryTokens += tokenCountEstimator.estimate(message.getText());
+        }
+
+        int total = fixedTokens + documentTokens + keptHistoryTokens;
+        promptTokens.record(total);
+        logger.debug("Prompt budget: {} of {} input tokens ({} documents of {}, {} history messages of {})",
+                total, maxInputTokens, selected.size(), documents.size(), keptHistory.size(), history.size());
+        return new Budget(selected, keptHistory, total);
+    }
+
+    private List<Document> selectDocuments(List<Document> documents, int budget) {
+        List<Document> ranked = new ArrayList<>(documents);
+        // Unscored documents keep their retrieval order (the sort is stable).
+        ranked.sort(Comparator.comparingDouble((Document d) -> d.getScore() == null ? 0 : d.getScore()).reversed());
+        double bestScore = ranked.isEmpty() || ranked.getFirst().getScore() == null ? 0 : ranked.getFirst().getScore();
+
+        List<Document> selected = new ArrayList<>();
+        List<int[]> selectedShingles = new ArrayList<>();
+        Set<String> selectedIds = new HashSet<>();
+        int used = 0;
+        for (Document document : ranked) {
+            if (bestScore > 0 && document.getScore() != null && document.getScore() < bestScore * minRelativeScore) {
+                lowScoreDropped.increment();
+                continue;
+            }
+            int[] shingles = shingles(document.getText());
+            if (!selectedIds.add(document.getId()) || isNearDuplicate(shingles, selectedShingles)) {
+                duplicatesDropped.increment();
+                continue;
+            }
+            int tokens = tokenCountEstimator.estimate(document.getText());
+            if (used + tokens > budget) {
+                // A smaller, lower-ranked chunk may still fit.
+                overBudgetDropped.increment();
+                continue;
+            }
+            selected.add(document);
+            selectedShingles.add(shingles);
+            used += tokens;
+        }
+        return selected;
+    }
+
+    private List<Message> selectHistory(List<Message> history, int budget) {
+        boolean hasSummary = !history.isEmpty() && history.getFirst().getMessageType() == MessageType.SYSTEM;
+        int summaryTokens = hasSummary ? tokenCountEstimator.estimate(history.getFirst().getText()) : 0;
+        int turnBudget = hasSummary && summaryTokens <= budget ? budget - summaryTokens : budget;
+
+        Deque<Message> kept = new ArrayDeque<>();
+        int used = 0;
+        for (int i = history.size() - 1; i >= (hasSummary ? 1 : 0); i--) {
+            int tokens = tokenCountEstimator.estimate(history.get(i).getText());
+            if (used + tokens > turnBudget) {
+                break;
+            }
+            kept.addFirst(history.get(i));
+            used += tokens;
+        }
+        if (hasSummary && summaryTokens <= budget - used) {
+            kept.addFirst(history.getFirst());
+        }
+        historyDropped.increment(history.size() - kept.size());
+        return List.copyOf(kept);
+    }
+
+    private boolean isNearDuplicate(int[] shingles, List<int[]> selected) {
+        for (int[] other : selected) {
+            if (jaccard(shingles, other) >= duplicateThreshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hashes of the distinct word n-grams of the text, sorted so two sets can be intersected by merging.
+     */
+    static int[] shingles(String text) {
+        String[] words = text.toLowerCase().split("\\W+");
+        List<String> tokens = new ArrayList<>(words.length);
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                tokens.add(word);
+            }
+        }
+        int count = Math.max(1, tokens.size() - SHINGLE_SIZE + 1);
+        int[] hashes = new int[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = String.join(" ", tokens.subList(i, Math.min(tokens.size(), i + SHINGLE_SIZE))).hashCode();
+        }
+        return Arrays.stream(hashes).sorted().distinct().toArray();
+    }
+
+    static double jaccard(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = a.length + b.length - common;
+        return union == 0 ? 1 : (double) common / union;
+    }
+
+    /**
+     * The documents and history chosen for one prompt, and the estimated input tokens they add up to.
+     */
+    public record Budget(List<Document> documents, List<Message> history, int promptTokens) {
+    }
+}
@@ -0,0 +1,187 @@
+package dev.pearch001.devopsgpt.retrieval;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Picks the final context chunks from an over-fetched candidate list with maximal marginal
+ * relevance, so the prompt gets a few complementary chunks instead of several neighbouring chunks
+ * that say the same thing.
+ * <p>
+ * A candidate's relevance blends its retrieval score (relative to the best candidate) with a cheap
+ * lexical score, the share of distinct query terms it contains. Chunks are then taken greedily by
+ * {@code lambda * relevance - (1 - lambda) * similarity}, where similarity is the highest term
+ * vector cosine to any chunk already taken. A candidate at least {@code max-similarity} alike to
+ * a taken chunk is dropped as redundant, and selection stops early once the next pick is less than
+ * {@code min-relevance} times as relevant as the first, so fewer than {@code topK} chunks may be
+ * returned. Returned chunks carry their blended relevance as score.
+ */
+@Component
+public class ContextReranker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextReranker.class);
+
+    private final boolean enabled;
+    private final double lambda;
+    private final double lexicalWeight;
+    private final double maxSimilarity;
+    private final double minRelevance;
+
+    private final DistributionSummary selectedChunks;
+    private final Counter redundantDropped;
+    private final Counter lowRelevanceDropped;
+
+    public ContextReranker(MeterRegistry meterRegistry,
+                           @Value("${devopsgpt.retrieval.rerank.enabled:true}") boolean enabled,
+                           @Value("${devopsgpt.retrieval.rerank.lambda:0.7}") double lambda,
+                           @Value("${devopsgpt.retrieval.rerank.lexical-weight:0.3}") double lexicalWeight,
+                           @Value("${devopsgpt.retrieval.rerank.max-similarity:0.6}") double maxSimilarity,
+                           @Value("${devopsgpt.retrieval.rerank.min-relevance:0.5}") double minRelevance) {
+        this.enabled = enabled;
+        this.lambda = lambda;
+        this.lexicalWeight = lexicalWeight;
+        this.maxSimilarity = maxSimilarity;
+        this.minRelevance = minRelevance;
+        this.selectedChunks = DistributionSummary.builder("devopsgpt.retrieval.rerank.selected").register(meterRegistry);
+        this.redundantDropped = meterRegistry.counter("devopsgpt.retrieval.rerank.dropped", "reason", "redundant");
+        this.lowRelevanceDropped = meterRegistry.counter("devopsgpt.retrieval.rerank.dropped", "reason", "low-relevance");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Selects up to {@code topK} chunks from candidates ranked best first.
+     */
+    public List<Document> rerank(String query, List<Document> candidates, int topK) {
+        if (candidates.isEmpty() || topK <= 0) {
+            return List.of();
+        }
+        Set<String> queryTerms = new HashSet<>(Bm25Index.tokenize(query));
+        double bestScore = 0;
+        for (Document candidate : candidates) {
+            bestScore = Math.max(bestScore, candidate.getScore() == null ? 0 : candidate.getScore());
+        }
+
+        List<Candidate> pool = new ArrayList<>(candidates.size());
+        for (int rank = 0; rank < candidates.size(); rank++) {
+            Document document = candidates.get(rank);
+            // Unscored candidates are valued by their position in the list.
+            double retrieval = bestScore > 0 && document.getScore() != null
+                    ? document.getScore() / bestScore
+                    : 1 - (double) rank / candidates.size();
+            TermVector terms = TermVector.of(document.getText());
+            double lexical = queryTerms.isEmpty() ? 0 : (double) terms.countContained(queryTerms) / queryTerms.size();
+            pool.add(new Candidate(document, (1 - lexicalWeight) * retrieval + lexicalWeight * lexical, terms));
+        }
+
+        List<Candidate> selected = new ArrayList<>(topK);
+        while (selected.size() < topK && !pool.isEmpty()) {
+            Candidate next = null;
+            double nextValue = Double.NEGATIVE_INFINITY;
+            for (int i = pool.size() - 1; i >= 0; i--) {
+                Candidate candidate = pool.get(i);
+                if (!selected.isEmpty()) {
+                    candidate.similarity = Math.max(candidate.similarity, candidate.terms.cosine(selected.getLast().terms));
+                }
+                if (candidate.similarity >= maxSimilarity) {
+                    pool.remove(i);
+                    redundantDropped.increment();
+                    continue;
+                }
+                double value = lambda * candidate.relevance - (1 - lambda) * candidate.similarity;
+                if (value >= nextValue) {
+                    next = candidate;
+                    nextValue = value;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            if (!selected.isEmpty() && next.relevance < selected.getFirst().relevance * minRelevance) {
+                lowRelevanceDropped.increment(Math.min(pool.size(), topK - selected.size()));
+                break;
+            }
+            pool.remove(next);
+            selected.add(next);
+        }
+
+        selectedChunks.record(selected.size());
+        logger.debug("Re-ranked {} candidates into {} chunks", candidates.size(), selected.size());
+        return selected.stream()
+                .map(c -> c.document.mutate().score(c.relevance).build())
+                .toList();
+    }
+
+    private static final class Candidate {
+        private final Document document;
+        private final double relevance;
+        private final TermVector terms;
+        // Highest similarity to any chunk selected so far
+        private double similarity;
+
+        Candidate(Document document, double relevance, TermVector terms) {
+            this.document = document;
+            this.relevance = relevance;
+            this.terms = terms;
+        }
+    }
+
+    /**
+     * Term frequencies of a text, using the keyword index's tokenizer.
+     */
+    private record TermVector(Map<String, Integer> counts, double norm) {
+
+        static TermVector of(String text) {
+            Map<String, Integer> counts = new HashMap<>();
+            for (String term : Bm25Index.tokenize(text)) {
+                counts.merge(term, 1, Integer::sum);
+            }
+            double sumOfSquares = 0;
+            for (int count : counts.values()) {
+                sumOfSquares += (double) count * count;
+            }
+            return new TermVector(counts, Math.sqrt(sumOfSquares));
+        }
+
+        int countContained(Set<String> terms) {
+            int contained = 0;
+            for (String term : terms) {
+                if (counts.containsKey(term)) {
+                    contained++;
+                }
+            }
+            return contained;
+        }
+
+        double cosine(TermVector other) {
+            if (norm == 0 || other.norm == 0) {
+                return 0;
+            }
+            Map<String, Integer> smaller = counts.size() <= other.counts.size() ? counts : other.counts;
+            Map<String, Integer> larger = smaller == counts ? other.counts : counts;
+            double dot = 0;
+            for (Map.Entry<String, Integer> entry : smaller.entrySet()) {
+                Integer count = larger.get(entry.getKey());
+                if (count != null) {
+                    dot += (double) entry.getValue() * count;
+                }
+            }
+            return dot / (norm * other.norm);
+        }
+    }
+}
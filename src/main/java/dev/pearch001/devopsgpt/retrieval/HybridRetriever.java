@@ -0,0 +1,84 @@
+package dev.pearch001.devopsgpt.retrieval;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Retrieves knowledge base chunks by combining vector similarity with BM25 keyword matching.
+ * <p>
+ * Both retrievers over-fetch candidates and the two rankings are merged with reciprocal rank
+ * fusion: each document scores {@code sum(1 / (k + rank))} over the lists it appears in. RRF only
+ * looks at ranks, so cosine similarities and BM25 scores never need to be put on the same scale.
+ * The fused candidates are then narrowed down to at most {@code topK} diverse chunks by the
+ * {@link ContextReranker}, or simply cut at {@code topK} when re-ranking is disabled.
+ */
+@Service
+public class HybridRetriever {
+
+    private static final Logger logger = LoggerFactory.getLogger(HybridRetriever.class);
+
+    private final VectorStore vectorStore;
+    private final Bm25Index lexicalIndex;
+    private final ContextReranker reranker;
+    private final boolean hybrid;
+    private final int candidates;
+    private final int rrfK;
+
+    public HybridRetriever(VectorStore vectorStore, Bm25Index lexicalIndex, ContextReranker reranker,
+                           @Value("${devopsgpt.retrieval.hybrid:true}") boolean hybrid,
+                           @Value("${devopsgpt.retrieval.candidates:20}") int candidates,
+                           @Value("${devopsgpt.retrieval.rrf-k:60}") int rrfK) {
+        this.vectorStore = vectorStore;
+        this.lexicalIndex = lexicalIndex;
+        this.reranker = reranker;
+        this.hybrid = hybrid;
+        this.candidates = candidates;
+        this.rrfK = rrfK;
+    }
+
+    public List<Document> retrieve(String query, int topK) {
+        int fetch = Math.max(candidates, topK);
+        if (!hybrid || lexicalIndex.size() == 0) {
+            if (!reranker.isEnabled()) {
+                return vectorStore.similaritySearch(SearchRequest.builder().query(query).topK(topK).build());
+            }
+            return reranker.rerank(query, vectorStore.similaritySearch(SearchRequest.builder().query(query).topK(fetch).build()), topK);
+        }
+
+        List<Document> lexical = lexicalIndex.search(query, fetch);
+        List<Document> semantic = vectorStore.similaritySearch(SearchRequest.builder().query(query).topK(fetch).build());
+
+        Map<String, Document> byId = new LinkedHashMap<>();
+        Map<String, Double> fused = new HashMap<>();
+        accumulate(semantic, byId, fused);
+        accumulate(lexical, byId, fused);
+
+        List<Document> ranked = fused.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+                .limit(reranker.isEnabled() ? Long.MAX_VALUE : topK)
+                .map(e -> byId.get(e.getKey()).mutate().score(e.getValue()).build())
+                .toList();
+        List<Document> results = reranker.isEnabled() ? reranker.rerank(query, ranked, topK) : ranked;
+        logger.debug("Fused {} vector and {} keyword candidates into {} results", semantic.size(), lexical.size(), results.size());
+        return results;
+    }
+
+    private void accumulate(List<Document> ranking, Map<String, Document> byId, Map<String, Double> fused) {
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            Document document = ranking.get(rank);
+            byId.putIfAbsent(document.getId(), document);
+            fused.merge(document.getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package dev.pearch001.devopsgpt.retrieval;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wraps the embedding model so a question embedded for the semantic answer cache is not embedded
+ * again by the vector store search that follows it. The vector stores embed the query themselves
+ * and take no precomputed vector, so the reuse has to happen here.
+ * <p>
+ * Only single texts, which is how questions are embedded, are remembered: the last
+ * {@code maxEntries} of them, for {@code ttl}. Batches and documents, as ingestion sends them, go
+ * straight to the model.
+ */
+public class ReusingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final long ttlNanos;
+    private final Map<String, Recent> recent;
+
+    public ReusingEmbeddingModel(EmbeddingModel delegate, int maxEntries, Duration ttl) {
+        this.delegate = delegate;
+        this.ttlNanos = ttl.toNanos();
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Recent> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public float[] embed(String text) {
+        long now = System.nanoTime();
+        synchronized (recent) {
+            Recent known = recent.get(text);
+            if (known != null && now - known.embeddedAt() < ttlNanos) {
+                return known.embedding().clone();
+            }
+        }
+        float[] embedding = delegate.embed(text);
+        synchronized (recent) {
+            recent.put(text, new Recent(embedding.clone(), now));
+        }
+        return embedding;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        return delegate.embed(texts);
+    }
+
+    @Override
+    public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+        return delegate.embed(documents, options, batchingStrategy);
+    }
+
+    @Override
+    public EmbeddingResponse embedForResponse(List<String> texts) {
+        return delegate.embedForResponse(texts);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    private record Recent(float[] embedding, long embeddedAt) {
+    }
+}
@@ -0,0 +1,226 @@
+package dev.pearch001.devopsgpt.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache for the AWS reads made by {@link AwsToolExecutor}, so a team asking the same
+ * question at the same time costs one API call instead of one per message.
+ * <p>
+ * Each operation has its own TTL. Concurrent misses for the same key are coalesced into a single
+ * call whose result (or failure) every caller shares. Once an entry passes its TTL it is still
+ * served for the stale-while-revalidate window while one background call refreshes it, so callers
+ * only wait on AWS for cold keys. Values are handed out as futures, so a miss never blocks the
+ * calling thread either. Failures are never cached. Mutating calls invalidate the entries
+ * they affect; a load that was already in flight when its key was invalidated is not stored.
+ */
+@Component
+public class AwsReadCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AwsReadCache.class);
+
+    /**
+     * The cached read operations.
+     */
+    public enum Operation {
+        S3_LIST_BUCKETS("s3:ListBuckets"),
+        CLOUDWATCH_CPU("cloudwatch:GetMetricData"),
+        CLOUDWATCH_METRICS("cloudwatch:GetMetricData:series");
+
+        private final String tag;
+
+        Operation(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final boolean enabled;
+    private final Map<Operation, Duration> ttls = new EnumMap<>(Operation.class);
+    private final long staleNanos;
+    private final int maxEntries;
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key, Load> inFlight = new ConcurrentHashMap<>();
+
+    private final Map<Operation, Counter> hits = new EnumMap<>(Operation.class);
+    private final Map<Operation, Counter> staleHits = new EnumMap<>(Operation.class);
+    private final Map<Operation, Counter> misses = new EnumMap<>(Operation.class);
+    private final Map<Operation, Counter> coalesced = new EnumMap<>(Operation.class);
+
+    public AwsReadCache(MeterRegistry meterRegistry,
+                        @Value("${devopsgpt.aws.cache.enabled:true}") boolean enabled,
+                        @Value("${devopsgpt.aws.cache.ttl.s3-list-buckets:60s}") Duration s3ListBucketsTtl,
+                        @Value("${devopsgpt.aws.cache.ttl.cloudwatch-cpu:60s}") Duration cloudWatchCpuTtl,
+                        @Value("${devopsgpt.aws.cache.ttl.cloudwatch-metrics:60s}") Duration cloudWatchMetricsTtl,
+                        @Value("${devopsgpt.aws.cache.stale-while-revalidate:5m}") Duration staleWhileRevalidate,
+                        @Value("${devopsgpt.aws.cache.max-entries:10000}") int maxEntries) {
+        this.enabled = enabled;
+        this.ttls.put(Operation.S3_LIST_BUCKETS, s3ListBucketsTtl);
+        this.ttls.put(Operation.CLOUDWATCH_CPU, cloudWatchCpuTtl);
+        this.ttls.put(Operation.CLOUDWATCH_METRICS, cloudWatchMetricsTtl);
+        this.staleNanos = staleWhileRevalidate.toNanos();
+        this.maxEntries = maxEntries;
+        for (Operation operation : Operation.values()) {
+            hits.put(operation, meterRegistry.counter("devopsgpt.aws.cache.requests", "operation", operation.tag, "result", "hit"));
+            staleHits.put(operation, meterRegistry.counter("devopsgpt.aws.cache.requests", "operation", operation.tag, "result", "stale"));
+            misses.put(operation, meterRegistry.counter("devopsgpt.aws.cache.requests", "operation", operation.tag, "result", "miss"));
+            coalesced.put(operation, meterRegistry.counter("devopsgpt.aws.cache.requests", "operation", operation.tag, "result", "coalesced"));
+        }
+    }
+
+    /**
+     * Returns the cached value for the key, calling {@code loader} on a miss. A failed call fails
+     * every caller waiting on it and is not cached.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> get(Operation operation, String key, Supplier<CompletableFuture<T>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Key cacheKey = new Key(operation, key);
+        long now = System.nanoTime();
+        Entry entry = entries.get(cacheKey);
+        if (entry != null) {
+            long age = now - entry.loadedAt();
+            long ttl = ttls.get(operation).toNanos();
+            if (age < ttl) {
+                hits.get(operation).increment();
+                return CompletableFuture.completedFuture((T) entry.value());
+            }
+            if (age < ttl + staleNanos) {
+                staleHits.get(operation).increment();
+                refreshInBackground(cacheKey, loader);
+                return CompletableFuture.completedFuture((T) entry.value());
+            }
+        }
+        return (CompletableFuture<T>) load(cacheKey, loader, false);
+    }
+
+    /**
+     * Drops the entry for one key, e.g. after a call that changes what it would return.
+     */
+    public void invalidate(Operation operation, String key) {
+        Key cacheKey = new Key(operation, key);
+        Load running = inFlight.get(cacheKey);
+        if (running != null) {
+            running.invalidated = true;
+        }
+        entries.remove(cacheKey);
+    }
+
+    /**
+     * Drops every entry of an operation, for changes that affect keys which cannot be listed,
+     * such as metric series covering several instances.
+     */
+    public void invalidateAll(Operation operation) {
+        inFlight.forEach((key, running) -> {
+            if (key.operation() == operation) {
+                running.invalidated = true;
+            }
+        });
+        entries.keySet().removeIf(key -> key.operation() == operation);
+    }
+
+    private void refreshInBackground(Key key, Supplier<? extends CompletableFuture<?>> loader) {
+        if (inFlight.containsKey(key)) {
+            return;
+        }
+        load(key, loader, true).exceptionally(e -> {
+            logger.warn("Background refresh of {} {} failed; keeping the stale value", key.operation().tag, key.key(), e);
+            return null;
+        });
+    }
+
+    /**
+     * Single-flight load: the first caller for a key makes the call, later callers share its future.
+     * <p>
+     * An invalidation while the call is in flight marks the load. The value is stored and the mark
+     * checked afterwards, and {@link #invalidate} marks before it removes, so either the load sees
+     * the mark and drops its own entry or the invalidation removes it.
+     */
+    private CompletableFuture<Object> load(Key key, Supplier<? extends CompletableFuture<?>> loader, boolean background) {
+        Load mine = new Load();
+        Load running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            if (!background) {
+                coalesced.get(key.operation()).increment();
+            }
+            return running.result;
+        }
+
+        if (!background) {
+            misses.get(key.operation()).increment();
+        }
+        CompletableFuture<?> call;
+        try {
+            call = loader.get();
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((value, error) -> {
+            if (error == null) {
+                Entry stored = store(key, value);
+                if (mine.invalidated) {
+                    entries.remove(key, stored);
+                }
+            }
+            inFlight.remove(key, mine);
+            if (error == null) {
+                mine.result.complete(value);
+            } else {
+                mine.result.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+        return mine.result;
+    }
+
+    private Entry store(Key key, Object value) {
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            evictOldest();
+        }
+        Entry entry = new Entry(value, System.nanoTime());
+        entries.put(key, entry);
+        return entry;
+    }
+
+    private void evictOldest() {
+        Key oldest = null;
+        long oldestLoadedAt = Long.MAX_VALUE;
+        for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+            if (e.getValue().loadedAt() < oldestLoadedAt) {
+                oldest = e.getKey();
+                oldestLoadedAt = e.getValue().loadedAt();
+            }
+        }
+        if (oldest != null) {
+            entries.remove(oldest);
+        }
+    }
+
+    private record Key(Operation operation, String key) {
+    }
+
+    private record Entry(Object value, long loadedAt) {
+    }
+
+    /**
+     * A call in flight for one key.
+     */
+    private static final class Load {
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private volatile boolean invalidated;
+    }
+}
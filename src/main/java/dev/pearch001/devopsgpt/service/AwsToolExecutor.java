@@ -2,32 +2,79 @@ package dev.pearch001.devopsgpt.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
 import software.amazon.awssdk.services.cloudwatch.model.*;
-import software.amazon.awssdk.services.ec2.Ec2Client;
+import software.amazon.awssdk.services.ec2.Ec2AsyncClient;
+import software.amazon.awssdk.services.ec2.model.DescribeInstancesRequest;
+import software.amazon.awssdk.services.ec2.model.Filter;
+import software.amazon.awssdk.services.ec2.model.Instance;
+import software.amazon.awssdk.services.ec2.model.InstanceStateChange;
+import software.amazon.awssdk.services.ec2.model.Reservation;
 import software.amazon.awssdk.services.ec2.model.StartInstancesRequest;
+import software.amazon.awssdk.services.ec2.model.StartInstancesResponse;
 import software.amazon.awssdk.services.ec2.model.StopInstancesRequest;
-import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.ec2.model.StopInstancesResponse;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.Bucket;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
+/**
+ * Runs the AWS actions behind the tool intents. Each action has a {@code CompletableFuture}
+ * variant that completes on the SDK's event loop, and a blocking variant for synchronous callers.
+ * <p>
+ * Fleet actions take explicit instance IDs and/or a tag selector. Tags are resolved with a paginated
+ * DescribeInstances, and the instances are started or stopped in chunks of {@code batch-size}, all
+ * chunks in parallel. Since one bad ID fails a whole StartInstances/StopInstances call, a chunk that
+ * fails for an instance-specific reason is retried one instance at a time, so the aggregated result
+ * pins the failure on the right instances.
+ */
 @Service
 public class AwsToolExecutor {
 
     private static final Logger logger = LoggerFactory.getLogger(AwsToolExecutor.class);
+    private static final int MAX_LISTED = 50;
 
-    private final Ec2Client ec2Client;
-    private final S3Client s3Client;
-    private final CloudWatchClient cloudWatchClient;
+    private final Ec2AsyncClient ec2Client;
+    private final S3AsyncClient s3Client;
+    private final CloudWatchAsyncClient cloudWatchClient;
+    private final PipelineMetrics pipelineMetrics;
+    private final AwsReadCache readCache;
+    private final CloudWatchMetricsQuery metricsQuery;
+    private final int batchSize;
 
-    public AwsToolExecutor(Ec2Client ec2Client, S3Client s3Client, CloudWatchClient cloudWatchClient) {
+    public AwsToolExecutor(Ec2AsyncClient ec2Client, S3AsyncClient s3Client, CloudWatchAsyncClient cloudWatchClient,
+                           PipelineMetrics pipelineMetrics, AwsReadCache readCache, CloudWatchMetricsQuery metricsQuery,
+                           @Value("${devopsgpt.aws.ec2.batch-size:50}") int batchSize) {
         this.ec2Client = ec2Client;
         this.s3Client = s3Client;
         this.cloudWatchClient = cloudWatchClient;
+        this.pipelineMetrics = pipelineMetrics;
+        this.readCache = readCache;
+        this.metricsQuery = metricsQuery;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The outcome of a fleet action for one instance; {@code error} is {@code null} on success.
+     */
+    public record InstanceActionResult(String instanceId, String previousState, String currentState, String error) {
     }
 
     /**
@@ -36,10 +83,15 @@ public class AwsToolExecutor {
      * @return A confirmation message.
      */
     public String startEc2Instance(String instanceId) {
+        return await(startEc2InstanceAsync(instanceId));
+    }
+
+    public CompletableFuture<String> startEc2InstanceAsync(String instanceId) {
         logger.info("Executing AWS action: Starting EC2 instance '{}'", instanceId);
         StartInstancesRequest request = StartInstancesRequest.builder().instanceIds(instanceId).build();
-        ec2Client.startInstances(request);
-        return String.format("✅ Action sent: EC2 instance %s is being started.", instanceId);
+        return recordErrors("ec2:StartInstances", ec2Client.startInstances(request))
+                .whenComplete((response, error) -> invalidateMetrics(List.of(instanceId)))
+                .thenApply(response -> String.format("✅ Action sent: EC2 instance %s is being started.", instanceId));
     }
 
     /**
@@ -48,58 +100,301 @@ public class AwsToolExecutor {
      * @return A confirmation message.
      */
     public String stopEc2Instance(String instanceId) {
-        logger.info("Executing AWS action: Starting EC2 instance '{}'", instanceId);
+        return await(stopEc2InstanceAsync(instanceId));
+    }
+
+    public CompletableFuture<String> stopEc2InstanceAsync(String instanceId) {
+        logger.info("Executing AWS action: Stopping EC2 instance '{}'", instanceId);
         StopInstancesRequest request = StopInstancesRequest.builder().instanceIds(instanceId).build();
-        ec2Client.stopInstances(request);
-        return String.format("✅ Action sent: EC2 instance %s is being started.", instanceId);
+        return recordErrors("ec2:StopInstances", ec2Client.stopInstances(request))
+                .whenComplete((response, error) -> invalidateMetrics(List.of(instanceId)))
+                .thenApply(response -> String.format("✅ Action sent: EC2 instance %s is being stopped.", instanceId));
+    }
+
+    /**
+     * Starts every listed instance plus every stopped instance matching the tag selector.
+     * @param instanceIds Explicit instance IDs, possibly empty.
+     * @param tagSelector {@code key=value[,key=value...]}, or {@code null}.
+     * @return A per-instance summary.
+     */
+    public CompletableFuture<String> startEc2InstancesAsync(List<String> instanceIds, String tagSelector) {
+        logger.info("Executing AWS action: Starting EC2 instances {} / tags '{}'", instanceIds, tagSelector);
+        return resolveTargets(instanceIds, tagSelector, List.of("stopped"))
+                .thenCompose(targets -> runInBatches("ec2:StartInstances", targets, chunk -> ec2Client
+                        .startInstances(StartInstancesRequest.builder().instanceIds(chunk).build())
+                        .thenApply(StartInstancesResponse::startingInstances)))
+                .thenApply(results -> describeResults("Start", tagSelector, results));
+    }
+
+    /**
+     * Stops every listed instance plus every pending or running instance matching the tag selector.
+     * @param instanceIds Explicit instance IDs, possibly empty.
+     * @param tagSelector {@code key=value[,key=value...]}, or {@code null}.
+     * @return A per-instance summary.
+     */
+    public CompletableFuture<String> stopEc2InstancesAsync(List<String> instanceIds, String tagSelector) {
+        logger.info("Executing AWS action: Stopping EC2 instances {} / tags '{}'", instanceIds, tagSelector);
+        return resolveTargets(instanceIds, tagSelector, List.of("pending", "running"))
+                .thenCompose(targets -> runInBatches("ec2:StopInstances", targets, chunk -> ec2Client
+                        .stopInstances(StopInstancesRequest.builder().instanceIds(chunk).build())
+                        .thenApply(StopInstancesResponse::stoppingInstances)))
+                .thenApply(results -> describeResults("Stop", tagSelector, results));
     }
 
     /**
-     * Lists all S3 buckets in the configured region.
+     * Finds the IDs of instances in one of {@code states} carrying every tag of the selector,
+     * following DescribeInstances pagination to the end.
+     */
+    public CompletableFuture<List<String>> findInstanceIdsAsync(String tagSelector, Collection<String> states) {
+        List<Filter> filters = new ArrayList<>();
+        for (String tag : tagSelector.split(",")) {
+            int eq = tag.indexOf('=');
+            filters.add(Filter.builder().name("tag:" + tag.substring(0, eq)).values(tag.substring(eq + 1)).build());
+        }
+        filters.add(Filter.builder().name("instance-state-name").values(states).build());
+        DescribeInstancesRequest request = DescribeInstancesRequest.builder().filters(filters).maxResults(1000).build();
+
+        List<String> ids = new ArrayList<>();
+        return recordErrors("ec2:DescribeInstances", ec2Client.describeInstancesPaginator(request)
+                .subscribe(page -> {
+                    for (Reservation reservation : page.reservations()) {
+                        for (Instance instance : reservation.instances()) {
+                            ids.add(instance.instanceId());
+                        }
+                    }
+                }))
+                .thenApply(done -> ids);
+    }
+
+    private CompletableFuture<List<String>> resolveTargets(List<String> instanceIds, String tagSelector, Collection<String> states) {
+        if (tagSelector == null) {
+            return CompletableFuture.completedFuture(List.copyOf(new LinkedHashSet<>(instanceIds)));
+        }
+        return findInstanceIdsAsync(tagSelector, states).thenApply(tagged -> {
+            LinkedHashSet<String> targets = new LinkedHashSet<>(instanceIds);
+            targets.addAll(tagged);
+            return List.copyOf(targets);
+        });
+    }
+
+    private CompletableFuture<List<InstanceActionResult>> runInBatches(
+            String operation, List<String> instanceIds, Function<List<String>, CompletableFuture<List<InstanceStateChange>>> call) {
+        List<CompletableFuture<List<InstanceActionResult>>> batches = new ArrayList<>();
+        for (int from = 0; from < instanceIds.size(); from += batchSize) {
+            batches.add(runBatch(operation, instanceIds.subList(from, Math.min(instanceIds.size(), from + batchSize)), call));
+        }
+        return CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new))
+                .thenApply(done -> batches.stream().flatMap(batch -> batch.join().stream()).toList());
+    }
+
+    private CompletableFuture<List<InstanceActionResult>> runBatch(
+            String operation, List<String> chunk, Function<List<String>, CompletableFuture<List<InstanceStateChange>>> call) {
+        CompletableFuture<List<InstanceStateChange>> request;
+        try {
+            request = call.apply(chunk);
+        } catch (RuntimeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+        return recordErrors(operation, request)
+                .handle((changes, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(toResults(chunk, changes));
+                    }
+                    Throwable cause = unwrap(error);
+                    if (chunk.size() > 1 && isInstanceSpecific(cause)) {
+                        logger.warn("{} failed for a batch of {} ({}); retrying one instance at a time", operation, chunk.size(), errorCode(cause));
+                        List<CompletableFuture<List<InstanceActionResult>>> singles = chunk.stream()
+                                .map(id -> runBatch(operation, List.of(id), call))
+                                .toList();
+                        return CompletableFuture.allOf(singles.toArray(CompletableFuture[]::new))
+                                .thenApply(done -> singles.stream().flatMap(single -> single.join().stream()).toList());
+                    }
+                    return CompletableFuture.completedFuture(chunk.stream()
+                            .map(id -> new InstanceActionResult(id, null, null, errorCode(cause)))
+                            .toList());
+                })
+                .thenCompose(Function.identity())
+                .whenComplete((results, error) -> invalidateMetrics(chunk));
+    }
+
+    /**
+     * Drops cached metrics that a state change makes outdated: the CPU reading of each instance,
+     * and all metric series, whose keys may cover any of them.
+     */
+    private void invalidateMetrics(List<String> instanceIds) {
+        instanceIds.forEach(id -> readCache.invalidate(AwsReadCache.Operation.CLOUDWATCH_CPU, id));
+        readCache.invalidateAll(AwsReadCache.Operation.CLOUDWATCH_METRICS);
+    }
+
+    private static List<InstanceActionResult> toResults(List<String> chunk, List<InstanceStateChange> changes) {
+        Map<String, InstanceStateChange> byId = new HashMap<>();
+        changes.forEach(change -> byId.put(change.instanceId(), change));
+        List<InstanceActionResult> results = new ArrayList<>(chunk.size());
+        for (String id : chunk) {
+            InstanceStateChange change = byId.get(id);
+            results.add(change == null
+                    ? new InstanceActionResult(id, null, null, "not reported by EC2")
+                    : new InstanceActionResult(id, change.previousState().nameAsString(), change.currentState().nameAsString(), null));
+        }
+        return results;
+    }
+
+    private static boolean isInstanceSpecific(Throwable error) {
+        String code = errorCode(error);
+        return code.startsWith("InvalidInstanceID") || code.equals("IncorrectInstanceState") || code.equals("UnsupportedOperation");
+    }
+
+    private static String errorCode(Throwable error) {
+        if (error instanceof AwsServiceException e && e.awsErrorDetails() != null && e.awsErrorDetails().errorCode() != null) {
+            return e.awsErrorDetails().errorCode();
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    /**
+     * Formats an aggregated fleet result, listing at most {@link #MAX_LISTED} instances per section.
+     */
+    static String describeResults(String action, String tagSelector, List<InstanceActionResult> results) {
+        if (results.isEmpty()) {
+            return tagSelector == null
+                    ? "No instances to " + action.toLowerCase() + "."
+                    : String.format("No instances matching %s are in a state to %s.", tagSelector, action.toLowerCase());
+        }
+        List<InstanceActionResult> succeeded = results.stream().filter(r -> r.error() == null).toList();
+        List<InstanceActionResult> failed = results.stream().filter(r -> r.error() != null).toList();
+
+        StringBuilder reply = new StringBuilder();
+        if (!succeeded.isEmpty()) {
+            reply.append(String.format("✅ %s sent for %d of %d EC2 instances:", action, succeeded.size(), results.size()));
+            appendListed(reply, succeeded, r -> r.instanceId() + ": " + r.previousState() + " → " + r.currentState());
+        }
+        if (!failed.isEmpty()) {
+            if (!reply.isEmpty()) {
+                reply.append("\n\n");
+            }
+            reply.append(String.format("❌ %s failed for %d of %d EC2 instances:", action, failed.size(), results.size()));
+            appendListed(reply, failed, r -> r.instanceId() + ": " + r.error());
+        }
+        return reply.toString();
+    }
+
+    private static void appendListed(StringBuilder reply, List<InstanceActionResult> results, Function<InstanceActionResult, String> line) {
+        results.stream().limit(MAX_LISTED).forEach(r -> reply.append("\n- ").append(line.apply(r)));
+        if (results.size() > MAX_LISTED) {
+            reply.append("\n- …and ").append(results.size() - MAX_LISTED).append(" more");
+        }
+    }
+
+    /**
+     * Lists all S3 buckets in the configured region. Served from {@link AwsReadCache}.
      * @return A formatted string of bucket names.
      */
     public String listS3Buckets() {
+        return await(listS3BucketsAsync());
+    }
+
+    public CompletableFuture<String> listS3BucketsAsync() {
         logger.info("Executing AWS action: Listing S3 buckets");
-        List<String> bucketNames = s3Client.listBuckets().buckets().stream().map(Bucket::name).toList();
-        return "Found the following S3 buckets:\n- " + String.join("\n- ", bucketNames);
+        return readCache.get(AwsReadCache.Operation.S3_LIST_BUCKETS, "",
+                        () -> recordErrors("s3:ListBuckets", s3Client.listBuckets())
+                                .thenApply(response -> response.buckets().stream().map(Bucket::name).toList()))
+                .thenApply(bucketNames -> "Found the following S3 buckets:\n- " + String.join("\n- ", bucketNames));
     }
 
     /**
-     * Retrieves the average CPU utilization for an EC2 instance over the last hour.
+     * Retrieves the average CPU utilization for an EC2 instance over the last hour. Served from
+     * {@link AwsReadCache}; an instance without datapoints is cached as such, errors are not.
      * @param instanceId The ID of the instance to monitor.
      * @return A string with the metric data or an error message.
      */
     public String getCloudWatchCpuUtilization(String instanceId) {
+        return await(getCloudWatchCpuUtilizationAsync(instanceId));
+    }
+
+    public CompletableFuture<String> getCloudWatchCpuUtilizationAsync(String instanceId) {
         logger.info("Executing AWS action: Getting CloudWatch CPU for instance '{}'", instanceId);
+        return readCache.get(AwsReadCache.Operation.CLOUDWATCH_CPU, instanceId, () -> fetchAverageCpu(instanceId))
+                .thenApply(avgCpu -> avgCpu
+                        .map(cpu -> String.format("📈 The average CPU utilization for instance %s over the last hour was %.2f%%.", instanceId, cpu))
+                        .orElse("Could not retrieve CPU data for instance " + instanceId + ". The instance may be new or metrics might be unavailable."))
+                .exceptionally(e -> {
+                    logger.error("Failed to get CloudWatch metrics for instance {}: {}", instanceId, unwrap(e).getMessage());
+                    return "❌ Error retrieving CloudWatch metrics. Please check if the instance ID is correct and has monitoring enabled.";
+                });
+    }
+
+    /**
+     * Retrieves downsampled time series of several metrics for the listed instances plus every
+     * running instance matching the tag selector, in as few GetMetricData calls as possible.
+     * @param instanceIds Explicit instance IDs, possibly empty.
+     * @param tagSelector {@code key=value[,key=value...]}, or {@code null}.
+     * @return A per-instance summary of each series, or an error message.
+     */
+    public CompletableFuture<String> getCloudWatchMetricsAsync(List<String> instanceIds, String tagSelector,
+                                                               Set<CloudWatchMetricsQuery.Ec2Metric> metrics, Duration window) {
+        logger.info("Executing AWS action: Getting CloudWatch {} over {} for instances {} / tags '{}'", metrics, window, instanceIds, tagSelector);
+        return resolveTargets(instanceIds, tagSelector, List.of("pending", "running", "stopping", "stopped"))
+                .thenCompose(targets -> targets.isEmpty()
+                        ? CompletableFuture.completedFuture(String.format("No instances match %s.", tagSelector))
+                        : metricsQuery.query(targets, metrics, window).thenApply(CloudWatchMetricsQuery::describe))
+                .exceptionally(e -> {
+                    logger.error("Failed to get CloudWatch metrics for instances {} / tags '{}': {}", instanceIds, tagSelector, unwrap(e).getMessage());
+                    return "❌ Error retrieving CloudWatch metrics. Please check the instance IDs or tags and that monitoring is enabled.";
+                });
+    }
+
+    private CompletableFuture<Optional<Double>> fetchAverageCpu(String instanceId) {
+        GetMetricDataRequest request = GetMetricDataRequest.builder()
+                .startTime(Instant.now().minus(1, ChronoUnit.HOURS))
+                .endTime(Instant.now())
+                .metricDataQueries(
+                        MetricDataQuery.builder()
+                                .id("m1")
+                                .metricStat(MetricStat.builder()
+                                        .metric(Metric.builder()
+                                                .namespace("AWS/EC2")
+                                                .metricName("CPUUtilization")
+                                                .dimensions(Dimension.builder().name("InstanceId").value(instanceId).build())
+                                                .build())
+                                        .period(3600)
+                                        .stat("Average")
+                                        .build())
+                                .returnData(true)
+                                .build())
+                .build();
+
+        return recordErrors("cloudwatch:GetMetricData", cloudWatchClient.getMetricData(request))
+                .thenApply(response -> {
+                    if (!response.metricDataResults().isEmpty() && !response.metricDataResults().get(0).values().isEmpty()) {
+                        return Optional.of(response.metricDataResults().get(0).values().get(0));
+                    }
+                    return Optional.empty();
+                });
+    }
+
+    private <T> CompletableFuture<T> recordErrors(String operation, CompletableFuture<T> call) {
+        return call.whenComplete((response, error) -> {
+            if (error != null) {
+                pipelineMetrics.recordAwsError(operation, unwrap(error));
+            }
+        });
+    }
+
+    /**
+     * Waits for an action and rethrows its failure as the SDK exception rather than a {@link CompletionException}.
+     */
+    static <T> T await(CompletableFuture<T> future) {
         try {
-            GetMetricDataRequest request = GetMetricDataRequest.builder()
-                    .startTime(Instant.now().minus(1, ChronoUnit.HOURS))
-                    .endTime(Instant.now())
-                    .metricDataQueries(
-                            MetricDataQuery.builder()
-                                    .id("m1")
-                                    .metricStat(MetricStat.builder()
-                                            .metric(Metric.builder()
-                                                    .namespace("AWS/EC2")
-                                                    .metricName("CPUUtilization")
-                                                    .dimensions(Dimension.builder().name("InstanceId").value(instanceId).build())
-                                                    .build())
-                                            .period(3600)
-                                            .stat("Average")
-                                            .build())
-                                    .returnData(true)
-                                    .build())
-                    .build();
-
-            GetMetricDataResponse response = cloudWatchClient.getMetricData(request);
-            if (!response.metricDataResults().isEmpty() && !response.metricDataResults().get(0).values().isEmpty()) {
-                Double avgCpu = response.metricDataResults().get(0).values().get(0);
-                return String.format("📈 The average CPU utilization for instance %s over the last hour was %.2f%%.", instanceId, avgCpu);
+            return future.join();
+        } catch (CompletionException e) {
+            if (unwrap(e) instanceof RuntimeException cause) {
+                throw cause;
             }
-            return "Could not retrieve CPU data for instance " + instanceId + ". The instance may be new or metrics might be unavailable.";
-        } catch (Exception e) {
-            logger.error("Failed to get CloudWatch metrics for instance {}: {}", instanceId, e.getMessage());
-            return "❌ Error retrieving CloudWatch metrics. Please check if the instance ID is correct and has monitoring enabled.";
+            throw e;
         }
     }
+
+    static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
 }
@@ -2,22 +2,36 @@ package dev.pearch001.devopsgpt.service;
 
 import dev.pearch001.devopsgpt.model.DialogueState;
 import dev.pearch001.devopsgpt.model.EnhancedChatResponse;
+import dev.pearch001.devopsgpt.retrieval.ContextBudgeter;
+import dev.pearch001.devopsgpt.retrieval.HybridRetriever;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import jakarta.annotation.PreDestroy;
 import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.util.Map;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class ChatService {
@@ -25,11 +39,22 @@ public class ChatService {
     private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
     private final ChatClient chatClient;
 
-    private final VectorStore vectorStore; // Inject the VectorStore
+    private final HybridRetriever retriever;
+    private final ContextBudgeter contextBudgeter;
 
     private final SessionManager sessionManager;
     private final DialogueStateTracker dialogueStateTracker;
     private final ReasoningEngine reasoningEngine;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final PipelineMetrics pipelineMetrics;
+    private final LlmDispatcher llmDispatcher;
+    private final ExecutorService stageExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${devopsgpt.pipeline.retrieval-timeout:3s}")
+    private Duration retrievalTimeout;
+
+    @Value("${devopsgpt.pipeline.history-timeout:500ms}")
+    private Duration historyTimeout;
 
 
     private static final String RAG_PROMPT_TEMPLATE = """
@@ -53,15 +78,19 @@ public class ChatService {
         """;
 
     /**
-     * Spring AI's ChatClient is automatically configured and injected.
-     * @param chatClientBuilder The builder used to create a ChatClient instance.
+     * The shared ChatClient is built once in {@link dev.pearch001.devopsgpt.config.AiConfig}.
+     * @param chatClient The client used for LLM calls, which go through the {@link LlmDispatcher}.
      */
-    public ChatService(ChatClient.Builder chatClientBuilder, VectorStore vectorStore, SessionManager sessionManager, DialogueStateTracker dialogueStateTracker, ReasoningEngine reasoningEngine) {
-        this.chatClient = chatClientBuilder.build();
-        this.vectorStore = vectorStore;
+    public ChatService(ChatClient chatClient, HybridRetriever retriever, ContextBudgeter contextBudgeter, SessionManager sessionManager, DialogueStateTracker dialogueStateTracker, ReasoningEngine reasoningEngine, SemanticAnswerCache semanticAnswerCache, PipelineMetrics pipelineMetrics, LlmDispatcher llmDispatcher) {
+        this.chatClient = chatClient;
+        this.retriever = retriever;
+        this.contextBudgeter = contextBudgeter;
         this.sessionManager = sessionManager;
         this.dialogueStateTracker = dialogueStateTracker;
         this.reasoningEngine = reasoningEngine;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.pipelineMetrics = pipelineMetrics;
+        this.llmDispatcher = llmDispatcher;
     }
 
     /**
@@ -71,13 +100,21 @@ public class ChatService {
      */
     public String getChatReply(String userMessage) {
         logger.info("Processing chat message using Spring AI: '{}'", userMessage);
-        return   "(Mocked LLM response): " + userMessage.substring(0, Math.min(100, userMessage.length())) + "...";
-        /*return chatClient.prompt()
-                .system(SYSTEM_PROMPT) // Set the system persona for the chat
-                .user(userMessage)   // Provide the user's message
-                .call()              // Execute the call to the LLM
-                .content();          // Extract the string content from the response
-*/    }
+        int promptTokens = contextBudgeter.fit(SYSTEM_PROMPT, userMessage, List.of(), List.of()).promptTokens();
+        long llmStart = System.nanoTime();
+        ChatResponse response = llmDispatcher.call(LlmDispatcher.Priority.INTERACTIVE, promptTokens,
+                () -> chatClient.prompt()
+                        .system(SYSTEM_PROMPT) // Set the system persona for the chat
+                        .user(userMessage)   // Provide the user's message
+                        .call()              // Execute the call to the LLM
+                        .chatResponse(),
+                LlmDispatcher::totalTokens);
+        pipelineMetrics.recordStage(PipelineMetrics.Stage.LLM, DialogueState.Intent.GENERAL_QUERY, llmStart);
+
+        String reply = response.getResult().getOutput().getText();
+        pipelineMetrics.recordTokens(response.getMetadata().getUsage(), promptTokens, reply);
+        return reply;
+    }
 
     /**
      * Generates a reply using RAG.
@@ -85,24 +122,26 @@ public class ChatService {
     public String getRagReply(String userMessage) {
         logger.info("Received RAG chat request: '{}'", userMessage);
 
-        // 1. Retrieve relevant documents from the vector store
-        List<Document> similarDocuments = vectorStore.similaritySearch(
-                SearchRequest.builder()
-                        .query(userMessage) // Set the query
-                        .topK(3)            // Retrieve top 3 documents
-                        .build()            // Build the SearchRequest
-        );
+        SemanticAnswerCache.Key cacheKey = semanticAnswerCache.key("rag", userMessage);
+        Optional<EnhancedChatResponse> cached = semanticAnswerCache.get(cacheKey);
+        if (cached.isPresent()) {
+            return cached.get().response();
+        }
+        long start = System.nanoTime();
+
+        // 1. Retrieve relevant documents (vector + keyword search)
+        List<Document> retrievedDocuments = retriever.retrieve(userMessage, 3);
+        pipelineMetrics.recordStage(PipelineMetrics.Stage.RETRIEVAL, DialogueState.Intent.GENERAL_QUERY, start);
+        pipelineMetrics.recordContext(retrievedDocuments.size(), 0);
+        // Drop duplicate and low-scoring chunks and keep the rest within the prompt token budget
+        ContextBudgeter.Budget budget = contextBudgeter.fit(RAG_PROMPT_TEMPLATE, userMessage, retrievedDocuments, List.of());
+        List<Document> similarDocuments = budget.documents();
 
         // Log the source documents used, fulfilling the deliverable
-        List<String> sourceDocuments = similarDocuments.stream()
-                .map(doc -> doc.getMetadata().get("source").toString())
-                .distinct()
-                .collect(Collectors.toList());
+        List<String> sourceDocuments = ReasoningEngine.extractSources(similarDocuments);
         logger.info("Found {} relevant document sources: {}", sourceDocuments.size(), sourceDocuments);
 
-        String documentsText = similarDocuments.stream()
-                .map(Document::getText) // Replace with the correct method
-                .collect(Collectors.joining("\n---\n"));
+        String documentsText = ReasoningEngine.joinDocuments(similarDocuments);
 
         // 2. Create a prompt with the retrieved documents and user question
         PromptTemplate promptTemplate = new PromptTemplate(RAG_PROMPT_TEMPLATE);
@@ -112,9 +151,15 @@ public class ChatService {
         ));
 
         // 3. Send the enhanced prompt to the LLM
-        ChatResponse response = (ChatResponse) chatClient.prompt(prompt).call();
+        long llmStart = System.nanoTime();
+        ChatResponse response = llmDispatcher.call(LlmDispatcher.Priority.INTERACTIVE, budget.promptTokens(),
+                () -> chatClient.prompt(prompt).call().chatResponse(), LlmDispatcher::totalTokens);
+        pipelineMetrics.recordStage(PipelineMetrics.Stage.LLM, DialogueState.Intent.GENERAL_QUERY, llmStart);
 
-        return response.getResult().getOutput().getText();
+        String reply = response.getResult().getOutput().getText();
+        pipelineMetrics.recordTokens(response.getMetadata().getUsage(), budget.promptTokens(), reply);
+        semanticAnswerCache.put(cacheKey, new EnhancedChatResponse(reply, sourceDocuments), (System.nanoTime() - start) / 1_000_000);
+        return reply;
     }
 
     /**
@@ -123,29 +168,188 @@ public class ChatService {
     public EnhancedChatResponse getAdvancedReply(String sessionId, String userMessage) {
         logger.info("Orchestrating response for session '{}'", sessionId);
 
+        long requestStart = System.nanoTime();
+
         // 1. Track dialogue state to understand intent
         DialogueState state = dialogueStateTracker.trackState(sessionId, userMessage);
+        DialogueState.Intent intent = state.getCurrentIntent();
+        pipelineMetrics.recordStage(PipelineMetrics.Stage.INTENT, intent, requestStart);
 
-        // 2. Retrieve relevant documents for context (RAG)
-        List<Document> context = vectorStore.similaritySearch(
-                SearchRequest.builder()
-                        .query(userMessage) // Set the query
-                        .topK(3)            // Retrieve top 3 documents
-                        .build()            // Build the SearchRequest
-        );
-
-        // 3. Get conversation history
-        var history = sessionManager.getHistory(sessionId);
+        // A cached answer is only safe for standalone questions; follow-ups depend on the history.
+        SemanticAnswerCache.Key cacheKey = null;
+        if (intent == DialogueState.Intent.GENERAL_QUERY && !sessionManager.hasHistory(sessionId)) {
+            cacheKey = semanticAnswerCache.key("advanced", userMessage);
+            Optional<EnhancedChatResponse> cached = semanticAnswerCache.get(cacheKey);
+            if (cached.isPresent()) {
+                sessionManager.addMessage(sessionId, new UserMessage(userMessage));
+                sessionManager.addMessage(sessionId, new AssistantMessage(cached.get().response()));
+                pipelineMetrics.recordStage(PipelineMetrics.Stage.TOTAL, intent, requestStart);
+                return cached.get();
+            }
+        }
+        long start = System.nanoTime();
 
-        logger.info("Retrieved {} messages from session history for '{}'", history.size(), sessionId);
+        // 2-3. Retrieve relevant documents for context (RAG) and get conversation history
+        StageResults stages = gatherContext(sessionId, userMessage, state);
 
         // 4. Use the Reasoning Engine to decide the best course of action
-        EnhancedChatResponse response = reasoningEngine.reason(state, userMessage, context, history);
+        long reasoningStart = System.nanoTime();
+        EnhancedChatResponse response = reasoningEngine.reason(state, userMessage, stages.context(), stages.history());
+        pipelineMetrics.recordStage(PipelineMetrics.Stage.REASONING, intent, reasoningStart);
+        if (cacheKey != null) {
+            semanticAnswerCache.put(cacheKey, response, (System.nanoTime() - start) / 1_000_000);
+        }
 
         // 5. Update session history with the new interaction
         sessionManager.addMessage(sessionId, new UserMessage(userMessage));
         sessionManager.addMessage(sessionId, new AssistantMessage(response.response()));
 
+        pipelineMetrics.recordStage(PipelineMetrics.Stage.TOTAL, intent, requestStart);
         return response;
     }
-}
\ No newline at end of file
+
+    /**
+     * Streaming variant of {@link #getAdvancedReply}. The source documents are sent as the first
+     * event, followed by the reply tokens as they arrive from the LLM. The full reply is only
+     * written to the session history, and to the semantic cache, once the stream completes; a
+     * cached answer is sent as a single token event.
+     */
+    public Flux<ServerSentEvent<Object>> streamAdvancedReply(String sessionId, String userMessage) {
+        logger.info("Orchestrating streaming response for session '{}'", sessionId);
+
+        // Intent tracking, the cache lookup and retrieval are blocking, so keep them off the request thread.
+        return Mono.fromCallable(() -> {
+                    long requestStart = System.nanoTime();
+                    DialogueState state = dialogueStateTracker.trackState(sessionId, userMessage);
+                    DialogueState.Intent intent = state.getCurrentIntent();
+                    pipelineMetrics.recordStage(PipelineMetrics.Stage.INTENT, intent, requestStart);
+
+                    // Same rule as getAdvancedReply: only standalone questions are cached.
+                    SemanticAnswerCache.Key cacheKey = null;
+                    if (intent == DialogueState.Intent.GENERAL_QUERY && !sessionManager.hasHistory(sessionId)) {
+                        cacheKey = semanticAnswerCache.key("advanced", userMessage);
+                        Optional<EnhancedChatResponse> cached = semanticAnswerCache.get(cacheKey);
+                        if (cached.isPresent()) {
+                            ReasoningEngine.StreamingReply reply = new ReasoningEngine.StreamingReply(
+                                    cached.get().sourceDocuments(), Flux.just(cached.get().response()));
+                            return new StreamPlan(intent, requestStart, requestStart, null, reply);
+                        }
+                    }
+                    long start = System.nanoTime();
+                    StageResults stages = gatherContext(sessionId, userMessage, state);
+                    return new StreamPlan(intent, requestStart, start, cacheKey,
+                            reasoningEngine.streamReason(state, userMessage, stages.context(), stages.history()));
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(plan -> {
+                    ReasoningEngine.StreamingReply reply = plan.reply();
+                    StringBuilder fullReply = new StringBuilder();
+
+                    Flux<ServerSentEvent<Object>> sources = Flux.just(ServerSentEvent.builder()
+                            .event("sources")
+                            .data(reply.sourceDocuments())
+                            .build());
+
+                    Flux<ServerSentEvent<Object>> tokens = reply.tokens()
+                            .doOnNext(fullReply::append)
+                            .map(token -> ServerSentEvent.builder()
+                                    .event("token")
+                                    .data(token)
+                                    .build());
+
+                    Flux<ServerSentEvent<Object>> done = Mono.fromCallable(() -> {
+                        if (plan.cacheKey() != null) {
+                            semanticAnswerCache.put(plan.cacheKey(), new EnhancedChatResponse(fullReply.toString(), reply.sourceDocuments()),
+                                    (System.nanoTime() - plan.start()) / 1_000_000);
+                        }
+                        sessionManager.addMessage(sessionId, new UserMessage(userMessage));
+                        sessionManager.addMessage(sessionId, new AssistantMessage(fullReply.toString()));
+                        pipelineMetrics.recordStage(PipelineMetrics.Stage.TOTAL, plan.intent(), plan.requestStart());
+                        return ServerSentEvent.builder().event("done").data("").build();
+                    }).flux();
+
+                    return Flux.concat(sources, tokens, done);
+                })
+                // Headers are already sent once the stream starts, so a shed call is reported as an event.
+                .onErrorResume(LlmOverloadedException.class, e -> Flux.just(ServerSentEvent.builder()
+                        .event("error")
+                        .data(Map.of("error", e.getMessage(), "retryAfterSeconds", Math.max(1, e.getRetryAfter().toSeconds())))
+                        .build()));
+    }
+
+    /**
+     * Loads what the reasoning step needs for this intent. Tool-style intents never use retrieved
+     * documents, so they skip the vector store round trip entirely. Otherwise retrieval and history
+     * loading run concurrently on virtual threads, each under its own deadline counted from when both
+     * were started, so the waits overlap rather than add up; a stage that misses its deadline or
+     * fails is cancelled and the request continues without its result.
+     * <p>
+     * State tracking has already run at this point: it is in-memory and its intent decides whether
+     * retrieval is needed at all.
+     */
+    private StageResults gatherContext(String sessionId, String userMessage, DialogueState state) {
+        DialogueState.Intent intent = state.getCurrentIntent();
+        if (!reasoningEngine.needsContext(intent)) {
+            logger.info("Skipping retrieval for intent {}", intent);
+            long start = System.nanoTime();
+            List<Message> messages = sessionManager.getHistory(sessionId);
+            pipelineMetrics.recordStage(PipelineMetrics.Stage.HISTORY, intent, start);
+            pipelineMetrics.recordContext(0, messages.size());
+            return new StageResults(List.of(), messages);
+        }
+
+        long started = System.nanoTime();
+        Future<List<Document>> retrieval = stageExecutor.submit(() -> {
+            long start = System.nanoTime();
+            List<Document> documents = retriever.retrieve(userMessage, 3);
+            pipelineMetrics.recordStage(PipelineMetrics.Stage.RETRIEVAL, intent, start);
+            return documents;
+        });
+        Future<List<Message>> history = stageExecutor.submit(() -> {
+            long start = System.nanoTime();
+            List<Message> messages = sessionManager.getHistory(sessionId);
+            pipelineMetrics.recordStage(PipelineMetrics.Stage.HISTORY, intent, start);
+            return messages;
+        });
+
+        List<Message> messages = awaitStage("history", history, started, historyTimeout, List.of());
+        List<Document> context = awaitStage("retrieval", retrieval, started, retrievalTimeout, List.of());
+        pipelineMetrics.recordContext(context.size(), messages.size());
+        logger.info("Retrieved {} documents and {} messages from session history for '{}'", context.size(), messages.size(), sessionId);
+        return new StageResults(context, messages);
+    }
+
+    private <T> T awaitStage(String stage, Future<T> future, long started, Duration timeout, T fallback) {
+        try {
+            long remaining = started + timeout.toNanos() - System.nanoTime();
+            return future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.warn("Stage '{}' missed its {} ms deadline; continuing without it", stage, timeout.toMillis());
+            return fallback;
+        } catch (ExecutionException e) {
+            logger.warn("Stage '{}' failed; continuing without it", stage, e.getCause());
+            return fallback;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for stage '" + stage + "'", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stageExecutor.shutdownNow();
+    }
+
+    /**
+     * What a streaming request has resolved before its first event; a null cache key means the
+     * reply is not to be cached.
+     */
+    private record StreamPlan(DialogueState.Intent intent, long requestStart, long start,
+                              SemanticAnswerCache.Key cacheKey, ReasoningEngine.StreamingReply reply) {
+    }
+
+    private record StageResults(List<Document> context, List<Message> history) {
+    }
+}
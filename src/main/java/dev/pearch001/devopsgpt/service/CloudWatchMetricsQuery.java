@@ -0,0 +1,306 @@
+package dev.pearch001.devopsgpt.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.Metric;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataQuery;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataResult;
+import software.amazon.awssdk.services.cloudwatch.model.MetricStat;
+import software.amazon.awssdk.services.cloudwatch.model.ScanBy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * EC2 metric time series for many instances at once.
+ * <p>
+ * Every (instance, metric) pair becomes one {@link MetricDataQuery}; queries are packed
+ * {@code max-queries-per-request} to a {@code GetMetricData} call (500 is the API limit), the calls
+ * run in parallel and each follows {@code NextToken} to the last page. Series are downsampled by
+ * CloudWatch itself: the period is the smallest one that keeps the window within
+ * {@code max-points} datapoints, rounded to what CloudWatch still retains for data that old. The
+ * window end is aligned down to a multiple of the period, so the same question asked again within
+ * one period maps to the same {@link AwsReadCache} key and is answered without calling AWS.
+ */
+@Component
+public class CloudWatchMetricsQuery {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudWatchMetricsQuery.class);
+
+    private static final Pattern LAST_WINDOW = Pattern.compile("\\b(?:last|past|previous)\\s+(\\d+)?\\s*(minute|min|hour|hr|day|week)s?\\b");
+    private static final Pattern SHORT_WINDOW = Pattern.compile("\\b(\\d+)\\s*(m|h|d)\\b");
+    private static final String SPARK = "▁▂▃▄▅▆▇█";
+    private static final int MAX_DESCRIBED_SERIES = 100;
+
+    /**
+     * The EC2 metrics that can be queried. Disk throughput uses the EBS metrics, which is where
+     * Nitro-based instances report it.
+     */
+    public enum Ec2Metric {
+        CPU("CPUUtilization", "Average", "%"),
+        NETWORK_IN("NetworkIn", "Sum", "bytes"),
+        NETWORK_OUT("NetworkOut", "Sum", "bytes"),
+        DISK_READ("EBSReadBytes", "Sum", "bytes"),
+        DISK_WRITE("EBSWriteBytes", "Sum", "bytes"),
+        STATUS_CHECK("StatusCheckFailed", "Maximum", "failed checks");
+
+        private final String metricName;
+        private final String stat;
+        private final String unit;
+
+        Ec2Metric(String metricName, String stat, String unit) {
+            this.metricName = metricName;
+            this.stat = stat;
+            this.unit = unit;
+        }
+    }
+
+    /**
+     * One downsampled series, timestamps ascending.
+     */
+    public record Series(String instanceId, Ec2Metric metric, Instant[] timestamps, double[] values) {
+    }
+
+    /**
+     * The series of one query, with the aligned window and period they were fetched for.
+     */
+    public record Result(Instant start, Instant end, Duration period, List<Series> series) {
+    }
+
+    private record Target(String instanceId, Ec2Metric metric) {
+    }
+
+    private final CloudWatchAsyncClient cloudWatchClient;
+    private final PipelineMetrics pipelineMetrics;
+    private final AwsReadCache readCache;
+    private final int maxPoints;
+    private final int maxQueriesPerRequest;
+
+    public CloudWatchMetricsQuery(CloudWatchAsyncClient cloudWatchClient, PipelineMetrics pipelineMetrics, AwsReadCache readCache,
+                                  @Value("${devopsgpt.aws.metrics.max-points:60}") int maxPoints,
+                                  @Value("${devopsgpt.aws.metrics.max-queries-per-request:500}") int maxQueriesPerRequest) {
+        this.cloudWatchClient = cloudWatchClient;
+        this.pipelineMetrics = pipelineMetrics;
+        this.readCache = readCache;
+        this.maxPoints = maxPoints;
+        this.maxQueriesPerRequest = maxQueriesPerRequest;
+    }
+
+    /**
+     * Fetches the given metrics of every instance over the window ending now.
+     */
+    public CompletableFuture<Result> query(Collection<String> instanceIds, Set<Ec2Metric> metrics, Duration window) {
+        Instant now = Instant.now();
+        Duration period = periodFor(window);
+        long periodSeconds = period.toSeconds();
+        Instant end = Instant.ofEpochSecond(now.getEpochSecond() / periodSeconds * periodSeconds);
+        Instant start = end.minus(window);
+
+        List<String> ids = instanceIds.stream().distinct().sorted().toList();
+        List<Ec2Metric> sortedMetrics = List.copyOf(EnumSet.copyOf(metrics));
+        String key = String.join(",", ids) + '|' + sortedMetrics + '|' + start.getEpochSecond() + '|' + end.getEpochSecond() + '|' + periodSeconds;
+        return readCache.get(AwsReadCache.Operation.CLOUDWATCH_METRICS, key, () -> fetch(ids, sortedMetrics, start, end, (int) periodSeconds))
+                .thenApply(series -> new Result(start, end, period, series));
+    }
+
+    /**
+     * The smallest period (a multiple of 60 s) that keeps the window within {@code max-points}
+     * datapoints, raised to 5 min for windows starting more than 15 days ago and to 1 h for
+     * windows starting more than 63 days ago, which is all CloudWatch retains at those ages.
+     */
+    Duration periodFor(Duration window) {
+        long seconds = Math.max(60, (window.toSeconds() + maxPoints - 1) / maxPoints);
+        long granularity = window.compareTo(Duration.ofDays(63)) > 0 ? 3600 : window.compareTo(Duration.ofDays(15)) > 0 ? 300 : 60;
+        return Duration.ofSeconds((seconds + granularity - 1) / granularity * granularity);
+    }
+
+    private CompletableFuture<List<Series>> fetch(List<String> instanceIds, List<Ec2Metric> metrics, Instant start, Instant end, int period) {
+        List<MetricDataQuery> queries = new ArrayList<>(instanceIds.size() * metrics.size());
+        Map<String, Target> targets = new HashMap<>();
+        for (String instanceId : instanceIds) {
+            for (Ec2Metric metric : metrics) {
+                String id = "q" + queries.size();
+                queries.add(MetricDataQuery.builder()
+                        .id(id)
+                        .metricStat(MetricStat.builder()
+                                .metric(Metric.builder()
+                                        .namespace("AWS/EC2")
+                                        .metricName(metric.metricName)
+                                        .dimensions(Dimension.builder().name("InstanceId").value(instanceId).build())
+                                        .build())
+                                .period(period)
+                                .stat(metric.stat)
+                                .build())
+                        .returnData(true)
+                        .build());
+                targets.put(id, new Target(instanceId, metric));
+            }
+        }
+
+        List<CompletableFuture<Map<String, TreeMap<Instant, Double>>>> requests = new ArrayList<>();
+        for (int from = 0; from < queries.size(); from += maxQueriesPerRequest) {
+            GetMetricDataRequest request = GetMetricDataRequest.builder()
+                    .startTime(start)
+                    .endTime(end)
+                    .scanBy(ScanBy.TIMESTAMP_ASCENDING)
+                    .metricDataQueries(queries.subList(from, Math.min(queries.size(), from + maxQueriesPerRequest)))
+                    .build();
+            requests.add(fetchAllPages(request));
+        }
+        logger.info("Fetching {} metric series in {} GetMetricData request(s), period {}s", queries.size(), requests.size(), period);
+
+        return CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            Map<String, TreeMap<Instant, Double>> points = new HashMap<>();
+            requests.forEach(request -> points.putAll(request.join()));
+            List<Series> series = new ArrayList<>(queries.size());
+            for (MetricDataQuery query : queries) {
+                Target target = targets.get(query.id());
+                TreeMap<Instant, Double> values = points.getOrDefault(query.id(), new TreeMap<>());
+                series.add(new Series(target.instanceId(), target.metric(),
+                        values.keySet().toArray(Instant[]::new),
+                        values.values().stream().mapToDouble(Double::doubleValue).toArray()));
+            }
+            return series;
+        });
+    }
+
+    /**
+     * Follows {@code NextToken} to the end; a query's datapoints may be spread over several pages.
+     */
+    private CompletableFuture<Map<String, TreeMap<Instant, Double>>> fetchAllPages(GetMetricDataRequest request) {
+        Map<String, TreeMap<Instant, Double>> points = new HashMap<>();
+        return cloudWatchClient.getMetricDataPaginator(request)
+                .subscribe(page -> {
+                    for (MetricDataResult result : page.metricDataResults()) {
+                        TreeMap<Instant, Double> series = points.computeIfAbsent(result.id(), id -> new TreeMap<>());
+                        List<Instant> timestamps = result.timestamps();
+                        List<Double> values = result.values();
+                        for (int i = 0; i < Math.min(timestamps.size(), values.size()); i++) {
+                            series.put(timestamps.get(i), values.get(i));
+                        }
+                    }
+                })
+                .whenComplete((done, error) -> {
+                    if (error != null) {
+                        pipelineMetrics.recordAwsError("cloudwatch:GetMetricData", AwsToolExecutor.unwrap(error));
+                    }
+                })
+                .thenApply(done -> points);
+    }
+
+    /**
+     * The metrics a message asks about; CPU if it names none, everything if it only says "metrics".
+     */
+    public static Set<Ec2Metric> metricsMentioned(String input) {
+        String lower = input.toLowerCase(Locale.ROOT);
+        Set<Ec2Metric> metrics = EnumSet.noneOf(Ec2Metric.class);
+        if (lower.contains("cpu") || lower.contains("utilization")) {
+            metrics.add(Ec2Metric.CPU);
+        }
+        if (lower.contains("network")) {
+            metrics.add(Ec2Metric.NETWORK_IN);
+            metrics.add(Ec2Metric.NETWORK_OUT);
+        }
+        if (lower.contains("disk") || lower.contains("ebs")) {
+            metrics.add(Ec2Metric.DISK_READ);
+            metrics.add(Ec2Metric.DISK_WRITE);
+        }
+        if (lower.contains("status check")) {
+            metrics.add(Ec2Metric.STATUS_CHECK);
+        }
+        if (metrics.isEmpty()) {
+            return lower.contains("metrics") ? EnumSet.allOf(Ec2Metric.class) : EnumSet.of(Ec2Metric.CPU);
+        }
+        return metrics;
+    }
+
+    /**
+     * The time window a message asks about ("last 6 hours", "past day", "30m"), or {@code null}.
+     */
+    public static Duration windowMentioned(String input) {
+        String lower = input.toLowerCase(Locale.ROOT);
+        Matcher last = LAST_WINDOW.matcher(lower);
+        if (last.find()) {
+            long amount = last.group(1) == null ? 1 : Long.parseLong(last.group(1));
+            return switch (last.group(2)) {
+                case "minute", "min" -> Duration.ofMinutes(amount);
+                case "hour", "hr" -> Duration.ofHours(amount);
+                case "day" -> Duration.ofDays(amount);
+                default -> Duration.ofDays(7 * amount);
+            };
+        }
+        Matcher compact = SHORT_WINDOW.matcher(lower);
+        if (compact.find()) {
+            long amount = Long.parseLong(compact.group(1));
+            return switch (compact.group(2)) {
+                case "m" -> Duration.ofMinutes(amount);
+                case "h" -> Duration.ofHours(amount);
+                default -> Duration.ofDays(amount);
+            };
+        }
+        return null;
+    }
+
+    /**
+     * Formats a result for chat: one line per series with min/avg/max, the latest value and a sparkline.
+     */
+    public static String describe(Result result) {
+        StringBuilder reply = new StringBuilder(String.format("📊 EC2 metrics from %s to %s (%s resolution):",
+                result.start(), result.end(), describePeriod(result.period())));
+        Map<String, List<Series>> byInstance = result.series().stream()
+                .limit(MAX_DESCRIBED_SERIES)
+                .collect(Collectors.groupingBy(Series::instanceId, TreeMap::new, Collectors.toList()));
+        byInstance.forEach((instanceId, series) -> {
+            reply.append("\n").append(instanceId);
+            for (Series s : series) {
+                reply.append("\n  ").append(s.metric().metricName).append(" (").append(s.metric().stat).append(", ").append(s.metric().unit).append("): ");
+                if (s.values().length == 0) {
+                    reply.append("no data");
+                    continue;
+                }
+                double[] v = s.values();
+                reply.append(String.format("avg %.2f, min %.2f, max %.2f, latest %.2f  %s",
+                        Arrays.stream(v).average().orElse(0), Arrays.stream(v).min().orElse(0),
+                        Arrays.stream(v).max().orElse(0), v[v.length - 1], sparkline(v)));
+            }
+        });
+        if (result.series().size() > MAX_DESCRIBED_SERIES) {
+            reply.append("\n…and ").append(result.series().size() - MAX_DESCRIBED_SERIES).append(" more series");
+        }
+        return reply.toString();
+    }
+
+    static String sparkline(double[] values) {
+        double min = Arrays.stream(values).min().orElse(0);
+        double max = Arrays.stream(values).max().orElse(0);
+        StringBuilder line = new StringBuilder(values.length);
+        for (double value : values) {
+            int level = max == min ? 0 : (int) Math.round((value - min) / (max - min) * (SPARK.length() - 1));
+            line.append(SPARK.charAt(level));
+        }
+        return line.toString();
+    }
+
+    private static String describePeriod(Duration period) {
+        return period.toSeconds() % 3600 == 0 ? period.toHours() + " h" : period.toMinutes() + " min";
+    }
+}
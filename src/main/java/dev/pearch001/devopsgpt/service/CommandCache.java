@@ -0,0 +1,282 @@
+package dev.pearch001.devopsgpt.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.pearch001.devopsgpt.model.CommandResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier cache of generated commands keyed on the normalized task, so the tasks users ask for
+ * again and again ("restart deployment", "prune docker images") skip the LLM round trip.
+ * <p>
+ * The memory tier is a bounded LRU map. Every entry is also written to the disk tier, one small
+ * JSON file per task, so the cache survives restarts; a memory miss falls back to disk and
+ * promotes what it finds. Disk files are written via a temporary file and an atomic move, and the
+ * oldest are deleted once the directory holds more than {@code max-disk-entries}. Entries in both
+ * tiers expire after the TTL. Writes happen only after an LLM call, so they are made inline.
+ */
+@Component
+public class CommandCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommandCache.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern EDGE_PUNCTUATION = Pattern.compile("^[\\p{Punct}\\s]+|[\\p{Punct}\\s]+$");
+    private static final Pattern POLITENESS = Pattern.compile("^(?:please|pls|can you|could you)\\s+|\\s+please$", Pattern.CASE_INSENSITIVE);
+    private static final String SUFFIX = ".json";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final int maxDiskEntries;
+    private final long ttlMillis;
+    private final Path directory;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Stored> memory;
+    // Disk tier index: key -> creation time, so eviction never has to list the directory.
+    private final ConcurrentMap<String, Long> diskIndex = new ConcurrentHashMap<>();
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter memoryEvictions;
+    private final Counter diskEvictions;
+
+    public CommandCache(MeterRegistry meterRegistry,
+                        @Value("${devopsgpt.cache.command.enabled:true}") boolean enabled,
+                        @Value("${devopsgpt.cache.command.max-entries:1000}") int maxEntries,
+                        @Value("${devopsgpt.cache.command.directory:data/command-cache}") String directory,
+                        @Value("${devopsgpt.cache.command.max-disk-entries:10000}") int maxDiskEntries,
+                        @Value("${devopsgpt.cache.command.ttl:7d}") Duration ttl) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.maxDiskEntries = maxDiskEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.directory = directory == null || directory.isBlank() ? null : Paths.get(directory);
+        this.memory = new LinkedHashMap<>(16, 0.75f, true);
+        this.meterRegistry = meterRegistry;
+
+        this.memoryHits = meterRegistry.counter("devopsgpt.cache.command.requests", "result", "hit", "tier", "memory");
+        this.diskHits = meterRegistry.counter("devopsgpt.cache.command.requests", "result", "hit", "tier", "disk");
+        this.misses = meterRegistry.counter("devopsgpt.cache.command.requests", "result", "miss", "tier", "none");
+        this.memoryEvictions = meterRegistry.counter("devopsgpt.cache.command.evictions", "tier", "memory");
+        this.diskEvictions = meterRegistry.counter("devopsgpt.cache.command.evictions", "tier", "disk");
+    }
+
+    @PostConstruct
+    public void open() {
+        Gauge.builder("devopsgpt.cache.command.size", this, CommandCache::memorySize).tag("tier", "memory").register(meterRegistry);
+        Gauge.builder("devopsgpt.cache.command.size", diskIndex, Map::size).tag("tier", "disk").register(meterRegistry);
+        if (enabled && directory != null) {
+            indexDisk();
+        }
+    }
+
+    public Optional<CommandResponse> get(String task) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String key = key(task);
+        long now = System.currentTimeMillis();
+
+        Stored stored;
+        synchronized (memory) {
+            stored = memory.get(key);
+            if (stored != null && now - stored.createdAt() > ttlMillis) {
+                memory.remove(key);
+                stored = null;
+            }
+        }
+        if (stored != null) {
+            memoryHits.increment();
+            return Optional.of(stored.response());
+        }
+
+        stored = readDisk(key);
+        if (stored != null && now - stored.createdAt() <= ttlMillis) {
+            diskHits.increment();
+            putMemory(key, stored);
+            return Optional.of(stored.response());
+        }
+        if (stored != null) {
+            deleteDisk(key);
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    public void put(String task, CommandResponse response) {
+        if (!enabled || response == null || response.command() == null || response.command().isBlank()) {
+            return;
+        }
+        String key = key(task);
+        Stored stored = new Stored(normalize(task), response, System.currentTimeMillis());
+        putMemory(key, stored);
+        writeDisk(key, stored);
+    }
+
+    /**
+     * Whitespace-collapsed task without surrounding punctuation or a leading "please"/"can you", so
+     * trivially different phrasings of one task share an entry. Case is kept, as operands such as
+     * object keys, file paths and resource names are case-sensitive.
+     */
+    static String normalize(String task) {
+        String normalized = WHITESPACE.matcher(task).replaceAll(" ");
+        normalized = EDGE_PUNCTUATION.matcher(normalized).replaceAll("");
+        return POLITENESS.matcher(normalized).replaceAll("");
+    }
+
+    private static String key(String task) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalize(task).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void putMemory(String key, Stored stored) {
+        synchronized (memory) {
+            memory.put(key, stored);
+            if (memory.size() > maxEntries) {
+                var eldest = memory.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                memoryEvictions.increment();
+            }
+        }
+    }
+
+    private int memorySize() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    private void indexDisk() {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> {
+                    String name = file.getFileName().toString();
+                    try {
+                        if (name.endsWith(SUFFIX)) {
+                            diskIndex.put(name.substring(0, name.length() - SUFFIX.length()), Files.getLastModifiedTime(file).toMillis());
+                        } else if (name.endsWith(TMP_SUFFIX)) {
+                            // Left behind by a write that never finished
+                            Files.deleteIfExists(file);
+                        }
+                    } catch (IOException e) {
+                        logger.warn("Skipping unreadable command cache file {}", file, e);
+                    }
+                });
+            }
+            logger.info("Command cache has {} entries on disk in {}", diskIndex.size(), directory.toAbsolutePath());
+        } catch (IOException e) {
+            logger.error("Could not open command cache directory {}; caching in memory only", directory, e);
+        }
+    }
+
+    private Stored readDisk(String key) {
+        if (directory == null || !diskIndex.containsKey(key)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(directory.resolve(key + SUFFIX).toFile(), Stored.class);
+        } catch (NoSuchFileException e) {
+            diskIndex.remove(key);
+            return null;
+        } catch (IOException e) {
+            logger.warn("Dropping unreadable command cache entry {}", key, e);
+            deleteDisk(key);
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, Stored stored) {
+        if (directory == null) {
+            return;
+        }
+        Path file = directory.resolve(key + SUFFIX);
+        Path tmp = null;
+        try {
+            // A temporary file of its own, so concurrent writers of one task never share it
+            tmp = Files.createTempFile(directory, key, TMP_SUFFIX);
+            objectMapper.writeValue(tmp.toFile(), stored);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            diskIndex.put(key, stored.createdAt());
+        } catch (IOException e) {
+            logger.warn("Could not write command cache entry for '{}'", stored.task(), e);
+            deleteQuietly(tmp);
+            return;
+        }
+        while (diskIndex.size() > maxDiskEntries) {
+            String oldest = null;
+            long oldestAt = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> entry : diskIndex.entrySet()) {
+                if (entry.getValue() < oldestAt) {
+                    oldest = entry.getKey();
+                    oldestAt = entry.getValue();
+                }
+            }
+            if (oldest == null) {
+                break;
+            }
+            deleteDisk(oldest);
+            diskEvictions.increment();
+        }
+    }
+
+    private void deleteDisk(String key) {
+        diskIndex.remove(key);
+        try {
+            Files.deleteIfExists(directory.resolve(key + SUFFIX));
+        } catch (IOException e) {
+            logger.warn("Could not delete command cache entry {}", key, e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("Could not delete {}", file, e);
+        }
+    }
+
+    /**
+     * What is stored in both tiers; the normalized task is kept on disk for inspection.
+     */
+    record Stored(String task, CommandResponse response, long createdAt) {
+    }
+}
@@ -3,65 +3,81 @@ package dev.pearch001.devopsgpt.service;
 // src/main/java/com/devopsgpt/service/CommandService.java
 
 import dev.pearch001.devopsgpt.model.CommandResponse;
+import dev.pearch001.devopsgpt.persistence.ArchivedScript;
+import dev.pearch001.devopsgpt.persistence.ScriptArchive;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.Optional;
 
 @Service
 public class CommandService {
 
     private static final Logger logger = LoggerFactory.getLogger(CommandService.class);
+
+    // Built once: generating the JSON schema for the format instructions is the expensive part.
+    private static final BeanOutputConverter<CommandResponse> OUTPUT_CONVERTER = new BeanOutputConverter<>(CommandResponse.class);
+    private static final String OUTPUT_FORMAT = OUTPUT_CONVERTER.getFormat();
+
+    private static final String SYSTEM_PROMPT = """
+            You are an expert DevOps engineer. Your task is to generate a single, executable shell command
+            (e.g., for bash, kubectl, docker, terraform) based on the user's request.
+            You MUST return the output in the specified JSON format.
+            Do not include any other text, explanations, or markdown formatting outside of the JSON structure.
+            {format}
+            """;
+
     private final ChatClient chatClient;
-    private final Path scriptsDir = Paths.get("scripts");
-
-    public CommandService(ChatClient.Builder chatClientBuilder) {
-        this.chatClient = chatClientBuilder.build();
-        try {
-            // Create the 'scripts' directory if it doesn't exist
-            if (!Files.exists(scriptsDir)) {
-                Files.createDirectories(scriptsDir);
-                logger.info("Created scripts directory at: {}", scriptsDir.toAbsolutePath());
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Could not create scripts directory", e);
-        }
+    private final CommandCache commandCache;
+    private final ScriptArchive scriptArchive;
+    private final LlmDispatcher llmDispatcher;
+    private final TokenCountEstimator tokenCountEstimator;
+    private final int systemPromptTokens;
+
+    public CommandService(ChatClient chatClient, CommandCache commandCache, ScriptArchive scriptArchive, LlmDispatcher llmDispatcher, TokenCountEstimator tokenCountEstimator) {
+        this.chatClient = chatClient;
+        this.commandCache = commandCache;
+        this.scriptArchive = scriptArchive;
+        this.llmDispatcher = llmDispatcher;
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.systemPromptTokens = tokenCountEstimator.estimate(SYSTEM_PROMPT.replace("{format}", OUTPUT_FORMAT));
+    }
+
+    /**
+     * Generates a command for someone waiting on the reply, from chat or the command API.
+     */
+    public CommandResponse generateCommand(String task) {
+        return generateCommand(task, LlmDispatcher.Priority.INTERACTIVE);
     }
 
     /**
      * Generates a command from a plain-text task using an LLM with a JSON output parser.
+     * Tasks that were answered before are served from the {@link CommandCache}.
      *
      * @param task The user's task description.
+     * @param priority Queue priority of the LLM call when the task is not cached.
      * @return A CommandResponse object with the generated command and explanation.
      */
-    public CommandResponse generateCommand(String task) {
+    public CommandResponse generateCommand(String task, LlmDispatcher.Priority priority) {
+        Optional<CommandResponse> cached = commandCache.get(task);
+        if (cached.isPresent()) {
+            logger.info("Serving cached command for task: '{}'", task);
+            return cached.get();
+        }
         logger.info("Generating command for task: '{}'", task);
 
-        // Use a BeanOutputParser to instruct the LLM to return a JSON object
-        // that maps directly to our CommandResponse class.
-        var outputParser = new BeanOutputConverter<>(CommandResponse.class);
-
-        String systemPrompt = """
-            You are an expert DevOps engineer. Your task is to generate a single, executable shell command
-            (e.g., for bash, kubectl, docker, terraform) based on the user's request.
-            You MUST return the output in the specified JSON format.
-            Do not include any other text, explanations, or markdown formatting outside of the JSON structure.
-            {format}
-            """;
-
-        String response = chatClient.prompt()
-                .system(p -> p.text(systemPrompt).param("format", outputParser.getFormat()))
-                .user(task)
-                .call().content();
+        ChatResponse chatResponse = llmDispatcher.call(priority, systemPromptTokens + tokenCountEstimator.estimate(task),
+                () -> chatClient.prompt()
+                        .system(p -> p.text(SYSTEM_PROMPT).param("format", OUTPUT_FORMAT))
+                        .user(task)
+                        .call().chatResponse(),
+                LlmDispatcher::totalTokens);
+        String response = chatResponse == null || chatResponse.getResult() == null ? null : chatResponse.getResult().getOutput().getText();
 
 
 
@@ -71,7 +87,9 @@ public class CommandService {
             return null; // Or throw an exception, depending on your application's requirements
         }
 
-        return outputParser.convert(response);
+        CommandResponse commandResponse = OUTPUT_CONVERTER.convert(response);
+        commandCache.put(task, commandResponse);
+        return commandResponse;
     }
 
     /**
@@ -83,19 +101,13 @@ public class CommandService {
     public String simulateExecution(String command) {
         logger.info("Simulating execution of command: '{}'", command);
 
-        // Save the generated script to a file
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String filename = "script-" + timestamp + ".sh";
-        try {
-            Files.writeString(scriptsDir.resolve(filename), command);
-            logger.info("Command saved to {}", scriptsDir.resolve(filename));
-        } catch (IOException e) {
-            logger.error("Failed to save script", e);
-        }
+        // Archived in the background; the ID can be looked up under /api/command/scripts/{id}
+        String scriptId = scriptArchive.archive(command);
+        logger.info("Command queued for archiving as script {}", scriptId);
 
         // Generate fake log output for the simulation
         StringBuilder fakeLogs = new StringBuilder();
-        fakeLogs.append("SIMULATION START: Executing '").append(command).append("'\n");
+        fakeLogs.append("SIMULATION START: Executing '").append(command).append("' (script ").append(scriptId).append(")\n");
         fakeLogs.append("... Connecting to remote host...\n");
         fakeLogs.append("... Authenticating with credentials...\n");
         if (command.contains("docker build")) {
@@ -113,4 +125,11 @@ public class CommandService {
 
         return fakeLogs.toString();
     }
-}
\ No newline at end of file
+
+    /**
+     * Looks up a script archived by {@link #simulateExecution}.
+     */
+    public Optional<ArchivedScript> findScript(String scriptId) {
+        return scriptArchive.find(scriptId);
+    }
+}
@@ -0,0 +1,92 @@
+package dev.pearch001.devopsgpt.service;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A message as session history holds it: the message type as one byte, the text as UTF-8, and its
+ * token count. A Spring AI message also carries a metadata map and a media list, and stores text
+ * with any character outside Latin-1 (an LLM's em dashes or curly quotes) at two bytes per
+ * character. {@link #toMessage()} rebuilds a plain message of the same type when a prompt is built;
+ * metadata is not kept, as the session log does not keep it either.
+ * <p>
+ * Equality covers type and text only, so identical messages can share one instance.
+ */
+final class CompactMessage {
+
+    private static final MessageType[] TYPES = MessageType.values();
+
+    private final byte type;
+    private final byte[] text;
+    private final int tokens;
+    private final int hash;
+
+    private CompactMessage(byte type, byte[] text, int tokens) {
+        this.type = type;
+        this.text = text;
+        this.tokens = tokens;
+        this.hash = 31 * type + Arrays.hashCode(text);
+    }
+
+    static CompactMessage of(MessageType type, String text, int tokens) {
+        return new CompactMessage((byte) type.ordinal(), encode(text), tokens);
+    }
+
+    /**
+     * A message with a placeholder token count, only for looking up an equal one.
+     */
+    static CompactMessage probe(MessageType type, String text) {
+        return of(type, text, 0);
+    }
+
+    CompactMessage withTokens(int tokens) {
+        return new CompactMessage(type, text, tokens);
+    }
+
+    MessageType type() {
+        return TYPES[type];
+    }
+
+    String text() {
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    int tokens() {
+        return tokens;
+    }
+
+    /**
+     * UTF-8 size of the text.
+     */
+    int size() {
+        return text.length;
+    }
+
+    Message toMessage() {
+        return switch (type()) {
+            case USER -> new UserMessage(text());
+            case SYSTEM -> new SystemMessage(text());
+            default -> new AssistantMessage(text());
+        };
+    }
+
+    private static byte[] encode(String text) {
+        return text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CompactMessage other && type == other.type && hash == other.hash && Arrays.equals(text, other.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -1,56 +1,73 @@
 package dev.pearch001.devopsgpt.service;
 
+import dev.pearch001.devopsgpt.intent.IntentMatcher;
+import dev.pearch001.devopsgpt.intent.IntentRule;
 import dev.pearch001.devopsgpt.model.DialogueState;
+import dev.pearch001.devopsgpt.persistence.SessionLog;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+
+import static dev.pearch001.devopsgpt.model.DialogueState.Intent.AWS_CLOUDWATCH_GET_METRICS;
+import static dev.pearch001.devopsgpt.model.DialogueState.Intent.AWS_EC2_START_INSTANCE;
+import static dev.pearch001.devopsgpt.model.DialogueState.Intent.AWS_EC2_STOP_INSTANCE;
+import static dev.pearch001.devopsgpt.model.DialogueState.Intent.AWS_S3_LIST_BUCKETS;
+import static dev.pearch001.devopsgpt.model.DialogueState.Intent.GENERAL_QUERY;
+import static dev.pearch001.devopsgpt.model.DialogueState.Intent.GENERATE_COMMAND;
 
 @Service
 public class DialogueStateTracker {
 
     private final Map<String, DialogueState> stateMap = new ConcurrentHashMap<>();
-    // Pattern to find EC2 instance IDs (i-xxxxxxxxxxxxxxxxx)
-    private static final Pattern INSTANCE_ID_PATTERN = Pattern.compile("(i-[a-f0-9]{17}|i-[a-f0-9]{8})");
+    private final SessionLog sessionLog;
+
+    /**
+     * Simple rule-based intent recognition (can be replaced with an LLM call for more accuracy).
+     * Rules are tried in order; the first whose keyword groups all match wins, and anything else
+     * defaults to RAG. Start/stop only act on instances named in the same message.
+     */
+    public static final List<IntentRule> RULES = List.of(
+            IntentRule.when(AWS_EC2_START_INSTANCE).contains("start").contains("ec2 instance").withInstanceId().withTags().withExplicitTargets(),
+            IntentRule.when(AWS_EC2_STOP_INSTANCE).contains("stop").contains("ec2 instance").withInstanceId().withTags().withExplicitTargets(),
+            IntentRule.when(AWS_EC2_START_INSTANCE).startsWith("start all", "start instances").withInstanceId().withTags().withExplicitTargets(),
+            IntentRule.when(AWS_EC2_STOP_INSTANCE).startsWith("stop all", "stop instances").withInstanceId().withTags().withExplicitTargets(),
+            IntentRule.when(AWS_S3_LIST_BUCKETS).contains("list").contains("s3 buckets"),
+            IntentRule.when(AWS_CLOUDWATCH_GET_METRICS).contains("cpu", "utilization").contains("instance").withInstanceId().withTags(),
+            IntentRule.when(GENERATE_COMMAND).startsWith("generate command to", "how do i").withTask(),
+            IntentRule.when(AWS_CLOUDWATCH_GET_METRICS).contains("metrics", "network", "disk", "status check").contains("instance").withInstanceId().withTags(),
+            IntentRule.when(GENERAL_QUERY).startsWith("what is", "explain"));
 
+    private static final IntentMatcher MATCHER = new IntentMatcher(RULES, GENERAL_QUERY);
+
+    public DialogueStateTracker(SessionLog sessionLog) {
+        this.sessionLog = sessionLog;
+    }
 
     public DialogueState trackState(String sessionId, String userInput) {
         DialogueState state = stateMap.computeIfAbsent(sessionId, k -> new DialogueState());
 
-        String lowerInput = userInput.toLowerCase();
-
-        // Simple rule-based intent recognition (can be replaced with an LLM call for more accuracy)
-        if (lowerInput.contains("start") && lowerInput.contains("ec2 instance")) {
-            state.setCurrentIntent(DialogueState.Intent.AWS_EC2_START_INSTANCE);
-            extractInstanceId(state, userInput);
-        } else if (lowerInput.contains("stop") && lowerInput.contains("ec2 instance")) {
-            state.setCurrentIntent(DialogueState.Intent.AWS_EC2_STOP_INSTANCE);
-            extractInstanceId(state, userInput);
-        } else if (lowerInput.contains("list") && lowerInput.contains("s3 buckets")) {
-            state.setCurrentIntent(DialogueState.Intent.AWS_S3_LIST_BUCKETS);
-        } else if ((lowerInput.contains("cpu") || lowerInput.contains("utilization")) && lowerInput.contains("instance")) {
-            state.setCurrentIntent(DialogueState.Intent.AWS_CLOUDWATCH_GET_METRICS);
-            extractInstanceId(state, userInput);
-        }else if (lowerInput.startsWith("generate command to") || lowerInput.startsWith("how do i")) {
-            state.setCurrentIntent(DialogueState.Intent.GENERATE_COMMAND);
-            state.addSlot("task", userInput);
-        } else if (lowerInput.startsWith("what is") || lowerInput.startsWith("explain")) {
-            state.setCurrentIntent(DialogueState.Intent.GENERAL_QUERY);
-        } else {
-            state.setCurrentIntent(DialogueState.Intent.GENERAL_QUERY); // Default to RAG
-        }
+        MATCHER.apply(userInput, state);
 
+        sessionLog.appendState(sessionId, state);
         return state;
     }
 
+    /**
+     * Re-applies a dialogue state replayed from the session log.
+     */
+    void restoreState(String sessionId, String intent, Map<String, String> slots) {
+        DialogueState state = new DialogueState();
+        state.setCurrentIntent(DialogueState.Intent.valueOf(intent));
+        slots.forEach(state::addSlot);
+        stateMap.put(sessionId, state);
+    }
 
-    private void extractInstanceId(DialogueState state, String userInput) {
-        Matcher matcher = INSTANCE_ID_PATTERN.matcher(userInput);
-        if (matcher.find()) {
-            String instanceId = matcher.group(0);
-            state.addSlot("instanceId", instanceId);
-        }
+    /**
+     * Drops the dialogue state of a session that was evicted, or that the session log recorded as evicted.
+     */
+    void evict(String sessionId) {
+        stateMap.remove(sessionId);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,119 @@
+package dev.pearch001.devopsgpt.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Watches one directory and reports which files changed, once each has been quiet for the debounce
+ * time, so an editor's save (often a truncate, several writes and a rename) is reported once. When
+ * the platform drops events, the overflow callback runs instead so the caller can rescan.
+ */
+final class DocumentWatcher implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentWatcher.class);
+
+    private final Path directory;
+    private final long debounceNanos;
+    private final Predicate<String> accepts;
+    private final Consumer<Set<String>> onChange;
+    private final Runnable onOverflow;
+    private final WatchService watchService;
+    private final Map<String, Long> lastEvent = new HashMap<>();
+
+    DocumentWatcher(Path directory, Duration debounce, Predicate<String> accepts,
+                    Consumer<Set<String>> onChange, Runnable onOverflow) throws IOException {
+        this.directory = directory;
+        this.debounceNanos = debounce.toNanos();
+        this.accepts = accepts;
+        this.onChange = onChange;
+        this.onOverflow = onOverflow;
+        this.watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        Thread.ofPlatform().name("ingestion-watcher").daemon().start(this::run);
+        logger.info("Watching {} for document changes", directory.toAbsolutePath());
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = lastEvent.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(Math.max(0, nextDue() - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (key != null) {
+                    collect(key);
+                    if (!key.reset()) {
+                        logger.warn("Document directory {} is no longer accessible; stopped watching it", directory);
+                        return;
+                    }
+                }
+                flushQuiet();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        } catch (RuntimeException e) {
+            logger.error("Document watcher for {} failed", directory, e);
+        }
+    }
+
+    private void collect(WatchKey key) {
+        long now = System.nanoTime();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                logger.warn("Missed document change events in {}; rescanning", directory);
+                lastEvent.clear();
+                onOverflow.run();
+                return;
+            }
+            String file = ((Path) event.context()).getFileName().toString();
+            if (accepts.test(file)) {
+                lastEvent.put(file, now);
+            }
+        }
+    }
+
+    private void flushQuiet() {
+        long now = System.nanoTime();
+        Set<String> quiet = new TreeSet<>();
+        for (Iterator<Map.Entry<String, Long>> it = lastEvent.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Long> entry = it.next();
+            if (now - entry.getValue() >= debounceNanos) {
+                quiet.add(entry.getKey());
+                it.remove();
+            }
+        }
+        if (!quiet.isEmpty()) {
+            onChange.accept(quiet);
+        }
+    }
+
+    private long nextDue() {
+        long oldest = Long.MAX_VALUE;
+        for (long at : lastEvent.values()) {
+            oldest = Math.min(oldest, at);
+        }
+        return oldest + debounceNanos;
+    }
+}
@@ -0,0 +1,70 @@
+package dev.pearch001.devopsgpt.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Local record of which chunk IDs have been embedded for each source file, so ingestion only
+ * has to embed what changed since the last run. Without a path nothing is loaded or saved, for
+ * vector stores that do not outlive the process.
+ */
+public class IngestionManifest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path path;
+    private final Map<String, Set<String>> chunksByFile;
+
+    private IngestionManifest(Path path, Map<String, Set<String>> chunksByFile) {
+        this.path = path;
+        this.chunksByFile = chunksByFile;
+    }
+
+    public static IngestionManifest load(Path path) throws IOException {
+        if (path == null || !Files.exists(path)) {
+            return new IngestionManifest(path, new TreeMap<>());
+        }
+        Map<String, Set<String>> chunksByFile = objectMapper.readValue(path.toFile(), new TypeReference<TreeMap<String, Set<String>>>() {});
+        return new IngestionManifest(path, chunksByFile);
+    }
+
+    public Set<String> chunks(String file) {
+        return chunksByFile.getOrDefault(file, Set.of());
+    }
+
+    public Set<String> files() {
+        return Set.copyOf(chunksByFile.keySet());
+    }
+
+    public void put(String file, Set<String> chunkIds) {
+        chunksByFile.put(file, new TreeSet<>(chunkIds));
+    }
+
+    public void remove(String file) {
+        chunksByFile.remove(file);
+    }
+
+    /**
+     * Writes the manifest via a temporary file so a crash never leaves a half-written manifest behind.
+     */
+    public void save() throws IOException {
+        if (path == null) {
+            return;
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), chunksByFile);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,444 @@
+package dev.pearch001.devopsgpt.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Shared admission control for every chat completion, so bursts degrade into short queues and
+ * early 429s instead of provider 429s and timed-out requests.
+ * <p>
+ * Calls draw from two token buckets, requests per minute and tokens per minute. A call reserves
+ * its prompt estimate plus {@code expected-completion-tokens} and the reservation is corrected with
+ * the usage the provider reports. Calls that cannot start right away wait in one FIFO queue per
+ * {@link Priority}; interactive calls are always granted before batch ones. A call is rejected with
+ * {@link LlmOverloadedException} up front when its queue is full or its projected wait exceeds
+ * {@code max-queue-wait}, and also when it is still queued after that long. When the provider
+ * itself answers 429, all calls are held for its Retry-After (or {@code provider-backoff}).
+ * Setting either limit to 0 turns that bucket off.
+ */
+@Component
+public class LlmDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmDispatcher.class);
+
+    private static final Pattern RETRY_AFTER = Pattern.compile("(?i)(?:retry[- ]after|try again in)\\D{0,3}(\\d+(?:\\.\\d+)?)\\s*(ms|s)?");
+
+    /**
+     * Interactive calls have someone waiting on the reply, over chat or the API; batch calls are background work.
+     */
+    public enum Priority {
+        INTERACTIVE,
+        BATCH;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+    private final int expectedCompletionTokens;
+    private final long maxWaitNanos;
+    private final int maxQueueDepth;
+    private final Duration providerBackoff;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Priority, ArrayDeque<Waiter>> queues = new EnumMap<>(Priority.class);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("llm-dispatcher").daemon().factory());
+    private ScheduledFuture<?> scheduledDrain;
+    private long drainAt;
+    private long pausedUntil;
+
+    private final Map<Priority, Timer> waits = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> admitted = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> shed = new EnumMap<>(Priority.class);
+    private final Counter providerThrottled;
+
+    public LlmDispatcher(MeterRegistry meterRegistry,
+                         @Value("${devopsgpt.llm.requests-per-minute:500}") int requestsPerMinute,
+                         @Value("${devopsgpt.llm.tokens-per-minute:200000}") int tokensPerMinute,
+                         @Value("${devopsgpt.llm.expected-completion-tokens:400}") int expectedCompletionTokens,
+                         @Value("${devopsgpt.llm.max-queue-wait:10s}") Duration maxQueueWait,
+                         @Value("${devopsgpt.llm.max-queue-depth:200}") int maxQueueDepth,
+                         @Value("${devopsgpt.llm.provider-backoff:5s}") Duration providerBackoff) {
+        long now = System.nanoTime();
+        this.requestBucket = new TokenBucket(requestsPerMinute, now);
+        this.tokenBucket = new TokenBucket(tokensPerMinute, now);
+        this.expectedCompletionTokens = expectedCompletionTokens;
+        this.maxWaitNanos = maxQueueWait.toNanos();
+        this.maxQueueDepth = maxQueueDepth;
+        this.providerBackoff = providerBackoff;
+        this.pausedUntil = now;
+
+        for (Priority priority : Priority.values()) {
+            ArrayDeque<Waiter> queue = new ArrayDeque<>();
+            queues.put(priority, queue);
+            Gauge.builder("devopsgpt.llm.queue.depth", queue, this::depth).tag("priority", priority.tag).register(meterRegistry);
+            waits.put(priority, Timer.builder("devopsgpt.llm.queue.wait").tag("priority", priority.tag)
+                    .publishPercentileHistogram().register(meterRegistry));
+            admitted.put(priority, meterRegistry.counter("devopsgpt.llm.requests", "priority", priority.tag, "result", "admitted"));
+            shed.put(priority, meterRegistry.counter("devopsgpt.llm.requests", "priority", priority.tag, "result", "shed"));
+        }
+        this.providerThrottled = meterRegistry.counter("devopsgpt.llm.provider.throttled");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Runs a blocking LLM call once the limits allow it.
+     *
+     * @param promptTokens Estimated prompt size, reserved together with the expected completion.
+     * @param tokensUsed   Tokens the provider reports for the result, or 0 if it reports none.
+     * @throws LlmOverloadedException if the call is shed or the provider rate limits it
+     */
+    public <T> T call(Priority priority, int promptTokens, Supplier<T> call, ToIntFunction<T> tokensUsed) {
+        int reserved = reservation(promptTokens);
+        Waiter waiter = admit(priority, reserved);
+        awaitGrant(waiter);
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            throw onFailure(e);
+        }
+        settle(reserved, tokensUsed.applyAsInt(result));
+        return result;
+    }
+
+    /**
+     * Streaming counterpart of {@link #call}. Admission happens on subscription and does not hold a
+     * thread while queued; the reservation is corrected with the largest usage any chunk reports.
+     */
+    public <T> Flux<T> stream(Priority priority, int promptTokens, Supplier<Flux<T>> call, ToIntFunction<T> tokensUsed) {
+        int reserved = reservation(promptTokens);
+        return Flux.defer(() -> {
+            Waiter waiter = admit(priority, reserved);
+            AtomicInteger reported = new AtomicInteger();
+            return Mono.fromFuture(waiter.granted, true)
+                    .timeout(Duration.ofNanos(maxWaitNanos), Mono.defer(() -> {
+                        LlmOverloadedException expired = expire(waiter, true);
+                        return expired == null ? Mono.empty() : Mono.error(expired);
+                    }))
+                    .doOnCancel(() -> expire(waiter, false))
+                    .thenMany(Flux.defer(call::get))
+                    .doOnNext(chunk -> reported.accumulateAndGet(tokensUsed.applyAsInt(chunk), Math::max))
+                    .doOnComplete(() -> settle(reserved, reported.get()))
+                    .onErrorMap(e -> e instanceof RuntimeException && !(e instanceof LlmOverloadedException), e -> onFailure((RuntimeException) e));
+        });
+    }
+
+    /**
+     * Total tokens a chat response reports, or 0 when the provider does not report usage.
+     */
+    public static int totalTokens(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return 0;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        return usage == null || usage.getTotalTokens() == null ? 0 : usage.getTotalTokens();
+    }
+
+    private int reservation(int promptTokens) {
+        return (int) Math.min(tokenBucket.capacity, (long) promptTokens + expectedCompletionTokens);
+    }
+
+    private Waiter admit(Priority priority, int tokens) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            refill(now);
+            if (!queuedAtOrAbove(priority) && now >= pausedUntil && fits(tokens)) {
+                take(tokens);
+                admitted.get(priority).increment();
+                waits.get(priority).record(0, TimeUnit.NANOSECONDS);
+                return Waiter.granted(priority, tokens, now);
+            }
+            ArrayDeque<Waiter> queue = queues.get(priority);
+            long projectedWait = projectedWait(priority, tokens, now);
+            if (queue.size() >= maxQueueDepth || projectedWait > maxWaitNanos) {
+                shed.get(priority).increment();
+                throw new LlmOverloadedException("Too many concurrent LLM requests; try again shortly",
+                        Duration.ofNanos(Math.max(projectedWait, TimeUnit.SECONDS.toNanos(1))));
+            }
+            Waiter waiter = new Waiter(priority, tokens, now);
+            queue.addLast(waiter);
+            scheduleDrain(now);
+            return waiter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitGrant(Waiter waiter) {
+        try {
+            waiter.granted.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            LlmOverloadedException expired = expire(waiter, true);
+            if (expired != null) {
+                throw expired;
+            }
+        } catch (InterruptedException e) {
+            expire(waiter, false);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an LLM slot", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Gives up on a queued call, counting it as shed if it timed out rather than being abandoned by
+     * its caller; returns null if it was granted in the meantime.
+     */
+    private LlmOverloadedException expire(Waiter waiter, boolean timedOut) {
+        lock.lock();
+        try {
+            if (!waiter.granted.cancel(false)) {
+                return null;
+            }
+            queues.get(waiter.priority).remove(waiter);
+            if (timedOut) {
+                shed.get(waiter.priority).increment();
+            }
+            return new LlmOverloadedException("Timed out waiting for an LLM slot", Duration.ofNanos(projectedWait(waiter.priority, 0, System.nanoTime())));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Grants queued calls in priority order while the buckets allow, then schedules itself for
+     * when the next one fits. A lower priority never overtakes a waiting higher one.
+     */
+    private void drain() {
+        lock.lock();
+        try {
+            scheduledDrain = null;
+            long now = System.nanoTime();
+            refill(now);
+            if (now < pausedUntil) {
+                scheduleDrain(pausedUntil);
+                return;
+            }
+            for (Priority priority : Priority.values()) {
+                ArrayDeque<Waiter> queue = queues.get(priority);
+                while (!queue.isEmpty()) {
+                    Waiter head = queue.peekFirst();
+                    if (head.granted.isDone()) {
+                        queue.pollFirst();
+                        continue;
+                    }
+                    if (!fits(head.tokens)) {
+                        scheduleDrain(now + timeUntilFits(head.tokens));
+                        return;
+                    }
+                    queue.pollFirst();
+                    if (head.granted.complete(null)) {
+                        take(head.tokens);
+                        admitted.get(priority).increment();
+                        waits.get(priority).record(now - head.enqueuedAt, TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scheduleDrain(long at) {
+        if (scheduledDrain != null && drainAt <= at) {
+            return;
+        }
+        if (scheduledDrain != null) {
+            scheduledDrain.cancel(false);
+        }
+        drainAt = at;
+        scheduledDrain = scheduler.schedule(this::drain, Math.max(0, at - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the unused part of a reservation, or charges the overrun, once actual usage is known.
+     */
+    private void settle(int reserved, int used) {
+        if (used <= 0 || used == reserved) {
+            return;
+        }
+        lock.lock();
+        try {
+            tokenBucket.available = Math.min(tokenBucket.capacity, tokenBucket.available + reserved - used);
+            if (used < reserved && hasQueued()) {
+                scheduleDrain(System.nanoTime());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private RuntimeException onFailure(RuntimeException e) {
+        if (!VectorStoreIngestor.isThrottling(e)) {
+            return e;
+        }
+        Duration retryAfter = retryAfter(e);
+        lock.lock();
+        try {
+            pausedUntil = Math.max(pausedUntil, System.nanoTime() + retryAfter.toNanos());
+        } finally {
+            lock.unlock();
+        }
+        providerThrottled.increment();
+        logger.warn("LLM provider is rate limiting; holding calls for {} ms", retryAfter.toMillis());
+        return new LlmOverloadedException("The LLM provider is rate limiting requests; try again shortly", retryAfter, e);
+    }
+
+    private Duration retryAfter(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            Matcher matcher = t.getMessage() == null ? null : RETRY_AFTER.matcher(t.getMessage());
+            if (matcher != null && matcher.find()) {
+                double amount = Double.parseDouble(matcher.group(1));
+                return "ms".equalsIgnoreCase(matcher.group(2)) ? Duration.ofMillis((long) amount) : Duration.ofMillis((long) (amount * 1000));
+            }
+        }
+        return providerBackoff;
+    }
+
+    // The helpers below are called with the lock held.
+
+    private void refill(long now) {
+        requestBucket.refill(now);
+        tokenBucket.refill(now);
+    }
+
+    private boolean fits(int tokens) {
+        return requestBucket.available >= 1 && tokenBucket.available >= tokens;
+    }
+
+    private void take(int tokens) {
+        requestBucket.available -= 1;
+        tokenBucket.available -= tokens;
+    }
+
+    private long timeUntilFits(int tokens) {
+        return Math.max(requestBucket.timeUntil(1), tokenBucket.timeUntil(tokens));
+    }
+
+    /**
+     * How long a call would wait behind everything queued at its priority or above.
+     */
+    private long projectedWait(Priority priority, int tokens, long now) {
+        long requestsAhead = 1;
+        long tokensAhead = tokens;
+        for (Priority p : Priority.values()) {
+            if (p.ordinal() > priority.ordinal()) {
+                break;
+            }
+            for (Waiter waiter : queues.get(p)) {
+                requestsAhead++;
+                tokensAhead += waiter.tokens;
+            }
+        }
+        return Math.max(Math.max(0, pausedUntil - now),
+                Math.max(requestBucket.timeUntil(requestsAhead), tokenBucket.timeUntil(tokensAhead)));
+    }
+
+    private boolean queuedAtOrAbove(Priority priority) {
+        for (Priority p : Priority.values()) {
+            if (p.ordinal() <= priority.ordinal() && !queues.get(p).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasQueued() {
+        return queuedAtOrAbove(Priority.BATCH);
+    }
+
+    private int depth(ArrayDeque<Waiter> queue) {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A bucket holding up to one minute's allowance, refilled continuously. A non-positive
+     * allowance means no limit.
+     */
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double perNano;
+        private double available;
+        private long refilledAt;
+
+        TokenBucket(int perMinute, long now) {
+            this.capacity = perMinute > 0 ? perMinute : Double.POSITIVE_INFINITY;
+            this.perNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.available = capacity;
+            this.refilledAt = now;
+        }
+
+        void refill(long now) {
+            if (capacity != Double.POSITIVE_INFINITY) {
+                available = Math.min(capacity, available + (now - refilledAt) * perNano);
+                refilledAt = now;
+            }
+        }
+
+        long timeUntil(double amount) {
+            return amount <= available ? 0 : (long) Math.ceil((amount - available) / perNano);
+        }
+    }
+
+    private static final class Waiter {
+        private final Priority priority;
+        private final int tokens;
+        private final long enqueuedAt;
+        private final CompletableFuture<Void> granted = new CompletableFuture<>();
+
+        Waiter(Priority priority, int tokens, long enqueuedAt) {
+            this.priority = priority;
+            this.tokens = tokens;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        static Waiter granted(Priority priority, int tokens, long now) {
+            Waiter waiter = new Waiter(priority, tokens, now);
+            waiter.granted.complete(null);
+            return waiter;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package dev.pearch001.devopsgpt.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown when an LLM call is shed instead of queued, or when the provider itself rate limits us.
+ * Surfaces to API clients as 429 with a {@code Retry-After} header.
+ */
+public class LlmOverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Duration retryAfter;
+
+    public LlmOverloadedException(String message, Duration retryAfter) {
+        this(message, retryAfter, null);
+    }
+
+    public LlmOverloadedException(String message, Duration retryAfter, Throwable cause) {
+        super(message, cause);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,133 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.model.DialogueState;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per-stage latency and token metrics for the chat pipeline, exported through Actuator.
+ * <p>
+ * Stage/intent timers are cached in an {@link AtomicReferenceArray} indexed by ordinal once first
+ * used, so recording a stage on the request path is a {@code System.nanoTime()} pair, a volatile
+ * read and a lock-free histogram update, with no registry lookup or tag allocation. Combinations
+ * that never occur are never exported.
+ */
+@Component
+public class PipelineMetrics {
+
+    private static final int INTENTS = DialogueState.Intent.values().length;
+
+    /**
+     * The timed stages of {@code ChatService.getAdvancedReply} and {@code ReasoningEngine.reason}.
+     */
+    public enum Stage {
+        /** Intent and slot recognition. */
+        INTENT,
+        /** Document retrieval (vector + keyword search). */
+        RETRIEVAL,
+        /** Loading the session history. */
+        HISTORY,
+        /** The whole reasoning step, whichever branch it takes. */
+        REASONING,
+        /** The LLM completion for a RAG answer. */
+        LLM,
+        /** An AWS API call made by a tool intent. */
+        AWS_TOOL,
+        /** Command generation, including its LLM call. */
+        COMMAND,
+        /** The whole request. */
+        TOTAL;
+
+        private final String tag = name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final TokenCountEstimator tokenCountEstimator;
+    private final AtomicReferenceArray<Timer> stageTimers;
+    private final Counter promptTokens;
+    private final Counter completionTokens;
+    private final DistributionSummary historyMessages;
+    private final DistributionSummary retrievedChunks;
+    private final ConcurrentMap<String, Counter> awsErrors = new ConcurrentHashMap<>();
+
+    public PipelineMetrics(MeterRegistry meterRegistry, TokenCountEstimator tokenCountEstimator) {
+        this.meterRegistry = meterRegistry;
+        this.tokenCountEstimator = tokenCountEstimator;
+
+        this.stageTimers = new AtomicReferenceArray<>(Stage.values().length * INTENTS);
+        this.promptTokens = Counter.builder("devopsgpt.llm.tokens").tag("type", "prompt").register(meterRegistry);
+        this.completionTokens = Counter.builder("devopsgpt.llm.tokens").tag("type", "completion").register(meterRegistry);
+        this.historyMessages = DistributionSummary.builder("devopsgpt.pipeline.history.messages")
+                .description("Session history messages loaded per request")
+                .register(meterRegistry);
+        this.retrievedChunks = DistributionSummary.builder("devopsgpt.pipeline.retrieved.chunks")
+                .description("Document chunks retrieved per request")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records a stage that started at {@code startNanos} (from {@link System#nanoTime()}) and ends now.
+     */
+    public void recordStage(Stage stage, DialogueState.Intent intent, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        int index = stage.ordinal() * INTENTS + intent.ordinal();
+        Timer timer = stageTimers.get(index);
+        if (timer == null) {
+            // Racing registrations are harmless: the registry hands back the same timer.
+            timer = Timer.builder("devopsgpt.pipeline.stage")
+                    .description("Latency of one stage of the chat pipeline")
+                    .tag("stage", stage.tag)
+                    .tag("intent", intent.name())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            stageTimers.set(index, timer);
+        }
+        timer.record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordContext(int chunks, int messages) {
+        retrievedChunks.record(chunks);
+        historyMessages.record(messages);
+    }
+
+    /**
+     * Counts the tokens of one LLM call, preferring the provider's reported usage and falling back
+     * to local estimates when the provider does not report it.
+     */
+    public void recordTokens(Usage usage, int estimatedPromptTokens, String completion) {
+        Integer prompt = usage == null ? null : usage.getPromptTokens();
+        Integer generated = usage == null ? null : usage.getCompletionTokens();
+        promptTokens.increment(prompt != null && prompt > 0 ? prompt : estimatedPromptTokens);
+        if (generated != null && generated > 0) {
+            completionTokens.increment(generated);
+        } else if (completion != null) {
+            completionTokens.increment(tokenCountEstimator.estimate(completion));
+        }
+    }
+
+    /**
+     * Counts a failed AWS API call, tagged by operation and AWS error code (or exception type).
+     */
+    public void recordAwsError(String operation, Throwable error) {
+        String code = error instanceof AwsServiceException e && e.awsErrorDetails() != null && e.awsErrorDetails().errorCode() != null
+                ? e.awsErrorDetails().errorCode()
+                : error.getClass().getSimpleName();
+        awsErrors.computeIfAbsent(operation + '\0' + code, k -> Counter.builder("devopsgpt.aws.errors")
+                .description("Failed AWS API calls")
+                .tag("operation", operation)
+                .tag("code", code)
+                .register(meterRegistry)).increment();
+    }
+}
@@ -4,17 +4,25 @@ package dev.pearch001.devopsgpt.service;
 import dev.pearch001.devopsgpt.model.CommandResponse;
 import dev.pearch001.devopsgpt.model.DialogueState;
 import dev.pearch001.devopsgpt.model.EnhancedChatResponse;
+import dev.pearch001.devopsgpt.retrieval.ContextBudgeter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
-import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.SystemPromptTemplate;
 import org.springframework.ai.document.Document;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,6 +31,9 @@ public class ReasoningEngine {
     private final CommandService commandService;
     private final ChatClient chatClient;
     private final AwsToolExecutor awsToolExecutor;
+    private final ContextBudgeter contextBudgeter;
+    private final PipelineMetrics pipelineMetrics;
+    private final LlmDispatcher llmDispatcher;
 
     private static final String RAG_SYSTEM_PROMPT = """
         You are DevOpsGPT, a helpful AI assistant. Your user is asking a question about DevOps or Cloud topics.
@@ -33,44 +44,36 @@ public class ReasoningEngine {
         {documents}
         """;
 
-    public ReasoningEngine(CommandService commandService, ChatClient.Builder chatClientBuilder, AwsToolExecutor awsToolExecutor) {
+    private static final Duration DEFAULT_METRICS_WINDOW = Duration.ofHours(1);
+    private static final String MISSING_INSTANCE_SELECTOR =
+            "Please provide one or more instance IDs (e.g., i-12345abcdef) or a tag selector (e.g., env=staging).";
+
+    public ReasoningEngine(CommandService commandService, ChatClient chatClient, AwsToolExecutor awsToolExecutor, ContextBudgeter contextBudgeter, PipelineMetrics pipelineMetrics, LlmDispatcher llmDispatcher) {
         this.commandService = commandService;
-        this.chatClient = chatClientBuilder.build();
+        this.chatClient = chatClient;
         this.awsToolExecutor = awsToolExecutor;
+        this.contextBudgeter = contextBudgeter;
+        this.pipelineMetrics = pipelineMetrics;
+        this.llmDispatcher = llmDispatcher;
     }
 
     public EnhancedChatResponse reason(DialogueState state, String userInput, List<Document> context, List<Message> history) {
-        logger.info("Reasoning with intent: {}", state.getCurrentIntent());
+        DialogueState.Intent intent = state.getCurrentIntent();
+        logger.info("Reasoning with intent: {}", intent);
+        long stageStart = System.nanoTime();
 
         // --- AWS Tool Usage ---
-        String awsResult;
-        switch (state.getCurrentIntent()) {
-            case AWS_EC2_START_INSTANCE:
-                String startInstanceId = (String) state.getSlots().get("instanceId");
-                if (startInstanceId == null) return new EnhancedChatResponse("Please provide an instance ID (e.g., i-12345abcdef).", List.of());
-                awsResult = awsToolExecutor.startEc2Instance(startInstanceId);
-                return new EnhancedChatResponse(awsResult, List.of());
-
-            case AWS_EC2_STOP_INSTANCE:
-                String stopInstanceId = (String) state.getSlots().get("instanceId");
-                if (stopInstanceId == null) return new EnhancedChatResponse("Please provide an instance ID (e.g., i-12345abcdef).", List.of());
-                awsResult = awsToolExecutor.stopEc2Instance(stopInstanceId);
-                return new EnhancedChatResponse(awsResult, List.of());
-
-            case AWS_S3_LIST_BUCKETS:
-                awsResult = awsToolExecutor.listS3Buckets();
-                return new EnhancedChatResponse(awsResult, List.of());
-
-            case AWS_CLOUDWATCH_GET_METRICS:
-                String cwInstanceId = (String) state.getSlots().get("instanceId");
-                if (cwInstanceId == null) return new EnhancedChatResponse("Which instance ID do you want to get metrics for?", List.of());
-                awsResult = awsToolExecutor.getCloudWatchCpuUtilization(cwInstanceId);
-                return new EnhancedChatResponse(awsResult, List.of());
+        CompletableFuture<EnhancedChatResponse> awsResult = runAwsTool(state, intent, userInput);
+        if (awsResult != null) {
+            return AwsToolExecutor.await(awsResult);
+        }
 
+        switch (intent) {
             case GENERATE_COMMAND:
                 // Tool Use: If the intent is to generate a command, use the specialized CommandService.
                 String task = (String) state.getSlots().getOrDefault("task", userInput);
                 CommandResponse commandResponse = commandService.generateCommand(task);
+                pipelineMetrics.recordStage(PipelineMetrics.Stage.COMMAND, intent, stageStart);
                 String reply = String.format("Here is the command for your task:\n\n**Command:**\n```sh\n%s\n```\n**Explanation:**\n%s",
                         commandResponse.command(), commandResponse.explanation());
                 return new EnhancedChatResponse(reply, List.of()); // No RAG documents used
@@ -78,20 +81,140 @@ public class ReasoningEngine {
             case GENERAL_QUERY:
             default:
                 // Fallback to RAG: For general questions, use the RAG pipeline.
-                return executeRagQuery(userInput, context, history);
+                return executeRagQuery(intent, userInput, context, history);
         }
     }
 
-    private EnhancedChatResponse executeRagQuery(String userInput, List<Document> context, List<Message> history) {
-        String documentsText = context.stream()
-                                .map(Document::getText)
-                                .collect(Collectors.joining("\n---\n"));
+    /**
+     * Runs the AWS tool for an AWS intent without blocking, or returns {@code null} for any other
+     * intent. Missing slots complete immediately with a prompt for them. Start/stop with several
+     * instance IDs or a tag selector goes out as one batched fleet action; so does a metrics
+     * question about several instances, other metrics than CPU, or an explicit time window.
+     */
+    private CompletableFuture<EnhancedChatResponse> runAwsTool(DialogueState state, DialogueState.Intent intent, String userInput) {
+        String instanceId = (String) state.getSlots().get("instanceId");
+        String instanceIdList = (String) state.getSlots().get("instanceIds");
+        List<String> instanceIds = instanceIdList != null ? List.of(instanceIdList.split(","))
+                : instanceId != null ? List.of(instanceId) : List.of();
+        String tagSelector = (String) state.getSlots().get("tagSelector");
+        boolean fleet = tagSelector != null || instanceIds.size() > 1;
+        CompletableFuture<String> awsResult;
+        switch (intent) {
+            case AWS_EC2_START_INSTANCE:
+                if (instanceIds.isEmpty() && tagSelector == null) return completedReply(MISSING_INSTANCE_SELECTOR);
+                awsResult = fleet
+                        ? awsToolExecutor.startEc2InstancesAsync(instanceIds, tagSelector)
+                        : awsToolExecutor.startEc2InstanceAsync(instanceIds.getFirst());
+                break;
 
-        List<String> sourceDocuments = context.stream()
-                .map(doc -> doc.getMetadata().get("source").toString())
-                .distinct().toList();
+            case AWS_EC2_STOP_INSTANCE:
+                if (instanceIds.isEmpty() && tagSelector == null) return completedReply(MISSING_INSTANCE_SELECTOR);
+                awsResult = fleet
+                        ? awsToolExecutor.stopEc2InstancesAsync(instanceIds, tagSelector)
+                        : awsToolExecutor.stopEc2InstanceAsync(instanceIds.getFirst());
+                break;
+
+            case AWS_S3_LIST_BUCKETS:
+                awsResult = awsToolExecutor.listS3BucketsAsync();
+                break;
+
+            case AWS_CLOUDWATCH_GET_METRICS:
+                if (instanceIds.isEmpty() && tagSelector == null) return completedReply("Which instance ID do you want to get metrics for?");
+                Set<CloudWatchMetricsQuery.Ec2Metric> metrics = CloudWatchMetricsQuery.metricsMentioned(userInput);
+                Duration window = CloudWatchMetricsQuery.windowMentioned(userInput);
+                awsResult = fleet || window != null || !metrics.equals(Set.of(CloudWatchMetricsQuery.Ec2Metric.CPU))
+                        ? awsToolExecutor.getCloudWatchMetricsAsync(instanceIds, tagSelector, metrics, window != null ? window : DEFAULT_METRICS_WINDOW)
+                        : awsToolExecutor.getCloudWatchCpuUtilizationAsync(instanceIds.getFirst());
+                break;
+
+            default:
+                return null;
+        }
+        long stageStart = System.nanoTime();
+        return awsResult
+                .whenComplete((result, error) -> pipelineMetrics.recordStage(PipelineMetrics.Stage.AWS_TOOL, intent, stageStart))
+                .thenApply(result -> new EnhancedChatResponse(result, List.of()));
+    }
+
+    private static CompletableFuture<EnhancedChatResponse> completedReply(String reply) {
+        return CompletableFuture.completedFuture(new EnhancedChatResponse(reply, List.of()));
+    }
+
+    /**
+     * Whether {@link #reason} uses the retrieved documents for this intent. Only the RAG fallback does.
+     */
+    public boolean needsContext(DialogueState.Intent intent) {
+        return intent == DialogueState.Intent.GENERAL_QUERY || intent == DialogueState.Intent.UNKNOWN;
+    }
+
+    /**
+     * Streaming counterpart of {@link #reason}. Tool-style intents still resolve in a single step
+     * and are emitted as one chunk (AWS tools without holding a thread while the call is in
+     * flight); general queries stream the LLM completion token by token.
+     */
+    public StreamingReply streamReason(DialogueState state, String userInput, List<Document> context, List<Message> history) {
+        if (needsContext(state.getCurrentIntent())) {
+            return streamRagQuery(state.getCurrentIntent(), userInput, context, history);
+        }
+        CompletableFuture<EnhancedChatResponse> awsResult = runAwsTool(state, state.getCurrentIntent(), userInput);
+        if (awsResult != null) {
+            return new StreamingReply(List.of(), Mono.fromFuture(awsResult).map(EnhancedChatResponse::response).flux());
+        }
+        EnhancedChatResponse response = reason(state, userInput, context, history);
+        return new StreamingReply(response.sourceDocuments(), Flux.just(response.response()));
+    }
+
+    private EnhancedChatResponse executeRagQuery(DialogueState.Intent intent, String userInput, List<Document> context, List<Message> history) {
+        ContextBudgeter.Budget budget = contextBudgeter.fit(RAG_SYSTEM_PROMPT, userInput, context, history);
+        List<String> sourceDocuments = extractSources(budget.documents());
+
+        logger.info("Executing RAG query with {} of {} context documents (~{} prompt tokens).",
+                budget.documents().size(), context.size(), budget.promptTokens());
+
+        long llmStart = System.nanoTime();
+        ChatResponse chatResponse = llmDispatcher.call(LlmDispatcher.Priority.INTERACTIVE, budget.promptTokens(),
+                () -> buildRagPrompt(userInput, budget).call().chatResponse(), LlmDispatcher::totalTokens);
+        pipelineMetrics.recordStage(PipelineMetrics.Stage.LLM, intent, llmStart);
+        String responseContent = textOf(chatResponse);
+        pipelineMetrics.recordTokens(usageOf(chatResponse), budget.promptTokens(), responseContent);
+
+        logger.info("RAG response generated: {}", responseContent);
+
+        return new EnhancedChatResponse(responseContent, sourceDocuments);
+    }
+
+    private StreamingReply streamRagQuery(DialogueState.Intent intent, String userInput, List<Document> context, List<Message> history) {
+        ContextBudgeter.Budget budget = contextBudgeter.fit(RAG_SYSTEM_PROMPT, userInput, context, history);
+        logger.info("Streaming RAG query with {} of {} context documents (~{} prompt tokens).",
+                budget.documents().size(), context.size(), budget.promptTokens());
+
+        Flux<String> tokens = Flux.defer(() -> {
+            long llmStart = System.nanoTime();
+            AtomicReference<Usage> usage = new AtomicReference<>();
+            StringBuilder completion = new StringBuilder();
+            return llmDispatcher.stream(LlmDispatcher.Priority.INTERACTIVE, budget.promptTokens(),
+                            () -> buildRagPrompt(userInput, budget).stream().chatResponse(), LlmDispatcher::totalTokens)
+                    .doOnNext(response -> {
+                        // Providers that report usage on a stream do so on the last chunk.
+                        Usage reported = usageOf(response);
+                        if (reported != null && reported.getTotalTokens() != null && reported.getTotalTokens() > 0) {
+                            usage.set(reported);
+                        }
+                    })
+                    .mapNotNull(ReasoningEngine::textOf)
+                    .filter(text -> !text.isEmpty())
+                    .doOnNext(completion::append)
+                    .doOnComplete(() -> {
+                        pipelineMetrics.recordStage(PipelineMetrics.Stage.LLM, intent, llmStart);
+                        pipelineMetrics.recordTokens(usage.get(), budget.promptTokens(), completion.toString());
+                    });
+        });
+
+        return new StreamingReply(extractSources(budget.documents()), tokens);
+    }
 
-        logger.info("Executing RAG query with {} context documents.", context.size());
+    private ChatClient.ChatClientRequestSpec buildRagPrompt(String userInput, ContextBudgeter.Budget budget) {
+        String documentsText = joinDocuments(budget.documents());
 
         // Build a prompt that includes history and RAG context
         SystemPromptTemplate systemPromptTemplate = new SystemPromptTemplate(RAG_SYSTEM_PROMPT);
@@ -101,16 +224,42 @@ public class ReasoningEngine {
         var promptBuilder = chatClient.prompt()
                 .system(systemMessage.getText());
 
-        // Add the entire message history
-        history.forEach(promptBuilder::messages);
+        // Add the history that fits in the budget
+        budget.history().forEach(promptBuilder::messages);
 
         // Add the current user message
-        String responseContent = promptBuilder.user(userInput)
-                .call()
-                .content();
+        return promptBuilder.user(userInput);
+    }
 
-        logger.info("RAG response generated: {}", responseContent);
+    private static String textOf(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return null;
+        }
+        return response.getResult().getOutput().getText();
+    }
 
-        return new EnhancedChatResponse(responseContent, sourceDocuments);
+    private static Usage usageOf(ChatResponse response) {
+        return response == null || response.getMetadata() == null ? null : response.getMetadata().getUsage();
+    }
+
+    /**
+     * Joins the chunk texts into the prompt's documents section.
+     */
+    static String joinDocuments(List<Document> context) {
+        return context.stream()
+                .map(Document::getText)
+                .collect(Collectors.joining("\n---\n"));
+    }
+
+    static List<String> extractSources(List<Document> context) {
+        return context.stream()
+                .map(doc -> doc.getMetadata().get("source").toString())
+                .distinct().toList();
+    }
+
+    /**
+     * A reply whose sources are known up front and whose text arrives incrementally.
+     */
+    public record StreamingReply(List<String> sourceDocuments, Flux<String> tokens) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,238 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.model.CorpusChangedEvent;
+import dev.pearch001.devopsgpt.model.EnhancedChatResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Caches RAG answers keyed on the embedding of the question, so near-duplicate questions
+ * ("what is a pod", "explain k8s pods") skip retrieval and the LLM completion.
+ * <p>
+ * Entries are grouped by scope, because the same question gets a different prompt on different
+ * paths. The cache is bounded by size (least recently hit entries go first) and by TTL, and is
+ * cleared whenever ingestion changes the corpus. A key records the corpus generation it was made
+ * in, so an answer still being computed from the old corpus when that happens is not stored.
+ * <p>
+ * The question's embedding is remembered by {@link dev.pearch001.devopsgpt.retrieval.ReusingEmbeddingModel},
+ * so the retrieval after a miss does not embed it a second time.
+ */
+@Service
+public class SemanticAnswerCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SemanticAnswerCache.class);
+
+    private final EmbeddingModel embeddingModel;
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final int maxEntries;
+    private final Duration ttl;
+    private final MeterRegistry meterRegistry;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Bumped under the write lock whenever the corpus changes
+    private volatile long generation;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter latencySavedMillis;
+
+    public SemanticAnswerCache(EmbeddingModel embeddingModel,
+                               MeterRegistry meterRegistry,
+                               @Value("${devopsgpt.cache.semantic.enabled:true}") boolean enabled,
+                               @Value("${devopsgpt.cache.semantic.similarity-threshold:0.92}") double similarityThreshold,
+                               @Value("${devopsgpt.cache.semantic.max-entries:1000}") int maxEntries,
+                               @Value("${devopsgpt.cache.semantic.ttl:1h}") Duration ttl) {
+        this.embeddingModel = embeddingModel;
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.meterRegistry = meterRegistry;
+
+        this.hits = meterRegistry.counter("devopsgpt.cache.semantic.requests", "result", "hit");
+        this.misses = meterRegistry.counter("devopsgpt.cache.semantic.requests", "result", "miss");
+        this.latencySavedMillis = meterRegistry.counter("devopsgpt.cache.semantic.latency.saved.ms");
+    }
+
+    @PostConstruct
+    void registerGauge() {
+        Gauge.builder("devopsgpt.cache.semantic.size", this, SemanticAnswerCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Embeds the question once so it can be used for both the lookup and a later {@link #put}.
+     */
+    public Key key(String scope, String question) {
+        if (!enabled) {
+            return new Key(scope, null, generation);
+        }
+        // Read before embedding, so a corpus change during the call still counts against this key.
+        long current = generation;
+        return new Key(scope, normalize(embeddingModel.embed(question)), current);
+    }
+
+    public Optional<EnhancedChatResponse> get(Key key) {
+        if (key.embedding() == null) {
+            return Optional.empty();
+        }
+        long now = System.nanoTime();
+        Entry best = null;
+        double bestScore = similarityThreshold;
+
+        lock.readLock().lock();
+        try {
+            for (Entry entry : entries) {
+                if (!entry.scope.equals(key.scope()) || now - entry.createdAt > ttl.toNanos()) {
+                    continue;
+                }
+                double score = dot(key.embedding(), entry.embedding);
+                if (score >= bestScore) {
+                    bestScore = score;
+                    best = entry;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (best == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        best.lastHit = now;
+        hits.increment();
+        latencySavedMillis.increment(best.computeMillis);
+        logger.info("Semantic cache hit in scope '{}' (similarity {})", key.scope(), String.format("%.3f", bestScore));
+        return Optional.of(best.response);
+    }
+
+    /**
+     * Stores an answer, unless the corpus changed since the key was made.
+     * @param computeMillis How long the answer took to produce; credited as latency saved on each hit.
+     */
+    public void put(Key key, EnhancedChatResponse response, long computeMillis) {
+        if (key.embedding() == null || response.response() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (key.generation() != generation) {
+                logger.debug("Not caching an answer computed before the corpus changed");
+                return;
+            }
+            if (entries.size() >= maxEntries) {
+                Entry coldest = entries.getFirst();
+                for (Entry entry : entries) {
+                    if (entry.lastHit < coldest.lastHit) {
+                        coldest = entry;
+                    }
+                }
+                entries.remove(coldest);
+            }
+            entries.add(new Entry(key.scope(), key.embedding(), response, computeMillis));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onCorpusChanged(CorpusChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            logger.info("Corpus changed (+{}/-{} chunks); dropping {} cached answers", event.chunksAdded(), event.chunksRemoved(), entries.size());
+            generation++;
+            entries.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${devopsgpt.cache.semantic.sweep-interval:60000}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            entries.removeIf(entry -> now - entry.createdAt > ttl.toNanos());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        if (norm == 0) {
+            return vector;
+        }
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    // Both vectors are unit length, so the dot product is the cosine similarity.
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * A cache key: the scope, the normalized question embedding (null when the cache is disabled)
+     * and the corpus generation it was made in.
+     */
+    public record Key(String scope, float[] embedding, long generation) {
+    }
+
+    private static final class Entry {
+        private final String scope;
+        private final float[] embedding;
+        private final EnhancedChatResponse response;
+        private final long computeMillis;
+        private final long createdAt = System.nanoTime();
+        private volatile long lastHit = createdAt;
+
+        Entry(String scope, float[] embedding, EnhancedChatResponse response, long computeMillis) {
+            this.scope = scope;
+            this.embedding = embedding;
+            this.response = response;
+            this.computeMillis = computeMillis;
+        }
+    }
+}
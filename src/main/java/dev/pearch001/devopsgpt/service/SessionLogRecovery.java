@@ -0,0 +1,65 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.persistence.SessionEvent;
+import dev.pearch001.devopsgpt.persistence.SessionLog;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Rebuilds sessions and dialogue states from the session log before the application serves traffic.
+ */
+@Component
+public class SessionLogRecovery {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionLogRecovery.class);
+
+    private final SessionLog sessionLog;
+    private final SessionManager sessionManager;
+    private final DialogueStateTracker dialogueStateTracker;
+
+    public SessionLogRecovery(SessionLog sessionLog, SessionManager sessionManager, DialogueStateTracker dialogueStateTracker) {
+        this.sessionLog = sessionLog;
+        this.sessionManager = sessionManager;
+        this.dialogueStateTracker = dialogueStateTracker;
+    }
+
+    @PostConstruct
+    public void recover() throws IOException {
+        if (!sessionLog.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long[] events = new long[1];
+
+        sessionLog.replay(event -> {
+            events[0]++;
+            switch (event) {
+                case SessionEvent.MessageAppended m -> sessionManager.restoreMessage(m.sessionId(), toMessage(m));
+                case SessionEvent.StateUpdated s -> dialogueStateTracker.restoreState(s.sessionId(), s.intent(), s.slots());
+                case SessionEvent.SessionEvicted e -> {
+                    sessionManager.restoreEviction(e.sessionId());
+                    dialogueStateTracker.evict(e.sessionId());
+                }
+            }
+        });
+        sessionManager.finishRestore();
+
+        logger.info("Recovered {} session events in {} ms", events[0], (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Message toMessage(SessionEvent.MessageAppended event) {
+        return switch (event.messageType()) {
+            case USER -> new UserMessage(event.text());
+            case SYSTEM -> new SystemMessage(event.text());
+            default -> new AssistantMessage(event.text());
+        };
+    }
+}
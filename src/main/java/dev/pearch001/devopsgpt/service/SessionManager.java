@@ -1,23 +1,383 @@
 package dev.pearch001.devopsgpt.service;
 
+import dev.pearch001.devopsgpt.persistence.SessionLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Keeps a bounded conversation memory per session.
+ * <p>
+ * Each session holds a sliding window of recent turns that fits within a token budget. Turns that
+ * fall out of the window are folded into a short rolling summary, which is itself capped. Idle
+ * sessions expire after a TTL, and the least recently used sessions are evicted when the session
+ * count or the total number of tokens held across all sessions exceeds its limit. Evicting a
+ * session also drops its dialogue state.
+ * <p>
+ * Turns are held as {@link CompactMessage}s and only turned back into Spring AI messages by
+ * {@link #getHistory}. Identical messages up to {@code shared-messages.max-size}, such as common
+ * questions or answers replayed from the semantic cache, share one instance along with its token
+ * count through a small LRU pool.
+ */
 @Service
 public class SessionManager {
 
-    private final Map<String, List<Message>> sessionHistory = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(SessionManager.class);
+
+    private static final int SUMMARY_LINE_MAX_CHARS = 200;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // Live sessions from least to most recently used, so the LRU victim is always the first entry
+    private final Map<String, Session> accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong totalTokens = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final TokenCountEstimator tokenCountEstimator;
+    private final SessionLog sessionLog;
+    private final DialogueStateTracker dialogueStateTracker;
+    private final int maxHistoryTokens;
+    private final int maxSummaryTokens;
+    private final int maxSessions;
+    private final long maxTotalTokens;
+    private final Duration idleTtl;
+    private final long maxSharedMessageBytes;
+    // Recently added messages by content, in access order, so repeats can share the same instance
+    private final Map<CompactMessage, CompactMessage> sharedMessages;
+
+    private final Counter summarizedTurns;
+    private final Counter idleEvictions;
+    private final Counter lruEvictions;
+    private final Counter tokensSaved;
+    private final Counter sharedMessageHits;
+
+    public SessionManager(TokenCountEstimator tokenCountEstimator,
+                          SessionLog sessionLog,
+                          DialogueStateTracker dialogueStateTracker,
+                          MeterRegistry meterRegistry,
+                          @Value("${devopsgpt.session.max-history-tokens:2000}") int maxHistoryTokens,
+                          @Value("${devopsgpt.session.max-summary-tokens:400}") int maxSummaryTokens,
+                          @Value("${devopsgpt.session.max-sessions:10000}") int maxSessions,
+                          @Value("${devopsgpt.session.max-total-tokens:20000000}") long maxTotalTokens,
+                          @Value("${devopsgpt.session.idle-ttl:30m}") Duration idleTtl,
+                          @Value("${devopsgpt.session.shared-messages.max-entries:1024}") int maxSharedMessages,
+                          @Value("${devopsgpt.session.shared-messages.max-size:4KB}") DataSize maxSharedMessageSize) {
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.sessionLog = sessionLog;
+        this.dialogueStateTracker = dialogueStateTracker;
+        this.maxHistoryTokens = maxHistoryTokens;
+        this.maxSummaryTokens = maxSummaryTokens;
+        this.maxSessions = maxSessions;
+        this.maxTotalTokens = maxTotalTokens;
+        this.idleTtl = idleTtl;
+        this.maxSharedMessageBytes = maxSharedMessages > 0 ? maxSharedMessageSize.toBytes() : -1;
+        this.sharedMessages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CompactMessage, CompactMessage> eldest) {
+                return size() > maxSharedMessages;
+            }
+        };
+
+        this.summarizedTurns = meterRegistry.counter("devopsgpt.session.turns.summarized");
+        this.idleEvictions = meterRegistry.counter("devopsgpt.session.evictions", "reason", "idle");
+        this.lruEvictions = meterRegistry.counter("devopsgpt.session.evictions", "reason", "lru");
+        this.tokensSaved = meterRegistry.counter("devopsgpt.session.tokens.saved");
+        this.sharedMessageHits = meterRegistry.counter("devopsgpt.session.messages.shared");
+        Gauge.builder("devopsgpt.session.active", sessions, Map::size).register(meterRegistry);
+        Gauge.builder("devopsgpt.session.tokens.held", totalTokens, AtomicLong::get).register(meterRegistry);
+    }
 
     public void addMessage(String sessionId, Message message) {
-        sessionHistory.computeIfAbsent(sessionId, k -> new ArrayList<>()).add(message);
+        append(sessionId, message);
+        if (sessions.size() > maxSessions || totalTokens.get() > maxTotalTokens) {
+            enforceGlobalLimits(true);
+        }
+        sessionLog.appendMessage(sessionId, message);
+    }
+
+    /**
+     * Re-applies a message replayed from the session log, without logging it again. The global
+     * limits are left to {@link #finishRestore}, so replay does not trim on every message.
+     */
+    void restoreMessage(String sessionId, Message message) {
+        append(sessionId, message);
+    }
+
+    /**
+     * Trims the replayed sessions to the global limits once, least recently used first. These
+     * evictions are not logged, as the next replay makes the same ones.
+     */
+    void finishRestore() {
+        if (sessions.size() > maxSessions || totalTokens.get() > maxTotalTokens) {
+            enforceGlobalLimits(false);
+        }
+    }
+
+    /**
+     * Drops a session that the session log recorded as evicted, without logging it again.
+     */
+    void restoreEviction(String sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session != null) {
+            drop(sessionId, session);
+        }
+    }
+
+    private void append(String sessionId, Message message) {
+        CompactMessage turn = compact(message);
+        while (true) {
+            Session session = sessions.computeIfAbsent(sessionId, k -> new Session());
+            synchronized (session) {
+                // The session may have been evicted between the lookup and the lock; retry on a fresh one.
+                if (session.evicted) {
+                    continue;
+                }
+                totalTokens.addAndGet(session.append(turn));
+                touch(sessionId, session);
+            }
+            break;
+        }
     }
 
+    /**
+     * Encodes a message for the window, reusing an identical recent one and its token count if there is one.
+     */
+    private CompactMessage compact(Message message) {
+        CompactMessage probe = CompactMessage.probe(message.getMessageType(), message.getText());
+        boolean shareable = probe.size() <= maxSharedMessageBytes;
+        if (shareable) {
+            synchronized (sharedMessages) {
+                CompactMessage shared = sharedMessages.get(probe);
+                if (shared != null) {
+                    sharedMessageHits.increment();
+                    return shared;
+                }
+            }
+        }
+        CompactMessage compact = probe.withTokens(tokenCountEstimator.estimate(message.getText()));
+        if (shareable) {
+            synchronized (sharedMessages) {
+                sharedMessages.putIfAbsent(compact, compact);
+            }
+        }
+        return compact;
+    }
+
+    /**
+     * Whether the session has any history, without building it.
+     */
+    public boolean hasHistory(String sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            return false;
+        }
+        synchronized (session) {
+            return !session.window.isEmpty() || !session.summary.isEmpty();
+        }
+    }
+
+    /**
+     * Returns the prompt-ready history: the rolling summary (if any) as a system message,
+     * followed by the recent turns in the window.
+     */
     public List<Message> getHistory(String sessionId) {
-        return sessionHistory.getOrDefault(sessionId, new ArrayList<>());
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            return List.of();
+        }
+        synchronized (session) {
+            if (!session.evicted) {
+                session.lastAccess = System.nanoTime();
+                touch(sessionId, session);
+            }
+            List<Message> history = new ArrayList<>(session.window.size() + 1);
+            if (!session.summary.isEmpty()) {
+                history.add(new SystemMessage("Summary of the earlier conversation:\n" + String.join("\n", session.summary)));
+            }
+            for (CompactMessage turn : session.window) {
+                history.add(turn.toMessage());
+            }
+            return history;
+        }
+    }
+
+    /**
+     * Drops sessions that have not been touched within the idle TTL.
+     */
+    @Scheduled(fixedDelayString = "${devopsgpt.session.sweep-interval:60000}")
+    public void evictIdleSessions() {
+        long cutoff = System.nanoTime() - idleTtl.toNanos();
+        int evicted = 0;
+        for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+            if (entry.getValue().lastAccess - cutoff < 0 && evict(entry.getKey(), entry.getValue())) {
+                idleEvictions.increment();
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            logger.info("Evicted {} idle sessions, {} remain", evicted, sessions.size());
+        }
+    }
+
+    private void enforceGlobalLimits(boolean logEvictions) {
+        // One thread trimming is enough; others carry on and will see the reduced totals.
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            while (sessions.size() > maxSessions || totalTokens.get() > maxTotalTokens) {
+                Map.Entry<String, Session> eldest = leastRecentlyUsed();
+                if (eldest == null) {
+                    break;
+                }
+                boolean evicted = logEvictions
+                        ? evict(eldest.getKey(), eldest.getValue())
+                        : drop(eldest.getKey(), eldest.getValue());
+                if (evicted) {
+                    lruEvictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Marks a session as the most recently used. Callers hold the session monitor, and the
+     * session is not evicted, so an evicted session is never put back.
+     */
+    private void touch(String sessionId, Session session) {
+        synchronized (accessOrder) {
+            accessOrder.put(sessionId, session);
+        }
+    }
+
+    /**
+     * Removes and returns the least recently used session from the access order, or null if there is none.
+     */
+    private Map.Entry<String, Session> leastRecentlyUsed() {
+        synchronized (accessOrder) {
+            Iterator<Map.Entry<String, Session>> it = accessOrder.entrySet().iterator();
+            if (!it.hasNext()) {
+                return null;
+            }
+            Map.Entry<String, Session> eldest = it.next();
+            Map.Entry<String, Session> victim = Map.entry(eldest.getKey(), eldest.getValue());
+            it.remove();
+            return victim;
+        }
+    }
+
+    /**
+     * Drops a session and records the eviction in the session log.
+     */
+    private boolean evict(String sessionId, Session session) {
+        synchronized (session) {
+            if (!drop(sessionId, session)) {
+                return false;
+            }
+            sessionLog.appendEviction(sessionId);
+            return true;
+        }
+    }
+
+    /**
+     * Drops a session from memory only. Replay uses this, so it never writes to the log it reads.
+     */
+    private boolean drop(String sessionId, Session session) {
+        synchronized (session) {
+            if (session.evicted || !sessions.remove(sessionId, session)) {
+                return false;
+            }
+            session.evicted = true;
+            synchronized (accessOrder) {
+                accessOrder.remove(sessionId, session);
+            }
+            totalTokens.addAndGet(-session.heldTokens());
+            dialogueStateTracker.evict(sessionId);
+            return true;
+        }
+    }
+
+    private String summarize(CompactMessage message) {
+        String text = message.text().strip().replaceAll("\\s+", " ");
+        int sentenceEnd = text.indexOf(". ");
+        if (sentenceEnd > 0) {
+            text = text.substring(0, sentenceEnd + 1);
+        }
+        if (text.length() > SUMMARY_LINE_MAX_CHARS) {
+            text = text.substring(0, SUMMARY_LINE_MAX_CHARS) + "...";
+        }
+        String speaker = message.type() == MessageType.USER ? "User" : "Assistant";
+        return speaker + ": " + text;
+    }
+
+    /**
+     * Per-session state. All access is guarded by the instance monitor.
+     */
+    private final class Session {
+        private final Deque<CompactMessage> window = new ArrayDeque<>();
+        private final Deque<String> summary = new ArrayDeque<>();
+        private final Deque<Integer> summaryTokens = new ArrayDeque<>();
+        private int windowTokenCount;
+        private int summaryTokenCount;
+        private volatile long lastAccess = System.nanoTime();
+        private boolean evicted;
+
+        /**
+         * Appends a turn and slides the window to stay within budget.
+         * @return The change in tokens held by this session.
+         */
+        long append(CompactMessage turn) {
+            long before = heldTokens();
+            lastAccess = System.nanoTime();
+            window.addLast(turn);
+            windowTokenCount += turn.tokens();
+
+            // Always keep the latest turn, even if it alone exceeds the budget.
+            while (windowTokenCount > maxHistoryTokens && window.size() > 1) {
+                CompactMessage oldest = window.removeFirst();
+                windowTokenCount -= oldest.tokens();
+
+                String line = summarize(oldest);
+                int lineTokens = tokenCountEstimator.estimate(line);
+                summary.addLast(line);
+                summaryTokens.addLast(lineTokens);
+                summaryTokenCount += lineTokens;
+                while (summaryTokenCount > maxSummaryTokens && summary.size() > 1) {
+                    summary.removeFirst();
+                    summaryTokenCount -= summaryTokens.removeFirst();
+                }
+
+                summarizedTurns.increment();
+                tokensSaved.increment(Math.max(0, oldest.tokens() - lineTokens));
+            }
+            return heldTokens() - before;
+        }
+
+        long heldTokens() {
+            return windowTokenCount + summaryTokenCount;
+        }
     }
 }
@@ -0,0 +1,403 @@
+package dev.pearch001.devopsgpt.service;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.html.HtmlEncodingDetector;
+import org.apache.tika.parser.microsoft.OfficeParserConfig;
+import org.apache.tika.parser.pdf.PDFParserConfig;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.core.io.Resource;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads PDF, HTML, Office and plain text documents and hands out chunks while the file is still
+ * being parsed, instead of building the whole text first as {@code TikaDocumentReader} does.
+ * <p>
+ * Parsed text collects in a window of about {@code windowChars}. At the next block boundary (a
+ * paragraph, list item, table row or page) once the window is full, it is split with the ingestion
+ * splitter and every chunk except the last is emitted; the text from the last chunk on is kept and
+ * continues into the next window, so chunks are cut as if the whole text had been split at once.
+ * Each chunk is the window text between the splitter's cut points rather than the splitter's own
+ * output, so together the chunks cover the text exactly once.
+ * <p>
+ * Working memory per file is therefore the window plus the parser's own state. HTML is read with
+ * jsoup's stream parser, dropping each element once its text is taken, because Tika's HTML parser
+ * builds the whole DOM first. Everything else goes through Tika: Word and PowerPoint files with its
+ * SAX extractors, and PDFs with PDFBox, which moves parser state beyond {@code parserMemoryBytes}
+ * to temporary files. Chunks of PDFs carry the {@code page} they start on.
+ */
+final class StreamingDocumentReader {
+
+    /**
+     * Receives chunks in document order. May block, which pauses parsing.
+     */
+    @FunctionalInterface
+    interface ChunkSink {
+        void accept(Document chunk) throws InterruptedException;
+    }
+
+    private static final Set<String> EXTENSIONS = Set.of(
+            "pdf", "html", "htm", "docx", "doc", "pptx", "ppt", "xlsx", "xls", "odt", "rtf", "txt");
+
+    private static final Set<String> BLOCK_ELEMENTS = Set.of(
+            "p", "div", "li", "tr", "dt", "dd", "h1", "h2", "h3", "h4", "h5", "h6", "pre", "blockquote", "br",
+            "table", "ul", "ol", "dl", "section", "article", "main", "header", "footer", "nav", "aside", "body",
+            "caption", "figcaption");
+
+    private static final Set<String> SKIPPED_ELEMENTS = Set.of("head", "script", "style", "noscript", "template", "svg");
+
+    private final TokenTextSplitter splitter;
+    private final int windowChars;
+    private final long parserMemoryBytes;
+    private final Map<String, Object> metadata;
+    private final AutoDetectParser parser = new AutoDetectParser();
+
+    StreamingDocumentReader(TokenTextSplitter splitter, int windowChars, long parserMemoryBytes, Map<String, Object> metadata) {
+        this.splitter = splitter;
+        this.windowChars = windowChars;
+        this.parserMemoryBytes = parserMemoryBytes;
+        this.metadata = metadata;
+    }
+
+    /**
+     * Whether a file name has an extension this reader handles.
+     */
+    static boolean supports(String fileName) {
+        return EXTENSIONS.contains(extension(fileName));
+    }
+
+    void read(Resource resource, ChunkSink sink) throws IOException, InterruptedException {
+        String extension = extension(resource.getFilename());
+        // A file is parsed in place; anything else is spooled to a temporary file if the parser needs random access.
+        try (TikaInputStream in = resource.isFile()
+                ? TikaInputStream.get(resource.getFile().toPath())
+                : TikaInputStream.get(resource.getInputStream())) {
+            if (extension.equals("html") || extension.equals("htm")) {
+                readHtml(in, new ChunkWindow(sink, "text/html"));
+            } else {
+                readWithTika(resource.getFilename(), in, sink);
+            }
+        } catch (SAXException | TikaException e) {
+            // Some parsers wrap what the sink throws, so look for an interruption down the chain.
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (t instanceof InterruptedException interrupted) {
+                    throw interrupted;
+                }
+            }
+            throw new IOException("Cannot parse " + resource.getFilename(), e);
+        }
+    }
+
+    private void readHtml(TikaInputStream in, ChunkWindow window) throws IOException, InterruptedException {
+        Charset charset = new HtmlEncodingDetector().detect(in, new Metadata());
+        InputStreamReader reader = new InputStreamReader(in, charset != null ? charset : StandardCharsets.UTF_8);
+        try (StreamParser streamParser = new StreamParser(Parser.htmlParser()).parse(reader, "")) {
+            // Elements arrive as they are closed, innermost first. A block's text is taken and the
+            // block removed, so a container closing later only adds the loose text left in it. Line
+            // breaks are left to their paragraph, whose text turns them into spaces.
+            Iterator<Element> elements = streamParser.iterator();
+            while (elements.hasNext()) {
+                Element element = elements.next();
+                String tag = element.normalName();
+                if (SKIPPED_ELEMENTS.contains(tag)) {
+                    element.remove();
+                } else if (BLOCK_ELEMENTS.contains(tag) && !tag.equals("br")) {
+                    String text = tag.equals("pre") ? element.wholeText() : element.text();
+                    if (!text.isBlank()) {
+                        window.append(text);
+                    }
+                    window.endBlock();
+                    element.remove();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        window.finish();
+    }
+
+    private void readWithTika(String fileName, TikaInputStream in, ChunkSink sink) throws IOException, SAXException, TikaException {
+        Metadata tikaMetadata = new Metadata();
+        tikaMetadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, fileName);
+        parser.parse(in, new ChunkingHandler(new ChunkWindow(sink, null), tikaMetadata), tikaMetadata, parseContext());
+    }
+
+    private ParseContext parseContext() {
+        PDFParserConfig pdfConfig = new PDFParserConfig();
+        pdfConfig.setMaxMainMemoryBytes(parserMemoryBytes);
+        pdfConfig.setOcrStrategy(PDFParserConfig.OCR_STRATEGY.NO_OCR);
+        pdfConfig.setExtractInlineImages(false);
+        OfficeParserConfig officeConfig = new OfficeParserConfig();
+        officeConfig.setUseSAXDocxExtractor(true);
+        officeConfig.setUseSAXPptxExtractor(true);
+        ParseContext context = new ParseContext();
+        context.set(PDFParserConfig.class, pdfConfig);
+        context.set(OfficeParserConfig.class, officeConfig);
+        return context;
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName == null ? -1 : fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Feeds Tika's XHTML events into a window: text, block ends and PDF page starts.
+     */
+    private static final class ChunkingHandler extends DefaultHandler {
+
+        private final ChunkWindow window;
+        private final Metadata tikaMetadata;
+
+        ChunkingHandler(ChunkWindow window, Metadata tikaMetadata) {
+            this.window = window;
+            this.tikaMetadata = tikaMetadata;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (window.contentType == null) {
+                // Detected before the parser starts writing
+                window.contentType = tikaMetadata.get(Metadata.CONTENT_TYPE);
+            }
+            if ("div".equals(localName) && "page".equals(attributes.getValue("class"))) {
+                window.startPage();
+            } else if ("td".equals(localName) || "th".equals(localName)) {
+                window.append("\t");
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (BLOCK_ELEMENTS.contains(localName)) {
+                interruptible(window::endBlock);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            interruptible(() -> window.append(ch, start, length));
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            interruptible(() -> window.append(ch, start, length));
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            interruptible(window::finish);
+        }
+
+        private static void interruptible(InterruptibleAction action) throws SAXException {
+            try {
+                action.run();
+            } catch (InterruptedException e) {
+                throw new SAXException(e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface InterruptibleAction {
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * The text between the last emitted chunk and the parser's current position.
+     */
+    private final class ChunkWindow {
+
+        private final ChunkSink sink;
+        private final StringBuilder text = new StringBuilder();
+        // Offsets in the window where a page starts, oldest first
+        private final Deque<int[]> pageStarts = new ArrayDeque<>();
+        private int page;
+        private String contentType;
+
+        ChunkWindow(ChunkSink sink, String contentType) {
+            this.sink = sink;
+            this.contentType = contentType;
+        }
+
+        void startPage() {
+            page++;
+            pageStarts.addLast(new int[]{text.length(), page});
+        }
+
+        void append(CharSequence chars) {
+            text.append(chars);
+        }
+
+        void append(char[] chars, int start, int length) throws InterruptedException {
+            text.append(chars, start, length);
+            // Text without any block structure is cut anyway, so the window stays bounded.
+            if (text.length() >= 2 * windowChars) {
+                flush(false);
+            }
+        }
+
+        void endBlock() throws InterruptedException {
+            text.append('\n');
+            if (text.length() >= windowChars) {
+                flush(false);
+            }
+        }
+
+        void finish() throws InterruptedException {
+            flush(true);
+        }
+
+        private void flush(boolean last) throws InterruptedException {
+            List<Document> chunks = splitter.apply(List.of(new Document(text.toString())));
+            if (chunks.isEmpty()) {
+                if (last) {
+                    text.setLength(0);
+                    pageStarts.clear();
+                }
+                return;
+            }
+            // The splitter only picks the cut points. Its chunk texts are trimmed, may leave out short
+            // pieces and can be off by a token, so what is emitted is the window text between two
+            // cuts; the chunks then cover the window exactly once. The first chunk starts the window.
+            int[] cuts = new int[chunks.size()];
+            int found = 1;
+            while (found < chunks.size()) {
+                int cut = locate(chunks.get(found - 1).getText(), chunks.get(found).getText(), cuts[found - 1]);
+                if (cut < 0) {
+                    break;
+                }
+                cuts[found++] = cut;
+            }
+            // The last chunk found is kept for the next window, or on the last flush runs to the end.
+            int complete = found - 1;
+            for (int i = 0; i < complete; i++) {
+                emitSlice(cuts[i], cuts[i + 1]);
+            }
+            if (last) {
+                emitSlice(cuts[complete], text.length());
+                text.setLength(0);
+                pageStarts.clear();
+                return;
+            }
+            // Keep what follows the last emitted chunk; it starts the next window.
+            int keepFrom = cuts[complete];
+            int keptPage = pageAt(keepFrom);
+            text.delete(0, keepFrom);
+            pageStarts.removeIf(start -> start[0] <= keepFrom);
+            pageStarts.forEach(start -> start[0] -= keepFrom);
+            if (keptPage > 0) {
+                pageStarts.addFirst(new int[]{0, keptPage});
+            }
+        }
+
+        /**
+         * Where {@code next} starts in the window, given that {@code chunk} starts at {@code from}:
+         * straight after {@code chunk} if it is there, else at the match nearest to that point.
+         * @return The offset, or -1 if {@code next} is not found after {@code from}.
+         */
+        private int locate(String chunk, String next, int from) {
+            int end = matchEnd(chunk, skipWhitespace(from));
+            int expected = end >= 0 ? skipWhitespace(end) : Math.min(text.length(), from + chunk.length());
+            if (matchEnd(next, expected) >= 0) {
+                return expected;
+            }
+            for (int distance = 1; expected - distance > from || expected + distance < text.length(); distance++) {
+                int before = expected - distance;
+                if (before > from && matchEnd(next, before) >= 0) {
+                    return before;
+                }
+                int after = expected + distance;
+                if (after < text.length() && matchEnd(next, after) >= 0) {
+                    return after;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * End offset of {@code chunk} in the window if it is the text at {@code start}, comparing only
+         * non-whitespace characters; a replacement character stands for any one character, as a
+         * character split between tokens decodes to one.
+         * @return The end offset, or -1 if the text at {@code start} differs.
+         */
+        private int matchEnd(String chunk, int start) {
+            if (start >= text.length() || Character.isWhitespace(text.charAt(start))) {
+                return -1;
+            }
+            int at = start;
+            for (int i = 0; i < chunk.length(); i++) {
+                char c = chunk.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    continue;
+                }
+                at = skipWhitespace(at);
+                if (at == text.length() || (c != text.charAt(at) && c != '\uFFFD')) {
+                    return -1;
+                }
+                at++;
+            }
+            return at;
+        }
+
+        private int skipWhitespace(int offset) {
+            while (offset < text.length() && Character.isWhitespace(text.charAt(offset))) {
+                offset++;
+            }
+            return offset;
+        }
+
+        private void emitSlice(int start, int end) throws InterruptedException {
+            String chunk = text.substring(start, end).strip();
+            if (!chunk.isEmpty()) {
+                emit(chunk, pageAt(skipWhitespace(start)));
+            }
+        }
+
+        private int pageAt(int offset) {
+            int found = 0;
+            for (int[] start : pageStarts) {
+                if (start[0] > offset) {
+                    break;
+                }
+                found = start[1];
+            }
+            return found;
+        }
+
+        private void emit(String chunk, int startPage) throws InterruptedException {
+            Map<String, Object> chunkMetadata = new HashMap<>(metadata);
+            if (contentType != null) {
+                chunkMetadata.put("content_type", contentType);
+            }
+            if (startPage > 0) {
+                chunkMetadata.put("page", startPage);
+            }
+            sink.accept(new Document(chunk, chunkMetadata));
+        }
+    }
+}
@@ -1,72 +1,720 @@
 package dev.pearch001.devopsgpt.service;
 
+import dev.pearch001.devopsgpt.model.CorpusChangedEvent;
+import dev.pearch001.devopsgpt.model.IngestionStatus;
+import dev.pearch001.devopsgpt.retrieval.Bm25Index;
+import dev.pearch001.devopsgpt.vectorstore.EmbeddedVectorStore;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.reader.markdown.MarkdownDocumentReader;
 import org.springframework.ai.reader.markdown.config.MarkdownDocumentReaderConfig;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
+/**
+ * Loads the knowledge base documents into the vector store in the background.
+ * <p>
+ * Ingestion is a three-stage pipeline connected by bounded queues, so a slow embedding provider
+ * throttles reading instead of letting chunks pile up in memory:
+ * <ol>
+ *     <li>reader threads read, split and diff each document against the manifest in parallel,
+ *     streaming PDF, HTML and Office files chunk by chunk (see {@link StreamingDocumentReader});</li>
+ *     <li>a batcher packs new chunks into batches capped by chunk count and token count;</li>
+ *     <li>embedding workers store the batches concurrently, backing off and retrying when throttled.</li>
+ * </ol>
+ * The application serves traffic while this runs; progress is exposed through {@link #getStatus()}.
+ * <p>
+ * Besides the bundled documents, files in {@code devopsgpt.ingestion.watch.directory}
+ * are ingested too (a file there replaces a bundled one of the same name). That directory is
+ * watched, and each changed, added or deleted file is re-ingested on its own in the background
+ * once it has been quiet for the debounce time; see {@link #refreshFile}.
+ */
 @Service
 public class VectorStoreIngestor {
 
     private static final Logger logger = LoggerFactory.getLogger(VectorStoreIngestor.class);
 
+    private static final Duration BATCH_LINGER = Duration.ofMillis(200);
+
+    private static final Map<String, Object> DOCUMENT_METADATA = Map.of("source", "devops-doc", "category", "infrastructure");
+
     private final VectorStore vectorStore;
+    private final Bm25Index lexicalIndex;
+    private final TokenCountEstimator tokenCountEstimator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TokenTextSplitter splitter = newSplitter();
+
+    @Value("classpath:/documents/*")
+    private Resource[] bundledResources;
+
+    @Value("${devopsgpt.ingestion.manifest:data/ingestion-manifest.json}")
+    private String manifestPath;
+
+    @Value("${devopsgpt.ingestion.reader-threads:4}")
+    private int readerThreads;
+
+    @Value("${devopsgpt.ingestion.embedding-concurrency:4}")
+    private int embeddingConcurrency;
+
+    @Value("${devopsgpt.ingestion.batch-max-chunks:100}")
+    private int batchMaxChunks;
+
+    @Value("${devopsgpt.ingestion.batch-max-tokens:100000}")
+    private int batchMaxTokens;
+
+    @Value("${devopsgpt.ingestion.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${devopsgpt.ingestion.max-attempts:5}")
+    private int maxAttempts;
 
-    @Value("classpath:/documents/*.md")
-    private Resource[] documentResources;
+    @Value("${devopsgpt.ingestion.initial-backoff:1s}")
+    private Duration initialBackoff;
 
-    public VectorStoreIngestor(VectorStore vectorStore) {
+    @Value("${devopsgpt.ingestion.stream.window-chars:32000}")
+    private int streamWindowChars;
+
+    @Value("${devopsgpt.ingestion.stream.parser-memory:64MB}")
+    private DataSize parserMemory;
+
+    @Value("${devopsgpt.ingestion.watch.directory:}")
+    private String watchDirectory;
+
+    @Value("${devopsgpt.ingestion.watch.debounce:2s}")
+    private Duration watchDebounce;
+
+    // Only touched on the ingestion thread, once the first run has loaded it
+    private IngestionManifest manifest;
+    private DocumentWatcher watcher;
+    private StreamingDocumentReader streamingReader;
+
+    private final ExecutorService ingestionExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("ingestion").daemon().factory());
+
+    private volatile IngestionStatus.State state = IngestionStatus.State.PENDING;
+    private volatile int filesTotal;
+    private final AtomicInteger filesProcessed = new AtomicInteger();
+    private final AtomicLong chunksQueued = new AtomicLong();
+    private final AtomicLong chunksEmbedded = new AtomicLong();
+    private final AtomicLong chunksFailed = new AtomicLong();
+    private final AtomicLong chunksRemoved = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private volatile long startedAt;
+    private volatile long finishedAt;
+
+    public VectorStoreIngestor(VectorStore vectorStore, Bm25Index lexicalIndex, TokenCountEstimator tokenCountEstimator, ApplicationEventPublisher eventPublisher) {
         this.vectorStore = vectorStore;
+        this.lexicalIndex = lexicalIndex;
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    void createReaders() {
+        streamingReader = new StreamingDocumentReader(splitter, streamWindowChars, parserMemory.toBytes(), DOCUMENT_METADATA);
     }
 
     /**
-     * This method is executed after the bean has been initialized.
-     * It loads the documents, converts them to vectors, and stores them in ChromaDB.
+     * Kicks off ingestion once the application is up, without holding up startup.
      */
-    @PostConstruct
-    public void ingestDocuments() throws IOException {
+    @EventListener(ApplicationReadyEvent.class)
+    public void startIngestion() {
+        if (!watchDirectory.isBlank()) {
+            // Watching starts first so nothing written during the initial run is missed; a file
+            // reported twice is simply found unchanged the second time.
+            try {
+                Path directory = Files.createDirectories(Paths.get(watchDirectory));
+                watcher = new DocumentWatcher(directory, watchDebounce, VectorStoreIngestor::isDocument,
+                        this::refreshFiles, () -> ingestionExecutor.submit(this::rescan));
+            } catch (IOException e) {
+                logger.error("Cannot watch document directory {}", watchDirectory, e);
+            }
+        }
+        ingestionExecutor.submit(() -> {
+            try {
+                ingestDocuments();
+            } catch (Exception e) {
+                state = IngestionStatus.State.FAILED;
+                logger.error("Document ingestion failed", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+        ingestionExecutor.shutdownNow();
+    }
+
+    public IngestionStatus getStatus() {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        long elapsedNanos = startedAt == 0 ? 0 : end - startedAt;
+        double chunksPerSecond = elapsedNanos == 0 ? 0 : chunksEmbedded.get() / (elapsedNanos / 1e9);
+        double bytesPerSecond = elapsedNanos == 0 ? 0 : bytesRead.get() / (elapsedNanos / 1e9);
+        return new IngestionStatus(state, filesTotal, filesProcessed.get(), bytesRead.get(), chunksQueued.get(),
+                chunksEmbedded.get(), chunksFailed.get(), elapsedNanos / 1_000_000, chunksPerSecond, bytesPerSecond);
+    }
+
+    /**
+     * Loads the documents, converts them to vectors, and stores them in ChromaDB. Every chunk is
+     * also added to the in-memory keyword index used for hybrid retrieval.
+     * <p>
+     * Every chunk gets a deterministic ID derived from its file and content, and the manifest
+     * remembers which IDs are already in the store. Only new or changed chunks are embedded,
+     * and chunks that no longer exist (edited sections, deleted files) are removed. A changed
+     * file's outdated chunks are only removed, and the file recorded in the manifest, once all of
+     * its new chunks are stored, so a search never finds it missing, and a failed batch or a file
+     * that cannot be read to the end leaves the file as it was, to be retried on the next run.
+     * <p>
+     * Progress counters start from zero on every run, so the status and the decision to publish a
+     * {@link CorpusChangedEvent} only reflect this run.
+     */
+    public void ingestDocuments() throws IOException, InterruptedException {
         logger.info("Starting document ingestion process...");
+        resetProgress();
+        state = IngestionStatus.State.RUNNING;
+        startedAt = System.nanoTime();
+        List<Resource> resources = documentResources();
+        filesTotal = resources.size();
+
+        IngestionManifest manifest = manifest();
+        removeDeletedFiles(manifest, resources);
+
+        BlockingQueue<Chunk> chunkQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<Chunk>> batchQueue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity / batchMaxChunks));
+
+        ExecutorService readers = Executors.newFixedThreadPool(readerThreads, Thread.ofPlatform().name("ingestion-reader-", 0).factory());
+        ExecutorService embedders = Executors.newFixedThreadPool(embeddingConcurrency, Thread.ofPlatform().name("ingestion-embedder-", 0).factory());
+        try {
+            List<Future<?>> embedderTasks = new ArrayList<>();
+            for (int i = 0; i < embeddingConcurrency; i++) {
+                embedderTasks.add(embedders.submit(() -> embedBatches(batchQueue, manifest)));
+            }
+            Thread batcher = Thread.ofPlatform().name("ingestion-batcher").start(() -> batchChunks(chunkQueue, batchQueue));
+
+            List<Future<?>> readerTasks = new ArrayList<>();
+            for (Resource resource : resources) {
+                readerTasks.add(readers.submit(() -> {
+                    readDocument(resource, manifest, chunkQueue);
+                    return null;
+                }));
+            }
+            for (Future<?> task : readerTasks) {
+                awaitQuietly(task);
+            }
+
+            chunkQueue.put(Chunk.END);
+            batcher.join();
+            for (int i = 0; i < embeddingConcurrency; i++) {
+                batchQueue.put(List.of(Chunk.END));
+            }
+            for (Future<?> task : embedderTasks) {
+                awaitQuietly(task);
+            }
+        } finally {
+            readers.shutdownNow();
+            embedders.shutdownNow();
+        }
 
-        MarkdownDocumentReaderConfig config = MarkdownDocumentReaderConfig.builder()
+        synchronized (manifest) {
+            saveManifest(manifest);
+        }
+        if (chunksEmbedded.get() > 0 || chunksRemoved.get() > 0) {
+            eventPublisher.publishEvent(new CorpusChangedEvent((int) chunksEmbedded.get(), (int) chunksRemoved.get()));
+        }
+
+        finishedAt = System.nanoTime();
+        state = chunksFailed.get() == 0 ? IngestionStatus.State.COMPLETED : IngestionStatus.State.FAILED;
+        IngestionStatus status = getStatus();
+        logger.info("Document ingestion complete: {} files ({} MB), {} chunks embedded, {} failed in {} ms ({} chunks/sec, {} MB/sec).",
+                status.filesProcessed(), String.format("%.1f", status.bytesRead() / 1e6), status.chunksEmbedded(),
+                status.chunksFailed(), status.elapsedMillis(), String.format("%.1f", status.chunksPerSecond()),
+                String.format("%.2f", status.bytesPerSecond() / 1e6));
+    }
+
+    private void resetProgress() {
+        filesProcessed.set(0);
+        chunksQueued.set(0);
+        chunksEmbedded.set(0);
+        chunksFailed.set(0);
+        chunksRemoved.set(0);
+        bytesRead.set(0);
+        finishedAt = 0;
+    }
+
+    private void removeDeletedFiles(IngestionManifest manifest, List<Resource> resources) {
+        Set<String> present = new HashSet<>();
+        for (Resource resource : resources) {
+            present.add(resource.getFilename());
+        }
+        for (String file : manifest.files()) {
+            if (!present.contains(file)) {
+                logger.info("Removing {} chunks of deleted document: {}", manifest.chunks(file).size(), file);
+                vectorStore.delete(List.copyOf(manifest.chunks(file)));
+                chunksRemoved.addAndGet(manifest.chunks(file).size());
+                lexicalIndex.removeFile(file);
+                manifest.remove(file);
+            }
+        }
+    }
+
+    /**
+     * The bundled documents plus those in the watched directory, which win on a name clash.
+     */
+    private List<Resource> documentResources() throws IOException {
+        Map<String, Resource> byName = new TreeMap<>();
+        for (Resource resource : bundledResources) {
+            if (isDocument(resource.getFilename())) {
+                byName.put(resource.getFilename(), resource);
+            }
+        }
+        if (!watchDirectory.isBlank() && Files.isDirectory(Paths.get(watchDirectory))) {
+            try (Stream<Path> files = Files.list(Paths.get(watchDirectory))) {
+                files.filter(path -> isDocument(path.getFileName().toString()) && Files.isRegularFile(path))
+                        .forEach(path -> byName.put(path.getFileName().toString(), new FileSystemResource(path)));
+            }
+        }
+        return List.copyOf(byName.values());
+    }
+
+    /**
+     * Whether a file is ingested: Markdown, or a format {@link StreamingDocumentReader} reads. Hidden files,
+     * editor backups and Office lock files are not.
+     */
+    static boolean isDocument(String fileName) {
+        if (fileName == null || fileName.startsWith(".") || fileName.startsWith("~")) {
+            return false;
+        }
+        return fileName.endsWith(".md") || StreamingDocumentReader.supports(fileName);
+    }
+
+    private IngestionManifest manifest() throws IOException {
+        if (manifest == null) {
+            manifest = IngestionManifest.load(manifestPath.isBlank() ? null : Paths.get(manifestPath));
+        }
+        return manifest;
+    }
+
+    /**
+     * Queues the re-ingestion of files the watcher reported as changed. They run one at a time on
+     * the ingestion thread, after any ingestion already in progress.
+     */
+    private void refreshFiles(Set<String> files) {
+        for (String file : files) {
+            ingestionExecutor.submit(() -> {
+                try {
+                    refreshFile(file);
+                } catch (Exception e) {
+                    logger.error("Re-ingesting {} failed", file, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Brings one file's chunks in the stores up to date with its current content: the file in the
+     * watched directory, else the bundled document of that name, else nothing (its chunks are
+     * removed).
+     * <p>
+     * Only new chunks are embedded. They are all stored before the outdated ones are deleted, so a
+     * search never finds the file missing, and if storing fails the ones already added are removed
+     * again and the file stays as it was. The keyword index and manifest are switched over last.
+     */
+    void refreshFile(String file) throws IOException, InterruptedException {
+        IngestionManifest manifest = manifest();
+        Resource resource = documentResources().stream()
+                .filter(r -> file.equals(r.getFilename()))
+                .findFirst()
+                .orElse(null);
+        Map<String, Document> chunks = resource == null ? Map.of() : readChunks(file, resource);
+
+        Set<String> known = manifest.chunks(file);
+        List<Document> fresh = chunks.entrySet().stream()
+                .filter(e -> !known.contains(e.getKey()))
+                .map(Map.Entry::getValue)
+                .toList();
+        List<String> stale = known.stream()
+                .filter(id -> !chunks.containsKey(id))
+                .toList();
+        if (fresh.isEmpty() && stale.isEmpty()) {
+            logger.debug("Document {} is unchanged", file);
+            return;
+        }
+        logger.info("Re-ingesting document: {} ({} new, {} removed, {} unchanged parts)",
+                file, fresh.size(), stale.size(), chunks.size() - fresh.size());
+
+        List<String> added = new ArrayList<>();
+        for (List<Document> batch : batches(fresh)) {
+            if (!addWithRetry(batch)) {
+                if (!added.isEmpty()) {
+                    vectorStore.delete(added);
+                }
+                chunksFailed.addAndGet(fresh.size());
+                return;
+            }
+            batch.forEach(document -> added.add(document.getId()));
+        }
+        if (!stale.isEmpty()) {
+            vectorStore.delete(stale);
+        }
+        if (chunks.isEmpty()) {
+            lexicalIndex.removeFile(file);
+            manifest.remove(file);
+        } else {
+            lexicalIndex.replaceFile(file, List.copyOf(chunks.values()));
+            manifest.put(file, chunks.keySet());
+        }
+        saveManifest(manifest);
+        chunksEmbedded.addAndGet(fresh.size());
+        chunksRemoved.addAndGet(stale.size());
+        eventPublisher.publishEvent(new CorpusChangedEvent(fresh.size(), stale.size()));
+    }
+
+    /**
+     * Saves the manifest once the store holds what it lists. The embedded store only persists on a
+     * timer, so it is synced first; otherwise a crash in between would reload a store missing chunks
+     * the manifest claims, and they would never be embedded again.
+     */
+    private void saveManifest(IngestionManifest manifest) throws IOException {
+        if (vectorStore instanceof EmbeddedVectorStore embedded) {
+            embedded.sync();
+        }
+        manifest.save();
+    }
+
+    /**
+     * Full pass after the watcher missed events: re-diffs every document and drops deleted ones.
+     */
+    private void rescan() {
+        try {
+            ingestDocuments();
+        } catch (Exception e) {
+            logger.error("Rescanning documents failed", e);
+        }
+    }
+
+    private List<List<Document>> batches(List<Document> documents) {
+        List<List<Document>> batches = new ArrayList<>();
+        List<Document> batch = new ArrayList<>();
+        int batchTokens = 0;
+        for (Document document : documents) {
+            int tokens = tokenCountEstimator.estimate(document.getText());
+            if (!batch.isEmpty() && (batch.size() >= batchMaxChunks || batchTokens + tokens > batchMaxTokens)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchTokens = 0;
+            }
+            batch.add(document);
+            batchTokens += tokens;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Stage 1: read, split and diff one document, handing its new chunks to the batcher as they are
+     * cut. Other formats than Markdown are parsed as a stream, so a large file is never held in full;
+     * the bounded chunk queue pauses its parsing when embedding falls behind.
+     */
+    private void readDocument(Resource resource, IngestionManifest manifest, BlockingQueue<Chunk> chunkQueue) throws IOException, InterruptedException {
+        String file = resource.getFilename();
+
+        Set<String> known;
+        synchronized (manifest) {
+            known = manifest.chunks(file);
+        }
+        FileProgress progress = new FileProgress(file);
+        List<Document> chunks = new ArrayList<>();
+        int[] fresh = new int[1];
+        boolean read = false;
+        try {
+            forEachChunk(file, resource, chunk -> {
+                if (!progress.chunkIds.add(chunk.getId())) {
+                    return;
+                }
+                chunks.add(chunk);
+                if (!known.contains(chunk.getId())) {
+                    progress.pending.incrementAndGet();
+                    chunkQueue.put(new Chunk(chunk, tokenCountEstimator.estimate(chunk.getText()), progress));
+                    chunksQueued.incrementAndGet();
+                    fresh[0]++;
+                }
+            });
+            // The keyword index lives in memory, so it is rebuilt from every file, not just the changed ones.
+            lexicalIndex.replaceFile(file, chunks);
+
+            List<String> stale = known.stream()
+                    .filter(id -> !progress.chunkIds.contains(id))
+                    .toList();
+            logger.info("Ingesting document: {} with {} parts ({} new, {} removed, {} unchanged)",
+                    file, chunks.size(), fresh[0], stale.size(), chunks.size() - fresh[0]);
+            progress.stale = stale;
+            bytesRead.addAndGet(Math.max(0, resource.contentLength()));
+            filesProcessed.incrementAndGet();
+            read = true;
+        } finally {
+            // A file that could not be read in full fails as a whole: whatever of it got stored is
+            // removed again, and the manifest keeps its old chunks so the next run retries it.
+            if (!read) {
+                progress.failed.set(true);
+                chunksFailed.incrementAndGet();
+            }
+            // Releases the reader's hold; the file completes here if all its new chunks are already done.
+            if (progress.pending.decrementAndGet() == 0) {
+                completeFile(progress, manifest);
+            }
+        }
+    }
+
+    private Map<String, Document> readChunks(String file, Resource resource) throws IOException, InterruptedException {
+        Map<String, Document> chunks = new LinkedHashMap<>();
+        forEachChunk(file, resource, chunk -> chunks.putIfAbsent(chunk.getId(), chunk));
+        return chunks;
+    }
+
+    /**
+     * Cuts a document into chunks with content IDs, in document order. Markdown documents are small
+     * and split on their structure; everything else goes through {@link StreamingDocumentReader}.
+     */
+    private void forEachChunk(String file, Resource resource, StreamingDocumentReader.ChunkSink sink) throws IOException, InterruptedException {
+        if (file.endsWith(".md")) {
+            MarkdownDocumentReader documentReader = new MarkdownDocumentReader(resource, markdownConfig());
+            for (Document chunk : splitter.apply(documentReader.get())) {
+                sink.accept(withContentId(file, chunk));
+            }
+        } else {
+            streamingReader.read(resource, chunk -> sink.accept(withContentId(file, chunk)));
+        }
+    }
+
+    /**
+     * Stage 2: pack chunks into batches that respect the provider's per-request limits. A partial
+     * batch is flushed when no new chunk arrives within the linger time.
+     */
+    private void batchChunks(BlockingQueue<Chunk> chunkQueue, BlockingQueue<List<Chunk>> batchQueue) {
+        List<Chunk> batch = new ArrayList<>();
+        int batchTokens = 0;
+        try {
+            while (true) {
+                Chunk chunk = chunkQueue.poll(BATCH_LINGER.toMillis(), TimeUnit.MILLISECONDS);
+                if (chunk == null || chunk == Chunk.END) {
+                    if (!batch.isEmpty()) {
+                        batchQueue.put(batch);
+                        batch = new ArrayList<>();
+                        batchTokens = 0;
+                    }
+                    if (chunk == Chunk.END) {
+                        return;
+                    }
+                    continue;
+                }
+                if (!batch.isEmpty() && (batch.size() >= batchMaxChunks || batchTokens + chunk.tokens() > batchMaxTokens)) {
+                    batchQueue.put(batch);
+                    batch = new ArrayList<>();
+                    batchTokens = 0;
+                }
+                batch.add(chunk);
+                batchTokens += chunk.tokens();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stage 3: embed and store batches until the end marker arrives.
+     */
+    private void embedBatches(BlockingQueue<List<Chunk>> batchQueue, IngestionManifest manifest) {
+        try {
+            while (true) {
+                List<Chunk> batch = batchQueue.take();
+                if (batch.getFirst() == Chunk.END) {
+                    return;
+                }
+                boolean stored = addWithRetry(batch.stream().map(Chunk::document).toList());
+                for (Chunk chunk : batch) {
+                    if (stored) {
+                        chunksEmbedded.incrementAndGet();
+                        chunk.progress().stored.add(chunk.document().getId());
+                    } else {
+                        chunksFailed.incrementAndGet();
+                        chunk.progress().failed.set(true);
+                    }
+                    if (chunk.progress().pending.decrementAndGet() == 0) {
+                        completeFile(chunk.progress(), manifest);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs once all of a file's new chunks have been stored or failed. On success the outdated
+     * chunks are deleted and the file is recorded in the manifest; otherwise the chunks that did
+     * get stored are removed again, as {@link #refreshFile} does, and the old ones stay.
+     */
+    private void completeFile(FileProgress progress, IngestionManifest manifest) {
+        if (progress.failed.get()) {
+            if (!progress.stored.isEmpty()) {
+                vectorStore.delete(List.copyOf(progress.stored));
+            }
+            return;
+        }
+        if (!progress.stale.isEmpty()) {
+            vectorStore.delete(progress.stale);
+            chunksRemoved.addAndGet(progress.stale.size());
+        }
+        synchronized (manifest) {
+            manifest.put(progress.file, progress.chunkIds);
+        }
+    }
+
+    private boolean addWithRetry(List<Document> batch) throws InterruptedException {
+        long backoff = initialBackoff.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                vectorStore.add(batch);
+                return true;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts || !isThrottling(e)) {
+                    logger.error("Failed to store a batch of {} chunks after {} attempts", batch.size(), attempt, e);
+                    return false;
+                }
+                // Full jitter keeps the workers from retrying in lockstep.
+                long sleep = ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1);
+                logger.warn("Embedding provider throttled (attempt {}), retrying in {} ms", attempt, sleep);
+                Thread.sleep(sleep);
+                backoff *= 2;
+            }
+        }
+    }
+
+    /**
+     * Whether a provider error means "slow down": a transient AI error, or an HTTP 429 / rate limit message.
+     */
+    static boolean isThrottling(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TransientAiException) {
+                return true;
+            }
+            String message = t.getMessage();
+            if (message != null && (message.contains("429") || message.toLowerCase().contains("rate limit"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void awaitQuietly(Future<?> task) throws InterruptedException {
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            logger.error("Ingestion task failed", e.getCause());
+        }
+    }
+
+    private static MarkdownDocumentReaderConfig markdownConfig() {
+        return MarkdownDocumentReaderConfig.builder()
                 .withHorizontalRuleCreateDocument(true)
                 .withIncludeCodeBlock(false)
                 .withIncludeBlockquote(true)
-                .withAdditionalMetadata("source", "devops-doc")
-                .withAdditionalMetadata("category", "infrastructure")
+                .withAdditionalMetadata(DOCUMENT_METADATA)
                 .build();
+    }
 
-
-        TokenTextSplitter splitter = new TokenTextSplitter(
+    private static TokenTextSplitter newSplitter() {
+        // Loading the tokenizer's encoding tables is expensive, so a single splitter is shared by all readers.
+        return new TokenTextSplitter(
                 1000, // defaultChunkSize: balances size with searchability
                 300,  // minChunkSizeChars: shorter because code blocks are often short but meaningful
                 10,   // minChunkLengthToEmbed: avoid embedding trivial lines (like empty configs or `# comments`)
                 5000, // maxNumChunks: conservative limit to avoid memory overload
                 true  // keepSeparator: true to preserve formatting (YAML, bash, etc.)
         );
+    }
 
+    /**
+     * Re-keys a chunk by a name-based UUID of its file and text, so the same content always maps to
+     * the same vector store ID. Identical chunks within a file get the same ID and are kept once.
+     */
+    private static Document withContentId(String file, Document chunk) {
+        String id = UUID.nameUUIDFromBytes((file + '\0' + chunk.getText()).getBytes(StandardCharsets.UTF_8)).toString();
+        Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
+        metadata.put("file", file);
+        return Document.builder()
+                .id(id)
+                .text(chunk.getText())
+                .metadata(metadata)
+                .build();
+    }
 
-        for (Resource resource : documentResources) {
-            MarkdownDocumentReader documentReader = new MarkdownDocumentReader(resource, config);
-            List<Document> documents = documentReader.get();
-            List<Document> splitDocs = splitter.apply(documents);
+    private record Chunk(Document document, int tokens, FileProgress progress) {
+        static final Chunk END = new Chunk(null, 0, null);
+    }
 
-            logger.info("Ingesting document: {} with {} parts", resource.getFilename(), splitDocs.size());
+    /**
+     * Tracks the outstanding chunks of one file so it is completed only when all of them are stored.
+     * The reader holds one extra count until the whole file is read, as its chunks are only known by
+     * then; it sets {@code stale} before releasing that hold.
+     */
+    private static final class FileProgress {
+        private final String file;
+        private final Set<String> chunkIds = ConcurrentHashMap.newKeySet();
+        private final Set<String> stored = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicBoolean failed = new AtomicBoolean();
+        private volatile List<String> stale = List.of();
 
-            vectorStore.add(splitDocs);
+        FileProgress(String file) {
+            this.file = file;
         }
-
-        logger.info("Document ingestion complete.");
     }
-}
\ No newline at end of file
+}
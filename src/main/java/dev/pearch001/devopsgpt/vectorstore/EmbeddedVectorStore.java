@@ -0,0 +1,339 @@
+package dev.pearch001.devopsgpt.vectorstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process {@link VectorStore} backed by an {@link HnswIndex}, removing the network round trip
+ * to a remote vector database from every retrieval.
+ * <p>
+ * Vectors are kept off-heap in a memory-mapped file; the graph and document texts are written
+ * next to it by a periodic flush and on close, so a restart maps the vectors and reads the graph
+ * instead of re-embedding the corpus. Searches run concurrently with inserts; inserts and deletes
+ * are serialized.
+ */
+public class EmbeddedVectorStore implements VectorStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedVectorStore.class);
+
+    private static final String VECTORS_FILE = "vectors.f32";
+    private static final String GRAPH_FILE = "graph.bin";
+    private static final String DOCUMENTS_FILE = "documents.jsonl";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final EmbeddingModel embeddingModel;
+    private final Path directory;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Map<String, Integer> nodesById = new ConcurrentHashMap<>();
+    private final Map<Integer, StoredDocument> documentsByNode = new ConcurrentHashMap<>();
+    private volatile HnswIndex index;
+    private volatile boolean dirty;
+
+    /**
+     * @param directory Where to persist the index, or null to keep it in memory only.
+     */
+    public EmbeddedVectorStore(EmbeddingModel embeddingModel, Path directory, int m, int efConstruction, int efSearch) throws IOException {
+        this.embeddingModel = embeddingModel;
+        this.directory = directory;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        if (directory != null) {
+            Files.createDirectories(directory);
+            load();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "EmbeddedVectorStore";
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        // Embed outside the lock; only the graph update is serialized.
+        List<float[]> embeddings = embeddingModel.embed(documents.stream().map(Document::getText).toList());
+
+        writeLock.lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                float[] vector = normalize(embeddings.get(i));
+                HnswIndex target = indexFor(vector.length);
+
+                Integer previous = nodesById.get(document.getId());
+                if (previous != null) {
+                    target.delete(previous);
+                    documentsByNode.remove(previous);
+                }
+                int node = target.insert(vector);
+                documentsByNode.put(node, new StoredDocument(document.getId(), document.getText(), document.getMetadata()));
+                nodesById.put(document.getId(), node);
+            }
+            dirty = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store vectors", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        writeLock.lock();
+        try {
+            for (String id : idList) {
+                Integer node = nodesById.remove(id);
+                if (node != null) {
+                    index.delete(node);
+                    documentsByNode.remove(node);
+                    dirty = true;
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        List<String> matching = documentsByNode.values().stream()
+                .filter(document -> matches(filterExpression, document.metadata()))
+                .map(StoredDocument::id)
+                .toList();
+        delete(matching);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        HnswIndex current = index;
+        if (current == null) {
+            return List.of();
+        }
+        float[] query = normalize(embeddingModel.embed(request.getQuery()));
+        int topK = request.getTopK();
+        // Over-fetch when filtering, since filtered-out hits would otherwise leave the result short.
+        int fetch = request.hasFilterExpression() ? topK * 10 : topK;
+
+        List<Document> results = new ArrayList<>(topK);
+        for (HnswIndex.Candidate candidate : current.search(query, fetch, Math.max(efSearch, fetch))) {
+            if (candidate.score() < request.getSimilarityThreshold()) {
+                break;
+            }
+            StoredDocument stored = documentsByNode.get(candidate.node());
+            if (stored == null || (request.hasFilterExpression() && !matches(request.getFilterExpression(), stored.metadata()))) {
+                continue;
+            }
+            results.add(Document.builder()
+                    .id(stored.id())
+                    .text(stored.text())
+                    .metadata(stored.metadata())
+                    .score((double) candidate.score())
+                    .build());
+            if (results.size() == topK) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Persists the graph and documents if anything changed since the last flush.
+     */
+    @Scheduled(fixedDelayString = "${devopsgpt.vectorstore.embedded.flush-interval:10000}")
+    public void flush() {
+        try {
+            sync();
+        } catch (IOException e) {
+            logger.error("Failed to flush embedded vector store", e);
+        }
+    }
+
+    /**
+     * Like {@link #flush()}, but fails if the store cannot be written. Anything that records
+     * elsewhere what the store holds, such as the ingestion manifest, syncs first, so a crash never
+     * leaves that record ahead of what a restart loads.
+     */
+    public void sync() throws IOException {
+        if (directory == null || !dirty) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            dirty = false;
+            HnswIndex current = index;
+            current.force();
+
+            Path graphTmp = directory.resolve(GRAPH_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(graphTmp)))) {
+                out.writeInt(current.dimension());
+                current.writeTo(out);
+            }
+            Path documentsTmp = directory.resolve(DOCUMENTS_FILE + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(documentsTmp)) {
+                for (Map.Entry<Integer, StoredDocument> entry : documentsByNode.entrySet()) {
+                    writer.write(objectMapper.writeValueAsString(PersistedDocument.of(entry.getKey(), entry.getValue())));
+                    writer.newLine();
+                }
+            }
+            Files.move(graphTmp, directory.resolve(GRAPH_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(documentsTmp, directory.resolve(DOCUMENTS_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            logger.debug("Flushed embedded vector store ({} documents)", documentsByNode.size());
+        } catch (IOException e) {
+            dirty = true;
+            throw e;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        HnswIndex current = index;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private HnswIndex indexFor(int dimension) throws IOException {
+        if (index == null) {
+            Path vectorsFile = directory == null ? null : directory.resolve(VECTORS_FILE);
+            index = new HnswIndex(new VectorStorage(dimension, vectorsFile), m, efConstruction);
+        } else if (index.dimension() != dimension) {
+            throw new IllegalStateException("Embedding dimension changed from " + index.dimension() + " to " + dimension
+                    + "; delete " + directory + " to rebuild the index");
+        }
+        return index;
+    }
+
+    private void load() throws IOException {
+        Path graphFile = directory.resolve(GRAPH_FILE);
+        Path documentsFile = directory.resolve(DOCUMENTS_FILE);
+        if (!Files.exists(graphFile) || !Files.exists(documentsFile)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(graphFile)))) {
+            HnswIndex loaded = new HnswIndex(new VectorStorage(in.readInt(), directory.resolve(VECTORS_FILE)), m, efConstruction);
+            loaded.readFrom(in);
+            index = loaded;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(documentsFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                PersistedDocument persisted = objectMapper.readValue(line, PersistedDocument.class);
+                documentsByNode.put(persisted.node(), new StoredDocument(persisted.id(), persisted.text(), persisted.metadata()));
+                nodesById.put(persisted.id(), persisted.node());
+            }
+        }
+        logger.info("Loaded embedded vector store with {} documents in {} ms", nodesById.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        if (norm == 0) {
+            return vector;
+        }
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    /**
+     * Evaluates a portable filter expression against a document's metadata.
+     */
+    static boolean matches(Filter.Expression expression, Map<String, Object> metadata) {
+        return switch (expression.type()) {
+            case AND -> matches(operand(expression.left()), metadata) && matches(operand(expression.right()), metadata);
+            case OR -> matches(operand(expression.left()), metadata) || matches(operand(expression.right()), metadata);
+            case NOT -> !matches(operand(expression.left()), metadata);
+            case EQ -> Objects.equals(String.valueOf(value(expression, metadata)), String.valueOf(((Filter.Value) expression.right()).value()));
+            case NE -> !Objects.equals(String.valueOf(value(expression, metadata)), String.valueOf(((Filter.Value) expression.right()).value()));
+            case IN -> contains(expression, metadata);
+            case NIN -> !contains(expression, metadata);
+            case GT, GTE, LT, LTE -> compare(expression, metadata);
+        };
+    }
+
+    private static Filter.Expression operand(Filter.Operand operand) {
+        return operand instanceof Filter.Group group ? group.content() : (Filter.Expression) operand;
+    }
+
+    private static Object value(Filter.Expression expression, Map<String, Object> metadata) {
+        return metadata.get(((Filter.Key) expression.left()).key());
+    }
+
+    private static boolean contains(Filter.Expression expression, Map<String, Object> metadata) {
+        Object actual = value(expression, metadata);
+        Object expected = ((Filter.Value) expression.right()).value();
+        if (!(expected instanceof Collection<?> values)) {
+            return Objects.equals(String.valueOf(actual), String.valueOf(expected));
+        }
+        return values.stream().anyMatch(v -> Objects.equals(String.valueOf(actual), String.valueOf(v)));
+    }
+
+    private static boolean compare(Filter.Expression expression, Map<String, Object> metadata) {
+        Object actual = value(expression, metadata);
+        Object expected = ((Filter.Value) expression.right()).value();
+        if (!(actual instanceof Number a) || !(expected instanceof Number b)) {
+            return false;
+        }
+        int cmp = Double.compare(a.doubleValue(), b.doubleValue());
+        return switch (expression.type()) {
+            case GT -> cmp > 0;
+            case GTE -> cmp >= 0;
+            case LT -> cmp < 0;
+            default -> cmp <= 0;
+        };
+    }
+
+    private record StoredDocument(String id, String text, Map<String, Object> metadata) {
+    }
+
+    private record PersistedDocument(int node, String id, String text, Map<String, Object> metadata) {
+        static PersistedDocument of(int node, StoredDocument document) {
+            return new PersistedDocument(node, document.id(), document.text(), document.metadata());
+        }
+    }
+}
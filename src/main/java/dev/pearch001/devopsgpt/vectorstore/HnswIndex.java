@@ -0,0 +1,388 @@
+package dev.pearch001.devopsgpt.vectorstore;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hierarchical navigable small world graph over unit-length vectors, scored by dot product
+ * (which equals cosine similarity for unit vectors).
+ * <p>
+ * Inserts are expected from a single writer at a time; searches may run concurrently with them
+ * and take no locks. Every neighbor list is an immutable {@code int[]} replaced atomically, and a
+ * node's vector and links are in place before it becomes reachable, so a concurrent search sees
+ * either the old or the new graph around a node, never a half-linked one. Deleted nodes stay in
+ * the graph for routing and are filtered out of results.
+ */
+final class HnswIndex {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final VectorStorage vectors;
+    private final int m;
+    private final int maxNeighborsLevel0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    private volatile Node[] nodes = new Node[1024];
+    private volatile int size;
+    private volatile EntryPoint entryPoint;
+
+    HnswIndex(VectorStorage vectors, int m, int efConstruction) {
+        this.vectors = vectors;
+        this.m = m;
+        this.maxNeighborsLevel0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int dimension() {
+        return vectors.dimension();
+    }
+
+    /**
+     * Inserts a unit-length vector and returns its node number. Callers must serialize inserts and deletes.
+     */
+    int insert(float[] vector) throws IOException {
+        int node = size;
+        vectors.set(node, vector);
+        int level = (int) Math.floor(-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        Node created = new Node(level);
+        if (node == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        }
+        nodes[node] = created;
+
+        EntryPoint entry = entryPoint;
+        if (entry == null) {
+            size = node + 1;
+            entryPoint = new EntryPoint(node, level);
+            return node;
+        }
+
+        int current = entry.node();
+        for (int l = entry.level(); l > level; l--) {
+            current = greedyClosest(vector, current, l);
+        }
+        for (int l = Math.min(level, entry.level()); l >= 0; l--) {
+            List<Candidate> candidates = searchLayer(vector, current, efConstruction, l);
+            int[] neighbors = selectNeighbors(vector, candidates, maxNeighbors(l));
+            created.links.set(l, neighbors);
+            for (int neighbor : neighbors) {
+                linkBack(neighbor, node, l);
+            }
+            current = candidates.getFirst().node();
+        }
+
+        size = node + 1;
+        if (level > entry.level()) {
+            entryPoint = new EntryPoint(node, level);
+        }
+        return node;
+    }
+
+    void delete(int node) {
+        nodes[node].deleted = true;
+    }
+
+    boolean isDeleted(int node) {
+        return nodes[node].deleted;
+    }
+
+    /**
+     * Returns up to {@code k} live nodes most similar to {@code query}, best first.
+     * @param ef Size of the dynamic candidate list; larger is slower but more accurate.
+     */
+    List<Candidate> search(float[] query, int k, int ef) {
+        EntryPoint entry = entryPoint;
+        if (entry == null) {
+            return List.of();
+        }
+        int current = entry.node();
+        for (int l = entry.level(); l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        List<Candidate> candidates = searchLayer(query, current, Math.max(ef, k), 0);
+        List<Candidate> results = new ArrayList<>(k);
+        for (Candidate candidate : candidates) {
+            if (!nodes[candidate.node()].deleted) {
+                results.add(candidate);
+                if (results.size() == k) {
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Exhaustive search, for measuring the recall of {@link #search}.
+     */
+    List<Candidate> bruteForce(float[] query, int k) {
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score));
+        int count = size;
+        for (int node = 0; node < count; node++) {
+            if (nodes[node].deleted) {
+                continue;
+            }
+            best.add(new Candidate(node, vectors.dot(node, query)));
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+        List<Candidate> results = new ArrayList<>(best);
+        results.sort(Comparator.comparingDouble(Candidate::score).reversed());
+        return results;
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentScore = vectors.dot(current, query);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : neighbors(current, level)) {
+                float score = vectors.dot(neighbor, query);
+                if (score > currentScore) {
+                    current = neighbor;
+                    currentScore = score;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search within one layer. Returns up to {@code ef} candidates, best first.
+     */
+    private List<Candidate> searchLayer(float[] query, int entry, int ef, int level) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(size + 1);
+
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score).reversed());
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Comparator.comparingDouble(Candidate::score));
+        Candidate start = new Candidate(entry, vectors.dot(entry, query));
+        visited.add(entry);
+        frontier.add(start);
+        best.add(start);
+
+        while (!frontier.isEmpty()) {
+            Candidate closest = frontier.poll();
+            if (best.size() >= ef && closest.score() < best.peek().score()) {
+                break;
+            }
+            for (int neighbor : neighbors(closest.node(), level)) {
+                if (!visited.add(neighbor)) {
+                    continue;
+                }
+                float score = vectors.dot(neighbor, query);
+                if (best.size() < ef || score > best.peek().score()) {
+                    Candidate candidate = new Candidate(neighbor, score);
+                    frontier.add(candidate);
+                    best.add(candidate);
+                    if (best.size() > ef) {
+                        best.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> results = new ArrayList<>(best);
+        results.sort(Comparator.comparingDouble(Candidate::score).reversed());
+        return results;
+    }
+
+    /**
+     * Neighbor selection heuristic from the HNSW paper: a candidate is kept only if it is closer
+     * to the base vector than to any neighbor already kept, which spreads links across clusters.
+     * Remaining slots are filled with the best pruned candidates.
+     */
+    private int[] selectNeighbors(float[] base, List<Candidate> candidates, int limit) {
+        List<Candidate> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparingDouble(Candidate::score).reversed());
+
+        int[] selected = new int[Math.min(limit, sorted.size())];
+        List<float[]> selectedVectors = new ArrayList<>(selected.length);
+        List<Candidate> pruned = new ArrayList<>();
+        int count = 0;
+        for (Candidate candidate : sorted) {
+            if (count == selected.length) {
+                break;
+            }
+            float[] vector = vectors.get(candidate.node());
+            boolean diverse = true;
+            for (float[] kept : selectedVectors) {
+                if (dot(vector, kept) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidate.node();
+                selectedVectors.add(vector);
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; count < selected.length && i < pruned.size(); i++) {
+            selected[count++] = pruned.get(i).node();
+        }
+        return selected;
+    }
+
+    private void linkBack(int neighbor, int node, int level) {
+        Node target = nodes[neighbor];
+        int[] current = target.links.get(level);
+        int limit = maxNeighbors(level);
+        if (current.length < limit) {
+            int[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = node;
+            target.links.set(level, grown);
+            return;
+        }
+        float[] base = vectors.get(neighbor);
+        List<Candidate> candidates = new ArrayList<>(current.length + 1);
+        for (int existing : current) {
+            candidates.add(new Candidate(existing, vectors.dot(existing, base)));
+        }
+        candidates.add(new Candidate(node, vectors.dot(node, base)));
+        target.links.set(level, selectNeighbors(base, candidates, limit));
+    }
+
+    private int[] neighbors(int node, int level) {
+        int[] links = nodes[node].links.get(level);
+        return links == null ? new int[0] : links;
+    }
+
+    private int maxNeighbors(int level) {
+        return level == 0 ? maxNeighborsLevel0 : m;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    void force() {
+        vectors.force();
+    }
+
+    void close() throws IOException {
+        vectors.close();
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        int count = size;
+        EntryPoint entry = entryPoint;
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(count);
+        out.writeInt(entry == null ? -1 : entry.node());
+        out.writeInt(entry == null ? -1 : entry.level());
+        for (int node = 0; node < count; node++) {
+            Node n = nodes[node];
+            out.writeBoolean(n.deleted);
+            out.writeInt(n.links.length() - 1);
+            for (int l = 0; l < n.links.length(); l++) {
+                int[] links = n.links.get(l);
+                int[] live = links == null ? new int[0] : links;
+                out.writeInt(live.length);
+                for (int link : live) {
+                    out.writeInt(link);
+                }
+            }
+        }
+    }
+
+    void readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported HNSW graph format");
+        }
+        int count = in.readInt();
+        int entryNode = in.readInt();
+        int entryLevel = in.readInt();
+        Node[] loaded = new Node[Math.max(1024, Integer.highestOneBit(Math.max(1, count)) * 2)];
+        for (int node = 0; node < count; node++) {
+            boolean deleted = in.readBoolean();
+            Node n = new Node(in.readInt());
+            n.deleted = deleted;
+            for (int l = 0; l < n.links.length(); l++) {
+                int[] links = new int[in.readInt()];
+                for (int i = 0; i < links.length; i++) {
+                    links[i] = in.readInt();
+                }
+                n.links.set(l, links);
+            }
+            loaded[node] = n;
+        }
+        vectors.mapExisting(count);
+        nodes = loaded;
+        size = count;
+        entryPoint = entryNode < 0 ? null : new EntryPoint(entryNode, entryLevel);
+    }
+
+    record Candidate(int node, float score) {
+    }
+
+    private record EntryPoint(int node, int level) {
+    }
+
+    private static final class Node {
+        private final AtomicReferenceArray<int[]> links;
+        private volatile boolean deleted;
+
+        Node(int level) {
+            this.links = new AtomicReferenceArray<>(level + 1);
+            for (int l = 0; l <= level; l++) {
+                links.set(l, new int[0]);
+            }
+        }
+    }
+
+    /**
+     * Generation-stamped visited marks, reused across searches on the same thread to avoid clearing.
+     */
+    private static final class VisitedSet {
+        private int[] stamps = new int[1024];
+        private int generation;
+
+        void reset(int capacity) {
+            if (stamps.length < capacity) {
+                stamps = new int[Math.max(capacity, stamps.length * 2)];
+                generation = 0;
+            }
+            generation++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                generation = 1;
+            }
+        }
+
+        boolean add(int node) {
+            if (node >= stamps.length) {
+                stamps = Arrays.copyOf(stamps, Math.max(node + 1, stamps.length * 2));
+            }
+            if (stamps[node] == generation) {
+                return false;
+            }
+            stamps[node] = generation;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package dev.pearch001.devopsgpt.vectorstore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-dimension float vectors kept outside the Java heap.
+ * <p>
+ * Vectors live in fixed-size chunks, each a memory-mapped region of a backing file (or a direct
+ * buffer when no file is given), so a restart only has to map the file again. There is a single
+ * writer; readers never lock. A new chunk is published by replacing the volatile chunk array, so
+ * readers either see the old array or the complete new one.
+ */
+final class VectorStorage implements Closeable {
+
+    private static final int VECTORS_PER_CHUNK = 4096;
+
+    private final int dimension;
+    private final long chunkBytes;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> mappings = new ArrayList<>();
+    private volatile FloatBuffer[] chunks = new FloatBuffer[0];
+
+    VectorStorage(int dimension, Path file) throws IOException {
+        this.dimension = dimension;
+        this.chunkBytes = (long) VECTORS_PER_CHUNK * dimension * Float.BYTES;
+        this.channel = file == null ? null
+                : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Writes the vector for a node. Only called by the single writer, for the next free slot or an existing one.
+     */
+    void set(int node, float[] vector) throws IOException {
+        int chunk = node / VECTORS_PER_CHUNK;
+        while (chunk >= chunks.length) {
+            addChunk();
+        }
+        chunks[chunk].put((node % VECTORS_PER_CHUNK) * dimension, vector);
+    }
+
+    float[] get(int node) {
+        float[] vector = new float[dimension];
+        chunks[node / VECTORS_PER_CHUNK].get((node % VECTORS_PER_CHUNK) * dimension, vector);
+        return vector;
+    }
+
+    /**
+     * Dot product of the stored vector with {@code query}, read straight from the mapped memory.
+     */
+    float dot(int node, float[] query) {
+        FloatBuffer chunk = chunks[node / VECTORS_PER_CHUNK];
+        int base = (node % VECTORS_PER_CHUNK) * dimension;
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += chunk.get(base + i) * query[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Flushes written vectors to the backing file. Writer only.
+     */
+    void force() {
+        for (MappedByteBuffer mapping : mappings) {
+            mapping.force();
+        }
+    }
+
+    private void addChunk() throws IOException {
+        ByteBuffer buffer;
+        if (channel == null) {
+            buffer = ByteBuffer.allocateDirect((int) chunkBytes);
+        } else {
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, chunks.length * chunkBytes, chunkBytes);
+            mappings.add(mapping);
+            buffer = mapping;
+        }
+        FloatBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+        grown[chunks.length] = buffer.order(ByteOrder.nativeOrder()).asFloatBuffer();
+        chunks = grown;
+    }
+
+    /**
+     * Maps every chunk that already exists in the backing file.
+     */
+    void mapExisting(int vectorCount) throws IOException {
+        int needed = (vectorCount + VECTORS_PER_CHUNK - 1) / VECTORS_PER_CHUNK;
+        while (chunks.length < needed) {
+            addChunk();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package dev.pearch001.devopsgpt.intent;
+
+import dev.pearch001.devopsgpt.model.DialogueState;
+import dev.pearch001.devopsgpt.service.DialogueStateTracker;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static dev.pearch001.devopsgpt.model.DialogueState.Intent.AWS_CLOUDWATCH_GET_METRICS;
+import static dev.pearch001.devopsgpt.model.DialogueState.Intent.AWS_EC2_START_INSTANCE;
+import static dev.pearch001.devopsgpt.model.DialogueState.Intent.AWS_EC2_STOP_INSTANCE;
+import static dev.pearch001.devopsgpt.model.DialogueState.Intent.GENERAL_QUERY;
+import static dev.pearch001.devopsgpt.model.DialogueState.Intent.GENERATE_COMMAND;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntentMatcherTest {
+
+    private static final Pattern INSTANCE_ID_PATTERN = Pattern.compile("(i-[a-f0-9]{17}|i-[a-f0-9]{8})");
+
+    /**
+     * Messages the original if/else chain classified; none of them reaches a rule added since.
+     */
+    private static final List<String> MESSAGES = List.of(
+            "Please start the EC2 instance i-0123456789abcdef0 for me",
+            "START EC2 INSTANCE i-0123456789ABCDEF0",
+            "stop ec2 instance i-89abcdef now",
+            "could you stop the ec2 instance",
+            "list my s3 buckets",
+            "List all S3 Buckets in the account",
+            "what's the cpu of instance i-0abcdef1234567890",
+            "utilization of instance i-0abcdef12 and i-0123456789abcdef0",
+            "generate command to restart nginx",
+            "How do I roll back a deployment?",
+            "how do i start ec2 instance i-0123456789abcdef0",
+            "what is a pod",
+            "Explain blue/green deployments",
+            "what is the cpu of instance i-0123456789abcdef0",
+            "our pods keep restarting, any idea why?",
+            "start the s3 buckets list",
+            "i-0123456789abcdef0",
+            "");
+
+    private final IntentMatcher matcher = new IntentMatcher(DialogueStateTracker.RULES, GENERAL_QUERY);
+
+    @Test
+    void classifiesLikeTheOriginalChain() {
+        for (String message : MESSAGES) {
+            DialogueState expected = new DialogueState();
+            legacyChain(message, expected);
+            DialogueState actual = new DialogueState();
+            matcher.apply(message, actual);
+
+            assertThat(actual.getCurrentIntent()).as(message).isEqualTo(expected.getCurrentIntent());
+            assertThat(actual.getSlots().get("instanceId")).as(message).isEqualTo(expected.getSlots().get("instanceId"));
+            assertThat(actual.getSlots().get("task")).as(message).isEqualTo(expected.getSlots().get("task"));
+        }
+    }
+
+    @Test
+    void classifiesLikeARuleByRuleScanOnRandomMessages() {
+        Random random = new Random(42);
+        List<String> words = new ArrayList<>(List.of("please", "the", "my", "now", "all", "for", "env=prod", "i-", "i-0123",
+                "i-0123456789abcdef0", "i-89abcdef", "i-0123456789abcdef0123", "I-89ABCDEF", "ec2", "instances"));
+        for (IntentRule rule : DialogueStateTracker.RULES) {
+            rule.groups().forEach(group -> group.forEach(keyword -> words.add(keyword.text())));
+        }
+
+        for (int n = 0; n < 5_000; n++) {
+            StringBuilder message = new StringBuilder();
+            for (int w = random.nextInt(6); w >= 0; w--) {
+                String word = words.get(random.nextInt(words.size()));
+                message.append(random.nextInt(4) == 0 ? word.toUpperCase(Locale.ROOT) : word);
+                message.append(random.nextInt(5) == 0 ? "" : " ");
+            }
+            String input = message.toString();
+
+            DialogueState actual = new DialogueState();
+            assertThat(matcher.apply(input, actual)).as(input).isEqualTo(scanRules(input));
+            IntentRule rule = firstMatch(input);
+            Matcher id = INSTANCE_ID_PATTERN.matcher(input);
+            String expectedId = rule != null && rule.extractInstanceId() && id.find() ? id.group(0) : null;
+            assertThat(actual.getSlots().get("instanceId")).as(input).isEqualTo(expectedId);
+        }
+    }
+
+    @Test
+    void slotsCarryOverLikeTheOriginalChainWithinOneIntent() {
+        List<String> conversation = List.of(
+                "cpu utilization of instance i-0123456789abcdef0",
+                "and the cpu of that instance over the last day",
+                "cpu utilization of instance i-89abcdef",
+                "utilization of this instance again");
+        DialogueState expected = new DialogueState();
+        DialogueState actual = new DialogueState();
+        for (String message : conversation) {
+            legacyChain(message, expected);
+            matcher.apply(message, actual);
+            assertThat(actual.getCurrentIntent()).as(message).isEqualTo(expected.getCurrentIntent());
+            assertThat(actual.getSlots().get("instanceId")).as(message).isEqualTo(expected.getSlots().get("instanceId"));
+        }
+    }
+
+    @Test
+    void taskSlotIsKeptAcrossIntentsLikeTheOriginalChain() {
+        DialogueState state = new DialogueState();
+        assertThat(matcher.apply("how do I restart nginx", state)).isEqualTo(GENERATE_COMMAND);
+        matcher.apply("list my s3 buckets", state);
+        assertThat(state.getSlots()).containsEntry("task", "how do I restart nginx");
+    }
+
+    @Test
+    void stopNeverReusesSelectorFromEarlierQuestion() {
+        DialogueState state = new DialogueState();
+        assertThat(matcher.apply("show network metrics for instances with env=prod", state)).isEqualTo(AWS_CLOUDWATCH_GET_METRICS);
+        assertThat(state.getSlots()).containsEntry("tagSelector", "env=prod");
+
+        assertThat(matcher.apply("stop ec2 instance", state)).isEqualTo(AWS_EC2_STOP_INSTANCE);
+        assertThat(state.getSlots()).doesNotContainKeys("instanceId", "instanceIds", "tagSelector");
+    }
+
+    @Test
+    void startNeedsTargetsInEveryMessage() {
+        DialogueState state = new DialogueState();
+        matcher.apply("start ec2 instance i-0123456789abcdef0", state);
+        assertThat(state.getSlots()).containsEntry("instanceId", "i-0123456789abcdef0");
+
+        assertThat(matcher.apply("start ec2 instance again", state)).isEqualTo(AWS_EC2_START_INSTANCE);
+        assertThat(state.getSlots()).doesNotContainKeys("instanceId", "instanceIds", "tagSelector");
+    }
+
+    @Test
+    void targetsCarryOverToFollowUpWithSameIntent() {
+        DialogueState state = new DialogueState();
+        matcher.apply("cpu utilization of instance i-0123456789abcdef0", state);
+        assertThat(matcher.apply("and the cpu of that instance over the last 6 hours", state)).isEqualTo(AWS_CLOUDWATCH_GET_METRICS);
+        assertThat(state.getSlots()).containsEntry("instanceId", "i-0123456789abcdef0");
+    }
+
+    @Test
+    void targetsAreClearedWhenIntentChanges() {
+        DialogueState state = new DialogueState();
+        matcher.apply("cpu utilization of instance i-0123456789abcdef0", state);
+        assertThat(matcher.apply("explain autoscaling", state)).isEqualTo(GENERAL_QUERY);
+        assertThat(state.getSlots()).doesNotContainKeys("instanceId", "instanceIds", "tagSelector");
+
+        matcher.apply("cpu utilization of instance i-0123456789abcdef0", state);
+        matcher.apply("list my s3 buckets", state);
+        assertThat(state.getSlots()).doesNotContainKeys("instanceId", "instanceIds", "tagSelector");
+    }
+
+    @Test
+    void newTargetsReplaceOldOnes() {
+        DialogueState state = new DialogueState();
+        matcher.apply("cpu utilization of instances with env=prod", state);
+        matcher.apply("cpu utilization of instance i-0123456789abcdef0", state);
+        assertThat(state.getSlots()).containsEntry("instanceIds", "i-0123456789abcdef0").doesNotContainKey("tagSelector");
+    }
+
+    /**
+     * The if/else chain DialogueStateTracker used before the rules were compiled into an automaton.
+     */
+    private static void legacyChain(String userInput, DialogueState state) {
+        String lowerInput = userInput.toLowerCase();
+        if (lowerInput.contains("start") && lowerInput.contains("ec2 instance")) {
+            state.setCurrentIntent(AWS_EC2_START_INSTANCE);
+            legacyInstanceId(state, userInput);
+        } else if (lowerInput.contains("stop") && lowerInput.contains("ec2 instance")) {
+            state.setCurrentIntent(AWS_EC2_STOP_INSTANCE);
+            legacyInstanceId(state, userInput);
+        } else if (lowerInput.contains("list") && lowerInput.contains("s3 buckets")) {
+            state.setCurrentIntent(DialogueState.Intent.AWS_S3_LIST_BUCKETS);
+        } else if ((lowerInput.contains("cpu") || lowerInput.contains("utilization")) && lowerInput.contains("instance")) {
+            state.setCurrentIntent(AWS_CLOUDWATCH_GET_METRICS);
+            legacyInstanceId(state, userInput);
+        } else if (lowerInput.startsWith("generate command to") || lowerInput.startsWith("how do i")) {
+            state.setCurrentIntent(GENERATE_COMMAND);
+            state.addSlot("task", userInput);
+        } else {
+            state.setCurrentIntent(GENERAL_QUERY);
+        }
+    }
+
+    private static void legacyInstanceId(DialogueState state, String userInput) {
+        Matcher matcher = INSTANCE_ID_PATTERN.matcher(userInput);
+        if (matcher.find()) {
+            state.addSlot("instanceId", matcher.group(0));
+        }
+    }
+
+    /**
+     * The same rule table tried rule by rule with contains/startsWith, the way the chain did it.
+     */
+    private static DialogueState.Intent scanRules(String input) {
+        IntentRule rule = firstMatch(input);
+        return rule == null ? GENERAL_QUERY : rule.intent();
+    }
+
+    private static IntentRule firstMatch(String input) {
+        String lowerInput = input.toLowerCase(Locale.ROOT);
+        for (IntentRule rule : DialogueStateTracker.RULES) {
+            boolean all = rule.groups().stream().allMatch(group -> group.stream().anyMatch(keyword -> keyword.anchored()
+                    ? lowerInput.startsWith(keyword.text())
+                    : lowerInput.contains(keyword.text())));
+            if (all) {
+                return rule;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,156 @@
+package dev.pearch001.devopsgpt.persistence;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScriptArchiveTest {
+
+    private static final String SCRIPT = "#!/bin/bash\nkubectl rollout restart deployment/nginx -n production\n";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void scriptsAreFoundWhileQueuedAndAfterRestart() throws Exception {
+        ScriptArchive archive = open(DataSize.ofMegabytes(1), 64);
+        String first = archive.archive(SCRIPT + 1);
+        String second = archive.archive(SCRIPT + 2);
+        assertThat(archive.find(first)).hasValueSatisfying(script -> assertThat(script.script()).isEqualTo(SCRIPT + 1));
+        archive.close();
+
+        ScriptArchive restarted = open(DataSize.ofMegabytes(1), 64);
+        assertThat(restarted.find(first)).hasValueSatisfying(script -> assertThat(script.script()).isEqualTo(SCRIPT + 1));
+        assertThat(restarted.find(second)).hasValueSatisfying(script -> assertThat(script.script()).isEqualTo(SCRIPT + 2));
+        assertThat(restarted.find("unknown")).isEmpty();
+        restarted.close();
+    }
+
+    @Test
+    void idsAreUniqueAndOrdered() throws Exception {
+        ScriptArchive archive = open(DataSize.ofMegabytes(1), 64);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            ids.add(archive.archive(SCRIPT));
+        }
+        archive.close();
+        assertThat(ids).doesNotHaveDuplicates().isSorted();
+    }
+
+    @Test
+    void blocksMissingFromTheIndexAreReindexedAtStartup() throws Exception {
+        ScriptArchive archive = open(DataSize.ofMegabytes(1), 64);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(archive.archive(SCRIPT + i));
+        }
+        archive.close();
+
+        // As if the process died after writing the blocks but before their index lines.
+        for (Path index : files(".idx")) {
+            Files.writeString(index, "");
+        }
+
+        ScriptArchive restarted = open(DataSize.ofMegabytes(1), 64);
+        for (int i = 0; i < ids.size(); i++) {
+            int n = i;
+            assertThat(restarted.find(ids.get(i))).hasValueSatisfying(script -> assertThat(script.script()).isEqualTo(SCRIPT + n));
+        }
+        restarted.close();
+        assertThat(files(".idx")).anyMatch(index -> size(index) > 0);
+    }
+
+    @Test
+    void tornBlockOnlyLosesTheScriptsInIt() throws Exception {
+        ScriptArchive archive = open(DataSize.ofMegabytes(1), 64);
+        String kept = archive.archive(SCRIPT);
+        awaitWritten(archive, kept);
+        String torn = archive.archive(SCRIPT + "torn");
+        archive.close();
+
+        Path segment = files(".dat").getFirst();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        Files.writeString(files(".idx").getFirst(), "");
+
+        ScriptArchive restarted = open(DataSize.ofMegabytes(1), 64);
+        assertThat(restarted.find(kept)).isPresent();
+        assertThat(restarted.find(torn)).isEmpty();
+        restarted.close();
+    }
+
+    @Test
+    void onlyTheNewestSegmentsAreKept() throws Exception {
+        ScriptArchive archive = open(DataSize.ofBytes(128), 2);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String id = archive.archive(SCRIPT + i);
+            awaitWritten(archive, id);
+            ids.add(id);
+        }
+        archive.close();
+
+        assertThat(files(".dat")).hasSizeLessThanOrEqualTo(2);
+        assertThat(archive.find(ids.getFirst())).isEmpty();
+        assertThat(archive.find(ids.getLast())).isPresent();
+
+        ScriptArchive restarted = open(DataSize.ofBytes(128), 2);
+        assertThat(restarted.find(ids.getFirst())).isEmpty();
+        assertThat(restarted.find(ids.getLast())).isPresent();
+        restarted.close();
+    }
+
+    private ScriptArchive open(DataSize segmentSize, int maxSegments) throws IOException {
+        ScriptArchive archive = new ScriptArchive(new SimpleMeterRegistry(), true, directory.toString(), segmentSize, false,
+                1024, 256, maxSegments);
+        archive.open();
+        return archive;
+    }
+
+    /**
+     * Waits until the writer has taken the script out of the queue, so the next one gets a block of its own.
+     */
+    private void awaitWritten(ScriptArchive archive, String id) throws Exception {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (files(".idx").stream().noneMatch(index -> contains(index, id))) {
+            assertThat(System.nanoTime()).as("script %s written", id).isLessThan(deadline);
+            Thread.sleep(1);
+        }
+        assertThat(archive.find(id)).isPresent();
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(suffix)).sorted().toList();
+        }
+    }
+
+    private static boolean contains(Path file, String text) {
+        try {
+            return Files.readString(file).contains(text);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
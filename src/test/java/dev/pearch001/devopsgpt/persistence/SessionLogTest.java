@@ -0,0 +1,160 @@
+package dev.pearch001.devopsgpt.persistence;
+
+import dev.pearch001.devopsgpt.model.DialogueState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void eventsAreReplayedInOrderAfterRestart() throws Exception {
+        SessionLog log = open(DataSize.ofMegabytes(1), 4);
+        log.appendMessage("a", new UserMessage("how do I scale"));
+        log.appendMessage("a", new AssistantMessage("kubectl scale"));
+        DialogueState state = new DialogueState();
+        state.setCurrentIntent(DialogueState.Intent.AWS_EC2_START_INSTANCE);
+        state.addSlot("instanceId", "i-1");
+        log.appendState("a", state);
+        log.appendEviction("b");
+        log.close();
+
+        assertThat(replay()).containsExactly(
+                new SessionEvent.MessageAppended("a", MessageType.USER, "how do I scale"),
+                new SessionEvent.MessageAppended("a", MessageType.ASSISTANT, "kubectl scale"),
+                new SessionEvent.StateUpdated("a", "AWS_EC2_START_INSTANCE", Map.of("instanceId", "i-1")),
+                new SessionEvent.SessionEvicted("b"));
+    }
+
+    @Test
+    void fullSegmentsAreRotatedAndReplayedInOrder() throws Exception {
+        SessionLog log = open(DataSize.ofBytes(64), 4);
+        for (int i = 0; i < 10; i++) {
+            log.appendMessage("a", new UserMessage("message " + i));
+        }
+        log.close();
+
+        assertThat(segments()).hasSizeGreaterThan(5);
+        assertThat(texts(replay())).containsExactly("message 0", "message 1", "message 2", "message 3", "message 4",
+                "message 5", "message 6", "message 7", "message 8", "message 9");
+    }
+
+    @Test
+    void compactionKeepsOnlyLiveSessionsLatestStateAndRecentMessages() throws Exception {
+        SessionLog log = open(DataSize.ofBytes(64), 2);
+        for (int i = 0; i < 4; i++) {
+            log.appendMessage("a", new UserMessage("a" + i));
+        }
+        log.appendMessage("b", new UserMessage("b0"));
+        log.appendEviction("b");
+        DialogueState state = new DialogueState();
+        state.setCurrentIntent(DialogueState.Intent.AWS_S3_LIST_BUCKETS);
+        log.appendState("a", state);
+        state.setCurrentIntent(DialogueState.Intent.GENERAL_QUERY);
+        log.appendState("a", state);
+        log.close();
+
+        SessionLog reopened = open(DataSize.ofBytes(64), 2);
+        reopened.replay(event -> { });
+        int before = segments().size();
+        reopened.compact();
+        reopened.close();
+
+        assertThat(segments()).hasSizeLessThan(before);
+        assertThat(replay()).containsExactly(
+                new SessionEvent.StateUpdated("a", "GENERAL_QUERY", Map.of()),
+                new SessionEvent.MessageAppended("a", MessageType.USER, "a2"),
+                new SessionEvent.MessageAppended("a", MessageType.USER, "a3"));
+    }
+
+    @Test
+    void segmentsLeftBehindByInterruptedCompactionAreNotReplayedTwice() throws Exception {
+        SessionLog log = open(DataSize.ofBytes(64), 100);
+        for (int i = 0; i < 4; i++) {
+            log.appendMessage("a", new UserMessage("a" + i));
+        }
+        log.close();
+
+        Path backup = Files.createDirectories(directory.resolve("backup"));
+        for (Path segment : segments()) {
+            Files.copy(segment, backup.resolve(segment.getFileName()));
+        }
+        SessionLog reopened = open(DataSize.ofBytes(64), 100);
+        reopened.replay(event -> { });
+        reopened.compact();
+        reopened.close();
+
+        // As if the process died after the compacted segment was moved into place but before its inputs were deleted.
+        try (Stream<Path> files = Files.list(backup)) {
+            for (Path segment : files.toList()) {
+                if (!Files.exists(directory.resolve(segment.getFileName()))) {
+                    Files.copy(segment, directory.resolve(segment.getFileName()));
+                }
+            }
+        }
+        assertThat(texts(replay())).containsExactly("a0", "a1", "a2", "a3");
+    }
+
+    @Test
+    void tornRecordEndsReplayOfItsSegment() throws Exception {
+        SessionLog log = open(DataSize.ofMegabytes(1), 4);
+        log.appendMessage("a", new UserMessage("complete"));
+        log.appendMessage("a", new UserMessage("torn by a crash"));
+        log.close();
+
+        Path segment = segments().getLast();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        assertThat(texts(replay())).containsExactly("complete");
+    }
+
+    private SessionLog open(DataSize segmentSize, int retainMessagesPerSession) throws IOException {
+        SessionLog log = new SessionLog(new SimpleMeterRegistry(), true, directory.toString(), segmentSize, false,
+                1024, 1, 1, retainMessagesPerSession);
+        log.open();
+        return log;
+    }
+
+    /**
+     * Replays the log the way startup does, from a freshly opened instance.
+     */
+    private List<SessionEvent> replay() throws Exception {
+        SessionLog log = open(DataSize.ofMegabytes(1), 100);
+        List<SessionEvent> events = new ArrayList<>();
+        log.replay(events::add);
+        log.close();
+        return events;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> Files.isRegularFile(file)).sorted().toList();
+        }
+    }
+
+    private static List<String> texts(List<SessionEvent> events) {
+        return events.stream()
+                .map(event -> ((SessionEvent.MessageAppended) event).text())
+                .toList();
+    }
+}
@@ -0,0 +1,65 @@
+package dev.pearch001.devopsgpt.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Bm25IndexTest {
+
+    private final Bm25Index index = new Bm25Index();
+
+    @Test
+    void identifiersStayWholeAndTheirPartsAreIndexedToo() {
+        assertThat(Bm25Index.tokenize("How do I run aws ec2 start-instances --instance-ids i-0abc?"))
+                .containsExactly("run", "aws", "ec2", "start-instances", "start", "instances", "instance-ids", "instance", "ids", "i-0abc", "0abc");
+        // Stop words and one-character parts are left out.
+        assertThat(Bm25Index.tokenize("Use my-app:1.0 in the chart")).containsExactly("my-app:1.0", "app", "chart");
+    }
+
+    @Test
+    void exactTokenMatchRanksFirst() {
+        index.replaceFile("ec2.md", List.of(
+                document("start", "Start an instance with aws ec2 start-instances --instance-ids and wait for it"),
+                document("stop", "Stop an instance from the console or with the stop-instances command")));
+        index.replaceFile("k8s.md", List.of(document("scale", "Scale a deployment with kubectl scale")));
+
+        List<Document> results = index.search("ec2 start-instances", 10);
+        assertThat(results).extracting(Document::getId).startsWith("start").doesNotContain("scale");
+        assertThat(results.getFirst().getScore()).isGreaterThan(results.getLast().getScore());
+        assertThat(index.search("the of and", 10)).isEmpty();
+    }
+
+    @Test
+    void rarerTermsWeighMore() {
+        index.replaceFile("a.md", List.of(
+                document("common", "deployment deployment rollout"),
+                document("rare", "deployment crashloopbackoff"),
+                document("other", "deployment service")));
+
+        assertThat(index.search("deployment crashloopbackoff", 3)).extracting(Document::getId).first().isEqualTo("rare");
+        assertThat(index.search("deployment crashloopbackoff", 1)).hasSize(1);
+    }
+
+    @Test
+    void replacingAFileDropsItsOldChunks() {
+        for (int version = 0; version < 20; version++) {
+            index.replaceFile("runbook.md", List.of(document("v" + version, "rollback revision" + version)));
+        }
+        index.replaceFile("other.md", List.of(document("other", "rollback with helm")));
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.search("rollback", 10)).extracting(Document::getId).containsExactlyInAnyOrder("v19", "other");
+        assertThat(index.search("revision3", 10)).isEmpty();
+
+        index.removeFile("runbook.md");
+        assertThat(index.search("rollback", 10)).extracting(Document::getId).containsExactly("other");
+    }
+
+    private static Document document(String id, String text) {
+        return new Document(id, text, Map.of());
+    }
+}
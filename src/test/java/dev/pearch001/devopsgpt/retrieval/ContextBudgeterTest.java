@@ -0,0 +1,128 @@
+package dev.pearch001.devopsgpt.retrieval;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextBudgeterTest {
+
+    private static final String SYSTEM = "You are a DevOps assistant. Answer using the documents below.";
+    private static final String QUESTION = "How do I roll back the web deployment?";
+
+    private static final String ROLLOUT = "Roll back a deployment with kubectl rollout undo deployment/web to return to the previous revision of its pods";
+    private static final String ROLLOUT_COPY = "Roll back a deployment with kubectl rollout undo deployment/web to return to the previous revision of its pods!";
+    private static final String ROLLOUT_EDITED = "Roll back a deployment with kubectl rollout undo deployment/web to return to the previous revision of its containers";
+    private static final String HELM = "helm rollback web 3 restores the release to history entry three";
+    private static final String DRAIN = "Drain a node before maintenance so its pods are scheduled elsewhere";
+
+    private final TokenCountEstimator tokens = new JTokkitTokenCountEstimator();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shinglesSimilarityMatchesWordTrigramOverlap() {
+        assertThat(ContextBudgeter.jaccard(ContextBudgeter.shingles(ROLLOUT), ContextBudgeter.shingles(ROLLOUT_COPY))).isEqualTo(1.0);
+        assertThat(ContextBudgeter.jaccard(ContextBudgeter.shingles(ROLLOUT), ContextBudgeter.shingles(DRAIN))).isZero();
+        // One changed last word replaces one of seventeen trigrams: 16 shared of 18 distinct.
+        assertThat(ContextBudgeter.jaccard(ContextBudgeter.shingles(ROLLOUT), ContextBudgeter.shingles(ROLLOUT_EDITED)))
+                .isEqualTo(16.0 / 18);
+    }
+
+    @Test
+    void exactAndNearDuplicatesOfASelectedChunkAreDropped() {
+        ContextBudgeter budgeter = budgeter(10_000, 0.8, 0.0);
+
+        ContextBudgeter.Budget budget = budgeter.fit(SYSTEM, QUESTION, List.of(
+                document("rollout", ROLLOUT, 0.9),
+                document("copy", ROLLOUT_COPY, 0.85),
+                document("edited", ROLLOUT_EDITED, 0.8),
+                document("helm", HELM, 0.7),
+                document("rollout", ROLLOUT, 0.6)), List.of());
+
+        assertThat(budget.documents()).extracting(Document::getId).containsExactly("rollout", "helm");
+        assertThat(dropped("duplicate")).isEqualTo(3);
+    }
+
+    @Test
+    void chunksFarBelowTheBestScoreAreDropped() {
+        ContextBudgeter budgeter = budgeter(10_000, 0.8, 0.5);
+
+        ContextBudgeter.Budget budget = budgeter.fit(SYSTEM, QUESTION, List.of(
+                document("helm", HELM, 0.5),
+                document("rollout", ROLLOUT, 0.8),
+                document("drain", DRAIN, 0.39),
+                document("unscored", "Pause a rollout with kubectl rollout pause deployment/web before editing it", null)), List.of());
+
+        // 0.39 is below half of 0.8; unscored chunks are never cut for their score.
+        assertThat(budget.documents()).extracting(Document::getId).containsExactly("rollout", "helm", "unscored");
+        assertThat(dropped("low-score")).isEqualTo(1);
+    }
+
+    @Test
+    void documentsAndHistoryStayWithinTheTokenBudget() {
+        int fixed = tokens.estimate(SYSTEM) + tokens.estimate(QUESTION);
+        String large = ROLLOUT + ". " + HELM + ". " + DRAIN;
+        // Room for the large chunk's worth of tokens minus one, so it is skipped and the two smaller ones fit.
+        int budgetTokens = fixed + tokens.estimate(large) - 1;
+        ContextBudgeter budgeter = budgeter(budgetTokens, 0.8, 0.0, 1.0);
+        List<Message> history = List.of(
+                new SystemMessage("Summary of the earlier conversation:\nUser: asked about pods."),
+                new UserMessage("Which pods are failing?"),
+                new AssistantMessage("Two pods of web are in CrashLoopBackOff."));
+
+        ContextBudgeter.Budget budget = budgeter.fit(SYSTEM, QUESTION, List.of(
+                document("large", large, 0.9),
+                document("rollout", ROLLOUT, 0.8),
+                document("helm", HELM, 0.7)), history);
+
+        assertThat(budget.documents()).extracting(Document::getId).containsExactly("rollout", "helm");
+        assertThat(dropped("budget")).isEqualTo(1);
+        int documentTokens = tokens.estimate(ROLLOUT) + tokens.estimate(HELM);
+        int historyTokens = budget.history().stream().mapToInt(m -> tokens.estimate(m.getText())).sum();
+        assertThat(budget.promptTokens()).isEqualTo(fixed + documentTokens + historyTokens).isLessThanOrEqualTo(budgetTokens);
+    }
+
+    @Test
+    void historyKeepsTheNewestTurnsAndTheSummaryWhenTheyFit() {
+        Message summary = new SystemMessage("Summary of the earlier conversation:\nUser: asked about pods.");
+        Message oldest = new UserMessage("Which pods are failing in the payments namespace right now?");
+        Message older = new AssistantMessage("Two pods of the payments deployment are in CrashLoopBackOff after the last release.");
+        Message newest = new UserMessage("Show me their logs.");
+        int fixed = tokens.estimate(SYSTEM) + tokens.estimate(QUESTION);
+        // Room for the summary and the two newest turns, but not the oldest one.
+        int budgetTokens = fixed + tokens.estimate(summary.getText()) + tokens.estimate(older.getText())
+                + tokens.estimate(newest.getText()) + 1;
+        ContextBudgeter budgeter = budgeter(budgetTokens, 0.8, 0.0, 0.0);
+
+        ContextBudgeter.Budget budget = budgeter.fit(SYSTEM, QUESTION, List.of(), List.of(summary, oldest, older, newest));
+
+        assertThat(budget.history()).containsExactly(summary, older, newest);
+        assertThat(meterRegistry.counter("devopsgpt.prompt.history.dropped").count()).isEqualTo(1);
+    }
+
+    private ContextBudgeter budgeter(int maxInputTokens, double duplicateThreshold, double minRelativeScore) {
+        return budgeter(maxInputTokens, duplicateThreshold, minRelativeScore, 0.6);
+    }
+
+    private ContextBudgeter budgeter(int maxInputTokens, double duplicateThreshold, double minRelativeScore, double documentShare) {
+        return new ContextBudgeter(tokens, meterRegistry, maxInputTokens, documentShare, duplicateThreshold, minRelativeScore);
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.counter("devopsgpt.prompt.documents.dropped", "reason", reason).count();
+    }
+
+    private static Document document(String id, String text, Double score) {
+        return Document.builder().id(id).text(text).metadata(Map.of()).score(score).build();
+    }
+}
@@ -0,0 +1,91 @@
+package dev.pearch001.devopsgpt.retrieval;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ContextRerankerTest {
+
+    private static final String ROLLOUT = "Roll back a deployment with kubectl rollout undo deployment/web to the previous revision";
+    private static final String ROLLOUT_AGAIN = "Roll back the deployment with kubectl rollout undo deployment/web to its previous revision";
+    private static final String ROLLOUT_NEIGHBOUR = "kubectl rollout undo deployment/web --to-revision picks an older revision of the deployment";
+    private static final String HELM = "helm rollback web 3 restores release history entry three";
+    private static final String DRAIN = "Drain a node before maintenance so pods move elsewhere";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void nearDuplicateIsDroppedAsRedundant() {
+        ContextReranker reranker = reranker(0.7, 0.0, 0.6, 0.0);
+
+        List<Document> results = reranker.rerank("rollback", List.of(
+                document("rollout", ROLLOUT, 1.0), document("again", ROLLOUT_AGAIN, 0.95), document("helm", HELM, 0.9)), 3);
+
+        assertThat(results).extracting(Document::getId).containsExactly("rollout", "helm");
+        assertThat(dropped("redundant")).isEqualTo(1);
+    }
+
+    @Test
+    void complementaryChunkBeatsAMoreRelevantOverlappingOne() {
+        // Nothing is similar enough to drop, so the order comes from the MMR trade-off alone.
+        ContextReranker reranker = reranker(0.5, 0.0, 1.01, 0.0);
+
+        List<Document> results = reranker.rerank("rollback", List.of(
+                document("rollout", ROLLOUT, 1.0), document("neighbour", ROLLOUT_NEIGHBOUR, 0.95), document("helm", HELM, 0.8)), 3);
+
+        assertThat(results).extracting(Document::getId).containsExactly("rollout", "helm", "neighbour");
+        // Scores are the blended relevance, not the MMR value.
+        assertThat(results).extracting(Document::getScore).containsExactly(1.0, 0.8, 0.95);
+    }
+
+    @Test
+    void selectionStopsOnceRelevanceFallsBelowTheCutoff() {
+        ContextReranker reranker = reranker(0.7, 0.0, 0.6, 0.5);
+
+        List<Document> results = reranker.rerank("rollback", List.of(
+                document("rollout", ROLLOUT, 1.0), document("helm", HELM, 0.6), document("drain", DRAIN, 0.4)), 3);
+
+        assertThat(results).extracting(Document::getId).containsExactly("rollout", "helm");
+        assertThat(dropped("low-relevance")).isEqualTo(1);
+    }
+
+    @Test
+    void neverReturnsMoreThanTopK() {
+        ContextReranker reranker = reranker(0.7, 0.0, 0.6, 0.0);
+        List<Document> candidates = List.of(document("rollout", ROLLOUT, 1.0), document("helm", HELM, 0.9), document("drain", DRAIN, 0.8));
+
+        assertThat(reranker.rerank("rollback", candidates, 2)).extracting(Document::getId).containsExactly("rollout", "helm");
+        assertThat(reranker.rerank("rollback", candidates, 0)).isEmpty();
+        assertThat(reranker.rerank("rollback", List.of(), 3)).isEmpty();
+    }
+
+    @Test
+    void queryTermsLiftUnscoredCandidates() {
+        ContextReranker reranker = reranker(0.7, 0.5, 0.6, 0.0);
+
+        // Unscored candidates are valued by position: 1.0 for the first, 0.5 for the second.
+        List<Document> results = reranker.rerank("helm rollback release", List.of(
+                new Document("drain", DRAIN, Map.of()), new Document("helm", HELM, Map.of())), 2);
+
+        assertThat(results).extracting(Document::getId).containsExactly("helm", "drain");
+        assertThat(results.getFirst().getScore()).isCloseTo(0.5 * 0.5 + 0.5 * 1.0, within(1e-9));
+    }
+
+    private ContextReranker reranker(double lambda, double lexicalWeight, double maxSimilarity, double minRelevance) {
+        return new ContextReranker(meterRegistry, true, lambda, lexicalWeight, maxSimilarity, minRelevance);
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("devopsgpt.retrieval.rerank.dropped").tag("reason", reason).counter().count();
+    }
+
+    private static Document document(String id, String text, double score) {
+        return Document.builder().id(id).text(text).score(score).build();
+    }
+}
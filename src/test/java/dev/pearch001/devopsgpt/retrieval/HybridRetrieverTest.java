@@ -0,0 +1,97 @@
+package dev.pearch001.devopsgpt.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HybridRetrieverTest {
+
+    private static final int RRF_K = 60;
+
+    private final VectorStore vectorStore = mock(VectorStore.class);
+    private final Bm25Index lexicalIndex = mock(Bm25Index.class);
+    private final ContextReranker reranker = mock(ContextReranker.class);
+
+    @Test
+    void rankingsAreFusedByReciprocalRank() {
+        when(lexicalIndex.size()).thenReturn(4);
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(documents("a", "b", "c"));
+        when(lexicalIndex.search("rollback", 20)).thenReturn(documents("c", "a", "d"));
+
+        List<Document> results = retriever(true).retrieve("rollback", 3);
+
+        // a: 1/61 + 1/62, c: 1/63 + 1/61, b: 1/62; d (1/63) is cut by topK.
+        assertThat(results).extracting(Document::getId).containsExactly("a", "c", "b");
+        assertThat(results.get(0).getScore()).isCloseTo(rrf(1) + rrf(2), within(1e-12));
+        assertThat(results.get(1).getScore()).isCloseTo(rrf(3) + rrf(1), within(1e-12));
+        assertThat(results.get(2).getScore()).isCloseTo(rrf(2), within(1e-12));
+    }
+
+    @Test
+    void documentFoundByOnlyOneRetrieverStillCompetes() {
+        when(lexicalIndex.size()).thenReturn(4);
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(documents("a", "b", "c"));
+        when(lexicalIndex.search("i-0abc", 20)).thenReturn(documents("b", "exact"));
+
+        // b: 1/62 + 1/61, a: 1/61, exact: 1/62, c: 1/63
+        assertThat(retriever(true).retrieve("i-0abc", 3)).extracting(Document::getId).containsExactly("b", "a", "exact");
+    }
+
+    @Test
+    void rerankerGetsEveryFusedCandidate() {
+        when(reranker.isEnabled()).thenReturn(true);
+        when(reranker.rerank(anyString(), anyList(), anyInt())).thenAnswer(invocation -> invocation.getArgument(1));
+        when(lexicalIndex.size()).thenReturn(4);
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(documents("a", "b", "c"));
+        when(lexicalIndex.search("rollback", 20)).thenReturn(documents("c", "a", "d"));
+
+        retriever(true).retrieve("rollback", 2);
+
+        verify(reranker).rerank(eq("rollback"),
+                argThat(candidates -> candidates.stream().map(Document::getId).toList().equals(List.of("a", "c", "b", "d"))),
+                eq(2));
+    }
+
+    @Test
+    void vectorSearchAloneWhenHybridIsOffOrTheIndexIsEmpty() {
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(documents("a", "b"));
+
+        assertThat(retriever(false).retrieve("rollback", 2)).extracting(Document::getId).containsExactly("a", "b");
+        when(lexicalIndex.size()).thenReturn(0);
+        assertThat(retriever(true).retrieve("rollback", 2)).extracting(Document::getId).containsExactly("a", "b");
+
+        verify(lexicalIndex, never()).search(anyString(), anyInt());
+        verify(vectorStore, times(2)).similaritySearch(argThat((SearchRequest request) -> request.getTopK() == 2));
+    }
+
+    private HybridRetriever retriever(boolean hybrid) {
+        return new HybridRetriever(vectorStore, lexicalIndex, reranker, hybrid, 20, RRF_K);
+    }
+
+    private static double rrf(int rank) {
+        return 1.0 / (RRF_K + rank);
+    }
+
+    private static List<Document> documents(String... ids) {
+        return Arrays.stream(ids).map(id -> new Document(id, "chunk " + id, Map.of())).toList();
+    }
+}
@@ -0,0 +1,54 @@
+package dev.pearch001.devopsgpt.retrieval;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReusingEmbeddingModelTest {
+
+    private final EmbeddingModel delegate = mock(EmbeddingModel.class);
+
+    @Test
+    void questionIsEmbeddedOnceForCacheAndSearch() {
+        when(delegate.embed("what is a pod")).thenReturn(new float[]{1, 0});
+        ReusingEmbeddingModel model = new ReusingEmbeddingModel(delegate, 16, Duration.ofMinutes(1));
+
+        float[] forCache = model.embed("what is a pod");
+        forCache[0] = 42;
+        assertThat(model.embed("what is a pod")).containsExactly(1, 0);
+        verify(delegate, times(1)).embed("what is a pod");
+    }
+
+    @Test
+    void expiredAndEvictedQuestionsAreEmbeddedAgain() {
+        when(delegate.embed("a")).thenReturn(new float[]{1});
+        when(delegate.embed("b")).thenReturn(new float[]{2});
+        ReusingEmbeddingModel expiring = new ReusingEmbeddingModel(delegate, 16, Duration.ZERO);
+        expiring.embed("a");
+        expiring.embed("a");
+        verify(delegate, times(2)).embed("a");
+
+        ReusingEmbeddingModel small = new ReusingEmbeddingModel(delegate, 1, Duration.ofMinutes(1));
+        small.embed("a");
+        small.embed("b");
+        small.embed("a");
+        verify(delegate, times(4)).embed("a");
+    }
+
+    @Test
+    void batchesGoStraightToTheModel() {
+        when(delegate.embed(List.of("x", "y"))).thenReturn(List.of(new float[]{1}, new float[]{2}));
+        ReusingEmbeddingModel model = new ReusingEmbeddingModel(delegate, 16, Duration.ofMinutes(1));
+        model.embed(List.of("x", "y"));
+        model.embed(List.of("x", "y"));
+        verify(delegate, times(2)).embed(List.of("x", "y"));
+    }
+}
@@ -0,0 +1,131 @@
+package dev.pearch001.devopsgpt.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static dev.pearch001.devopsgpt.service.AwsReadCache.Operation.CLOUDWATCH_CPU;
+import static dev.pearch001.devopsgpt.service.AwsReadCache.Operation.CLOUDWATCH_METRICS;
+import static dev.pearch001.devopsgpt.service.AwsReadCache.Operation.S3_LIST_BUCKETS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AwsReadCacheTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    /**
+     * S3 and metric series entries stay fresh for an hour; CPU entries are stale as soon as they are stored.
+     */
+    private final AwsReadCache cache = new AwsReadCache(new SimpleMeterRegistry(), true,
+            Duration.ofHours(1), Duration.ZERO, Duration.ofHours(1), Duration.ofHours(1), 100);
+
+    @Test
+    void concurrentMissesShareOneCall() throws Exception {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        int threads = 8;
+        CountDownLatch ready = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<CompletableFuture<String>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    return cache.get(S3_LIST_BUCKETS, "", () -> counted(call));
+                }));
+            }
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (Future<CompletableFuture<String>> result : results) {
+                futures.add(result.get());
+            }
+            assertThat(futures).noneMatch(CompletableFuture::isDone);
+
+            call.complete("buckets");
+            assertThat(futures).allMatch(future -> future.join().equals("buckets"));
+            assertThat(calls).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void freshEntryIsServedWithoutCalling() {
+        cache.get(S3_LIST_BUCKETS, "", () -> counted(CompletableFuture.completedFuture("buckets"))).join();
+        assertThat(cache.get(S3_LIST_BUCKETS, "", () -> counted(CompletableFuture.completedFuture("other"))).join()).isEqualTo("buckets");
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void staleEntryIsServedWhileOneRefreshRuns() {
+        cache.get(CLOUDWATCH_CPU, "i-1", () -> counted(CompletableFuture.completedFuture("10%"))).join();
+
+        CompletableFuture<String> refresh = new CompletableFuture<>();
+        assertThat(cache.get(CLOUDWATCH_CPU, "i-1", () -> counted(refresh)).join()).isEqualTo("10%");
+        assertThat(cache.get(CLOUDWATCH_CPU, "i-1", () -> counted(refresh)).join()).isEqualTo("10%");
+        assertThat(calls).hasValue(2);
+
+        refresh.complete("20%");
+        assertThat(cache.get(CLOUDWATCH_CPU, "i-1", () -> new CompletableFuture<>()).join()).isEqualTo("20%");
+    }
+
+    @Test
+    void failedRefreshKeepsStaleValue() {
+        cache.get(CLOUDWATCH_CPU, "i-1", () -> counted(CompletableFuture.completedFuture("10%"))).join();
+        cache.get(CLOUDWATCH_CPU, "i-1", () -> counted(CompletableFuture.failedFuture(new IllegalStateException("throttled"))));
+        assertThat(cache.get(CLOUDWATCH_CPU, "i-1", () -> new CompletableFuture<>()).join()).isEqualTo("10%");
+    }
+
+    @Test
+    void failuresAreNotCached() {
+        CompletableFuture<String> failed = cache.get(S3_LIST_BUCKETS, "", () -> counted(CompletableFuture.failedFuture(new IllegalStateException("denied"))));
+        assertThatThrownBy(failed::join).hasCauseInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.get(S3_LIST_BUCKETS, "", () -> counted(CompletableFuture.completedFuture("buckets"))).join()).isEqualTo("buckets");
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void loadInvalidatedWhileInFlightIsNotStored() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> pending = cache.get(S3_LIST_BUCKETS, "", () -> counted(call));
+
+        cache.invalidate(S3_LIST_BUCKETS, "");
+        call.complete("before the change");
+
+        // Whoever was already waiting gets the result, but it is not served to anyone else.
+        assertThat(pending.join()).isEqualTo("before the change");
+        assertThat(cache.get(S3_LIST_BUCKETS, "", () -> counted(CompletableFuture.completedFuture("after the change"))).join())
+                .isEqualTo("after the change");
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void invalidateAllDropsEntriesAndInFlightLoadsOfThatOperation() {
+        cache.get(CLOUDWATCH_METRICS, "i-1,i-2|cpu", () -> CompletableFuture.completedFuture("stored")).join();
+        CompletableFuture<String> call = new CompletableFuture<>();
+        cache.get(CLOUDWATCH_METRICS, "i-3|cpu", () -> call);
+        cache.get(S3_LIST_BUCKETS, "", () -> CompletableFuture.completedFuture("buckets")).join();
+
+        cache.invalidateAll(CLOUDWATCH_METRICS);
+        call.complete("in flight");
+
+        assertThat(cache.get(CLOUDWATCH_METRICS, "i-1,i-2|cpu", () -> CompletableFuture.completedFuture("reloaded")).join()).isEqualTo("reloaded");
+        assertThat(cache.get(CLOUDWATCH_METRICS, "i-3|cpu", () -> CompletableFuture.completedFuture("reloaded")).join()).isEqualTo("reloaded");
+        assertThat(cache.get(S3_LIST_BUCKETS, "", () -> CompletableFuture.completedFuture("other")).join()).isEqualTo("buckets");
+    }
+
+    private <T> CompletableFuture<T> counted(CompletableFuture<T> result) {
+        calls.incrementAndGet();
+        return result;
+    }
+}
@@ -0,0 +1,165 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.service.CloudWatchMetricsQuery.Ec2Metric;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.GetMetricDataResponse;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataQuery;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDataResult;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CloudWatchMetricsQueryTest {
+
+    private static final int POINTS = 6;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<GetMetricDataRequest> requests = Collections.synchronizedList(new ArrayList<>());
+    private final AwsReadCache readCache = new AwsReadCache(meterRegistry, true,
+            Duration.ofHours(1), Duration.ofHours(1), Duration.ofHours(1), Duration.ofHours(1), 100);
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics(meterRegistry, new JTokkitTokenCountEstimator());
+
+    @Test
+    void periodKeepsTheWindowWithinMaxPointsAtTheGranularityCloudWatchRetains() {
+        CloudWatchMetricsQuery query = query(500);
+
+        assertThat(query.periodFor(Duration.ofMinutes(10))).isEqualTo(Duration.ofMinutes(1));
+        assertThat(query.periodFor(Duration.ofHours(1))).isEqualTo(Duration.ofMinutes(1));
+        assertThat(query.periodFor(Duration.ofHours(6))).isEqualTo(Duration.ofMinutes(6));
+        // 61 min / 60 points is 61 s, rounded up to the next whole minute.
+        assertThat(query.periodFor(Duration.ofMinutes(61))).isEqualTo(Duration.ofMinutes(2));
+        // 16 days / 60 points is 384 min, rounded up to a multiple of 5 min.
+        assertThat(query.periodFor(Duration.ofDays(16))).isEqualTo(Duration.ofMinutes(385));
+        // 64 days / 60 points is 25.6 h, rounded up to a multiple of 1 h.
+        assertThat(query.periodFor(Duration.ofDays(64))).isEqualTo(Duration.ofHours(26));
+    }
+
+    @Test
+    void windowEndIsAlignedDownToThePeriod() {
+        Instant before = Instant.now();
+        CloudWatchMetricsQuery.Result result = query(500).query(List.of("i-1"), EnumSet.of(Ec2Metric.CPU), Duration.ofHours(6)).join();
+
+        long period = result.period().toSeconds();
+        assertThat(period).isEqualTo(360);
+        assertThat(result.end().getEpochSecond() % period).isZero();
+        assertThat(result.end()).isBeforeOrEqualTo(Instant.now()).isAfter(before.minusSeconds(period));
+        assertThat(result.start()).isEqualTo(result.end().minus(Duration.ofHours(6)));
+        assertThat(requests.getFirst().startTime()).isEqualTo(result.start());
+        assertThat(requests.getFirst().endTime()).isEqualTo(result.end());
+    }
+
+    @Test
+    void sameQueryInAnyOrderSharesOneCacheEntry() {
+        CloudWatchMetricsQuery query = query(500);
+        // A 60-day window has a one-day period, so both calls fall in the same aligned window.
+        Duration window = Duration.ofDays(60);
+
+        CloudWatchMetricsQuery.Result first = query.query(List.of("i-2", "i-1"), EnumSet.of(Ec2Metric.NETWORK_IN, Ec2Metric.CPU), window).join();
+        CloudWatchMetricsQuery.Result second = query.query(List.of("i-1", "i-2", "i-1"), Set.of(Ec2Metric.CPU, Ec2Metric.NETWORK_IN), window).join();
+
+        assertThat(requests).filteredOn(request -> request.nextToken() == null).hasSize(1);
+        assertThat(second.series()).isSameAs(first.series());
+        assertThat(first.series()).extracting(CloudWatchMetricsQuery.Series::instanceId).containsExactly("i-1", "i-1", "i-2", "i-2");
+        assertThat(first.series()).extracting(CloudWatchMetricsQuery.Series::metric)
+                .containsExactly(Ec2Metric.CPU, Ec2Metric.NETWORK_IN, Ec2Metric.CPU, Ec2Metric.NETWORK_IN);
+    }
+
+    @Test
+    void queriesArePackedPerRequestAndEveryPageIsRead() {
+        List<String> instanceIds = List.of("i-0", "i-1", "i-2");
+        CloudWatchMetricsQuery.Result result = query(4)
+                .query(instanceIds, EnumSet.of(Ec2Metric.CPU, Ec2Metric.STATUS_CHECK), Duration.ofHours(1)).join();
+
+        // Six queries, four per request, each request answered in two pages.
+        assertThat(requests).hasSize(4);
+        assertThat(requests).filteredOn(request -> request.nextToken() == null)
+                .extracting(request -> request.metricDataQueries().size())
+                .containsExactlyInAnyOrder(4, 2);
+        assertThat(result.series()).hasSize(6);
+        for (CloudWatchMetricsQuery.Series series : result.series()) {
+            int instance = instanceIds.indexOf(series.instanceId());
+            assertThat(series.timestamps()).hasSize(POINTS).isSorted();
+            assertThat(series.timestamps()[0]).isEqualTo(result.start());
+            for (int i = 0; i < POINTS; i++) {
+                assertThat(series.values()[i]).isEqualTo(instance * 100 + i);
+            }
+        }
+    }
+
+    @Test
+    void windowIsParsedFromTheMessage() {
+        assertThat(CloudWatchMetricsQuery.windowMentioned("CPU over the last 6 hours")).isEqualTo(Duration.ofHours(6));
+        assertThat(CloudWatchMetricsQuery.windowMentioned("network in the past day")).isEqualTo(Duration.ofDays(1));
+        assertThat(CloudWatchMetricsQuery.windowMentioned("Previous 2 Weeks of disk")).isEqualTo(Duration.ofDays(14));
+        assertThat(CloudWatchMetricsQuery.windowMentioned("last 15 mins")).isEqualTo(Duration.ofMinutes(15));
+        assertThat(CloudWatchMetricsQuery.windowMentioned("cpu for 30m")).isEqualTo(Duration.ofMinutes(30));
+        assertThat(CloudWatchMetricsQuery.windowMentioned("cpu for 12h")).isEqualTo(Duration.ofHours(12));
+        assertThat(CloudWatchMetricsQuery.windowMentioned("cpu for 3d")).isEqualTo(Duration.ofDays(3));
+        assertThat(CloudWatchMetricsQuery.windowMentioned("show cpu for i-0abc")).isNull();
+    }
+
+    @Test
+    void metricsAreParsedFromTheMessage() {
+        assertThat(CloudWatchMetricsQuery.metricsMentioned("how busy is i-1")).containsExactly(Ec2Metric.CPU);
+        assertThat(CloudWatchMetricsQuery.metricsMentioned("show all metrics")).isEqualTo(EnumSet.allOf(Ec2Metric.class));
+        assertThat(CloudWatchMetricsQuery.metricsMentioned("Network and EBS throughput"))
+                .containsExactlyInAnyOrder(Ec2Metric.NETWORK_IN, Ec2Metric.NETWORK_OUT, Ec2Metric.DISK_READ, Ec2Metric.DISK_WRITE);
+        assertThat(CloudWatchMetricsQuery.metricsMentioned("CPU utilization and status check metrics"))
+                .containsExactlyInAnyOrder(Ec2Metric.CPU, Ec2Metric.STATUS_CHECK);
+    }
+
+    private CloudWatchMetricsQuery query(int maxQueriesPerRequest) {
+        return new CloudWatchMetricsQuery(cloudWatch(), pipelineMetrics, readCache, 60, maxQueriesPerRequest);
+    }
+
+    /**
+     * Answers every query with {@link #POINTS} one-minute datapoints valued {@code instance * 100 + i},
+     * the first half on one page and the rest on a second page.
+     */
+    private CloudWatchAsyncClient cloudWatch() {
+        return new CloudWatchAsyncClient() {
+            @Override
+            public CompletableFuture<GetMetricDataResponse> getMetricData(GetMetricDataRequest request) {
+                requests.add(request);
+                boolean firstPage = request.nextToken() == null;
+                List<MetricDataResult> results = new ArrayList<>();
+                for (MetricDataQuery query : request.metricDataQueries()) {
+                    String instanceId = query.metricStat().metric().dimensions().getFirst().value();
+                    int instance = Integer.parseInt(instanceId.substring("i-".length()));
+                    List<Instant> timestamps = new ArrayList<>();
+                    List<Double> values = new ArrayList<>();
+                    for (int i = firstPage ? 0 : POINTS / 2; i < (firstPage ? POINTS / 2 : POINTS); i++) {
+                        timestamps.add(request.startTime().plusSeconds(60L * i));
+                        values.add((double) (instance * 100 + i));
+                    }
+                    results.add(MetricDataResult.builder().id(query.id()).timestamps(timestamps).values(values).build());
+                }
+                return CompletableFuture.completedFuture(GetMetricDataResponse.builder()
+                        .metricDataResults(results)
+                        .nextToken(firstPage ? "page-2" : null)
+                        .build());
+            }
+
+            @Override
+            public String serviceName() {
+                return "monitoring";
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
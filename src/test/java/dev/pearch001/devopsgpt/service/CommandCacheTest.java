@@ -0,0 +1,127 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.model.CommandResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommandCacheTest {
+
+    private static final CommandResponse RESTART = new CommandResponse("kubectl rollout restart deployment/nginx", "Restarts the pods");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void trivialRephrasingsShareAnEntry() {
+        assertThat(CommandCache.normalize("  Please   restart the nginx deployment.  "))
+                .isEqualTo(CommandCache.normalize("restart the nginx deployment"))
+                .isEqualTo(CommandCache.normalize("Can you restart the nginx deployment?"))
+                .isEqualTo("restart the nginx deployment");
+        assertThat(CommandCache.normalize("restart the nginx deployment")).isNotEqualTo(CommandCache.normalize("restart the redis deployment"));
+
+        CommandCache cache = open(100, Duration.ofHours(1));
+        cache.put("Please restart the nginx deployment", RESTART);
+        assertThat(cache.get("restart the nginx deployment!")).contains(RESTART);
+    }
+
+    @Test
+    void tasksDifferingOnlyInOperandCaseDoNotShareAnEntry() {
+        assertThat(CommandCache.normalize("Please delete s3://Reports/Q1.csv")).isEqualTo("delete s3://Reports/Q1.csv");
+
+        CommandCache cache = open(100, Duration.ofHours(1));
+        CommandResponse delete = new CommandResponse("aws s3 rm s3://Reports/Q1.csv", "Deletes the object");
+        cache.put("delete s3://Reports/Q1.csv", delete);
+
+        assertThat(cache.get("delete s3://reports/q1.csv")).isEmpty();
+        assertThat(cache.get("please delete s3://Reports/Q1.csv")).contains(delete);
+    }
+
+    @Test
+    void entriesAreServedFromDiskAfterRestart() {
+        open(100, Duration.ofHours(1)).put("restart the nginx deployment", RESTART);
+
+        CommandCache restarted = open(100, Duration.ofHours(1));
+        assertThat(restarted.get("restart the nginx deployment")).contains(RESTART);
+    }
+
+    @Test
+    void expiredDiskEntryIsDeleted() throws Exception {
+        open(100, Duration.ofHours(1)).put("restart the nginx deployment", RESTART);
+        Thread.sleep(5);
+
+        CommandCache restarted = open(100, Duration.ofMillis(1));
+        assertThat(restarted.get("restart the nginx deployment")).isEmpty();
+        assertThat(files()).isEmpty();
+    }
+
+    @Test
+    void oldestDiskEntriesAreEvictedPastTheLimit() throws Exception {
+        CommandCache cache = open(2, Duration.ofHours(1));
+        cache.put("first task", RESTART);
+        Thread.sleep(5);
+        cache.put("second task", RESTART);
+        Thread.sleep(5);
+        cache.put("third task", RESTART);
+
+        assertThat(files()).hasSize(2);
+        assertThat(open(2, Duration.ofHours(1)).get("first task")).isEmpty();
+    }
+
+    @Test
+    void concurrentWritersOfOneTaskDoNotCollide() throws Exception {
+        CommandCache cache = open(100, Duration.ofHours(1));
+        int threads = 8;
+        CountDownLatch ready = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                writes.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    for (int j = 0; j < 50; j++) {
+                        cache.put("restart the nginx deployment", RESTART);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> write : writes) {
+                write.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(files()).hasSize(1).allMatch(file -> file.toString().endsWith(".json"));
+        assertThat(open(100, Duration.ofHours(1)).get("restart the nginx deployment")).contains(RESTART);
+    }
+
+    /**
+     * A cache with no memory tier, so every lookup goes to disk.
+     */
+    private CommandCache open(int maxDiskEntries, Duration ttl) {
+        CommandCache cache = new CommandCache(new SimpleMeterRegistry(), true, 0, directory.toString(), maxDiskEntries, ttl);
+        cache.open();
+        return cache;
+    }
+
+    private List<Path> files() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+}
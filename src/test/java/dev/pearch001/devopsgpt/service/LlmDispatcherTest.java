@@ -0,0 +1,112 @@
+package dev.pearch001.devopsgpt.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static dev.pearch001.devopsgpt.service.LlmDispatcher.Priority.BATCH;
+import static dev.pearch001.devopsgpt.service.LlmDispatcher.Priority.INTERACTIVE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LlmDispatcherTest {
+
+    /**
+     * 60,000 tokens per minute refill at 1,000 a second, so a 1,000 token call queued behind an
+     * empty bucket waits about a second.
+     */
+    private static final int TOKENS_PER_MINUTE = 60_000;
+    private static final int CALL_TOKENS = 1_000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LlmDispatcher dispatcher = new LlmDispatcher(meterRegistry, 0, TOKENS_PER_MINUTE, 0,
+            Duration.ofSeconds(10), 1, Duration.ofSeconds(5));
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void interactiveCallIsGrantedBeforeEarlierQueuedBatchCall() throws Exception {
+        exhaustTokens();
+        List<LlmDispatcher.Priority> order = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Void> batch = CompletableFuture.runAsync(() -> dispatcher.call(BATCH, CALL_TOKENS, () -> order.add(BATCH), response -> 0));
+        awaitQueued(BATCH);
+        CompletableFuture<Void> interactive = CompletableFuture.runAsync(() -> dispatcher.call(INTERACTIVE, CALL_TOKENS, () -> order.add(INTERACTIVE), response -> 0));
+        awaitQueued(INTERACTIVE);
+
+        CompletableFuture.allOf(batch, interactive).get(10, TimeUnit.SECONDS);
+        assertThat(order).containsExactly(INTERACTIVE, BATCH);
+    }
+
+    @Test
+    void callIsShedWhenItsQueueIsFull() throws Exception {
+        exhaustTokens();
+        CompletableFuture<Void> queued = CompletableFuture.runAsync(() -> dispatcher.call(BATCH, CALL_TOKENS, () -> "", response -> 0));
+        awaitQueued(BATCH);
+
+        assertThatThrownBy(() -> dispatcher.call(BATCH, CALL_TOKENS, () -> "", response -> 0))
+                .isInstanceOf(LlmOverloadedException.class);
+        assertThat(shed(BATCH)).isEqualTo(1);
+
+        // Each priority has a queue of its own.
+        CompletableFuture<Void> interactive = CompletableFuture.runAsync(() -> dispatcher.call(INTERACTIVE, CALL_TOKENS, () -> "", response -> 0));
+        CompletableFuture.allOf(queued, interactive).get(10, TimeUnit.SECONDS);
+        assertThat(shed(INTERACTIVE)).isZero();
+    }
+
+    @Test
+    void callIsShedUpFrontWhenItWouldWaitTooLong() {
+        exhaustTokens();
+
+        // A full minute's allowance is a minute away, well past the 10 second limit.
+        assertThatThrownBy(() -> dispatcher.call(INTERACTIVE, TOKENS_PER_MINUTE, () -> "", response -> 0))
+                .isInstanceOfSatisfying(LlmOverloadedException.class,
+                        e -> assertThat(e.getRetryAfter()).isGreaterThan(Duration.ofSeconds(50)));
+        assertThat(shed(INTERACTIVE)).isEqualTo(1);
+    }
+
+    @Test
+    void providerRateLimitHoldsLaterCalls() {
+        assertThatThrownBy(() -> dispatcher.call(INTERACTIVE, CALL_TOKENS, () -> {
+            throw new IllegalStateException("429 Too Many Requests: Rate limit reached, try again in 30s");
+        }, response -> 0)).isInstanceOfSatisfying(LlmOverloadedException.class,
+                e -> assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(30)));
+
+        assertThatThrownBy(() -> dispatcher.call(INTERACTIVE, CALL_TOKENS, () -> "", response -> 0))
+                .isInstanceOf(LlmOverloadedException.class);
+    }
+
+    @Test
+    void unusedReservationIsReturned() {
+        // Reserves the whole bucket but reports using only half of it.
+        dispatcher.call(INTERACTIVE, TOKENS_PER_MINUTE, () -> "", response -> TOKENS_PER_MINUTE / 2);
+        assertThat(dispatcher.call(INTERACTIVE, TOKENS_PER_MINUTE / 2 - CALL_TOKENS, () -> "granted", response -> 0)).isEqualTo("granted");
+    }
+
+    private void exhaustTokens() {
+        dispatcher.call(INTERACTIVE, TOKENS_PER_MINUTE, () -> "", response -> 0);
+    }
+
+    private void awaitQueued(LlmDispatcher.Priority priority) throws InterruptedException {
+        String tag = priority.name().toLowerCase();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("devopsgpt.llm.queue.depth").tag("priority", tag).gauge().value() < 1) {
+            assertThat(System.nanoTime()).as("%s call queued", priority).isLessThan(deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private double shed(LlmDispatcher.Priority priority) {
+        return meterRegistry.get("devopsgpt.llm.requests").tag("priority", priority.name().toLowerCase())
+                .tag("result", "shed").counter().count();
+    }
+}
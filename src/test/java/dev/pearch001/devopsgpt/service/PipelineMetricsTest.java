@@ -0,0 +1,64 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.model.DialogueState;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PipelineMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PipelineMetrics metrics = new PipelineMetrics(meterRegistry, new JTokkitTokenCountEstimator());
+
+    @Test
+    void onlyRecordedStageIntentCombinationsAreExported() {
+        metrics.recordStage(PipelineMetrics.Stage.LLM, DialogueState.Intent.GENERAL_QUERY, System.nanoTime());
+        metrics.recordStage(PipelineMetrics.Stage.LLM, DialogueState.Intent.GENERAL_QUERY, System.nanoTime());
+
+        assertThat(meterRegistry.find("devopsgpt.pipeline.stage").timers()).hasSize(1);
+        assertThat(meterRegistry.get("devopsgpt.pipeline.stage").tag("stage", "llm").tag("intent", "GENERAL_QUERY").timer().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void concurrentFirstRecordingsAreAllCounted() throws Exception {
+        int threads = 8;
+        int records = 1_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < records; i++) {
+                    for (PipelineMetrics.Stage stage : PipelineMetrics.Stage.values()) {
+                        for (DialogueState.Intent intent : DialogueState.Intent.values()) {
+                            metrics.recordStage(stage, intent, System.nanoTime());
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        List<Timer> timers = List.copyOf(meterRegistry.find("devopsgpt.pipeline.stage").timers());
+        assertThat(timers).hasSize(PipelineMetrics.Stage.values().length * DialogueState.Intent.values().length);
+        assertThat(timers).allMatch(timer -> timer.count() == (long) threads * records);
+    }
+}
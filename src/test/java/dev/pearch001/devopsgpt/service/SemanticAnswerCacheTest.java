@@ -0,0 +1,42 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.model.CorpusChangedEvent;
+import dev.pearch001.devopsgpt.model.EnhancedChatResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SemanticAnswerCacheTest {
+
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private final SemanticAnswerCache cache = new SemanticAnswerCache(embeddingModel, new SimpleMeterRegistry(),
+            true, 0.92, 100, Duration.ofHours(1));
+
+    @Test
+    void similarQuestionIsServedFromCache() {
+        when(embeddingModel.embed(anyString())).thenReturn(new float[]{1, 0});
+        cache.put(cache.key("rag", "what is a pod"), new EnhancedChatResponse("A pod is...", List.of()), 100);
+
+        assertThat(cache.get(cache.key("rag", "explain k8s pods"))).map(EnhancedChatResponse::response).contains("A pod is...");
+        assertThat(cache.get(cache.key("advanced", "explain k8s pods"))).isEmpty();
+    }
+
+    @Test
+    void answerComputedBeforeCorpusChangeIsNotStored() {
+        when(embeddingModel.embed(anyString())).thenReturn(new float[]{1, 0});
+        SemanticAnswerCache.Key key = cache.key("rag", "what is a pod");
+
+        cache.onCorpusChanged(new CorpusChangedEvent(3, 1));
+        cache.put(key, new EnhancedChatResponse("from the old corpus", List.of()), 100);
+
+        assertThat(cache.get(cache.key("rag", "what is a pod"))).isEmpty();
+    }
+}
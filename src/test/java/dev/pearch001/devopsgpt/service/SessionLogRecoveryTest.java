@@ -0,0 +1,83 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.persistence.SessionLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionLogRecoveryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recreatedSessionSurvivesRepeatedReplayAndCompaction() throws Exception {
+        // Idle TTL of zero, so the sweep evicts every session
+        Instance first = start(Duration.ZERO, 100);
+        first.sessions.addMessage("a", new UserMessage("before eviction"));
+        first.sessions.evictIdleSessions();
+        first.sessions.addMessage("a", new UserMessage("after eviction"));
+        first.log.close();
+
+        Instance second = start(Duration.ofHours(1), 100);
+        assertThat(texts(second.sessions.getHistory("a"))).containsExactly("after eviction");
+        second.log.close();
+
+        Instance third = start(Duration.ofHours(1), 100);
+        assertThat(texts(third.sessions.getHistory("a"))).containsExactly("after eviction");
+        third.log.compact();
+        third.log.close();
+
+        Instance fourth = start(Duration.ofHours(1), 100);
+        assertThat(texts(fourth.sessions.getHistory("a"))).containsExactly("after eviction");
+        fourth.log.close();
+    }
+
+    @Test
+    void evictionsDuringReplayAreNotLogged() throws Exception {
+        Instance first = start(Duration.ofHours(1), 100);
+        first.sessions.addMessage("a", new UserMessage("one"));
+        first.sessions.addMessage("b", new UserMessage("two"));
+        first.log.close();
+
+        // Only one session fits now, so replay evicts "a"; that must not outlive the smaller limit.
+        Instance second = start(Duration.ofHours(1), 1);
+        assertThat(second.sessions.hasHistory("a")).isFalse();
+        assertThat(texts(second.sessions.getHistory("b"))).containsExactly("two");
+        second.log.close();
+
+        Instance third = start(Duration.ofHours(1), 100);
+        assertThat(texts(third.sessions.getHistory("a"))).containsExactly("one");
+        assertThat(texts(third.sessions.getHistory("b"))).containsExactly("two");
+        third.log.close();
+    }
+
+    private Instance start(Duration idleTtl, int maxSessions) throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SessionLog log = new SessionLog(meterRegistry, true, directory.toString(), DataSize.ofMegabytes(1), false,
+                1024, 64, 1, 200);
+        log.open();
+        DialogueStateTracker tracker = new DialogueStateTracker(log);
+        SessionManager sessions = new SessionManager(new JTokkitTokenCountEstimator(), log, tracker, meterRegistry,
+                2000, 400, maxSessions, Long.MAX_VALUE, idleTtl, 16, DataSize.ofKilobytes(4));
+        new SessionLogRecovery(log, sessions, tracker).recover();
+        return new Instance(log, sessions);
+    }
+
+    private static List<String> texts(List<Message> history) {
+        return history.stream().map(Message::getText).toList();
+    }
+
+    private record Instance(SessionLog log, SessionManager sessions) {
+    }
+}
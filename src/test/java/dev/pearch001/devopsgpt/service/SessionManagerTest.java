@@ -0,0 +1,168 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.model.DialogueState;
+import dev.pearch001.devopsgpt.persistence.SessionLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionManagerTest {
+
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SessionLog log = new SessionLog(meterRegistry, false, "unused", DataSize.ofMegabytes(1), false,
+            1024, 64, 1, 200);
+    private final DialogueStateTracker tracker = new DialogueStateTracker(log);
+
+    @Test
+    void idleSessionsExpireAfterTheTtl() throws Exception {
+        SessionManager sessions = sessions(1_000_000, 100, Long.MAX_VALUE, Duration.ofMillis(200));
+        sessions.addMessage("idle", new UserMessage("hello"));
+        Thread.sleep(300);
+        sessions.addMessage("active", new UserMessage("hello"));
+
+        sessions.evictIdleSessions();
+
+        assertThat(sessions.hasHistory("idle")).isFalse();
+        assertThat(sessions.hasHistory("active")).isTrue();
+        assertThat(meterRegistry.counter("devopsgpt.session.evictions", "reason", "idle").count()).isEqualTo(1);
+    }
+
+    @Test
+    void leastRecentlyUsedSessionIsEvictedAtMaxSessions() {
+        SessionManager sessions = sessions(1_000_000, 2, Long.MAX_VALUE, Duration.ofHours(1));
+        sessions.addMessage("a", new UserMessage("one"));
+        sessions.addMessage("b", new UserMessage("two"));
+        // Reading "a" makes "b" the least recently used.
+        sessions.getHistory("a");
+        sessions.addMessage("c", new UserMessage("three"));
+
+        assertThat(sessions.hasHistory("a")).isTrue();
+        assertThat(sessions.hasHistory("b")).isFalse();
+        assertThat(sessions.hasHistory("c")).isTrue();
+        assertThat(meterRegistry.get("devopsgpt.session.active").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.counter("devopsgpt.session.evictions", "reason", "lru").count()).isEqualTo(1);
+    }
+
+    @Test
+    void sessionsAreEvictedToStayWithinTheTotalTokenLimit() {
+        String text = "Which pods in the payments namespace restarted during the last hour?";
+        int tokens = tokenCountEstimator.estimate(text);
+        SessionManager sessions = sessions(1_000_000, 100, 3L * tokens, Duration.ofHours(1));
+        for (String id : List.of("a", "b", "c", "d")) {
+            sessions.addMessage(id, new UserMessage(text));
+        }
+
+        assertThat(sessions.hasHistory("a")).isFalse();
+        assertThat(List.of("b", "c", "d")).allMatch(sessions::hasHistory);
+        assertThat(meterRegistry.get("devopsgpt.session.tokens.held").gauge().value()).isEqualTo(3.0 * tokens);
+    }
+
+    @Test
+    void turnsLeavingTheWindowAreSummarizedToTheirFirstSentence() {
+        String first = "The rollout of   checkout-v2 failed on two nodes. The remaining nodes are healthy and serving traffic.";
+        String second = "x".repeat(300) + ". Rolling back now.";
+        String third = "Roll back the deployment.";
+        int windowTokens = tokenCountEstimator.estimate(third);
+        SessionManager sessions = sessions(windowTokens, 400, Long.MAX_VALUE, Duration.ofHours(1));
+        sessions.addMessage("a", new UserMessage(first));
+        sessions.addMessage("a", new AssistantMessage(second));
+        sessions.addMessage("a", new UserMessage(third));
+
+        List<Message> history = sessions.getHistory("a");
+
+        assertThat(history).hasSize(2);
+        assertThat(history.get(0)).isInstanceOf(SystemMessage.class);
+        assertThat(history.get(0).getText()).isEqualTo("Summary of the earlier conversation:\n"
+                + "User: The rollout of checkout-v2 failed on two nodes.\n"
+                + "Assistant: " + "x".repeat(200) + "...");
+        assertThat(history.get(1).getText()).isEqualTo(third);
+        assertThat(meterRegistry.counter("devopsgpt.session.turns.summarized").count()).isEqualTo(2);
+    }
+
+    @Test
+    void evictingASessionDropsItsDialogueState() {
+        SessionManager sessions = sessions(1_000_000, 1, Long.MAX_VALUE, Duration.ofHours(1));
+        DialogueState state = tracker.trackState("a", "list my s3 buckets");
+        sessions.addMessage("a", new UserMessage("list my s3 buckets"));
+        sessions.addMessage("b", new UserMessage("hello"));
+
+        assertThat(tracker.trackState("a", "hello")).isNotSameAs(state);
+    }
+
+    @Test
+    void concurrentEvictionKeepsCountsConsistent() throws Exception {
+        int threads = 8;
+        int maxSessions = 50;
+        SessionManager sessions = sessions(1_000_000, maxSessions, Long.MAX_VALUE, Duration.ofMillis(1));
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 2_000; i++) {
+                    String id = "session-" + thread + "-" + (i % 200);
+                    sessions.addMessage(id, new UserMessage("message " + i));
+                    sessions.getHistory(id);
+                }
+                return null;
+            }));
+        }
+        futures.add(executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < 200; i++) {
+                sessions.evictIdleSessions();
+            }
+            return null;
+        }));
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        // One more insert after the writers finish trims anything a concurrent trim left over.
+        sessions.addMessage("last", new UserMessage("done"));
+
+        double active = meterRegistry.get("devopsgpt.session.active").gauge().value();
+        assertThat(active).isLessThanOrEqualTo(maxSessions);
+
+        long held = 0;
+        int live = 0;
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < 200; i++) {
+                List<Message> history = sessions.getHistory("session-" + t + "-" + i);
+                live += history.isEmpty() ? 0 : 1;
+                for (Message message : history) {
+                    held += tokenCountEstimator.estimate(message.getText());
+                }
+            }
+        }
+        held += tokenCountEstimator.estimate("done");
+        assertThat(live + 1).isEqualTo((int) active);
+        assertThat(meterRegistry.get("devopsgpt.session.tokens.held").gauge().value()).isEqualTo((double) held);
+    }
+
+    private SessionManager sessions(int maxHistoryTokens, int maxSessions, long maxTotalTokens, Duration idleTtl) {
+        return new SessionManager(tokenCountEstimator, log, tracker, meterRegistry,
+                maxHistoryTokens, 400, maxSessions, maxTotalTokens, idleTtl, 16, DataSize.ofKilobytes(4));
+    }
+}
@@ -0,0 +1,157 @@
+package dev.pearch001.devopsgpt.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingDocumentReaderTest {
+
+    private static final String[] WORDS = {
+            "kubectl", "rollout", "restart", "deployment", "namespace", "pods", "the", "node", "drain", "is",
+            "cordon", "replicas", "scale", "to", "service", "ingress", "helm", "upgrade", "values", "of"};
+
+    private final StreamingDocumentReader reader = new StreamingDocumentReader(
+            new TokenTextSplitter(1000, 300, 10, 5000, true), 4_000, 64L << 20, Map.of("source", "test"));
+
+    @Test
+    void blocklessTextIsCoveredExactlyOnce() throws Exception {
+        // No line breaks at all, so windows are only cut once they reach twice the window size.
+        String text = sentences(new Random(1), 2_000, " ");
+
+        List<Document> chunks = read("notes.txt", text.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(chunks).hasSizeGreaterThan(5);
+        assertThat(withoutWhitespace(chunks)).isEqualTo(withoutWhitespace(text));
+    }
+
+    @Test
+    void htmlIsCoveredExactlyOnceAcrossWindows() throws Exception {
+        Random random = new Random(2);
+        StringBuilder html = new StringBuilder("<html><head><title>Runbook</title><script>var x = 1;</script></head><body>");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            String paragraph = sentences(random, 5, " ");
+            if (i % 50 == 0) {
+                html.append("<pre>").append(paragraph.replace(". ", ".\n")).append("</pre>");
+            } else {
+                html.append("<p>").append(paragraph).append("</p>");
+            }
+            expected.append(paragraph).append('\n');
+        }
+        html.append("</body></html>");
+
+        List<Document> chunks = read("runbook.html", html.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertThat(chunks).hasSizeGreaterThan(5);
+        assertThat(withoutWhitespace(chunks)).isEqualTo(withoutWhitespace(expected.toString()));
+        assertThat(chunks).allMatch(chunk -> "text/html".equals(chunk.getMetadata().get("content_type")));
+    }
+
+    @Test
+    void pdfChunksAreCoveredExactlyOnceAndCarryTheirStartPage() throws Exception {
+        // Every word names its page, so a chunk's first word tells which page it starts on.
+        int pages = 8;
+        List<List<String>> lines = new ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        Random random = new Random(3);
+        for (int page = 1; page <= pages; page++) {
+            for (int line = 0; line < 45; line++) {
+                StringBuilder text = new StringBuilder();
+                for (int word = 0; word < 8; word++) {
+                    text.append(word == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]).append(page);
+                }
+                text.append('.');
+                if (lines.size() < page) {
+                    lines.add(new ArrayList<>());
+                }
+                lines.get(page - 1).add(text.toString());
+                expected.append(text).append('\n');
+            }
+        }
+
+        List<Document> chunks = read("guide.pdf", pdf(lines));
+
+        assertThat(chunks).hasSizeGreaterThan(pages / 2);
+        assertThat(withoutWhitespace(chunks)).isEqualTo(withoutWhitespace(expected.toString()));
+        for (Document chunk : chunks) {
+            String firstWord = chunk.getText().split("\\s+", 2)[0];
+            int page = Integer.parseInt(firstWord.replaceAll("\\D", ""));
+            assertThat(chunk.getMetadata().get("page")).as(firstWord).isEqualTo(page);
+        }
+    }
+
+    private List<Document> read(String fileName, byte[] bytes) throws Exception {
+        Resource resource = new ByteArrayResource(bytes) {
+            @Override
+            public String getFilename() {
+                return fileName;
+            }
+        };
+        List<Document> chunks = new ArrayList<>();
+        reader.read(resource, chunks::add);
+        return chunks;
+    }
+
+    private static String sentences(Random random, int count, String separator) {
+        List<String> sentences = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder sentence = new StringBuilder();
+            int words = 6 + random.nextInt(10);
+            for (int w = 0; w < words; w++) {
+                sentence.append(w == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            // ".)" is one token, which the splitter cuts after the "." when it ends a chunk there.
+            sentences.add(sentence + (i % 3 == 0 ? "?" : i % 3 == 1 ? "." : " (see the runbook.)"));
+        }
+        return String.join(separator, sentences);
+    }
+
+    private static byte[] pdf(List<List<String>> pages) throws IOException {
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (List<String> lines : pages) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 9);
+                    content.setLeading(15);
+                    content.newLineAtOffset(40, 750);
+                    for (String line : lines) {
+                        content.showText(line);
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static String withoutWhitespace(List<Document> chunks) {
+        return chunks.stream().map(Document::getText).map(StreamingDocumentReaderTest::withoutWhitespace).collect(Collectors.joining());
+    }
+
+    private static String withoutWhitespace(String text) {
+        return text.replaceAll("\\s+", "");
+    }
+}
@@ -0,0 +1,233 @@
+package dev.pearch001.devopsgpt.service;
+
+import dev.pearch001.devopsgpt.model.CorpusChangedEvent;
+import dev.pearch001.devopsgpt.model.IngestionStatus;
+import dev.pearch001.devopsgpt.retrieval.Bm25Index;
+import dev.pearch001.devopsgpt.vectorstore.EmbeddedVectorStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class VectorStoreIngestorTest {
+
+    private static final String FIRST = "# Rollback\n\nUse kubectl rollout undo to go back to the previous revision of a deployment.\n";
+    private static final String SECOND = "# Scaling\n\nUse kubectl scale to change the number of replicas of a deployment quickly.\n";
+    private static final String REPLACED = "# Draining\n\nUse kubectl drain to move every pod off a node before taking it down for maintenance.\n";
+
+    @TempDir
+    Path directory;
+
+    private final VectorStore vectorStore = mock(VectorStore.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final List<List<String>> added = new ArrayList<>();
+    private Path documents;
+    private VectorStoreIngestor ingestor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        documents = Files.createDirectories(directory.resolve("documents"));
+        doAnswer(invocation -> {
+            List<Document> batch = invocation.getArgument(0);
+            added.add(batch.stream().map(Document::getId).toList());
+            return null;
+        }).when(vectorStore).add(anyList());
+
+        ingestor = newIngestor(vectorStore);
+    }
+
+    @Test
+    void changedFileKeepsOldChunksUntilNewOnesAreStored() throws Exception {
+        Files.writeString(documents.resolve("runbook.md"), FIRST + "\n---\n\n" + SECOND);
+        ingestor.ingestDocuments();
+        List<String> original = added.getFirst();
+        assertThat(original).hasSize(2);
+
+        Files.writeString(documents.resolve("runbook.md"), FIRST + "\n---\n\n" + REPLACED);
+        ingestor.ingestDocuments();
+
+        InOrder order = inOrder(vectorStore);
+        order.verify(vectorStore, times(2)).add(anyList());
+        order.verify(vectorStore).delete(List.of(original.get(1)));
+        assertThat(added.get(1)).hasSize(1).doesNotContainAnyElementsOf(original);
+    }
+
+    @Test
+    void failedStoreLeavesOldChunksInPlace() throws Exception {
+        Files.writeString(documents.resolve("runbook.md"), FIRST + "\n---\n\n" + SECOND);
+        ingestor.ingestDocuments();
+
+        doThrow(new IllegalStateException("store unavailable")).when(vectorStore).add(anyList());
+        Files.writeString(documents.resolve("runbook.md"), FIRST + "\n---\n\n" + REPLACED);
+        ingestor.ingestDocuments();
+
+        verify(vectorStore, never()).delete(anyList());
+        assertThat(ingestor.getStatus().chunksFailed()).isEqualTo(1);
+    }
+
+    @Test
+    void unchangedRescanReportsOnlyItsOwnRunAndPublishesNothing() throws Exception {
+        Files.writeString(documents.resolve("runbook.md"), FIRST + "\n---\n\n" + SECOND);
+        ingestor.ingestDocuments();
+        verify(eventPublisher, times(1)).publishEvent(any(CorpusChangedEvent.class));
+
+        ingestor.ingestDocuments();
+
+        IngestionStatus status = ingestor.getStatus();
+        assertThat(status.filesProcessed()).isEqualTo(status.filesTotal()).isEqualTo(1);
+        assertThat(status.chunksEmbedded()).isZero();
+        assertThat(status.state()).isEqualTo(IngestionStatus.State.COMPLETED);
+        verify(eventPublisher, times(1)).publishEvent(any(CorpusChangedEvent.class));
+    }
+
+    @Test
+    void successfulRunClearsEarlierFailure() throws Exception {
+        doThrow(new IllegalStateException("store unavailable")).when(vectorStore).add(anyList());
+        Files.writeString(documents.resolve("runbook.md"), FIRST);
+        ingestor.ingestDocuments();
+        assertThat(ingestor.getStatus().state()).isEqualTo(IngestionStatus.State.FAILED);
+
+        doNothing().when(vectorStore).add(anyList());
+        ingestor.ingestDocuments();
+
+        IngestionStatus status = ingestor.getStatus();
+        assertThat(status.state()).isEqualTo(IngestionStatus.State.COMPLETED);
+        assertThat(status.chunksFailed()).isZero();
+        assertThat(status.chunksEmbedded()).isEqualTo(1);
+    }
+
+    @Test
+    void fileThatFailsMidReadIsRolledBackAndReported() throws Exception {
+        // Long enough for several chunks to be queued and stored before the read fails
+        String text = "<html><body>" + "<p>Restart the ingestion worker after rotating the embedding provider credentials.</p>".repeat(800);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ReflectionTestUtils.setField(ingestor, "streamWindowChars", 8_000);
+        ReflectionTestUtils.setField(ingestor, "watchDirectory", "");
+        ReflectionTestUtils.setField(ingestor, "bundledResources", new Resource[]{failingAfter("notes.html", bytes, bytes.length / 2)});
+        ingestor.createReaders();
+        List<String> deleted = new ArrayList<>();
+        doAnswer(invocation -> deleted.addAll(invocation.getArgument(0))).when(vectorStore).delete(anyList());
+
+        ingestor.ingestDocuments();
+
+        List<String> stored = added.stream().flatMap(List::stream).toList();
+        assertThat(stored).isNotEmpty();
+        assertThat(deleted).containsExactlyInAnyOrderElementsOf(stored);
+
+        IngestionStatus status = ingestor.getStatus();
+        assertThat(status.state()).isEqualTo(IngestionStatus.State.FAILED);
+        assertThat(status.chunksFailed()).isEqualTo(1);
+        assertThat(status.filesProcessed()).isZero();
+
+        // The file was not recorded, so once it reads in full every chunk is stored again.
+        ReflectionTestUtils.setField(ingestor, "bundledResources", new Resource[]{named("notes.html", (text + "</body></html>").getBytes(StandardCharsets.UTF_8))});
+        added.clear();
+        ingestor.ingestDocuments();
+        assertThat(ingestor.getStatus().state()).isEqualTo(IngestionStatus.State.COMPLETED);
+        assertThat(added.stream().flatMap(List::stream).toList()).containsAll(stored);
+    }
+
+    @Test
+    void embeddedStoreIsSyncedBeforeTheManifestIsSaved() throws Exception {
+        EmbeddedVectorStore embedded = mock(EmbeddedVectorStore.class);
+        Path manifest = directory.resolve("manifest.json");
+        List<Boolean> manifestSavedAtSync = new ArrayList<>();
+        doAnswer(invocation -> manifestSavedAtSync.add(Files.exists(manifest))).when(embedded).sync();
+        Files.writeString(documents.resolve("runbook.md"), FIRST);
+
+        newIngestor(embedded).ingestDocuments();
+
+        assertThat(manifestSavedAtSync).containsExactly(false);
+        assertThat(manifest).exists();
+    }
+
+    @Test
+    void manifestIsNotSavedWhenTheEmbeddedStoreCannotBeSynced() throws Exception {
+        EmbeddedVectorStore embedded = mock(EmbeddedVectorStore.class);
+        doThrow(new IOException("disk full")).when(embedded).sync();
+        Files.writeString(documents.resolve("runbook.md"), FIRST);
+
+        assertThatThrownBy(() -> newIngestor(embedded).ingestDocuments()).hasMessage("disk full");
+        assertThat(directory.resolve("manifest.json")).doesNotExist();
+    }
+
+    private VectorStoreIngestor newIngestor(VectorStore store) {
+        VectorStoreIngestor ingestor = new VectorStoreIngestor(store, new Bm25Index(), new JTokkitTokenCountEstimator(), eventPublisher);
+        ReflectionTestUtils.setField(ingestor, "bundledResources", new Resource[0]);
+        ReflectionTestUtils.setField(ingestor, "manifestPath", directory.resolve("manifest.json").toString());
+        ReflectionTestUtils.setField(ingestor, "readerThreads", 1);
+        ReflectionTestUtils.setField(ingestor, "embeddingConcurrency", 1);
+        ReflectionTestUtils.setField(ingestor, "batchMaxChunks", 100);
+        ReflectionTestUtils.setField(ingestor, "batchMaxTokens", 100_000);
+        ReflectionTestUtils.setField(ingestor, "queueCapacity", 100);
+        ReflectionTestUtils.setField(ingestor, "maxAttempts", 1);
+        ReflectionTestUtils.setField(ingestor, "initialBackoff", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(ingestor, "streamWindowChars", 32_000);
+        ReflectionTestUtils.setField(ingestor, "parserMemory", DataSize.ofMegabytes(64));
+        ReflectionTestUtils.setField(ingestor, "watchDirectory", documents.toString());
+        ReflectionTestUtils.setField(ingestor, "watchDebounce", Duration.ofSeconds(2));
+        ingestor.createReaders();
+        return ingestor;
+    }
+
+    private static Resource named(String fileName, byte[] bytes) {
+        return new ByteArrayResource(bytes) {
+            @Override
+            public String getFilename() {
+                return fileName;
+            }
+        };
+    }
+
+    private static Resource failingAfter(String fileName, byte[] bytes, int length) {
+        return new ByteArrayResource(bytes) {
+            @Override
+            public String getFilename() {
+                return fileName;
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                InputStream failing = new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("connection reset");
+                    }
+                };
+                return new SequenceInputStream(new ByteArrayInputStream(bytes, 0, length), failing);
+            }
+        };
+    }
+}
@@ -0,0 +1,135 @@
+package dev.pearch001.devopsgpt.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmbeddedVectorStoreTest {
+
+    private static final List<Document> DOCUMENTS = List.of(
+            document("rollback", "kubectl rollout undo deployment", "k8s"),
+            document("scale", "kubectl scale replicas", "k8s"),
+            document("buckets", "aws s3 list buckets", "aws"),
+            document("instances", "aws ec2 describe instances", "aws"));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void searchReturnsTheClosestDocumentsFirst() throws Exception {
+        try (EmbeddedVectorStore store = new EmbeddedVectorStore(model(26), null, 16, 200, 64)) {
+            store.add(DOCUMENTS);
+
+            List<Document> results = store.similaritySearch(SearchRequest.builder().query("kubectl rollout undo").topK(2).build());
+
+            assertThat(results).extracting(Document::getId).first().isEqualTo("rollback");
+            assertThat(results).hasSize(2);
+            assertThat(results.get(0).getScore()).isGreaterThanOrEqualTo(results.get(1).getScore());
+        }
+    }
+
+    @Test
+    void deletedAndReplacedDocumentsAreNotReturned() throws Exception {
+        try (EmbeddedVectorStore store = new EmbeddedVectorStore(model(26), null, 16, 200, 64)) {
+            store.add(DOCUMENTS);
+            store.delete(List.of("rollback"));
+            store.add(List.of(document("scale", "aws s3 copy objects", "aws")));
+
+            List<String> ids = ids(store.similaritySearch(SearchRequest.builder().query("kubectl rollout undo").topK(10).build()));
+
+            assertThat(ids).containsExactlyInAnyOrder("scale", "buckets", "instances");
+            assertThat(store.similaritySearch(SearchRequest.builder().query("aws s3 copy objects").topK(1).build()))
+                    .extracting(Document::getText).containsExactly("aws s3 copy objects");
+        }
+    }
+
+    @Test
+    void filterExpressionRestrictsResults() throws Exception {
+        try (EmbeddedVectorStore store = new EmbeddedVectorStore(model(26), null, 16, 200, 64)) {
+            store.add(DOCUMENTS);
+
+            List<String> ids = ids(store.similaritySearch(SearchRequest.builder()
+                    .query("kubectl rollout undo").topK(10).filterExpression("category == 'aws'").build()));
+
+            assertThat(ids).containsExactlyInAnyOrder("buckets", "instances");
+        }
+    }
+
+    @Test
+    void reopenedStoreGivesTheSameResults() throws Exception {
+        SearchRequest request = SearchRequest.builder().query("aws s3 buckets").topK(3).build();
+        List<Document> before;
+        try (EmbeddedVectorStore store = new EmbeddedVectorStore(model(26), directory, 16, 200, 64)) {
+            store.add(DOCUMENTS);
+            store.delete(List.of("buckets"));
+            before = store.similaritySearch(request);
+            store.sync();
+        }
+
+        try (EmbeddedVectorStore reopened = new EmbeddedVectorStore(model(26), directory, 16, 200, 64)) {
+            List<Document> after = reopened.similaritySearch(request);
+
+            assertThat(ids(after)).isEqualTo(ids(before)).doesNotContain("buckets");
+            assertThat(after).extracting(Document::getScore).isEqualTo(before.stream().map(Document::getScore).toList());
+            assertThat(after).extracting(d -> d.getMetadata().get("category"))
+                    .isEqualTo(before.stream().map(d -> d.getMetadata().get("category")).toList());
+        }
+    }
+
+    @Test
+    void reopeningWithADifferentEmbeddingDimensionIsRejected() throws Exception {
+        try (EmbeddedVectorStore store = new EmbeddedVectorStore(model(26), directory, 16, 200, 64)) {
+            store.add(DOCUMENTS);
+        }
+
+        try (EmbeddedVectorStore reopened = new EmbeddedVectorStore(model(8), directory, 16, 200, 64)) {
+            assertThatThrownBy(() -> reopened.add(List.of(document("new", "helm upgrade", "k8s"))))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("from 26 to 8");
+        }
+    }
+
+    /**
+     * Letter counts, folded into {@code dimension} buckets: texts sharing words end up close.
+     */
+    private static EmbeddingModel model(int dimension) {
+        EmbeddingModel model = mock(EmbeddingModel.class);
+        when(model.embed(anyString())).thenAnswer(invocation -> embed(invocation.getArgument(0), dimension));
+        when(model.embed(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return texts.stream().map(text -> embed(text, dimension)).toList();
+        });
+        return model;
+    }
+
+    private static float[] embed(String text, int dimension) {
+        float[] vector = new float[dimension];
+        for (char c : text.toCharArray()) {
+            if (c >= 'a' && c <= 'z') {
+                vector[(c - 'a') % dimension]++;
+            }
+        }
+        return vector;
+    }
+
+    private static Document document(String id, String text, String category) {
+        return Document.builder().id(id).text(text).metadata(Map.of("category", category)).build();
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+}
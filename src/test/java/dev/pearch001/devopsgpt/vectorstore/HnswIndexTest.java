@@ -0,0 +1,136 @@
+package dev.pearch001.devopsgpt.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+    private static final int K = 10;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void searchFindsMostOfTheExactNearestNeighbors() throws IOException {
+        Random random = new Random(1);
+        HnswIndex index = new HnswIndex(new VectorStorage(DIMENSION, null), 16, 200);
+        for (int i = 0; i < 2_000; i++) {
+            index.insert(randomUnitVector(random));
+        }
+
+        double recall = 0;
+        int queries = 100;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomUnitVector(random);
+            Set<Integer> expected = nodes(index.bruteForce(query, K));
+            List<HnswIndex.Candidate> found = index.search(query, K, 64);
+            assertThat(found).hasSize(K);
+            assertThat(found).isSortedAccordingTo((a, b) -> Float.compare(b.score(), a.score()));
+            recall += found.stream().filter(c -> expected.contains(c.node())).count() / (double) K;
+        }
+
+        assertThat(recall / queries).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void deletedNodesAreNeverReturned() throws IOException {
+        Random random = new Random(2);
+        HnswIndex index = new HnswIndex(new VectorStorage(DIMENSION, null), 8, 100);
+        for (int i = 0; i < 500; i++) {
+            index.insert(randomUnitVector(random));
+        }
+        float[] query = randomUnitVector(random);
+        Set<Integer> deleted = nodes(index.search(query, K, 64));
+        deleted.forEach(index::delete);
+
+        List<HnswIndex.Candidate> results = index.search(query, K, 64);
+
+        assertThat(results).hasSize(K);
+        assertThat(nodes(results)).doesNotContainAnyElementsOf(deleted);
+        assertThat(nodes(index.bruteForce(query, K))).doesNotContainAnyElementsOf(deleted);
+        assertThat(deleted).allMatch(index::isDeleted);
+    }
+
+    @Test
+    void graphWrittenAndReadBackGivesTheSameResults() throws IOException {
+        Random random = new Random(3);
+        Path vectorsFile = directory.resolve("vectors.f32");
+        HnswIndex index = new HnswIndex(new VectorStorage(DIMENSION, vectorsFile), 16, 200);
+        for (int i = 0; i < 1_000; i++) {
+            index.insert(randomUnitVector(random));
+        }
+        index.delete(7);
+        Path graphFile = directory.resolve("graph.bin");
+        index.force();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(graphFile)))) {
+            index.writeTo(out);
+        }
+        float[][] queries = new float[20][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = randomUnitVector(random);
+        }
+        List<List<HnswIndex.Candidate>> before = search(index, queries);
+        index.close();
+
+        HnswIndex reloaded = new HnswIndex(new VectorStorage(DIMENSION, vectorsFile), 16, 200);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(graphFile)))) {
+            reloaded.readFrom(in);
+        }
+
+        assertThat(reloaded.size()).isEqualTo(1_000);
+        assertThat(reloaded.isDeleted(7)).isTrue();
+        assertThat(search(reloaded, queries)).isEqualTo(before);
+        reloaded.close();
+    }
+
+    @Test
+    void unknownGraphFormatIsRejected() throws IOException {
+        HnswIndex index = new HnswIndex(new VectorStorage(DIMENSION, null), 16, 200);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(new byte[]{0, 0, 0, 99}));
+
+        assertThatThrownBy(() -> index.readFrom(in)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void emptyIndexReturnsNothing() throws IOException {
+        HnswIndex index = new HnswIndex(new VectorStorage(DIMENSION, null), 16, 200);
+
+        assertThat(index.search(randomUnitVector(new Random(4)), K, 64)).isEmpty();
+    }
+
+    private static List<List<HnswIndex.Candidate>> search(HnswIndex index, float[][] queries) {
+        return Arrays.stream(queries).map(query -> index.search(query, K, 64)).toList();
+    }
+
+    private static Set<Integer> nodes(List<HnswIndex.Candidate> candidates) {
+        Set<Integer> nodes = new HashSet<>();
+        candidates.forEach(c -> nodes.add(c.node()));
+        return nodes;
+    }
+
+    static float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return EmbeddedVectorStore.normalize(vector);
+    }
+}
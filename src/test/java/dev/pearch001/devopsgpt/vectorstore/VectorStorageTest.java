@@ -0,0 +1,57 @@
+package dev.pearch001.devopsgpt.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class VectorStorageTest {
+
+    // Past the first chunk of 4096 vectors
+    private static final int LAST = 5_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void vectorsAcrossChunksReadBackAsWritten() throws IOException {
+        try (VectorStorage storage = new VectorStorage(3, null)) {
+            for (int node = 0; node <= LAST; node++) {
+                storage.set(node, vector(node));
+            }
+            storage.set(1, new float[]{9, 9, 9});
+
+            assertThat(storage.get(0)).containsExactly(vector(0));
+            assertThat(storage.get(1)).containsExactly(9, 9, 9);
+            assertThat(storage.get(4_096)).containsExactly(vector(4_096));
+            assertThat(storage.get(LAST)).containsExactly(vector(LAST));
+            assertThat(storage.dot(LAST, new float[]{1, 0, 2})).isCloseTo(LAST + 2 * (LAST + 0.5f), within(1e-3f));
+        }
+    }
+
+    @Test
+    void vectorsSurviveRemappingTheFile() throws IOException {
+        Path file = directory.resolve("vectors.f32");
+        try (VectorStorage storage = new VectorStorage(3, file)) {
+            for (int node = 0; node <= LAST; node++) {
+                storage.set(node, vector(node));
+            }
+        }
+
+        try (VectorStorage reopened = new VectorStorage(3, file)) {
+            reopened.mapExisting(LAST + 1);
+
+            assertThat(reopened.get(0)).containsExactly(vector(0));
+            assertThat(reopened.get(4_095)).containsExactly(vector(4_095));
+            assertThat(reopened.get(LAST)).containsExactly(vector(LAST));
+        }
+    }
+
+    private static float[] vector(int node) {
+        return new float[]{node, -node, node + 0.5f};
+    }
+}